@@ -0,0 +1,1313 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pivot.beans;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.net.URL;
+import java.util.zip.CRC32;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.apache.pivot.collections.ArrayList;
+import org.apache.pivot.collections.Dictionary;
+import org.apache.pivot.collections.HashMap;
+import org.apache.pivot.collections.HashSet;
+import org.apache.pivot.collections.Sequence;
+import org.apache.pivot.serialization.SerializationException;
+import org.apache.pivot.util.ListenerList;
+
+/**
+ * Build-time tool that compiles BXML documents to Java source code.
+ * <p>
+ * For each document, the compiler generates a subclass of {@link CompiledBXML}
+ * that constructs the document's object hierarchy using direct constructor and
+ * setter calls. Classes and properties are resolved when the document is
+ * compiled, and literal attribute values are coerced to their property types
+ * ahead of time, so loading a compiled document does not require XML parsing
+ * or reflection. The generated class is named after the document; for
+ * example, <tt>org/apache/pivot/tutorials/hello.bxml</tt> is compiled to
+ * <tt>org.apache.pivot.tutorials.hello_bxml</tt>. When the compiled class is
+ * on the class path, {@link BXMLSerializer#readObject(Class, String, boolean)}
+ * uses it in place of interpreting the document.
+ * <p>
+ * The compiler supports typed elements, instance and static property
+ * attributes and elements, <tt>bxml:id</tt>, <tt>bxml:define</tt>,
+ * <tt>bxml:include</tt>, <tt>bxml:reference</tt>, URL, resource and object
+ * reference resolution and namespace bindings. Documents that use scripts
+ * (<tt>bxml:script</tt>, listener attributes or listener list elements) or
+ * bind mapping functions cannot be compiled; such documents continue to be
+ * interpreted at run time.
+ * <p>
+ * The classes referenced by the documents must be available on the class path
+ * of the compiler. Usage:
+ * <pre>
+ * java org.apache.pivot.beans.BXMLCompiler &lt;source directory&gt; &lt;output directory&gt; [&lt;resource path&gt; ...]
+ * </pre>
+ * If no resource paths are specified, all BXML files in the source directory
+ * are compiled.
+ */
+public class BXMLCompiler {
+    private static class Node {
+        public final Node parent;
+        public final String prefix;
+        public final String localName;
+        public final String namespaceURI;
+        public final int lineNumber;
+
+        public final ArrayList<NodeAttribute> attributes = new ArrayList<NodeAttribute>();
+        public final ArrayList<Object> children = new ArrayList<Object>();
+
+        public Node(Node parent, String prefix, String localName, String namespaceURI,
+            int lineNumber) {
+            this.parent = parent;
+            this.prefix = prefix;
+            this.localName = localName;
+            this.namespaceURI = namespaceURI;
+            this.lineNumber = lineNumber;
+        }
+
+        public boolean isBXML() {
+            return (prefix != null && prefix.equals(BXMLSerializer.BXML_PREFIX));
+        }
+    }
+
+    private static class NodeAttribute {
+        public final String prefix;
+        public final String localName;
+        public final String namespaceURI;
+        public final String value;
+
+        public NodeAttribute(String prefix, String localName, String namespaceURI, String value) {
+            this.prefix = prefix;
+            this.localName = localName;
+            this.namespaceURI = namespaceURI;
+            this.value = value;
+        }
+    }
+
+    private static class Value {
+        public final String expression;
+        public final Class<?> type;
+        public final String literal;
+
+        public Value(String expression, Class<?> type, String literal) {
+            this.expression = expression;
+            this.type = type;
+            this.literal = literal;
+        }
+
+        public boolean isNull() {
+            return expression.equals("null");
+        }
+    }
+
+    private static class Property {
+        public final String name;
+        public final Class<?> propertyClass;
+        public final Value value;
+
+        public Property(String name, Class<?> propertyClass, Value value) {
+            this.name = name;
+            this.propertyClass = propertyClass;
+            this.value = value;
+        }
+    }
+
+    private static class Variable {
+        public final String name;
+        public final Class<?> type;
+        public final String id;
+
+        public Variable(String name, Class<?> type, String id) {
+            this.name = name;
+            this.type = type;
+            this.id = id;
+        }
+    }
+
+    private XMLInputFactory xmlInputFactory;
+    private ClassLoader classLoader = null;
+
+    private String resourcePath = null;
+    private int nextIndex = 0;
+    private HashSet<String> ids = null;
+    private StringBuilder methods = null;
+    private StringBuilder bindings = null;
+    private ArrayList<String> fields = null;
+
+    public static final String INDENT = "    ";
+
+    public BXMLCompiler() {
+        xmlInputFactory = XMLInputFactory.newInstance();
+        xmlInputFactory.setProperty("javax.xml.stream.isCoalescing", true);
+    }
+
+    /**
+     * Compiles a BXML document.
+     *
+     * @param resourcePath
+     * The class path location of the document; for example,
+     * <tt>org/apache/pivot/tutorials/hello.bxml</tt>. The location determines
+     * the name of the generated class.
+     *
+     * @param inputStream
+     * The contents of the document.
+     *
+     * @return
+     * The source code of the generated class.
+     *
+     * @throws SerializationException
+     * If the document is invalid or uses a feature that is not supported by
+     * the compiler.
+     */
+    public String compile(String resourcePath, InputStream inputStream)
+        throws IOException, SerializationException {
+        if (resourcePath == null) {
+            throw new IllegalArgumentException("resourcePath is null.");
+        }
+
+        if (inputStream == null) {
+            throw new IllegalArgumentException("inputStream is null.");
+        }
+
+        // Read the document so that its checksum can be calculated
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int n;
+        while ((n = inputStream.read(buffer)) != -1) {
+            outputStream.write(buffer, 0, n);
+        }
+
+        byte[] document = outputStream.toByteArray();
+
+        CRC32 crc32 = new CRC32();
+        crc32.update(document);
+
+        Node root = parse(new ByteArrayInputStream(document));
+
+        this.resourcePath = resourcePath;
+        classLoader = Thread.currentThread().getContextClassLoader();
+        nextIndex = 0;
+        ids = new HashSet<String>();
+        methods = new StringBuilder();
+        bindings = new StringBuilder();
+        fields = new ArrayList<String>();
+
+        String source;
+        try {
+            if (root.isBXML()) {
+                throw error(root, "Invalid root element.");
+            }
+
+            Variable rootVariable = compileObject(root);
+
+            String className = CompiledBXML.getClassName(resourcePath);
+            int i = className.lastIndexOf('.');
+
+            StringBuilder sourceBuilder = new StringBuilder();
+            if (i != -1) {
+                sourceBuilder.append("package " + className.substring(0, i) + ";\n\n");
+            }
+
+            sourceBuilder.append("import java.io.IOException;\n\n");
+            sourceBuilder.append("import org.apache.pivot.beans.CompiledBXML;\n");
+            sourceBuilder.append("import org.apache.pivot.serialization.SerializationException;\n\n");
+            sourceBuilder.append("/**\n");
+            sourceBuilder.append(" * Generated by " + BXMLCompiler.class.getName() + " from "
+                + resourcePath + ". Do not edit.\n");
+            sourceBuilder.append(" */\n");
+            sourceBuilder.append("@SuppressWarnings(\"unchecked\")\n");
+            sourceBuilder.append("public class " + className.substring(i + 1)
+                + " extends CompiledBXML {\n");
+
+            for (String field : fields) {
+                sourceBuilder.append(INDENT + "private Object " + field + " = null;\n");
+            }
+
+            if (fields.getLength() > 0) {
+                sourceBuilder.append("\n");
+            }
+
+            sourceBuilder.append(INDENT + "@Override\n");
+            sourceBuilder.append(INDENT + "protected Object readObject() throws IOException, SerializationException {\n");
+            sourceBuilder.append(INDENT + INDENT + typeName(rootVariable.type) + " " + rootVariable.name
+                + " = create" + rootVariable.name + "();\n");
+            sourceBuilder.append(bindings);
+
+            for (String field : fields) {
+                sourceBuilder.append(INDENT + INDENT + "this." + field + " = null;\n");
+            }
+
+            sourceBuilder.append("\n");
+            sourceBuilder.append(INDENT + INDENT + "return " + rootVariable.name + ";\n");
+            sourceBuilder.append(INDENT + "}\n\n");
+
+            sourceBuilder.append(INDENT + "@Override\n");
+            sourceBuilder.append(INDENT + "protected long getChecksum() {\n");
+            sourceBuilder.append(INDENT + INDENT + "return " + crc32.getValue() + "L;\n");
+            sourceBuilder.append(INDENT + "}\n");
+            sourceBuilder.append(methods);
+            sourceBuilder.append("}\n");
+
+            source = sourceBuilder.toString();
+        } finally {
+            this.resourcePath = null;
+            classLoader = null;
+            ids = null;
+            methods = null;
+            bindings = null;
+            fields = null;
+        }
+
+        return source;
+    }
+
+    /**
+     * Compiles a BXML document to a Java source file.
+     *
+     * @param sourceDirectory
+     * The class path root containing the document.
+     *
+     * @param resourcePath
+     * The location of the document relative to the source directory.
+     *
+     * @param outputDirectory
+     * The directory to which the generated source file will be written.
+     *
+     * @return
+     * The generated source file.
+     */
+    public File compile(File sourceDirectory, String resourcePath, File outputDirectory)
+        throws IOException, SerializationException {
+        String source;
+        InputStream inputStream = new FileInputStream(new File(sourceDirectory, resourcePath));
+        try {
+            source = compile(resourcePath, inputStream);
+        } finally {
+            inputStream.close();
+        }
+
+        String className = CompiledBXML.getClassName(resourcePath);
+        File outputFile = new File(outputDirectory, className.replace('.', File.separatorChar)
+            + ".java");
+        outputFile.getParentFile().mkdirs();
+
+        Writer writer = new OutputStreamWriter(new FileOutputStream(outputFile), "UTF-8");
+        try {
+            writer.write(source);
+        } finally {
+            writer.close();
+        }
+
+        return outputFile;
+    }
+
+    private Node parse(InputStream inputStream) throws SerializationException {
+        Node root = null;
+        Node node = null;
+
+        try {
+            XMLStreamReader xmlStreamReader = xmlInputFactory.createXMLStreamReader(inputStream);
+
+            while (xmlStreamReader.hasNext()) {
+                int event = xmlStreamReader.next();
+
+                switch (event) {
+                    case XMLStreamConstants.CHARACTERS: {
+                        if (node != null
+                            && !xmlStreamReader.isWhiteSpace()) {
+                            node.children.add(xmlStreamReader.getText());
+                        }
+
+                        break;
+                    }
+
+                    case XMLStreamConstants.START_ELEMENT: {
+                        String prefix = xmlStreamReader.getPrefix();
+                        if (prefix != null
+                            && prefix.length() == 0) {
+                            prefix = null;
+                        }
+
+                        Node child = new Node(node, prefix, xmlStreamReader.getLocalName(),
+                            xmlStreamReader.getNamespaceURI(),
+                            xmlStreamReader.getLocation().getLineNumber());
+
+                        for (int i = 0, n = xmlStreamReader.getAttributeCount(); i < n; i++) {
+                            String attributePrefix = xmlStreamReader.getAttributePrefix(i);
+                            if (attributePrefix != null
+                                && attributePrefix.length() == 0) {
+                                attributePrefix = null;
+                            }
+
+                            String namespaceURI = xmlStreamReader.getAttributeNamespace(i);
+                            if (namespaceURI == null || namespaceURI.length() == 0) {
+                                namespaceURI = xmlStreamReader.getNamespaceURI("");
+                            }
+
+                            child.attributes.add(new NodeAttribute(attributePrefix,
+                                xmlStreamReader.getAttributeLocalName(i), namespaceURI,
+                                xmlStreamReader.getAttributeValue(i)));
+                        }
+
+                        if (node == null) {
+                            root = child;
+                        } else {
+                            node.children.add(child);
+                        }
+
+                        node = child;
+                        break;
+                    }
+
+                    case XMLStreamConstants.END_ELEMENT: {
+                        node = node.parent;
+                        break;
+                    }
+                }
+            }
+        } catch (XMLStreamException exception) {
+            throw new SerializationException(exception);
+        }
+
+        return root;
+    }
+
+    /**
+     * Generates a method that creates the value of a typed, include or
+     * reference element and returns the variable that holds the value.
+     */
+    private Variable compileObject(Node node) throws SerializationException {
+        int index = nextIndex++;
+        String name = "_" + index;
+
+        StringBuilder body = new StringBuilder();
+        String indent = INDENT + INDENT;
+
+        Class<?> type = null;
+        String tag = null;
+
+        if (node.isBXML()) {
+            tag = node.localName;
+
+            if (!tag.equals(BXMLSerializer.INCLUDE_TAG)
+                && !tag.equals(BXMLSerializer.REFERENCE_TAG)) {
+                throw error(node, "Invalid element.");
+            }
+        } else {
+            if (node.namespaceURI == null) {
+                throw error(node, "No XML namespace specified for " + node.localName + " tag.");
+            }
+
+            String className = node.namespaceURI + "." + node.localName.replace('.', '$');
+            type = getClass(node, className);
+
+            if (!isAccessible(type)) {
+                throw error(node, type.getName() + " is not public.");
+            }
+
+            String typeName = typeName(type);
+            if (hasDefaultConstructor(type)) {
+                body.append(indent + typeName + " " + name + " = typedObjectsOverridden ? newTypedObject("
+                    + typeName + ".class) : new " + typeName + "();\n");
+            } else {
+                body.append(indent + typeName + " " + name + " = newTypedObject("
+                    + typeName + ".class);\n");
+            }
+        }
+
+        // Process the attributes
+        String id = null;
+        HashMap<String, String> properties = new HashMap<String, String>();
+        ArrayList<Property> attributes = new ArrayList<Property>();
+
+        for (NodeAttribute attribute : node.attributes) {
+            if (attribute.prefix != null
+                && attribute.prefix.equals(BXMLSerializer.BXML_PREFIX)) {
+                if (!attribute.localName.equals(BXMLSerializer.ID_ATTRIBUTE)) {
+                    throw error(node, BXMLSerializer.BXML_PREFIX + ":" + attribute.localName
+                        + " is not a valid attribute.");
+                }
+
+                id = attribute.value;
+                if (id.length() == 0
+                    || id.contains(".")) {
+                    throw error(node, "\"" + id + "\" is not a valid ID value.");
+                }
+
+                if (tag != null
+                    && !tag.equals(BXMLSerializer.INCLUDE_TAG)) {
+                    throw error(node, "An ID cannot be assigned to this element.");
+                }
+
+                if (ids.contains(id)) {
+                    throw error(node, "ID " + id + " is already in use.");
+                }
+
+                ids.add(id);
+                body.append(indent + "checkID(" + quote(id) + ");\n");
+            } else if (tag != null
+                && (tag.equals(BXMLSerializer.INCLUDE_TAG)
+                    && (attribute.localName.equals(BXMLSerializer.INCLUDE_SRC_ATTRIBUTE)
+                    || attribute.localName.equals(BXMLSerializer.INCLUDE_RESOURCES_ATTRIBUTE)
+                    || attribute.localName.equals(BXMLSerializer.INCLUDE_MIME_TYPE_ATTRIBUTE)
+                    || attribute.localName.equals(BXMLSerializer.INCLUDE_INLINE_ATTRIBUTE))
+                || tag.equals(BXMLSerializer.REFERENCE_TAG)
+                    && attribute.localName.equals(BXMLSerializer.REFERENCE_ID_ATTRIBUTE))) {
+                properties.put(attribute.localName, attribute.value);
+            } else {
+                Property property = compileAttribute(node, attribute, body, indent);
+
+                if (property.value == null) {
+                    addBinding(node, name, id, property.name, attribute.value);
+                } else {
+                    attributes.add(property);
+                }
+            }
+        }
+
+        // Get the value of include and reference elements
+        if (tag != null) {
+            if (tag.equals(BXMLSerializer.INCLUDE_TAG)) {
+                String src = properties.get(BXMLSerializer.INCLUDE_SRC_ATTRIBUTE);
+                if (src == null) {
+                    throw error(node, BXMLSerializer.INCLUDE_SRC_ATTRIBUTE
+                        + " attribute is required for " + BXMLSerializer.BXML_PREFIX + ":"
+                        + BXMLSerializer.INCLUDE_TAG + " tag.");
+                }
+
+                String inline = properties.get(BXMLSerializer.INCLUDE_INLINE_ATTRIBUTE);
+
+                body.append(indent + "Object " + name + " = include(" + quote(src) + ", "
+                    + quote(properties.get(BXMLSerializer.INCLUDE_RESOURCES_ATTRIBUTE)) + ", "
+                    + quote(properties.get(BXMLSerializer.INCLUDE_MIME_TYPE_ATTRIBUTE)) + ", "
+                    + Boolean.parseBoolean(inline) + ");\n");
+            } else {
+                String referenceID = properties.get(BXMLSerializer.REFERENCE_ID_ATTRIBUTE);
+                if (referenceID == null) {
+                    throw error(node, BXMLSerializer.REFERENCE_ID_ATTRIBUTE
+                        + " attribute is required for " + BXMLSerializer.BXML_PREFIX + ":"
+                        + BXMLSerializer.REFERENCE_TAG + " tag.");
+                }
+
+                body.append(indent + "Object " + name + " = reference(" + quote(referenceID) + ");\n");
+            }
+        }
+
+        // Add the value to the namespace
+        if (id != null) {
+            if (type == null) {
+                body.append(indent + "register(" + quote(id) + ", " + name + ");\n");
+            } else {
+                body.append(indent + "namespace.put(" + quote(id) + ", " + name + ");\n");
+
+                IDProperty idProperty = type.getAnnotation(IDProperty.class);
+                if (idProperty != null) {
+                    compilePut(body, indent, name, type, idProperty.value(),
+                        new Value(quote(id), String.class, id));
+                }
+            }
+        }
+
+        // Process the children
+        Variable variable = new Variable(name, type, id);
+
+        for (Object child : node.children) {
+            if (child instanceof String) {
+                String text = (String)child;
+
+                if (type == null) {
+                    throw error(node, "Unexpected characters in " + tag + " element.");
+                }
+
+                if (Sequence.class.isAssignableFrom(type)) {
+                    Method addMethod;
+                    try {
+                        addMethod = type.getMethod("add", String.class);
+                    } catch (NoSuchMethodException exception) {
+                        throw error(node, "Text content cannot be added to "
+                            + type.getName() + ".");
+                    }
+
+                    if (isAccessible(addMethod.getDeclaringClass())) {
+                        body.append(indent + name + ".add(" + quote(text) + ");\n");
+                    } else {
+                        body.append(indent + "addText(" + name + ", " + quote(text) + ");\n");
+                    }
+                }
+            } else {
+                compileChild(variable, (Node)child, body, indent);
+            }
+        }
+
+        // Apply the attributes
+        for (Property property : attributes) {
+            if (property.propertyClass == null) {
+                compilePut(body, indent, name, type, property.name, property.value);
+            } else {
+                compileStaticPut(node, body, indent, name, type, property.propertyClass,
+                    property.name, property.value);
+            }
+        }
+
+        if (fields.indexOf(name) != -1) {
+            body.append(indent + "this." + name + " = " + name + ";\n");
+        }
+
+        body.append("\n");
+        body.append(indent + "return " + name + ";\n");
+
+        methods.append("\n");
+        methods.append(INDENT + "private " + typeName(type) + " create" + name
+            + "() throws IOException, SerializationException {\n");
+        methods.append(body);
+        methods.append(INDENT + "}\n");
+
+        return variable;
+    }
+
+    /**
+     * Generates the code for a child element of an object.
+     */
+    private void compileChild(Variable parent, Node node, StringBuilder body, String indent)
+        throws SerializationException {
+        if (node.isBXML()) {
+            if (node.localName.equals(BXMLSerializer.DEFINE_TAG)) {
+                compileDefine(node, body, indent);
+            } else if (node.localName.equals(BXMLSerializer.SCRIPT_TAG)) {
+                throw error(node, "Scripts are not supported by the BXML compiler.");
+            } else {
+                Variable child = compileObject(node);
+                body.append(indent + typeName(child.type) + " " + child.name + " = create"
+                    + child.name + "();\n");
+                compileAdd(body, indent, parent, child);
+            }
+        } else {
+            if (Character.isUpperCase(node.localName.charAt(0))) {
+                int i = node.localName.indexOf('.');
+                if (i != -1
+                    && Character.isLowerCase(node.localName.charAt(i + 1))) {
+                    compileProperty(parent, node, body, indent);
+                } else {
+                    Variable child = compileObject(node);
+                    body.append(indent + typeName(child.type) + " " + child.name + " = create"
+                        + child.name + "();\n");
+                    compileAdd(body, indent, parent, child);
+                }
+            } else {
+                compileProperty(parent, node, body, indent);
+            }
+        }
+    }
+
+    private void compileDefine(Node node, StringBuilder body, String indent)
+        throws SerializationException {
+        for (NodeAttribute attribute : node.attributes) {
+            if (attribute.prefix != null
+                && attribute.prefix.equals(BXMLSerializer.BXML_PREFIX)) {
+                throw error(node, "An ID cannot be assigned to this element.");
+            }
+        }
+
+        for (Object child : node.children) {
+            if (child instanceof String) {
+                throw error(node, "Unexpected characters in DEFINE element.");
+            }
+
+            Node childNode = (Node)child;
+            if (childNode.isBXML()) {
+                if (childNode.localName.equals(BXMLSerializer.SCRIPT_TAG)) {
+                    throw error(childNode, "Scripts are not supported by the BXML compiler.");
+                }
+
+                if (childNode.localName.equals(BXMLSerializer.DEFINE_TAG)) {
+                    compileDefine(childNode, body, indent);
+                    continue;
+                }
+            } else if (!Character.isUpperCase(childNode.localName.charAt(0))) {
+                throw error(childNode, "Property elements are not supported in a define block.");
+            }
+
+            Variable variable = compileObject(childNode);
+            body.append(indent + "create" + variable.name + "();\n");
+        }
+    }
+
+    /**
+     * Generates the code for a property element.
+     */
+    private void compileProperty(Variable parent, Node node, StringBuilder body, String indent)
+        throws SerializationException {
+        Class<?> propertyClass = null;
+        String name = node.localName;
+
+        int i = name.indexOf('.');
+        if (Character.isUpperCase(name.charAt(0))) {
+            // The element represents an attached property
+            propertyClass = getClass(node, node.namespaceURI + "." + name.substring(0, i));
+            name = name.substring(i + 1);
+        } else if (node.prefix != null) {
+            throw error(node, "Property elements cannot have a namespace prefix.");
+        }
+
+        for (NodeAttribute attribute : node.attributes) {
+            if (attribute.prefix != null
+                && attribute.prefix.equals(BXMLSerializer.BXML_PREFIX)) {
+                throw error(node, "An ID cannot be assigned to this element.");
+            }
+        }
+
+        Class<?> parentType = parent.type;
+        boolean readOnly = false;
+
+        if (propertyClass == null) {
+            if (parentType == null) {
+                throw error(node, "Property elements are not supported for elements whose type is"
+                    + " not known until run time.");
+            }
+
+            if (!Dictionary.class.isAssignableFrom(parentType)
+                && BeanAdapter.isReadOnly(parentType, name)) {
+                Class<?> propertyType = BeanAdapter.getType(parentType, name);
+                if (propertyType == null) {
+                    throw error(node, "\"" + name + "\" is not a valid property of element <"
+                        + node.parent.localName + ">.");
+                }
+
+                if (ListenerList.class.isAssignableFrom(propertyType)) {
+                    throw error(node, "Scripts are not supported by the BXML compiler.");
+                }
+
+                readOnly = true;
+            }
+        }
+
+        if (readOnly) {
+            // Get the property value
+            int index = nextIndex++;
+            String variableName = "_" + index;
+
+            Method getterMethod = BeanAdapter.getGetterMethod(parentType, name);
+            Class<?> type = getterMethod.getReturnType();
+
+            if (isAccessible(parentType)
+                && isAccessible(type)) {
+                body.append(indent + typeName(type) + " " + variableName + " = " + parent.name + "."
+                    + getterMethod.getName() + "();\n");
+            } else {
+                type = null;
+                body.append(indent + "Object " + variableName + " = get(" + parent.name + ", "
+                    + quote(name) + ");\n");
+            }
+
+            Variable variable = new Variable(variableName, type, null);
+
+            // Process the attributes
+            ArrayList<Property> attributes = new ArrayList<Property>();
+
+            for (NodeAttribute attribute : node.attributes) {
+                Property property = compileAttribute(node, attribute, body, indent);
+
+                if (property.propertyClass != null) {
+                    throw error(node, "Static setters are not supported for read-only properties.");
+                }
+
+                if (property.value == null) {
+                    addBinding(node, parent.name, parent.id, name + "." + property.name,
+                        attribute.value);
+                } else {
+                    attributes.add(property);
+                }
+            }
+
+            // Process the children
+            for (Object child : node.children) {
+                if (child instanceof String) {
+                    throw error(node, "Unexpected characters in READ_ONLY_PROPERTY element.");
+                }
+
+                compileChild(variable, (Node)child, body, indent);
+            }
+
+            // Apply the attributes
+            for (Property property : attributes) {
+                compilePut(body, indent, variableName, type, property.name, property.value);
+            }
+
+            if (fields.indexOf(variableName) != -1) {
+                body.append(indent + "this." + variableName + " = " + variableName + ";\n");
+            }
+        } else {
+            // Determine the property value; if the element contains more than one
+            // value, the last one is used
+            Value value = new Value("null", null, null);
+
+            for (Object child : node.children) {
+                if (child instanceof String) {
+                    String text = (String)child;
+                    value = new Value(quote(text), String.class, text);
+                } else {
+                    Node childNode = (Node)child;
+
+                    if (!childNode.isBXML()
+                        && !Character.isUpperCase(childNode.localName.charAt(0))) {
+                        throw error(childNode, "Property elements cannot be nested in a writable"
+                            + " property element.");
+                    }
+
+                    if (childNode.isBXML()
+                        && (childNode.localName.equals(BXMLSerializer.SCRIPT_TAG)
+                        || childNode.localName.equals(BXMLSerializer.DEFINE_TAG))) {
+                        throw error(childNode, "Invalid element.");
+                    }
+
+                    Variable variable = compileObject(childNode);
+                    body.append(indent + typeName(variable.type) + " " + variable.name + " = create"
+                        + variable.name + "();\n");
+
+                    value = new Value(variable.name, variable.type, null);
+                }
+            }
+
+            if (propertyClass == null) {
+                compilePut(body, indent, parent.name, parentType, name, value);
+            } else {
+                compileStaticPut(node, body, indent, parent.name, parentType, propertyClass, name,
+                    value);
+            }
+        }
+    }
+
+    /**
+     * Processes an attribute and generates the code that resolves its value.
+     * The value of the returned property is <tt>null</tt> if the attribute
+     * represents a namespace binding.
+     */
+    private Property compileAttribute(Node node, NodeAttribute attribute, StringBuilder body,
+        String indent) throws SerializationException {
+        String name;
+        Class<?> propertyClass = null;
+
+        if (Character.isUpperCase(attribute.localName.charAt(0))) {
+            // The attribute represents a static property or listener list
+            int i = attribute.localName.indexOf('.');
+            name = attribute.localName.substring(i + 1);
+            propertyClass = getClass(node, attribute.namespaceURI + "."
+                + attribute.localName.substring(0, i));
+
+            if (propertyClass.isInterface()) {
+                throw error(node, "Scripts are not supported by the BXML compiler.");
+            }
+        } else {
+            name = attribute.localName;
+        }
+
+        String value = attribute.value;
+        Value resolvedValue;
+
+        if (value.startsWith(BXMLSerializer.NAMESPACE_BINDING_PREFIX)
+            && value.endsWith(BXMLSerializer.NAMESPACE_BINDING_SUFFIX)) {
+            if (propertyClass != null) {
+                throw error(node, "Namespace binding is not supported for static properties.");
+            }
+
+            resolvedValue = null;
+        } else if (value.length() > 0
+            && (value.charAt(0) == BXMLSerializer.URL_PREFIX
+            || value.charAt(0) == BXMLSerializer.RESOURCE_KEY_PREFIX
+            || value.charAt(0) == BXMLSerializer.OBJECT_REFERENCE_PREFIX)) {
+            char prefix = value.charAt(0);
+            value = value.substring(1);
+
+            if (value.length() == 0) {
+                String argument = (prefix == BXMLSerializer.URL_PREFIX) ? "URL"
+                    : (prefix == BXMLSerializer.RESOURCE_KEY_PREFIX) ? "resource" : "object";
+                throw error(node, "Invalid " + argument + " resolution argument.");
+            }
+
+            if (value.charAt(0) == prefix) {
+                resolvedValue = new Value(quote(value), String.class, value);
+            } else if (prefix == BXMLSerializer.OBJECT_REFERENCE_PREFIX
+                && value.equals(BXMLSerializer.BXML_PREFIX + ":" + null)) {
+                resolvedValue = new Value("null", null, null);
+            } else {
+                String variableName = "_" + nextIndex++;
+
+                if (prefix == BXMLSerializer.URL_PREFIX) {
+                    body.append(indent + "java.net.URL " + variableName + " = resolveURL("
+                        + quote(value) + ");\n");
+                    resolvedValue = new Value(variableName, URL.class, null);
+                } else {
+                    body.append(indent + "Object " + variableName + " = "
+                        + ((prefix == BXMLSerializer.RESOURCE_KEY_PREFIX) ? "resolveResource"
+                            : "resolveReference")
+                        + "(" + quote(value) + ");\n");
+                    resolvedValue = new Value(variableName, null, null);
+                }
+            }
+        } else {
+            resolvedValue = new Value(quote(value), String.class, value);
+        }
+
+        return new Property(name, propertyClass, resolvedValue);
+    }
+
+    private void addBinding(Node node, String target, String id, String targetProperty,
+        String value) throws SerializationException {
+        String sourcePath = value.substring(2, value.length() - 1);
+
+        if (sourcePath.indexOf(BXMLSerializer.BIND_MAPPING_DELIMITER) != -1) {
+            throw error(node, "Bind mapping functions are not supported by the BXML compiler.");
+        }
+
+        if (fields.indexOf(target) == -1) {
+            fields.add(target);
+        }
+
+        bindings.append(INDENT + INDENT + "bind(" + target + ", " + quote(id) + ", "
+            + quote(targetProperty) + ", " + quote(sourcePath) + ");\n");
+    }
+
+    /**
+     * Generates the code that adds a child value to its parent.
+     */
+    private void compileAdd(StringBuilder body, String indent, Variable parent, Variable child) {
+        Class<?> parentType = parent.type;
+
+        DefaultProperty defaultProperty = null;
+        if (parentType != null) {
+            defaultProperty = parentType.getAnnotation(DefaultProperty.class);
+        }
+
+        if (defaultProperty == null) {
+            if (parentType != null
+                && Sequence.class.isAssignableFrom(parentType)) {
+                body.append(indent + "sequence(" + parent.name + ").add(" + child.name + ");\n");
+            } else {
+                body.append(indent + "addChild(" + parent.name + ", " + child.name + ");\n");
+            }
+        } else {
+            String defaultPropertyName = defaultProperty.value();
+            Method getterMethod = BeanAdapter.getGetterMethod(parentType, defaultPropertyName);
+
+            if (getterMethod == null) {
+                body.append(indent + "addChild(" + parent.name + ", " + child.name + ");\n");
+            } else {
+                Class<?> defaultPropertyType = getterMethod.getReturnType();
+                String getter = parent.name + "." + getterMethod.getName() + "()";
+
+                if (Sequence.class.isAssignableFrom(defaultPropertyType)) {
+                    body.append(indent + "sequence(" + getter + ").add(" + child.name + ");\n");
+                } else if (defaultPropertyType.isPrimitive()
+                    || Modifier.isFinal(defaultPropertyType.getModifiers())) {
+                    compilePut(body, indent, parent.name, parentType, defaultPropertyName,
+                        new Value(child.name, child.type, null));
+                } else {
+                    // The current value of the property may itself be a sequence
+                    String variableName = "_" + nextIndex++;
+                    body.append(indent + "Object " + variableName + " = " + getter + ";\n");
+                    body.append(indent + "if (" + variableName + " instanceof "
+                        + Sequence.class.getName() + "<?>) {\n");
+                    body.append(indent + INDENT + "sequence(" + variableName + ").add("
+                        + child.name + ");\n");
+                    body.append(indent + "} else {\n");
+                    compilePut(body, indent + INDENT, parent.name, parentType, defaultPropertyName,
+                        new Value(child.name, child.type, null));
+                    body.append(indent + "}\n");
+                }
+            }
+        }
+    }
+
+    /**
+     * Generates the code that sets an instance property. Setters are resolved
+     * and literal values are coerced at compile time when possible; otherwise,
+     * the property is set via a {@link BeanAdapter} at run time.
+     */
+    private void compilePut(StringBuilder body, String indent, String target, Class<?> type,
+        String key, Value value) {
+        String statement = null;
+
+        if (type != null) {
+            if (Dictionary.class.isAssignableFrom(type)) {
+                statement = "dictionary(" + target + ").put(" + quote(key) + ", "
+                    + value.expression + ");";
+            } else if (isAccessible(type)) {
+                Method setterMethod = null;
+                if (value.type != null) {
+                    setterMethod = BeanAdapter.getSetterMethod(type, key, value.type);
+                }
+
+                if (setterMethod == null) {
+                    Class<?> propertyType = BeanAdapter.getType(type, key);
+
+                    if (propertyType != null) {
+                        setterMethod = BeanAdapter.getSetterMethod(type, key, propertyType);
+
+                        if (setterMethod != null) {
+                            String argument = coerce(value, propertyType);
+
+                            if (argument == null) {
+                                setterMethod = null;
+                            } else {
+                                statement = target + "." + setterMethod.getName() + "("
+                                    + argument + ");";
+                            }
+                        }
+                    }
+                } else {
+                    statement = target + "." + setterMethod.getName() + "("
+                        + cast(value, setterMethod.getParameterTypes()[0]) + ");";
+                }
+            }
+        }
+
+        if (statement == null) {
+            statement = "put(" + target + ", " + quote(key) + ", " + value.expression + ");";
+        }
+
+        body.append(indent + statement + "\n");
+    }
+
+    /**
+     * Generates the code that sets a static property.
+     */
+    private void compileStaticPut(Node node, StringBuilder body, String indent, String target,
+        Class<?> type, Class<?> propertyClass, String name, Value value)
+        throws SerializationException {
+        if (!isAccessible(propertyClass)) {
+            throw error(node, propertyClass.getName() + " is not public.");
+        }
+
+        String statement = null;
+
+        if (type != null) {
+            String propertyName = Character.toUpperCase(name.charAt(0)) + name.substring(1);
+
+            Method setterMethod = null;
+            if (value.type != null) {
+                setterMethod = BXMLSerializer.getStaticSetterMethod(propertyClass, propertyName,
+                    type, value.type);
+            }
+
+            if (setterMethod == null) {
+                Method getterMethod = BXMLSerializer.getStaticGetterMethod(propertyClass,
+                    propertyName, type);
+
+                if (getterMethod != null) {
+                    Class<?> propertyType = getterMethod.getReturnType();
+                    setterMethod = BXMLSerializer.getStaticSetterMethod(propertyClass, propertyName,
+                        type, propertyType);
+
+                    if (setterMethod != null) {
+                        String argument = coerce(value, propertyType);
+
+                        if (argument != null) {
+                            statement = typeName(propertyClass) + "." + setterMethod.getName() + "("
+                                + target + ", " + argument + ");";
+                        }
+                    }
+                }
+
+                if (setterMethod == null) {
+                    throw error(node, propertyClass.getName() + "." + propertyName
+                        + " is not valid static property.");
+                }
+            } else {
+                statement = typeName(propertyClass) + "." + setterMethod.getName() + "("
+                    + target + ", " + cast(value, setterMethod.getParameterTypes()[1]) + ");";
+            }
+        }
+
+        if (statement == null) {
+            statement = "setStaticProperty(" + target + ", " + typeName(propertyClass)
+                + ".class, " + quote(name) + ", " + value.expression + ");";
+        }
+
+        body.append(indent + statement + "\n");
+    }
+
+    /**
+     * Returns an expression that passes a value to a parameter of the given
+     * type, or <tt>null</tt> if the value must be coerced at run time.
+     */
+    private static String coerce(Value value, Class<?> type) {
+        String expression = null;
+
+        if (value.isNull()) {
+            if (!type.isPrimitive()
+                && isAccessible(type)) {
+                expression = "(" + typeName(type) + ")null";
+            }
+        } else if (value.literal != null) {
+            Object coercedValue;
+            try {
+                coercedValue = BeanAdapter.coerce(value.literal, type);
+            } catch (RuntimeException exception) {
+                // Report the error at run time, as the serializer would
+                coercedValue = null;
+            }
+
+            if (coercedValue != null) {
+                expression = literal(coercedValue);
+            }
+        }
+
+        return expression;
+    }
+
+    private static String cast(Value value, Class<?> type) {
+        String expression = value.expression;
+
+        if (value.type != type
+            && type != Object.class
+            && !type.isPrimitive()
+            && isAccessible(type)) {
+            expression = "(" + typeName(type) + ")" + expression;
+        }
+
+        return expression;
+    }
+
+    /**
+     * Returns the Java literal for a coerced value, or <tt>null</tt> if the
+     * value cannot be represented as a literal.
+     */
+    private static String literal(Object value) {
+        String literal = null;
+
+        if (value instanceof String) {
+            literal = quote((String)value);
+        } else if (value instanceof Boolean) {
+            literal = value.toString();
+        } else if (value instanceof Character) {
+            char c = (Character)value;
+            literal = (c == '\'') ? "'\\''" : "'" + escape(Character.toString(c)) + "'";
+        } else if (value instanceof Byte) {
+            literal = "(byte)" + value;
+        } else if (value instanceof Short) {
+            literal = "(short)" + value;
+        } else if (value instanceof Integer) {
+            literal = value.toString();
+        } else if (value instanceof Long) {
+            literal = value + "L";
+        } else if (value instanceof Float) {
+            float f = (Float)value;
+            if (Float.isNaN(f)) {
+                literal = "Float.NaN";
+            } else if (Float.isInfinite(f)) {
+                literal = (f > 0) ? "Float.POSITIVE_INFINITY" : "Float.NEGATIVE_INFINITY";
+            } else {
+                literal = value + "F";
+            }
+        } else if (value instanceof Double) {
+            double d = (Double)value;
+            if (Double.isNaN(d)) {
+                literal = "Double.NaN";
+            } else if (Double.isInfinite(d)) {
+                literal = (d > 0) ? "Double.POSITIVE_INFINITY" : "Double.NEGATIVE_INFINITY";
+            } else {
+                literal = value + "D";
+            }
+        } else if (value instanceof Enum<?>) {
+            Class<?> enumClass = ((Enum<?>)value).getDeclaringClass();
+            if (isAccessible(enumClass)) {
+                literal = typeName(enumClass) + "." + ((Enum<?>)value).name();
+            }
+        } else if (value instanceof BigInteger
+            || value instanceof BigDecimal) {
+            literal = "new " + value.getClass().getName() + "(" + quote(value.toString()) + ")";
+        }
+
+        return literal;
+    }
+
+    private Class<?> getClass(Node node, String className) throws SerializationException {
+        Class<?> type;
+        try {
+            type = Class.forName(className, false, classLoader);
+        } catch (Throwable exception) {
+            throw error(node, "Class " + className + " could not be loaded: " + exception);
+        }
+
+        return type;
+    }
+
+    private static boolean hasDefaultConstructor(Class<?> type) {
+        boolean hasDefaultConstructor = false;
+
+        if (!type.isInterface()
+            && !Modifier.isAbstract(type.getModifiers())
+            && (type.getEnclosingClass() == null
+                || Modifier.isStatic(type.getModifiers()))) {
+            try {
+                Constructor<?> constructor = type.getConstructor();
+                hasDefaultConstructor = Modifier.isPublic(constructor.getModifiers());
+            } catch (NoSuchMethodException exception) {
+                // No-op
+            }
+        }
+
+        return hasDefaultConstructor;
+    }
+
+    private static boolean isAccessible(Class<?> type) {
+        boolean accessible;
+
+        if (type.isPrimitive()) {
+            accessible = true;
+        } else if (type.isArray()) {
+            accessible = isAccessible(type.getComponentType());
+        } else {
+            accessible = (type.getCanonicalName() != null);
+
+            while (type != null
+                && accessible) {
+                accessible = Modifier.isPublic(type.getModifiers());
+                type = type.getEnclosingClass();
+            }
+        }
+
+        return accessible;
+    }
+
+    private static String typeName(Class<?> type) {
+        return (type == null) ? "Object" : type.getCanonicalName();
+    }
+
+    private static String quote(String value) {
+        return (value == null) ? "null" : "\"" + escape(value) + "\"";
+    }
+
+    private static String escape(String value) {
+        StringBuilder escapedValueBuilder = new StringBuilder();
+
+        for (int i = 0, n = value.length(); i < n; i++) {
+            char c = value.charAt(i);
+
+            switch (c) {
+                case '\\': {
+                    escapedValueBuilder.append("\\\\");
+                    break;
+                }
+
+                case '"': {
+                    escapedValueBuilder.append("\\\"");
+                    break;
+                }
+
+                case '\n': {
+                    escapedValueBuilder.append("\\n");
+                    break;
+                }
+
+                case '\r': {
+                    escapedValueBuilder.append("\\r");
+                    break;
+                }
+
+                case '\t': {
+                    escapedValueBuilder.append("\\t");
+                    break;
+                }
+
+                default: {
+                    if (c < 0x20 || c > 0x7E) {
+                        escapedValueBuilder.append(String.format("\\u%04x", (int)c));
+                    } else {
+                        escapedValueBuilder.append(c);
+                    }
+                }
+            }
+        }
+
+        return escapedValueBuilder.toString();
+    }
+
+    private SerializationException error(Node node, String message) {
+        return new SerializationException(message + " (" + resourcePath + ", line "
+            + node.lineNumber + ")");
+    }
+
+    private static void findDocuments(File directory, String path, ArrayList<String> resourcePaths) {
+        File[] files = directory.listFiles();
+
+        if (files != null) {
+            for (File file : files) {
+                String resourcePath = (path.length() == 0) ? file.getName()
+                    : path + "/" + file.getName();
+
+                if (file.isDirectory()) {
+                    findDocuments(file, resourcePath, resourcePaths);
+                } else if (file.getName().endsWith("." + BXMLSerializer.BXML_EXTENSION)) {
+                    resourcePaths.add(resourcePath);
+                }
+            }
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: " + BXMLCompiler.class.getName()
+                + " <source directory> <output directory> [<resource path> ...]");
+            System.exit(1);
+        }
+
+        File sourceDirectory = new File(args[0]);
+        File outputDirectory = new File(args[1]);
+
+        ArrayList<String> resourcePaths = new ArrayList<String>();
+        if (args.length == 2) {
+            findDocuments(sourceDirectory, "", resourcePaths);
+        } else {
+            for (int i = 2; i < args.length; i++) {
+                resourcePaths.add(args[i]);
+            }
+        }
+
+        BXMLCompiler bxmlCompiler = new BXMLCompiler();
+        int count = 0;
+
+        for (String resourcePath : resourcePaths) {
+            try {
+                bxmlCompiler.compile(sourceDirectory, resourcePath, outputDirectory);
+                count++;
+            } catch (SerializationException exception) {
+                System.err.println("Skipping " + resourcePath + ": " + exception.getMessage());
+            }
+        }
+
+        System.out.println("Compiled " + count + " of " + resourcePaths.getLength()
+            + " BXML documents.");
+    }
+}
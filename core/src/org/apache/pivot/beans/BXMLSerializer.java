@@ -33,6 +33,8 @@ import java.net.URL;
 import java.util.Collection;
 
 import javax.script.Bindings;
+import javax.script.Compilable;
+import javax.script.CompiledScript;
 import javax.script.Invocable;
 import javax.script.ScriptContext;
 import javax.script.ScriptEngine;
@@ -117,12 +119,25 @@ public class BXMLSerializer implements Serializer<Object>, Resolvable {
         private String event;
         private String script;
 
+        private CompiledScript compiledScript = null;
+
         private static final String ARGUMENTS_KEY = "arguments";
 
         public AttributeInvocationHandler(ScriptEngine scriptEngine, String event, String script) {
             this.scriptEngine = scriptEngine;
             this.event = event;
             this.script = script;
+
+            // Compile the script once, so it isn't re-parsed every time the
+            // event is fired; if compilation fails, the error is reported
+            // when the script is evaluated
+            if (scriptEngine instanceof Compilable) {
+                try {
+                    compiledScript = ((Compilable)scriptEngine).compile(script);
+                } catch (ScriptException exception) {
+                    // No-op
+                }
+            }
         }
 
         @Override
@@ -132,11 +147,18 @@ public class BXMLSerializer implements Serializer<Object>, Resolvable {
 
             String methodName = method.getName();
             if (methodName.equals(event)) {
+                // Each invocation gets its own bindings, so variables defined
+                // by the script do not persist from one event to the next
+                SimpleBindings bindings = new SimpleBindings();
+                bindings.put(ARGUMENTS_KEY, args);
+
                 try {
-                    SimpleBindings bindings = new SimpleBindings();
-                    bindings.put(ARGUMENTS_KEY, args);
-                    scriptEngine.setBindings(bindings, ScriptContext.ENGINE_SCOPE);
-                    scriptEngine.eval(script);
+                    if (compiledScript == null) {
+                        scriptEngine.setBindings(bindings, ScriptContext.ENGINE_SCOPE);
+                        scriptEngine.eval(script);
+                    } else {
+                        compiledScript.eval(bindings);
+                    }
                 } catch (ScriptException exception) {
                     System.err.println(exception);
                     System.err.println(script);
@@ -198,38 +220,43 @@ public class BXMLSerializer implements Serializer<Object>, Resolvable {
         private ScriptEngine scriptEngine;
         private String functionName;
 
+        // The engine, once the mapping function has been found
+        private Invocable invocable = null;
+
         public ScriptBindMapping(ScriptEngine scriptEngine, String functionName) {
             this.scriptEngine = scriptEngine;
             this.functionName = functionName;
         }
 
         public Object evaluate(Object value) {
-            Bindings bindings = scriptEngine.getBindings(ScriptContext.GLOBAL_SCOPE);
-            if (bindings.containsKey(functionName)) {
-                Invocable invocable;
+            if (invocable == null) {
+                Bindings bindings = scriptEngine.getBindings(ScriptContext.GLOBAL_SCOPE);
+                if (!bindings.containsKey(functionName)) {
+                    throw new RuntimeException("Mapping function \"" + functionName + "\" is not defined.");
+                }
+
                 try {
                     invocable = (Invocable)scriptEngine;
                 } catch (ClassCastException exception) {
                     throw new RuntimeException(exception);
                 }
+            }
 
-                try {
-                    value = invocable.invokeFunction(functionName, value);
-                } catch (NoSuchMethodException exception) {
-                    throw new RuntimeException(exception);
-                } catch (ScriptException exception) {
-                    throw new RuntimeException(exception);
-                }
-            } else {
-                throw new RuntimeException("Mapping function \"" + functionName + "\" is not defined.");
+            try {
+                value = invocable.invokeFunction(functionName, value);
+            } catch (NoSuchMethodException exception) {
+                throw new RuntimeException(exception);
+            } catch (ScriptException exception) {
+                throw new RuntimeException(exception);
             }
 
             return value;
         }
     }
 
-    private XMLInputFactory xmlInputFactory;
-    private ScriptEngineManager scriptEngineManager;
+    private XMLInputFactory xmlInputFactory = null;
+    private ScriptEngineManager scriptEngineManager = null;
+    private Bindings scriptBindings;
 
     private Map<String, Object> namespace = new HashMap<String, Object>();
     private URL location = null;
@@ -238,10 +265,17 @@ public class BXMLSerializer implements Serializer<Object>, Resolvable {
     private XMLStreamReader xmlStreamReader = null;
     private Element element = null;
 
+    private BXMLTemplateCache templateCache = null;
+    private BXMLTemplate template = null;
+
     private Object root = null;
     private String language = null;
     private int nextID = 0;
 
+    // Class path location of the document being read, if known; used to locate
+    // compiled includes
+    private String resourcePath = null;
+
     private LinkedList<Attribute> namespaceBindingAttributes = new LinkedList<Attribute>();
 
     private static HashMap<String, String> fileExtensions = new HashMap<String, String>();
@@ -298,11 +332,9 @@ public class BXMLSerializer implements Serializer<Object>, Resolvable {
     }
 
     public BXMLSerializer() {
-        xmlInputFactory = XMLInputFactory.newInstance();
-        xmlInputFactory.setProperty("javax.xml.stream.isCoalescing", true);
-
-        scriptEngineManager = new javax.script.ScriptEngineManager();
-        scriptEngineManager.setBindings(new Bindings() {
+        // The XML input factory and script engine manager are created on
+        // demand, since they are not needed to load compiled BXML
+        scriptBindings = new Bindings() {
             @Override
             public Object get(Object key) {
                 return namespace.get(key.toString());
@@ -387,7 +419,16 @@ public class BXMLSerializer implements Serializer<Object>, Resolvable {
 
                 return values;
             }
-        });
+        };
+    }
+
+    private ScriptEngineManager getScriptEngineManager() {
+        if (scriptEngineManager == null) {
+            scriptEngineManager = new javax.script.ScriptEngineManager();
+            scriptEngineManager.setBindings(scriptBindings);
+        }
+
+        return scriptEngineManager;
     }
 
     /** DO NOT USE. see https://issues.apache.org/jira/browse/PIVOT-742 */
@@ -415,14 +456,33 @@ public class BXMLSerializer implements Serializer<Object>, Resolvable {
             throw new IllegalArgumentException("inputStream is null.");
         }
 
+        return readObject(createXMLStreamReader(inputStream));
+    }
+
+    private XMLStreamReader createXMLStreamReader(InputStream inputStream)
+        throws SerializationException {
+        if (xmlInputFactory == null) {
+            xmlInputFactory = XMLInputFactory.newInstance();
+            xmlInputFactory.setProperty("javax.xml.stream.isCoalescing", true);
+        }
+
+        try {
+            return xmlInputFactory.createXMLStreamReader(inputStream);
+        } catch (XMLStreamException exception) {
+            throw new SerializationException(exception);
+        }
+    }
+
+    private Object readObject(XMLStreamReader xmlStreamReader)
+        throws IOException, SerializationException {
         root = null;
         language = null;
 
+        this.xmlStreamReader = xmlStreamReader;
+
         // Parse the XML stream
         try {
             try {
-                xmlStreamReader = xmlInputFactory.createXMLStreamReader(inputStream);
-
                 while (xmlStreamReader.hasNext()) {
                     int event = xmlStreamReader.next();
 
@@ -462,7 +522,7 @@ public class BXMLSerializer implements Serializer<Object>, Resolvable {
             throw exception;
         }
 
-        xmlStreamReader = null;
+        this.xmlStreamReader = null;
 
         // Apply the namespace bindings
         for (Attribute attribute : namespaceBindingAttributes) {
@@ -476,7 +536,7 @@ public class BXMLSerializer implements Serializer<Object>, Resolvable {
             } else {
                 String bindFunction = sourcePath.substring(0, i);
                 sourcePath = sourcePath.substring(i + 1);
-                bindMapping = new ScriptBindMapping(scriptEngineManager.getEngineByName(language), bindFunction);
+                bindMapping = new ScriptBindMapping(getScriptEngineManager().getEngineByName(language), bindFunction);
             }
 
             switch (element.type) {
@@ -484,7 +544,7 @@ public class BXMLSerializer implements Serializer<Object>, Resolvable {
                 case INCLUDE: {
                     // Bind to <element ID>.<attribute name>
                     if (element.id == null) {
-                        element.id = INTERNAL_ID_PREFIX + Integer.toString(nextID++);
+                        element.id = nextInternalID();
                         namespace.put(element.id, element.value);
                     }
 
@@ -499,7 +559,7 @@ public class BXMLSerializer implements Serializer<Object>, Resolvable {
                 case READ_ONLY_PROPERTY: {
                     // Bind to <parent element ID>.<element name>.<attribute name>
                     if (element.parent.id == null) {
-                        element.parent.id = INTERNAL_ID_PREFIX + Integer.toString(nextID++);
+                        element.parent.id = nextInternalID();
                         namespace.put(element.parent.id, element.parent.value);
                     }
 
@@ -516,6 +576,30 @@ public class BXMLSerializer implements Serializer<Object>, Resolvable {
         namespaceBindingAttributes.clear();
 
         // Bind the root to the namespace
+        initializeRoot();
+
+        return root;
+    }
+
+    /**
+     * Constructs an object hierarchy using a compiled BXML document. The
+     * "location" and "resources" properties are expected to have been set by
+     * the caller.
+     */
+    Object readCompiledObject(CompiledBXML compiledBXML)
+        throws IOException, SerializationException {
+        root = null;
+        language = null;
+
+        root = compiledBXML.readObject(this);
+
+        // Bind the root to the namespace
+        initializeRoot();
+
+        return root;
+    }
+
+    private void initializeRoot() {
         if (root instanceof Bindable) {
             Class<?> type = root.getClass();
             while (Bindable.class.isAssignableFrom(type)) {
@@ -526,8 +610,6 @@ public class BXMLSerializer implements Serializer<Object>, Resolvable {
             Bindable bindable = (Bindable)root;
             bindable.initialize(namespace, location, resources);
         }
-
-        return root;
     }
 
     /**
@@ -576,7 +658,41 @@ public class BXMLSerializer implements Serializer<Object>, Resolvable {
         if (location == null) {
             throw new IllegalArgumentException("could not find resource " + resourceName);
         }
-        return readObject(location, localize ? new Resources(baseType.getName()) : null);
+
+        Resources resources = localize ? new Resources(baseType.getName()) : null;
+
+        // Prefer a compiled version of the document, if one is available
+        String resourcePath = CompiledBXML.getResourcePath(baseType, resourceName);
+        CompiledBXML compiledBXML = CompiledBXML.newInstance(baseType.getClassLoader(),
+            resourcePath, location);
+
+        if (compiledBXML == null) {
+            compiledBXML = CompiledBXML.newInstance(Thread.currentThread().getContextClassLoader(),
+                resourcePath, location);
+        }
+
+        Object object;
+        this.resourcePath = resourcePath;
+
+        try {
+            if (compiledBXML == null) {
+                object = readObject(location, resources);
+            } else {
+                this.location = location;
+                this.resources = resources;
+
+                try {
+                    object = readCompiledObject(compiledBXML);
+                } finally {
+                    this.location = null;
+                    this.resources = null;
+                }
+            }
+        } finally {
+            this.resourcePath = null;
+        }
+
+        return object;
     }
 
     /**
@@ -617,13 +733,42 @@ public class BXMLSerializer implements Serializer<Object>, Resolvable {
         this.location = location;
         this.resources = resources;
 
-        InputStream inputStream = new BufferedInputStream(location.openStream());
+        BXMLTemplate template = (templateCache == null) ? null : templateCache.get(location);
 
         Object object;
-        try {
-            object = readObject(inputStream);
-        } finally {
-            inputStream.close();
+        if (template == null) {
+            InputStream inputStream = new BufferedInputStream(location.openStream());
+
+            try {
+                if (templateCache == null) {
+                    object = readObject(inputStream);
+                } else {
+                    // Record the document as it is parsed so that subsequent
+                    // reads can replay it
+                    BXMLTemplate.Recorder recorder = new BXMLTemplate.Recorder(createXMLStreamReader(inputStream),
+                        Thread.currentThread().getContextClassLoader());
+
+                    this.template = recorder.getTemplate();
+
+                    try {
+                        object = readObject(recorder);
+                    } finally {
+                        this.template = null;
+                    }
+
+                    templateCache.put(location, recorder.getTemplate());
+                }
+            } finally {
+                inputStream.close();
+            }
+        } else {
+            this.template = template;
+
+            try {
+                object = readObject(template.getXMLStreamReader());
+            } finally {
+                this.template = null;
+            }
         }
 
         this.location = null;
@@ -632,6 +777,16 @@ public class BXMLSerializer implements Serializer<Object>, Resolvable {
         return object;
     }
 
+    private Class<?> loadClass(String className, ClassLoader classLoader)
+        throws ClassNotFoundException {
+        return (template == null) ? Class.forName(className, true, classLoader)
+            : template.loadClass(className, classLoader);
+    }
+
+    String nextInternalID() {
+        return INTERNAL_ID_PREFIX + Integer.toString(nextID++);
+    }
+
     private void processProcessingInstruction() throws SerializationException {
         String piTarget = xmlStreamReader.getPITarget();
         String piData = xmlStreamReader.getPIData();
@@ -746,7 +901,7 @@ public class BXMLSerializer implements Serializer<Object>, Resolvable {
 
                     String propertyClassName = namespaceURI + "." + localName.substring(0, i);
                     try {
-                        propertyClass = Class.forName(propertyClassName, true, classLoader);
+                        propertyClass = loadClass(propertyClassName, classLoader);
                     } catch (Throwable exception) {
                         throw new SerializationException(exception);
                     }
@@ -763,7 +918,7 @@ public class BXMLSerializer implements Serializer<Object>, Resolvable {
                     String className = namespaceURI + "." + localName.replace('.', '$');
 
                     try {
-                        Class<?> type = Class.forName(className, true, classLoader);
+                        Class<?> type = loadClass(className, classLoader);
                         value = newTypedObject(type);
                     } catch (Throwable exception) {
                         throw new SerializationException(exception);
@@ -817,80 +972,15 @@ public class BXMLSerializer implements Serializer<Object>, Resolvable {
             }
 
             String src = element.properties.get(INCLUDE_SRC_ATTRIBUTE);
-
-            Resources resources = this.resources;
-            if (element.properties.containsKey(INCLUDE_RESOURCES_ATTRIBUTE)) {
-                resources = new Resources(resources,
-                    element.properties.get(INCLUDE_RESOURCES_ATTRIBUTE));
-            }
-
-            String mimeType = null;
-            if (element.properties.containsKey(INCLUDE_MIME_TYPE_ATTRIBUTE)) {
-                mimeType = element.properties.get(INCLUDE_MIME_TYPE_ATTRIBUTE);
-            }
-
-            if (mimeType == null) {
-                // Get the file extension
-                int i = src.lastIndexOf(".");
-                if (i != -1) {
-                    String extension = src.substring(i + 1);
-                    mimeType = fileExtensions.get(extension);
-                }
-            }
-
-            if (mimeType == null) {
-                throw new SerializationException("Cannot determine MIME type of include \""
-                    + src + "\".");
-            }
+            String resourcesName = element.properties.get(INCLUDE_RESOURCES_ATTRIBUTE);
+            String mimeType = element.properties.get(INCLUDE_MIME_TYPE_ATTRIBUTE);
 
             boolean inline = false;
             if (element.properties.containsKey(INCLUDE_INLINE_ATTRIBUTE)) {
                 inline = Boolean.parseBoolean(element.properties.get(INCLUDE_INLINE_ATTRIBUTE));
             }
 
-            // Determine an appropriate serializer to use for the include
-            Class<? extends Serializer<?>> serializerClass = mimeTypes.get(mimeType);
-
-            if (serializerClass == null) {
-                throw new SerializationException("No serializer associated with MIME type "
-                    + mimeType + ".");
-            }
-
-            Serializer<?> serializer;
-            try {
-                serializer = newIncludeSerializer(serializerClass);
-            } catch (InstantiationException exception) {
-                throw new SerializationException(exception);
-            } catch (IllegalAccessException exception) {
-                throw new SerializationException(exception);
-            }
-
-            // Determine location from src attribute
-            URL location;
-            if (src.charAt(0) == '/') {
-                location = classLoader.getResource(src.substring(1));
-            } else {
-                location = new URL(this.location, src);
-            }
-
-            // Set optional resolution properties
-            if (serializer instanceof Resolvable) {
-                Resolvable resolvable = (Resolvable)serializer;
-                if (inline) {
-                    resolvable.setNamespace(namespace);
-                }
-
-                resolvable.setLocation(location);
-                resolvable.setResources(resources);
-            }
-
-            // Read the object
-            InputStream inputStream = new BufferedInputStream(location.openStream());
-            try {
-                element.value = serializer.readObject(inputStream);
-            } finally {
-                inputStream.close();
-            }
+            element.value = readInclude(src, resourcesName, mimeType, inline);
         } else if (element.type == Element.Type.REFERENCE) {
             // Dereference the value
             if (!element.properties.containsKey(REFERENCE_ID_ATTRIBUTE)) {
@@ -922,6 +1012,118 @@ public class BXMLSerializer implements Serializer<Object>, Resolvable {
         }
     }
 
+    /**
+     * Loads the value of an include. If the include is a BXML document for
+     * which a compiled class is available, the compiled class is used to
+     * construct the value; otherwise, the include is deserialized using the
+     * serializer registered for its MIME type.
+     */
+    Object readInclude(String src, String resourcesName, String mimeType, boolean inline)
+        throws IOException, SerializationException {
+        final ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+
+        Resources resources = this.resources;
+        if (resourcesName != null) {
+            resources = new Resources(resources, resourcesName);
+        }
+
+        if (mimeType == null) {
+            // Get the file extension
+            int i = src.lastIndexOf(".");
+            if (i != -1) {
+                String extension = src.substring(i + 1);
+                mimeType = fileExtensions.get(extension);
+            }
+        }
+
+        if (mimeType == null) {
+            throw new SerializationException("Cannot determine MIME type of include \""
+                + src + "\".");
+        }
+
+        // Determine an appropriate serializer to use for the include
+        Class<? extends Serializer<?>> serializerClass = mimeTypes.get(mimeType);
+
+        if (serializerClass == null) {
+            throw new SerializationException("No serializer associated with MIME type "
+                + mimeType + ".");
+        }
+
+        Serializer<?> serializer;
+        try {
+            serializer = newIncludeSerializer(serializerClass);
+        } catch (InstantiationException exception) {
+            throw new SerializationException(exception);
+        } catch (IllegalAccessException exception) {
+            throw new SerializationException(exception);
+        }
+
+        // Determine location from src attribute
+        URL location;
+        String resourcePath = null;
+        if (src.charAt(0) == '/') {
+            location = classLoader.getResource(src.substring(1));
+            resourcePath = CompiledBXML.resolveResourcePath(null, src);
+        } else {
+            location = new URL(this.location, src);
+
+            if (this.resourcePath != null) {
+                resourcePath = CompiledBXML.resolveResourcePath(this.resourcePath, src);
+            }
+        }
+
+        // Set optional resolution properties
+        if (serializer instanceof Resolvable) {
+            Resolvable resolvable = (Resolvable)serializer;
+            if (inline) {
+                resolvable.setNamespace(namespace);
+            }
+
+            resolvable.setLocation(location);
+            resolvable.setResources(resources);
+        }
+
+        Object value;
+        if (serializer instanceof BXMLSerializer) {
+            BXMLSerializer bxmlSerializer = (BXMLSerializer)serializer;
+            bxmlSerializer.resourcePath = resourcePath;
+            bxmlSerializer.templateCache = templateCache;
+
+            try {
+                CompiledBXML compiledBXML = null;
+                if (resourcePath != null) {
+                    compiledBXML = CompiledBXML.newInstance(classLoader, resourcePath, location);
+                }
+
+                if (compiledBXML == null) {
+                    value = bxmlSerializer.readObject(location, bxmlSerializer.getResources());
+                } else {
+                    value = bxmlSerializer.readCompiledObject(compiledBXML);
+                }
+            } finally {
+                bxmlSerializer.resourcePath = null;
+            }
+        } else {
+            value = readInclude(serializer, location);
+        }
+
+        return value;
+    }
+
+    private static Object readInclude(Serializer<?> serializer, URL location)
+        throws IOException, SerializationException {
+        Object value;
+
+        InputStream inputStream = new BufferedInputStream(location.openStream());
+        try {
+            value = serializer.readObject(inputStream);
+        } finally {
+            inputStream.close();
+        }
+
+        return value;
+    }
+
     private void processAttributes() throws SerializationException {
 
         final ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
@@ -994,7 +1196,7 @@ public class BXMLSerializer implements Serializer<Object>, Resolvable {
 
                         String propertyClassName = namespaceURI + "." + localName.substring(0, j);
                         try {
-                            propertyClass = Class.forName(propertyClassName, true, classLoader);
+                            propertyClass = loadClass(propertyClassName, classLoader);
                         } catch (Throwable exception) {
                             throw new SerializationException(exception);
                         }
@@ -1132,7 +1334,7 @@ public class BXMLSerializer implements Serializer<Object>, Resolvable {
                             }
 
                             // Create an invocation handler for this listener
-                            ScriptEngine scriptEngine = scriptEngineManager.getEngineByName(language);
+                            ScriptEngine scriptEngine = getScriptEngineManager().getEngineByName(language);
                             AttributeInvocationHandler handler =
                                 new AttributeInvocationHandler(scriptEngine, attribute.name,
                                     (String)attribute.value);
@@ -1170,31 +1372,7 @@ public class BXMLSerializer implements Serializer<Object>, Resolvable {
                         // parent's closing tag
                         element.parent.value = element.value;
                     } else if (element.parent.value != null) {
-                        // If the parent element has a default property, use it; otherwise, if the
-                        // parent is a sequence, add the element to it
-                        Class<?> parentType = element.parent.value.getClass();
-                        DefaultProperty defaultProperty = parentType.getAnnotation(DefaultProperty.class);
-
-                        if (defaultProperty == null) {
-                            if (element.parent.value instanceof Sequence<?>) {
-                                Sequence<Object> sequence = (Sequence<Object>)element.parent.value;
-                                sequence.add(element.value);
-                            } else {
-                                throw new SerializationException(element.parent.value.getClass()
-                                    + " is not a sequence.");
-                            }
-                        } else {
-                            String defaultPropertyName = defaultProperty.value();
-                            BeanAdapter beanAdapter = new BeanAdapter(element.parent.value);
-                            Object defaultPropertyValue = beanAdapter.get(defaultPropertyName);
-
-                            if (defaultPropertyValue instanceof Sequence<?>) {
-                                Sequence<Object> sequence = (Sequence<Object>)defaultPropertyValue;
-                                sequence.add(element.value);
-                            } else {
-                                beanAdapter.put(defaultPropertyName, element.value);
-                            }
-                        }
+                        addChild(element.parent.value, element.value);
                     }
                 }
 
@@ -1251,7 +1429,7 @@ public class BXMLSerializer implements Serializer<Object>, Resolvable {
             case LISTENER_LIST_PROPERTY: {
                 // Evaluate the script
                 String script = (String)element.value;
-                ScriptEngine scriptEngine = scriptEngineManager.getEngineByName(language);
+                ScriptEngine scriptEngine = getScriptEngineManager().getEngineByName(language);
                 if (scriptEngine == null) {
                     throw new SerializationException("Script engine for \"" + language + "\" not found.");
                 }
@@ -1311,14 +1489,14 @@ public class BXMLSerializer implements Serializer<Object>, Resolvable {
                     }
 
                     String extension = src.substring(i + 1);
-                    ScriptEngine scriptEngine = scriptEngineManager.getEngineByExtension(extension);
+                    ScriptEngine scriptEngine = getScriptEngineManager().getEngineByExtension(extension);
 
                     if (scriptEngine == null) {
                         throw new SerializationException("Unable to find scripting engine for"
                             + " extension " + extension + ".");
                     }
 
-                    scriptEngine.setBindings(scriptEngineManager.getBindings(), ScriptContext.ENGINE_SCOPE);
+                    scriptEngine.setBindings(getScriptEngineManager().getBindings(), ScriptContext.ENGINE_SCOPE);
 
                     try {
                         URL scriptLocation;
@@ -1347,14 +1525,14 @@ public class BXMLSerializer implements Serializer<Object>, Resolvable {
                 if (element.value != null) {
                     // Evaluate the script
                     String script = (String)element.value;
-                    ScriptEngine scriptEngine = scriptEngineManager.getEngineByName(language);
+                    ScriptEngine scriptEngine = getScriptEngineManager().getEngineByName(language);
 
                     if (scriptEngine == null) {
                         throw new SerializationException("Unable to find scripting engine for"
                             + " language \"" + language + "\".");
                     }
 
-                    scriptEngine.setBindings(scriptEngineManager.getBindings(), ScriptContext.ENGINE_SCOPE);
+                    scriptEngine.setBindings(getScriptEngineManager().getBindings(), ScriptContext.ENGINE_SCOPE);
 
                     try {
                         scriptEngine.eval(script);
@@ -1450,6 +1628,29 @@ public class BXMLSerializer implements Serializer<Object>, Resolvable {
         this.resources = resources;
     }
 
+    /**
+     * Returns the cache used to store parsed documents read via
+     * {@link #readObject(URL, Resources)}.
+     *
+     * @return
+     * The template cache, or <tt>null</tt> if parsed documents are not cached.
+     */
+    public BXMLTemplateCache getTemplateCache() {
+        return templateCache;
+    }
+
+    /**
+     * Sets the cache used to store parsed documents read via
+     * {@link #readObject(URL, Resources)}. Parsed documents are not cached
+     * by default.
+     *
+     * @param templateCache
+     * The template cache, or <tt>null</tt> to disable caching.
+     */
+    public void setTemplateCache(BXMLTemplateCache templateCache) {
+        this.templateCache = templateCache;
+    }
+
     /**
      * Applies BXML binding annotations to an object.
      *
@@ -1600,7 +1801,39 @@ public class BXMLSerializer implements Serializer<Object>, Resolvable {
         return mimeTypes;
     }
 
-    private static Method getStaticGetterMethod(Class<?> propertyClass, String propertyName,
+    /**
+     * Adds a child value to its parent. If the parent has a default property,
+     * it is used; otherwise, if the parent is a sequence, the child is added
+     * to it.
+     */
+    @SuppressWarnings("unchecked")
+    static void addChild(Object parent, Object child) throws SerializationException {
+        Class<?> parentType = parent.getClass();
+        DefaultProperty defaultProperty = parentType.getAnnotation(DefaultProperty.class);
+
+        if (defaultProperty == null) {
+            if (parent instanceof Sequence<?>) {
+                Sequence<Object> sequence = (Sequence<Object>)parent;
+                sequence.add(child);
+            } else {
+                throw new SerializationException(parent.getClass()
+                    + " is not a sequence.");
+            }
+        } else {
+            String defaultPropertyName = defaultProperty.value();
+            BeanAdapter beanAdapter = new BeanAdapter(parent);
+            Object defaultPropertyValue = beanAdapter.get(defaultPropertyName);
+
+            if (defaultPropertyValue instanceof Sequence<?>) {
+                Sequence<Object> sequence = (Sequence<Object>)defaultPropertyValue;
+                sequence.add(child);
+            } else {
+                beanAdapter.put(defaultPropertyName, child);
+            }
+        }
+    }
+
+    static Method getStaticGetterMethod(Class<?> propertyClass, String propertyName,
         Class<?> objectType) {
         Method method = null;
 
@@ -1630,7 +1863,7 @@ public class BXMLSerializer implements Serializer<Object>, Resolvable {
         return method;
     }
 
-    private static Method getStaticSetterMethod(Class<?> propertyClass, String propertyName,
+    static Method getStaticSetterMethod(Class<?> propertyClass, String propertyName,
         Class<?> objectType, Class<?> propertyValueType) {
         Method method = null;
 
@@ -1672,7 +1905,7 @@ public class BXMLSerializer implements Serializer<Object>, Resolvable {
         return method;
     }
 
-    private static void setStaticProperty(Object object, Class<?> propertyClass,
+    static void setStaticProperty(Object object, Class<?> propertyClass,
         String propertyName, Object value)
         throws SerializationException {
         Class<?> objectType = object.getClass();
@@ -0,0 +1,678 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pivot.beans;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.xml.XMLConstants;
+import javax.xml.namespace.NamespaceContext;
+import javax.xml.namespace.QName;
+import javax.xml.stream.Location;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.util.StreamReaderDelegate;
+
+import org.apache.pivot.collections.ArrayList;
+
+/**
+ * Parsed representation of a BXML document. A template records the XML
+ * events that are relevant to {@link BXMLSerializer} along with the classes
+ * resolved while processing them, so that the document can be loaded again
+ * without re-reading or re-parsing it.
+ */
+final class BXMLTemplate {
+    /**
+     * Recorded XML event.
+     */
+    private static final class Event {
+        public final int type;
+        public final int lineNumber;
+
+        // Element properties
+        public final String namespaceURI;
+        public final String prefix;
+        public final String localName;
+
+        // Attribute prefix, local name, namespace URI and value quadruples
+        public final String[] attributes;
+
+        // Namespace prefix and URI pairs declared by the element
+        public final String[] namespaces;
+
+        // Character data or processing instruction data
+        public final String text;
+        public final String piTarget;
+        public final boolean whiteSpace;
+
+        public Event(XMLStreamReader xmlStreamReader, Event startElement) {
+            type = xmlStreamReader.getEventType();
+
+            Location location = xmlStreamReader.getLocation();
+            lineNumber = (location == null) ? -1 : location.getLineNumber();
+
+            switch (type) {
+                case XMLStreamConstants.START_ELEMENT: {
+                    namespaceURI = xmlStreamReader.getNamespaceURI();
+                    prefix = xmlStreamReader.getPrefix();
+                    localName = xmlStreamReader.getLocalName();
+
+                    int attributeCount = xmlStreamReader.getAttributeCount();
+                    attributes = new String[attributeCount * 4];
+                    for (int i = 0; i < attributeCount; i++) {
+                        attributes[i * 4] = xmlStreamReader.getAttributePrefix(i);
+                        attributes[i * 4 + 1] = xmlStreamReader.getAttributeLocalName(i);
+                        attributes[i * 4 + 2] = xmlStreamReader.getAttributeNamespace(i);
+                        attributes[i * 4 + 3] = xmlStreamReader.getAttributeValue(i);
+                    }
+
+                    int namespaceCount = xmlStreamReader.getNamespaceCount();
+                    namespaces = new String[namespaceCount * 2];
+                    for (int i = 0; i < namespaceCount; i++) {
+                        String namespacePrefix = xmlStreamReader.getNamespacePrefix(i);
+                        namespaces[i * 2] = (namespacePrefix == null) ? "" : namespacePrefix;
+                        namespaces[i * 2 + 1] = xmlStreamReader.getNamespaceURI(i);
+                    }
+
+                    text = null;
+                    piTarget = null;
+                    whiteSpace = false;
+                    break;
+                }
+
+                case XMLStreamConstants.END_ELEMENT: {
+                    namespaceURI = startElement.namespaceURI;
+                    prefix = startElement.prefix;
+                    localName = startElement.localName;
+                    attributes = startElement.attributes;
+                    namespaces = startElement.namespaces;
+                    text = null;
+                    piTarget = null;
+                    whiteSpace = false;
+                    break;
+                }
+
+                case XMLStreamConstants.CHARACTERS: {
+                    namespaceURI = null;
+                    prefix = null;
+                    localName = null;
+                    attributes = null;
+                    namespaces = null;
+                    text = xmlStreamReader.getText();
+                    piTarget = null;
+                    whiteSpace = xmlStreamReader.isWhiteSpace();
+                    break;
+                }
+
+                case XMLStreamConstants.PROCESSING_INSTRUCTION: {
+                    namespaceURI = null;
+                    prefix = null;
+                    localName = null;
+                    attributes = null;
+                    namespaces = null;
+                    text = xmlStreamReader.getPIData();
+                    piTarget = xmlStreamReader.getPITarget();
+                    whiteSpace = false;
+                    break;
+                }
+
+                default: {
+                    throw new IllegalArgumentException();
+                }
+            }
+        }
+    }
+
+    /**
+     * Stream reader that records the events read from another stream reader
+     * into a template.
+     */
+    static final class Recorder extends StreamReaderDelegate {
+        private BXMLTemplate template;
+        private ArrayList<Event> startElements = new ArrayList<Event>();
+
+        public Recorder(XMLStreamReader xmlStreamReader, ClassLoader classLoader) {
+            super(xmlStreamReader);
+
+            template = new BXMLTemplate(classLoader);
+        }
+
+        @Override
+        public int next() throws XMLStreamException {
+            long t0 = System.nanoTime();
+            int event = super.next();
+
+            switch (event) {
+                case XMLStreamConstants.START_ELEMENT: {
+                    Event startElement = new Event(this, null);
+                    startElements.add(startElement);
+                    template.events.add(startElement);
+                    break;
+                }
+
+                case XMLStreamConstants.END_ELEMENT: {
+                    Event startElement = startElements.remove(startElements.getLength() - 1, 1).get(0);
+                    template.events.add(new Event(this, startElement));
+                    break;
+                }
+
+                case XMLStreamConstants.CHARACTERS:
+                case XMLStreamConstants.PROCESSING_INSTRUCTION: {
+                    template.events.add(new Event(this, null));
+                    break;
+                }
+            }
+
+            template.parseTime += System.nanoTime() - t0;
+
+            return event;
+        }
+
+        public BXMLTemplate getTemplate() {
+            return template;
+        }
+    }
+
+    /**
+     * Stream reader that replays the events recorded in a template.
+     */
+    private final class Reader implements XMLStreamReader, NamespaceContext {
+        private int index = -1;
+        private Event event = null;
+
+        // Stack of namespace declarations in scope
+        private ArrayList<String[]> namespaces = new ArrayList<String[]>();
+        private boolean popNamespaces = false;
+
+        @Override
+        public Object getProperty(String name) {
+            return null;
+        }
+
+        @Override
+        public int next() throws XMLStreamException {
+            if (!hasNext()) {
+                throw new java.util.NoSuchElementException();
+            }
+
+            if (popNamespaces) {
+                namespaces.remove(namespaces.getLength() - 1, 1);
+                popNamespaces = false;
+            }
+
+            index++;
+
+            if (index < events.getLength()) {
+                event = events.get(index);
+
+                if (event.type == XMLStreamConstants.START_ELEMENT) {
+                    namespaces.add(event.namespaces);
+                } else if (event.type == XMLStreamConstants.END_ELEMENT) {
+                    popNamespaces = true;
+                }
+            } else {
+                event = null;
+            }
+
+            return getEventType();
+        }
+
+        @Override
+        public void require(int type, String namespaceURI, String localName)
+            throws XMLStreamException {
+            if (type != getEventType()
+                || (namespaceURI != null && !namespaceURI.equals(getNamespaceURI()))
+                || (localName != null && !localName.equals(getLocalName()))) {
+                throw new XMLStreamException("Requirement not met.");
+            }
+        }
+
+        @Override
+        public String getElementText() throws XMLStreamException {
+            if (getEventType() != XMLStreamConstants.START_ELEMENT) {
+                throw new XMLStreamException("Current event is not a start element.", getLocation());
+            }
+
+            StringBuilder textBuilder = new StringBuilder();
+
+            int eventType = next();
+            while (eventType != XMLStreamConstants.END_ELEMENT) {
+                if (eventType == XMLStreamConstants.CHARACTERS) {
+                    textBuilder.append(event.text);
+                } else if (eventType == XMLStreamConstants.START_ELEMENT) {
+                    throw new XMLStreamException("Element text contains a start element.",
+                        getLocation());
+                } else if (eventType == XMLStreamConstants.END_DOCUMENT) {
+                    throw new XMLStreamException("Unexpected end of document in element text.",
+                        getLocation());
+                }
+
+                // Processing instructions are skipped
+                eventType = next();
+            }
+
+            return textBuilder.toString();
+        }
+
+        @Override
+        public int nextTag() throws XMLStreamException {
+            // Comments are not recorded, so only whitespace and processing
+            // instructions need to be skipped
+            int eventType = next();
+            while ((eventType == XMLStreamConstants.CHARACTERS && event.whiteSpace)
+                || eventType == XMLStreamConstants.PROCESSING_INSTRUCTION) {
+                eventType = next();
+            }
+
+            if (eventType != XMLStreamConstants.START_ELEMENT
+                && eventType != XMLStreamConstants.END_ELEMENT) {
+                throw new XMLStreamException("Expected a start or end element.", getLocation());
+            }
+
+            return eventType;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return (index < events.getLength());
+        }
+
+        @Override
+        public void close() {
+            // No-op
+        }
+
+        @Override
+        public String getNamespaceURI(String prefix) {
+            if (prefix == null) {
+                throw new IllegalArgumentException("prefix is null.");
+            }
+
+            String namespaceURI = null;
+
+            if (prefix.equals(XMLConstants.XML_NS_PREFIX)) {
+                namespaceURI = XMLConstants.XML_NS_URI;
+            } else if (prefix.equals(XMLConstants.XMLNS_ATTRIBUTE)) {
+                namespaceURI = XMLConstants.XMLNS_ATTRIBUTE_NS_URI;
+            } else {
+                for (int i = namespaces.getLength() - 1; i >= 0 && namespaceURI == null; i--) {
+                    String[] declarations = namespaces.get(i);
+
+                    for (int j = 0; j < declarations.length; j += 2) {
+                        if (declarations[j].equals(prefix)) {
+                            namespaceURI = declarations[j + 1];
+                            break;
+                        }
+                    }
+                }
+            }
+
+            return namespaceURI;
+        }
+
+        @Override
+        public String getPrefix(String namespaceURI) {
+            String prefix = null;
+
+            for (int i = namespaces.getLength() - 1; i >= 0 && prefix == null; i--) {
+                String[] declarations = namespaces.get(i);
+
+                for (int j = 0; j < declarations.length; j += 2) {
+                    if (declarations[j + 1].equals(namespaceURI)) {
+                        prefix = declarations[j];
+                        break;
+                    }
+                }
+            }
+
+            return prefix;
+        }
+
+        @Override
+        public java.util.Iterator<String> getPrefixes(String namespaceURI) {
+            java.util.ArrayList<String> prefixes = new java.util.ArrayList<String>();
+
+            String prefix = getPrefix(namespaceURI);
+            if (prefix != null) {
+                prefixes.add(prefix);
+            }
+
+            return prefixes.iterator();
+        }
+
+        @Override
+        public boolean isStartElement() {
+            return (getEventType() == XMLStreamConstants.START_ELEMENT);
+        }
+
+        @Override
+        public boolean isEndElement() {
+            return (getEventType() == XMLStreamConstants.END_ELEMENT);
+        }
+
+        @Override
+        public boolean isCharacters() {
+            return (getEventType() == XMLStreamConstants.CHARACTERS);
+        }
+
+        @Override
+        public boolean isWhiteSpace() {
+            return (isCharacters() && event.whiteSpace);
+        }
+
+        @Override
+        public String getAttributeValue(String namespaceURI, String localName) {
+            String value = null;
+
+            for (int i = 0, n = getAttributeCount(); i < n && value == null; i++) {
+                if (getAttributeLocalName(i).equals(localName)
+                    && (namespaceURI == null || namespaceURI.equals(getAttributeNamespace(i)))) {
+                    value = getAttributeValue(i);
+                }
+            }
+
+            return value;
+        }
+
+        @Override
+        public int getAttributeCount() {
+            checkStartElement();
+            return event.attributes.length / 4;
+        }
+
+        @Override
+        public QName getAttributeName(int index) {
+            String prefix = getAttributePrefix(index);
+            String namespaceURI = getAttributeNamespace(index);
+
+            return new QName((namespaceURI == null) ? XMLConstants.NULL_NS_URI : namespaceURI,
+                getAttributeLocalName(index),
+                (prefix == null) ? XMLConstants.DEFAULT_NS_PREFIX : prefix);
+        }
+
+        @Override
+        public String getAttributeNamespace(int index) {
+            checkStartElement();
+            return event.attributes[index * 4 + 2];
+        }
+
+        @Override
+        public String getAttributeLocalName(int index) {
+            checkStartElement();
+            return event.attributes[index * 4 + 1];
+        }
+
+        @Override
+        public String getAttributePrefix(int index) {
+            checkStartElement();
+            return event.attributes[index * 4];
+        }
+
+        @Override
+        public String getAttributeType(int index) {
+            checkStartElement();
+            return "CDATA";
+        }
+
+        @Override
+        public String getAttributeValue(int index) {
+            checkStartElement();
+            return event.attributes[index * 4 + 3];
+        }
+
+        @Override
+        public boolean isAttributeSpecified(int index) {
+            checkStartElement();
+            return true;
+        }
+
+        @Override
+        public int getNamespaceCount() {
+            checkElement();
+            return event.namespaces.length / 2;
+        }
+
+        @Override
+        public String getNamespacePrefix(int index) {
+            checkElement();
+            return event.namespaces[index * 2];
+        }
+
+        @Override
+        public String getNamespaceURI(int index) {
+            checkElement();
+            return event.namespaces[index * 2 + 1];
+        }
+
+        @Override
+        public NamespaceContext getNamespaceContext() {
+            return this;
+        }
+
+        @Override
+        public int getEventType() {
+            int eventType;
+            if (index == -1) {
+                eventType = XMLStreamConstants.START_DOCUMENT;
+            } else if (event == null) {
+                eventType = XMLStreamConstants.END_DOCUMENT;
+            } else {
+                eventType = event.type;
+            }
+
+            return eventType;
+        }
+
+        @Override
+        public String getText() {
+            if (!hasText()) {
+                throw new IllegalStateException();
+            }
+
+            return event.text;
+        }
+
+        @Override
+        public char[] getTextCharacters() {
+            return getText().toCharArray();
+        }
+
+        @Override
+        public int getTextCharacters(int sourceStart, char[] target, int targetStart, int length)
+            throws XMLStreamException {
+            String text = getText();
+            int n = Math.min(length, text.length() - sourceStart);
+            text.getChars(sourceStart, sourceStart + n, target, targetStart);
+
+            return n;
+        }
+
+        @Override
+        public int getTextStart() {
+            return 0;
+        }
+
+        @Override
+        public int getTextLength() {
+            return getText().length();
+        }
+
+        @Override
+        public String getEncoding() {
+            return null;
+        }
+
+        @Override
+        public boolean hasText() {
+            return isCharacters();
+        }
+
+        @Override
+        public Location getLocation() {
+            final int lineNumber = (event == null) ? -1 : event.lineNumber;
+
+            return new Location() {
+                @Override
+                public int getLineNumber() {
+                    return lineNumber;
+                }
+
+                @Override
+                public int getColumnNumber() {
+                    return -1;
+                }
+
+                @Override
+                public int getCharacterOffset() {
+                    return -1;
+                }
+
+                @Override
+                public String getPublicId() {
+                    return null;
+                }
+
+                @Override
+                public String getSystemId() {
+                    return null;
+                }
+            };
+        }
+
+        @Override
+        public QName getName() {
+            checkElement();
+
+            return new QName((event.namespaceURI == null) ? XMLConstants.NULL_NS_URI
+                : event.namespaceURI, event.localName,
+                (event.prefix == null) ? XMLConstants.DEFAULT_NS_PREFIX : event.prefix);
+        }
+
+        @Override
+        public String getLocalName() {
+            checkElement();
+            return event.localName;
+        }
+
+        @Override
+        public boolean hasName() {
+            return (isStartElement() || isEndElement());
+        }
+
+        @Override
+        public String getNamespaceURI() {
+            checkElement();
+            return event.namespaceURI;
+        }
+
+        @Override
+        public String getPrefix() {
+            checkElement();
+            return event.prefix;
+        }
+
+        @Override
+        public String getVersion() {
+            return null;
+        }
+
+        @Override
+        public boolean isStandalone() {
+            return false;
+        }
+
+        @Override
+        public boolean standaloneSet() {
+            return false;
+        }
+
+        @Override
+        public String getCharacterEncodingScheme() {
+            return null;
+        }
+
+        @Override
+        public String getPITarget() {
+            return (getEventType() == XMLStreamConstants.PROCESSING_INSTRUCTION) ?
+                event.piTarget : null;
+        }
+
+        @Override
+        public String getPIData() {
+            return (getEventType() == XMLStreamConstants.PROCESSING_INSTRUCTION) ?
+                event.text : null;
+        }
+
+        private void checkStartElement() {
+            if (!isStartElement()) {
+                throw new IllegalStateException();
+            }
+        }
+
+        private void checkElement() {
+            if (!hasName()) {
+                throw new IllegalStateException();
+            }
+        }
+    }
+
+    private ArrayList<Event> events = new ArrayList<Event>();
+    private long parseTime = 0;
+
+    private ClassLoader classLoader;
+    private ConcurrentHashMap<String, Class<?>> classes = new ConcurrentHashMap<String, Class<?>>();
+
+    private BXMLTemplate(ClassLoader classLoader) {
+        this.classLoader = classLoader;
+    }
+
+    /**
+     * Returns a stream reader that replays the template's events.
+     */
+    public XMLStreamReader getXMLStreamReader() {
+        return new Reader();
+    }
+
+    /**
+     * Returns the time spent parsing the document, in nanoseconds.
+     */
+    public long getParseTime() {
+        return parseTime;
+    }
+
+    /**
+     * Loads a class referenced by the document. Classes loaded via the class
+     * loader that was in use when the template was recorded are cached.
+     */
+    public Class<?> loadClass(String className, ClassLoader classLoader)
+        throws ClassNotFoundException {
+        Class<?> type;
+
+        if (classLoader == this.classLoader) {
+            type = classes.get(className);
+
+            if (type == null) {
+                type = Class.forName(className, true, classLoader);
+                classes.put(className, type);
+            }
+        } else {
+            type = Class.forName(className, true, classLoader);
+        }
+
+        return type;
+    }
+}
@@ -0,0 +1,219 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pivot.beans;
+
+import java.io.File;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.util.LinkedHashMap;
+
+/**
+ * Bounded cache of parsed BXML documents. When a document is read via
+ * {@link BXMLSerializer#readObject(URL, org.apache.pivot.util.Resources)},
+ * the XML events produced by the parser are recorded, along with the classes
+ * resolved while processing them. Subsequent reads of the same location
+ * replay the recorded events rather than re-reading and re-parsing the
+ * document.
+ * <p>
+ * Parsed documents are independent of the resources used to localize them,
+ * so entries are keyed by location only. When the cache is full, the least
+ * recently used entry is evicted. Entries for <tt>file:</tt> URLs are
+ * invalidated automatically when the file is modified; other entries can be
+ * invalidated explicitly via {@link #invalidate(URL)} or {@link #clear()}.
+ * <p>
+ * Caching is opt-in; a cache is used only by serializers it is assigned to
+ * via {@link BXMLSerializer#setTemplateCache(BXMLTemplateCache)}. Entries
+ * refer to the classes resolved by their documents, and to the class loaders
+ * that resolved them, so a cache should not outlive the class loaders of the
+ * documents it holds (for example, it should be owned by a web application
+ * rather than shared by the container).
+ */
+public class BXMLTemplateCache {
+    private static class CacheEntry {
+        public final BXMLTemplate template;
+        public final long lastModified;
+
+        public CacheEntry(BXMLTemplate template, long lastModified) {
+            this.template = template;
+            this.lastModified = lastModified;
+        }
+    }
+
+    private int capacity;
+
+    private LinkedHashMap<String, CacheEntry> entries = new LinkedHashMap<String, CacheEntry>(16, 0.75f, true) {
+        private static final long serialVersionUID = 0;
+
+        @Override
+        protected boolean removeEldestEntry(java.util.Map.Entry<String, CacheEntry> eldest) {
+            return (size() > capacity);
+        }
+    };
+
+    private long hits = 0;
+    private long misses = 0;
+    private long parseTimeSaved = 0;
+
+    public static final int DEFAULT_CAPACITY = 64;
+
+    public BXMLTemplateCache() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public BXMLTemplateCache(int capacity) {
+        setCapacity(capacity);
+    }
+
+    /**
+     * Returns the parsed document for the given location, or <tt>null</tt> if
+     * the document is not cached.
+     */
+    synchronized BXMLTemplate get(URL location) {
+        String key = location.toExternalForm();
+        CacheEntry entry = entries.get(key);
+
+        if (entry != null
+            && entry.lastModified != getLastModified(location)) {
+            entries.remove(key);
+            entry = null;
+        }
+
+        BXMLTemplate template;
+        if (entry == null) {
+            template = null;
+            misses++;
+        } else {
+            template = entry.template;
+            hits++;
+            parseTimeSaved += template.getParseTime();
+        }
+
+        return template;
+    }
+
+    /**
+     * Adds a parsed document to the cache.
+     */
+    synchronized void put(URL location, BXMLTemplate template) {
+        if (capacity > 0) {
+            entries.put(location.toExternalForm(), new CacheEntry(template, getLastModified(location)));
+        }
+    }
+
+    /**
+     * Removes the parsed document for the given location from the cache.
+     *
+     * @return
+     * <tt>true</tt> if the cache contained the document; <tt>false</tt>,
+     * otherwise.
+     */
+    public synchronized boolean invalidate(URL location) {
+        if (location == null) {
+            throw new IllegalArgumentException("location is null.");
+        }
+
+        return (entries.remove(location.toExternalForm()) != null);
+    }
+
+    /**
+     * Removes all parsed documents from the cache.
+     */
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    /**
+     * Returns the maximum number of documents the cache will hold.
+     */
+    public synchronized int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Sets the maximum number of documents the cache will hold. If the cache
+     * currently holds more documents, the least recently used documents are
+     * evicted.
+     */
+    public synchronized void setCapacity(int capacity) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException("capacity is negative.");
+        }
+
+        this.capacity = capacity;
+
+        java.util.Iterator<String> iterator = entries.keySet().iterator();
+        while (entries.size() > capacity) {
+            iterator.next();
+            iterator.remove();
+        }
+    }
+
+    /**
+     * Returns the number of documents currently held by the cache.
+     */
+    public synchronized int getCount() {
+        return entries.size();
+    }
+
+    /**
+     * Returns the number of reads that were served from the cache.
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * Returns the number of reads that required the document to be parsed.
+     */
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * Returns the total time spent parsing the documents whose reads were
+     * served from the cache, in nanoseconds; i.e. the parse time saved by the
+     * cache.
+     */
+    public synchronized long getParseTimeSaved() {
+        return parseTimeSaved;
+    }
+
+    /**
+     * Resets the hit, miss, and parse time statistics.
+     */
+    public synchronized void resetStatistics() {
+        hits = 0;
+        misses = 0;
+        parseTimeSaved = 0;
+    }
+
+    private static long getLastModified(URL location) {
+        long lastModified = 0;
+
+        if (location.getProtocol().equals("file")) {
+            try {
+                lastModified = new File(location.toURI()).lastModified();
+            } catch (URISyntaxException exception) {
+                // No-op
+            } catch (IllegalArgumentException exception) {
+                // No-op
+            }
+        }
+
+        return lastModified;
+    }
+}
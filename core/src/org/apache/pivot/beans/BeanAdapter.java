@@ -16,6 +16,9 @@
  */
 package org.apache.pivot.beans;
 
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.SoftReference;
+import java.lang.ref.WeakReference;
 import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
@@ -28,6 +31,7 @@ import java.util.Comparator;
 import java.util.Iterator;
 import java.util.Locale;
 import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.pivot.collections.Map;
 import org.apache.pivot.collections.MapListener;
@@ -42,8 +46,129 @@ import org.apache.pivot.util.ListenerList;
  * Properties may provide multiple setters; the appropriate setter to invoke
  * is determined by the type of the value being set. If the value is
  * <tt>null</tt>, the return type of the getter method is used.
+ * <p>
+ * Getter, setter and field lookups are cached per bean class, so only the
+ * first access to a property of a given class pays the cost of reflective
+ * method resolution.
  */
 public class BeanAdapter implements Map<String, Object> {
+    /**
+     * Cached metadata for a single bean property.
+     */
+    private static class Property {
+        public final Class<?> beanClass;
+        public final String key;
+
+        public final Method getterMethod;
+        public final Field field;
+        public final Class<?> type;
+
+        // Setter methods keyed by value type; NO_METHOD marks value types
+        // for which no setter exists
+        private ConcurrentHashMap<Class<?>, Object> setterMethods =
+            new ConcurrentHashMap<Class<?>, Object>(4);
+
+        public Property(Class<?> beanClass, String key) {
+            this.beanClass = beanClass;
+            this.key = key;
+
+            getterMethod = findGetterMethod(beanClass, key);
+            field = findField(beanClass, key);
+
+            if (getterMethod == null) {
+                type = (field == null) ? null : field.getType();
+            } else {
+                type = getterMethod.getReturnType();
+            }
+        }
+
+        public Method getSetterMethod(Class<?> valueType) {
+            Method setterMethod = null;
+
+            if (valueType != null) {
+                Object value = setterMethods.get(valueType);
+
+                if (value == null) {
+                    setterMethod = findSetterMethod(beanClass, key, valueType);
+
+                    if (setterMethods.size() < MAXIMUM_SETTER_COUNT) {
+                        setterMethods.put(valueType, (setterMethod == null) ? NO_METHOD : setterMethod);
+                    }
+                } else if (value != NO_METHOD) {
+                    setterMethod = (Method)value;
+                }
+            }
+
+            return setterMethod;
+        }
+    }
+
+    /**
+     * Cached property metadata for a bean class. Properties are resolved the
+     * first time they are requested.
+     */
+    private static class BeanProperties {
+        private Class<?> beanClass;
+        private ConcurrentHashMap<String, Property> properties =
+            new ConcurrentHashMap<String, Property>();
+
+        public BeanProperties(Class<?> beanClass) {
+            this.beanClass = beanClass;
+        }
+
+        public Property get(String key) {
+            Property property = properties.get(key);
+
+            if (property == null) {
+                property = new Property(beanClass, key);
+
+                // Keys are not necessarily property names, so only a bounded
+                // number of them is retained
+                if (properties.size() < MAXIMUM_PROPERTY_COUNT) {
+                    Property existingProperty = properties.putIfAbsent(key, property);
+                    if (existingProperty != null) {
+                        property = existingProperty;
+                    }
+                }
+            }
+
+            return property;
+        }
+    }
+
+    /**
+     * Weak reference to a bean class, used as a key in the property metadata
+     * cache. Keys are compared by the identity of their referents.
+     */
+    private static class BeanClassReference extends WeakReference<Class<?>> {
+        private final int hashCode;
+
+        public BeanClassReference(Class<?> beanClass, ReferenceQueue<Class<?>> queue) {
+            super(beanClass, queue);
+            hashCode = System.identityHashCode(beanClass);
+        }
+
+        @Override
+        public boolean equals(Object object) {
+            if (object == this) {
+                return true;
+            }
+
+            if (object instanceof BeanClassReference) {
+                Class<?> beanClass = get();
+                return (beanClass != null
+                    && beanClass == ((BeanClassReference)object).get());
+            }
+
+            return false;
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+
     /**
      * Property iterator. Returns a value for each getter method and public,
      * non-final field defined by the bean.
@@ -145,6 +270,7 @@ public class BeanAdapter implements Map<String, Object> {
 
     private Object bean;
     private boolean ignoreReadOnlyProperties;
+    private BeanProperties beanProperties;
 
     private MapListenerList<String, Object> mapListeners = new MapListenerList<String, Object>();
 
@@ -154,6 +280,20 @@ public class BeanAdapter implements Map<String, Object> {
 
     private static final String ENUM_VALUE_OF_METHOD_NAME = "valueOf";
 
+    private static final Object[] EMPTY_ARGUMENTS = {};
+    private static final Object NO_METHOD = new Object();
+
+    private static final int MAXIMUM_PROPERTY_COUNT = 256;
+    private static final int MAXIMUM_SETTER_COUNT = 16;
+
+    // Property metadata by bean class. Classes are weakly referenced so they
+    // can be unloaded, and values are softly referenced since they refer back
+    // to the class. Lookups do not lock; entries for collected classes are
+    // expunged when a new class is added.
+    private static final ConcurrentHashMap<BeanClassReference, SoftReference<BeanProperties>> beanPropertiesCache =
+        new ConcurrentHashMap<BeanClassReference, SoftReference<BeanProperties>>();
+    private static final ReferenceQueue<Class<?>> beanClassQueue = new ReferenceQueue<Class<?>>();
+
     private static final String ILLEGAL_ACCESS_EXCEPTION_MESSAGE_FORMAT =
         "Unable to access property \"%s\" for type %s.";
     private static final String ENUM_COERCION_EXECPTION_MESSAGE =
@@ -182,6 +322,8 @@ public class BeanAdapter implements Map<String, Object> {
 
         this.bean = bean;
         this.ignoreReadOnlyProperties = ignoreReadOnlyProperties;
+
+        beanProperties = getBeanProperties(bean.getClass());
     }
 
     /**
@@ -216,10 +358,11 @@ public class BeanAdapter implements Map<String, Object> {
 
         Object value = null;
 
-        Method getterMethod = getGetterMethod(key);
+        Property property = beanProperties.get(key);
+        Method getterMethod = property.getterMethod;
 
         if (getterMethod == null) {
-            Field field = getField(key);
+            Field field = property.field;
 
             if (field != null) {
                 try {
@@ -231,7 +374,7 @@ public class BeanAdapter implements Map<String, Object> {
             }
         } else {
             try {
-                value = getterMethod.invoke(bean, new Object[] {});
+                value = getterMethod.invoke(bean, EMPTY_ARGUMENTS);
             } catch (IllegalAccessException exception) {
                 throw new RuntimeException(String.format(ILLEGAL_ACCESS_EXCEPTION_MESSAGE_FORMAT,
                     key, bean.getClass().getName()), exception);
@@ -272,25 +415,26 @@ public class BeanAdapter implements Map<String, Object> {
             throw new IllegalArgumentException("key is empty.");
         }
 
+        Property property = beanProperties.get(key);
         Method setterMethod = null;
 
         if (value != null) {
             // Get the setter method for the value type
-            setterMethod = getSetterMethod(key, value.getClass());
+            setterMethod = property.getSetterMethod(value.getClass());
         }
 
         if (setterMethod == null) {
             // Get the property type and attempt to coerce the value to it
-            Class<?> propertyType = getType(key);
+            Class<?> propertyType = property.type;
 
             if (propertyType != null) {
-                setterMethod = getSetterMethod(key, propertyType);
+                setterMethod = property.getSetterMethod(propertyType);
                 value = coerce(value, propertyType);
             }
         }
 
         if (setterMethod == null) {
-            Field field = getField(key);
+            Field field = property.field;
 
             if (field == null) {
                 throw new PropertyNotFoundException("Property \"" + key + "\""
@@ -368,13 +512,10 @@ public class BeanAdapter implements Map<String, Object> {
             throw new IllegalArgumentException("key is empty.");
         }
 
-        boolean containsKey = (getGetterMethod(key) != null);
-
-        if (!containsKey) {
-            containsKey = (getField(key) != null);
-        }
+        Property property = beanProperties.get(key);
 
-        return containsKey;
+        return (property.getterMethod != null
+            || property.field != null);
     }
 
     /**
@@ -464,51 +605,6 @@ public class BeanAdapter implements Map<String, Object> {
         return mapListeners;
     }
 
-    /**
-     * Returns the getter method for a property.
-     *
-     * @param key
-     * The property name.
-     *
-     * @return
-     * The getter method, or <tt>null</tt> if the method does not exist.
-     */
-    private Method getGetterMethod(String key) {
-        return getGetterMethod(bean.getClass(), key);
-    }
-
-    /**
-     * Returns the setter method for a property.
-     *
-     * @param key
-     * The property name.
-     *
-     * @return
-     * The getter method, or <tt>null</tt> if the method does not exist.
-     */
-    private Method getSetterMethod(String key, Class<?> valueType) {
-        return getSetterMethod(bean.getClass(), key, valueType);
-    }
-
-    /**
-     * Returns the public, non-static field for a property. Note that fields
-     * will only be consulted for bean properties after bean methods.
-     *
-     * @param fieldName
-     * The property name
-     *
-     * @return
-     * The field, or <tt>null</tt> if the field does not exist, or is
-     * non-public or static
-     */
-    private Field getField(String fieldName) {
-        if (fieldName == null) {
-            throw new IllegalArgumentException("fieldName is null.");
-        }
-
-        return getField(bean.getClass(), fieldName);
-    }
-
     /**
      * Tests the read-only state of a property. Note that if no such property
      * exists, this method will return <tt>true</tt> (it will <u>not</u> throw
@@ -538,14 +634,14 @@ public class BeanAdapter implements Map<String, Object> {
 
         boolean isReadOnly = true;
 
-        Method getterMethod = getGetterMethod(beanClass, key);
-        if (getterMethod == null) {
-            Field field = getField(beanClass, key);
+        Property property = getBeanProperties(beanClass).get(key);
+        if (property.getterMethod == null) {
+            Field field = property.field;
             if (field != null) {
                 isReadOnly = ((field.getModifiers() & Modifier.FINAL) != 0);
             }
         } else {
-            Method setterMethod = getSetterMethod(beanClass, key, getType(beanClass, key));
+            Method setterMethod = property.getSetterMethod(property.type);
             isReadOnly = (setterMethod == null);
         }
 
@@ -578,21 +674,7 @@ public class BeanAdapter implements Map<String, Object> {
             throw new IllegalArgumentException("key is empty.");
         }
 
-        Class<?> type = null;
-
-        Method getterMethod = getGetterMethod(beanClass, key);
-
-        if (getterMethod == null) {
-            Field field = getField(beanClass, key);
-
-            if (field != null) {
-                type = field.getType();
-            }
-        } else {
-            type = getterMethod.getReturnType();
-        }
-
-        return type;
+        return getBeanProperties(beanClass).get(key).type;
     }
 
     /**
@@ -625,10 +707,11 @@ public class BeanAdapter implements Map<String, Object> {
 
         Type genericType = null;
 
-        Method getterMethod = getGetterMethod(beanClass, key);
+        Property property = getBeanProperties(beanClass).get(key);
+        Method getterMethod = property.getterMethod;
 
         if (getterMethod == null) {
-            Field field = getField(beanClass, key);
+            Field field = property.field;
 
             if (field != null) {
                 genericType = field.getGenericType();
@@ -667,6 +750,10 @@ public class BeanAdapter implements Map<String, Object> {
             throw new IllegalArgumentException("key is empty.");
         }
 
+        return getBeanProperties(beanClass).get(key).field;
+    }
+
+    private static Field findField(Class<?> beanClass, String key) {
         Field field = null;
 
         try {
@@ -711,6 +798,10 @@ public class BeanAdapter implements Map<String, Object> {
             throw new IllegalArgumentException("key is empty.");
         }
 
+        return getBeanProperties(beanClass).get(key).getterMethod;
+    }
+
+    private static Method findGetterMethod(Class<?> beanClass, String key) {
         // Upper-case the first letter
         key = Character.toUpperCase(key.charAt(0)) + key.substring(1);
         Method getterMethod = null;
@@ -757,6 +848,10 @@ public class BeanAdapter implements Map<String, Object> {
             throw new IllegalArgumentException("key is empty.");
         }
 
+        return getBeanProperties(beanClass).get(key).getSetterMethod(valueType);
+    }
+
+    private static Method findSetterMethod(Class<?> beanClass, String key, Class<?> valueType) {
         Method setterMethod = null;
 
         if (valueType != null) {
@@ -774,7 +869,7 @@ public class BeanAdapter implements Map<String, Object> {
             if (setterMethod == null) {
                 // Look for a match on the value's super type
                 Class<?> superType = valueType.getSuperclass();
-                setterMethod = getSetterMethod(beanClass, key, superType);
+                setterMethod = findSetterMethod(beanClass, key, superType);
             }
 
             if (setterMethod == null) {
@@ -805,7 +900,7 @@ public class BeanAdapter implements Map<String, Object> {
                 while (setterMethod == null
                     && i < n) {
                     Class<?> interfaceType = interfaces[i++];
-                    setterMethod = getSetterMethod(beanClass, key, interfaceType);
+                    setterMethod = findSetterMethod(beanClass, key, interfaceType);
                 }
             }
         }
@@ -813,6 +908,28 @@ public class BeanAdapter implements Map<String, Object> {
         return setterMethod;
     }
 
+    private static BeanProperties getBeanProperties(Class<?> beanClass) {
+        SoftReference<BeanProperties> reference =
+            beanPropertiesCache.get(new BeanClassReference(beanClass, null));
+        BeanProperties beanProperties = (reference == null) ? null : reference.get();
+
+        if (beanProperties == null) {
+            // Remove the entries of any classes that have been unloaded
+            Object staleReference;
+            while ((staleReference = beanClassQueue.poll()) != null) {
+                beanPropertiesCache.remove(staleReference);
+            }
+
+            // Concurrent callers may each create an instance; either one may
+            // be used, since they resolve the same properties
+            beanProperties = new BeanProperties(beanClass);
+            beanPropertiesCache.put(new BeanClassReference(beanClass, beanClassQueue),
+                new SoftReference<BeanProperties>(beanProperties));
+        }
+
+        return beanProperties;
+    }
+
     /**
      * Coerces a value to a given type.
      *
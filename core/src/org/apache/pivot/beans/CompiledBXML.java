@@ -0,0 +1,626 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pivot.beans;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.JarURLConnection;
+import java.net.MalformedURLException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.WeakHashMap;
+import java.util.jar.JarEntry;
+import java.util.zip.CRC32;
+
+import org.apache.pivot.collections.Dictionary;
+import org.apache.pivot.collections.Map;
+import org.apache.pivot.collections.Sequence;
+import org.apache.pivot.json.JSON;
+import org.apache.pivot.serialization.SerializationException;
+import org.apache.pivot.util.Resources;
+
+/**
+ * Base class for BXML documents that have been compiled to Java source code
+ * by {@link BXMLCompiler}.
+ * <p>
+ * A compiled document constructs the same object hierarchy as the document
+ * it was generated from, but does so using direct constructor and setter
+ * calls rather than by parsing the markup and resolving classes and
+ * properties via reflection. {@link BXMLSerializer#readObject(Class, String, boolean)}
+ * automatically uses the compiled version of a document when one is available
+ * on the class path and was generated from the current version of the
+ * document; otherwise, the document is interpreted as usual.
+ * <p>
+ * The methods defined by this class are support routines for the generated
+ * code and are not intended to be called by applications.
+ */
+public abstract class CompiledBXML {
+    private BXMLSerializer serializer = null;
+    private IdentityHashMap<Object, String> internalIDs = null;
+
+    /**
+     * The namespace of the serializer that is reading the document.
+     */
+    protected Map<String, Object> namespace = null;
+
+    /**
+     * <tt>true</tt> if the serializer that is reading the document overrides
+     * {@link BXMLSerializer#newTypedObject(Class)}; in this case, the
+     * generated code will use {@link #newTypedObject(Class)} rather than
+     * calling constructors directly.
+     */
+    protected boolean typedObjectsOverridden = false;
+
+    /**
+     * File name suffix of compiled BXML classes.
+     */
+    public static final String CLASS_NAME_SUFFIX = "_" + BXMLSerializer.BXML_EXTENSION;
+
+    /**
+     * Result of comparing a compiled class with its document.
+     */
+    private static class Verification {
+        public final boolean current;
+        public final long lastModified;
+
+        public Verification(boolean current, long lastModified) {
+            this.current = current;
+            this.lastModified = lastModified;
+        }
+    }
+
+    private static final WeakHashMap<Class<?>, Verification> verifiedClasses =
+        new WeakHashMap<Class<?>, Verification>();
+    private static final WeakHashMap<ClassLoader, HashSet<String>> missingClasses =
+        new WeakHashMap<ClassLoader, HashSet<String>>();
+
+    /**
+     * Constructs the object hierarchy described by the compiled document.
+     *
+     * @param serializer
+     * The serializer that is reading the document.
+     *
+     * @return
+     * The root of the object hierarchy.
+     */
+    public final Object readObject(BXMLSerializer serializer)
+        throws IOException, SerializationException {
+        if (serializer == null) {
+            throw new IllegalArgumentException("serializer is null.");
+        }
+
+        this.serializer = serializer;
+        namespace = serializer.getNamespace();
+        internalIDs = null;
+
+        typedObjectsOverridden = false;
+        Class<?> serializerClass = serializer.getClass();
+        while (serializerClass != BXMLSerializer.class
+            && !typedObjectsOverridden) {
+            try {
+                serializerClass.getDeclaredMethod("newTypedObject", Class.class);
+                typedObjectsOverridden = true;
+            } catch (NoSuchMethodException exception) {
+                serializerClass = serializerClass.getSuperclass();
+            }
+        }
+
+        Object root;
+        try {
+            root = readObject();
+        } finally {
+            this.serializer = null;
+            namespace = null;
+            internalIDs = null;
+        }
+
+        return root;
+    }
+
+    /**
+     * Constructs the object hierarchy described by the compiled document.
+     */
+    protected abstract Object readObject() throws IOException, SerializationException;
+
+    /**
+     * Returns the CRC-32 checksum of the document from which this class was
+     * generated.
+     */
+    protected abstract long getChecksum();
+
+    /**
+     * Creates a typed object via the serializer.
+     */
+    protected <T> T newTypedObject(Class<T> type) throws SerializationException {
+        Object value;
+        try {
+            value = serializer.newTypedObject(type);
+        } catch (InstantiationException exception) {
+            throw new SerializationException(exception);
+        } catch (IllegalAccessException exception) {
+            throw new SerializationException(exception);
+        }
+
+        return type.cast(value);
+    }
+
+    /**
+     * Ensures that an ID is not already in use.
+     */
+    protected void checkID(String id) throws SerializationException {
+        if (namespace.containsKey(id)) {
+            throw new SerializationException("ID " + id + " is already in use.");
+        }
+    }
+
+    /**
+     * Adds a value to the namespace, applying the value's ID property if it
+     * defines one.
+     */
+    protected void register(String id, Object value) {
+        namespace.put(id, value);
+
+        IDProperty idProperty = value.getClass().getAnnotation(IDProperty.class);
+        if (idProperty != null) {
+            BeanAdapter beanAdapter = new BeanAdapter(value);
+            beanAdapter.put(idProperty.value(), id);
+        }
+    }
+
+    /**
+     * Resolves a URL relative to the location of the document.
+     */
+    protected URL resolveURL(String value) throws SerializationException {
+        URL location = serializer.getLocation();
+        if (location == null) {
+            throw new IllegalStateException("Base location is undefined.");
+        }
+
+        URL url;
+        try {
+            url = new URL(location, value);
+        } catch (MalformedURLException exception) {
+            throw new SerializationException(exception);
+        }
+
+        return url;
+    }
+
+    /**
+     * Resolves a resource value. If the key is not defined, the key itself is
+     * returned.
+     */
+    protected Object resolveResource(String key) {
+        Resources resources = serializer.getResources();
+
+        Object value;
+        if (resources != null
+            && JSON.containsKey(resources, key)) {
+            value = JSON.get(resources, key);
+        } else {
+            value = key;
+        }
+
+        return value;
+    }
+
+    /**
+     * Resolves a reference to a value in the namespace.
+     */
+    protected Object resolveReference(String path) throws SerializationException {
+        if (!JSON.containsKey(namespace, path)) {
+            throw new SerializationException("Value \"" + path + "\" is not defined.");
+        }
+
+        return JSON.get(namespace, path);
+    }
+
+    /**
+     * Returns the value of a <tt>&lt;bxml:reference&gt;</tt> tag.
+     */
+    protected Object reference(String id) throws SerializationException {
+        if (!namespace.containsKey(id)) {
+            throw new SerializationException("A value with ID \"" + id + "\" does not exist.");
+        }
+
+        return namespace.get(id);
+    }
+
+    /**
+     * Returns the value of a <tt>&lt;bxml:include&gt;</tt> tag.
+     */
+    protected Object include(String src, String resourcesName, String mimeType, boolean inline)
+        throws IOException, SerializationException {
+        return serializer.readInclude(src, resourcesName, mimeType, inline);
+    }
+
+    /**
+     * Sets a property of an object whose type was not known when the
+     * document was compiled.
+     */
+    @SuppressWarnings("unchecked")
+    protected void put(Object object, String key, Object value) {
+        Dictionary<String, Object> dictionary;
+        if (object instanceof Dictionary<?, ?>) {
+            dictionary = (Dictionary<String, Object>)object;
+        } else {
+            dictionary = new BeanAdapter(object);
+        }
+
+        dictionary.put(key, value);
+    }
+
+    /**
+     * Returns a property of an object whose type was not known when the
+     * document was compiled.
+     */
+    protected Object get(Object object, String key) {
+        Object value;
+        if (object instanceof Dictionary<?, ?>) {
+            value = dictionary(object).get(key);
+        } else {
+            value = new BeanAdapter(object).get(key);
+        }
+
+        return value;
+    }
+
+    /**
+     * Sets a static property.
+     */
+    protected void setStaticProperty(Object object, Class<?> propertyClass, String name,
+        Object value) throws SerializationException {
+        BXMLSerializer.setStaticProperty(object, propertyClass, name, value);
+    }
+
+    /**
+     * Adds a child to a parent whose type was not known when the document
+     * was compiled.
+     */
+    protected void addChild(Object parent, Object child) throws SerializationException {
+        BXMLSerializer.addChild(parent, child);
+    }
+
+    /**
+     * Adds text content to a sequence.
+     */
+    protected void addText(Object sequence, String text) throws SerializationException {
+        try {
+            Method addMethod = sequence.getClass().getMethod("add", String.class);
+            addMethod.invoke(sequence, text);
+        } catch (Exception exception) {
+            throw new SerializationException("Text content cannot be added to "
+                + sequence.getClass().getName() + ".", exception);
+        }
+    }
+
+    /**
+     * Casts a value to a sequence.
+     */
+    @SuppressWarnings("unchecked")
+    protected static Sequence<Object> sequence(Object value) {
+        return (Sequence<Object>)value;
+    }
+
+    /**
+     * Casts a value to a dictionary.
+     */
+    @SuppressWarnings("unchecked")
+    protected static Dictionary<String, Object> dictionary(Object value) {
+        return (Dictionary<String, Object>)value;
+    }
+
+    /**
+     * Binds a property of a target object to a namespace path.
+     *
+     * @param target
+     * The object containing the target property.
+     *
+     * @param id
+     * The ID of the target object, or <tt>null</tt> if the object does not
+     * have an ID; in this case, an internal ID will be assigned.
+     *
+     * @param targetProperty
+     * The path to the target property, relative to the target object.
+     *
+     * @param sourcePath
+     * The source path.
+     */
+    protected void bind(Object target, String id, String targetProperty, String sourcePath) {
+        if (id == null) {
+            if (internalIDs == null) {
+                internalIDs = new IdentityHashMap<Object, String>();
+            }
+
+            id = internalIDs.get(target);
+
+            if (id == null) {
+                id = serializer.nextInternalID();
+                internalIDs.put(target, id);
+                namespace.put(id, target);
+            }
+        }
+
+        NamespaceBinding namespaceBinding = new NamespaceBinding(namespace, sourcePath,
+            id + "." + targetProperty);
+        namespaceBinding.bind();
+    }
+
+    /**
+     * Returns the name of the class generated for a BXML resource.
+     *
+     * @param resourcePath
+     * The class path location of the resource; for example,
+     * <tt>org/apache/pivot/tutorials/hello.bxml</tt>.
+     */
+    public static String getClassName(String resourcePath) {
+        if (resourcePath == null) {
+            throw new IllegalArgumentException("resourcePath is null.");
+        }
+
+        if (resourcePath.startsWith("/")) {
+            resourcePath = resourcePath.substring(1);
+        }
+
+        int i = resourcePath.lastIndexOf('/');
+        String packageName = (i == -1) ? "" : resourcePath.substring(0, i).replace('/', '.');
+        String fileName = resourcePath.substring(i + 1);
+
+        int extensionIndex = fileName.lastIndexOf('.');
+        if (extensionIndex != -1) {
+            fileName = fileName.substring(0, extensionIndex);
+        }
+
+        StringBuilder classNameBuilder = new StringBuilder();
+        for (int j = 0, n = fileName.length(); j < n; j++) {
+            char c = fileName.charAt(j);
+
+            if ((j == 0 && !Character.isJavaIdentifierStart(c))
+                || !Character.isJavaIdentifierPart(c)) {
+                classNameBuilder.append('_');
+
+                if (j == 0 && Character.isJavaIdentifierPart(c)) {
+                    classNameBuilder.append(c);
+                }
+            } else {
+                classNameBuilder.append(c);
+            }
+        }
+
+        classNameBuilder.append(CLASS_NAME_SUFFIX);
+
+        return (packageName.length() == 0) ? classNameBuilder.toString()
+            : packageName + "." + classNameBuilder.toString();
+    }
+
+    /**
+     * Returns the class path location of a resource loaded via
+     * {@link Class#getResource(String)}.
+     */
+    static String getResourcePath(Class<?> baseType, String resourceName) {
+        String packagePath = null;
+
+        if (!resourceName.startsWith("/")) {
+            String className = baseType.getName();
+            int i = className.lastIndexOf('.');
+            packagePath = (i == -1) ? "" : className.substring(0, i).replace('.', '/') + "/";
+        }
+
+        return resolveResourcePath(packagePath, resourceName);
+    }
+
+    /**
+     * Resolves a resource name against the class path location of a
+     * referencing resource.
+     */
+    static String resolveResourcePath(String basePath, String resourceName) {
+        String path;
+        if (resourceName.startsWith("/")) {
+            path = resourceName.substring(1);
+        } else {
+            int i = (basePath == null) ? -1 : basePath.lastIndexOf('/');
+            path = (i == -1) ? resourceName : basePath.substring(0, i + 1) + resourceName;
+        }
+
+        // Normalize "." and ".." segments
+        String[] segments = path.split("/");
+        ArrayList<String> normalizedSegments = new ArrayList<String>();
+
+        for (String segment : segments) {
+            if (segment.equals("..")) {
+                if (normalizedSegments.isEmpty()) {
+                    return null;
+                }
+
+                normalizedSegments.remove(normalizedSegments.size() - 1);
+            } else if (segment.length() > 0
+                && !segment.equals(".")) {
+                normalizedSegments.add(segment);
+            }
+        }
+
+        StringBuilder pathBuilder = new StringBuilder();
+        for (String segment : normalizedSegments) {
+            if (pathBuilder.length() > 0) {
+                pathBuilder.append('/');
+            }
+
+            pathBuilder.append(segment);
+        }
+
+        return pathBuilder.toString();
+    }
+
+    /**
+     * Creates an instance of the compiled class for a BXML resource.
+     *
+     * @return
+     * The compiled document, or <tt>null</tt> if the resource has not been
+     * compiled or was modified after it was compiled.
+     */
+    static CompiledBXML newInstance(ClassLoader classLoader, String resourcePath, URL location)
+        throws IOException {
+        CompiledBXML compiledBXML = null;
+
+        if (classLoader != null
+            && resourcePath != null) {
+            String className = getClassName(resourcePath);
+
+            HashSet<String> missingClassNames;
+            synchronized (missingClasses) {
+                missingClassNames = missingClasses.get(classLoader);
+
+                if (missingClassNames == null) {
+                    missingClassNames = new HashSet<String>();
+                    missingClasses.put(classLoader, missingClassNames);
+                }
+            }
+
+            Class<?> type = null;
+            boolean missing;
+            synchronized (missingClassNames) {
+                missing = missingClassNames.contains(className);
+            }
+
+            if (!missing) {
+                try {
+                    type = Class.forName(className, true, classLoader);
+                } catch (ClassNotFoundException exception) {
+                    missing = true;
+                } catch (LinkageError error) {
+                    missing = true;
+                }
+
+                // Remember that the document has not been compiled, since failed
+                // class lookups are expensive
+                if (missing) {
+                    synchronized (missingClassNames) {
+                        missingClassNames.add(className);
+                    }
+                }
+            }
+
+            if (type != null
+                && CompiledBXML.class.isAssignableFrom(type)) {
+                try {
+                    compiledBXML = (CompiledBXML)type.getConstructor().newInstance();
+                } catch (NoSuchMethodException exception) {
+                    throw new RuntimeException(exception);
+                } catch (InvocationTargetException exception) {
+                    throw new RuntimeException(exception.getCause());
+                } catch (InstantiationException exception) {
+                    throw new RuntimeException(exception);
+                } catch (IllegalAccessException exception) {
+                    throw new RuntimeException(exception);
+                }
+
+                if (!isCurrent(compiledBXML, location)) {
+                    System.err.println(type.getName() + " is out of date with respect to "
+                        + location + " and will not be used.");
+                    compiledBXML = null;
+                }
+            }
+        }
+
+        return compiledBXML;
+    }
+
+    /**
+     * Tests whether a compiled class was generated from the current version
+     * of its document. The result is cached, and the document is compared
+     * again if its modification time changes.
+     */
+    private static boolean isCurrent(CompiledBXML compiledBXML, URL location)
+        throws IOException {
+        Class<?> type = compiledBXML.getClass();
+        long lastModified = getLastModified(location);
+
+        Verification verification;
+        synchronized (verifiedClasses) {
+            verification = verifiedClasses.get(type);
+        }
+
+        if (verification == null
+            || verification.lastModified != lastModified) {
+            boolean current = (getChecksum(location.openStream()) == compiledBXML.getChecksum());
+            verification = new Verification(current, lastModified);
+
+            synchronized (verifiedClasses) {
+                verifiedClasses.put(type, verification);
+            }
+        }
+
+        return verification.current;
+    }
+
+    /**
+     * Returns the modification time of a document on the file system or in a
+     * JAR file, or 0 if it is not known; documents at other locations are not
+     * compared again once they have been verified.
+     */
+    private static long getLastModified(URL location) throws IOException {
+        long lastModified = 0;
+        String protocol = location.getProtocol();
+
+        if (protocol.equals("file")) {
+            try {
+                lastModified = new File(location.toURI()).lastModified();
+            } catch (URISyntaxException exception) {
+                // No-op
+            } catch (IllegalArgumentException exception) {
+                // No-op
+            }
+        } else if (protocol.equals("jar")) {
+            URLConnection connection = location.openConnection();
+            if (connection instanceof JarURLConnection) {
+                JarEntry jarEntry = ((JarURLConnection)connection).getJarEntry();
+                if (jarEntry != null) {
+                    lastModified = jarEntry.getTime();
+                }
+            }
+        }
+
+        return lastModified;
+    }
+
+    /**
+     * Calculates the CRC-32 checksum of a stream's contents. The stream is
+     * closed.
+     */
+    static long getChecksum(InputStream inputStream) throws IOException {
+        CRC32 crc32 = new CRC32();
+
+        try {
+            byte[] buffer = new byte[4096];
+            int n;
+            while ((n = inputStream.read(buffer)) != -1) {
+                crc32.update(buffer, 0, n);
+            }
+        } finally {
+            inputStream.close();
+        }
+
+        return crc32.getValue();
+    }
+}
@@ -0,0 +1,698 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pivot.collections;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import org.apache.pivot.util.ListenerList;
+
+/**
+ * Implementation of the {@link List} interface that stores <tt>double</tt>
+ * values in a primitive array. Values can be accessed without boxing via
+ * {@link #addDouble(double)}, {@link #getDouble(int)} and related methods; the
+ * {@link List} methods box and unbox as needed, so the list can still be
+ * used as list data and will fire the usual {@link ListListener} events.
+ * <p>
+ * <tt>null</tt> values are not permitted.
+ * <p>
+ * NOTE This class is not thread-safe. For concurrent access, use a
+ * {@link org.apache.pivot.collections.concurrent.SynchronizedList}.
+ */
+public class DoubleArrayList implements List<Double>, Serializable {
+    private static final long serialVersionUID = 5718209336547102276L;
+
+    private class DoubleArrayListItemIterator implements ItemIterator<Double> {
+        private int index = 0;
+        private int modificationCount;
+        private boolean forward = true;
+
+        public DoubleArrayListItemIterator() {
+            modificationCount = DoubleArrayList.this.modificationCount;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (modificationCount != DoubleArrayList.this.modificationCount) {
+                throw new ConcurrentModificationException();
+            }
+
+            return (index < length);
+        }
+
+        @Override
+        public Double next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+
+            forward = true;
+            return get(index++);
+        }
+
+        @Override
+        public boolean hasPrevious() {
+            if (modificationCount != DoubleArrayList.this.modificationCount) {
+                throw new ConcurrentModificationException();
+            }
+
+            return (index > 0);
+        }
+
+        @Override
+        public Double previous() {
+            if (!hasPrevious()) {
+                throw new NoSuchElementException();
+            }
+
+            forward = false;
+            return get(--index);
+        }
+
+        @Override
+        public void toStart() {
+            index = 0;
+        }
+
+        @Override
+        public void toEnd() {
+            index = length;
+        }
+
+        @Override
+        public void insert(Double item) {
+            indexBoundsCheck();
+
+            DoubleArrayList.this.insert(item, index);
+            modificationCount++;
+        }
+
+        @Override
+        public void update(Double item) {
+            indexBoundsCheck();
+
+            DoubleArrayList.this.update(forward ? index - 1 : index, item);
+            modificationCount++;
+        }
+
+        @Override
+        public void remove() {
+            indexBoundsCheck();
+
+            if (forward) {
+                index--;
+            }
+
+            DoubleArrayList.this.remove(index, 1);
+            modificationCount++;
+        }
+
+        private void indexBoundsCheck() {
+            if (index < 0 || index > DoubleArrayList.this.length) {
+                throw new IllegalStateException("index  " + index + " out of bounds");
+            }
+        }
+    }
+
+    private double[] items;
+    private int length = 0;
+
+    private Comparator<Double> comparator = null;
+
+    private transient int modificationCount = 0;
+    private transient ListListenerList<Double> listListeners = null;
+
+    public static final int DEFAULT_CAPACITY = 10;
+
+    public DoubleArrayList() {
+        items = new double[DEFAULT_CAPACITY];
+    }
+
+    public DoubleArrayList(Comparator<Double> comparator) {
+        this();
+        this.comparator = comparator;
+    }
+
+    public DoubleArrayList(int capacity) {
+        verifyNonNegative("capacity", capacity);
+
+        items = new double[capacity];
+    }
+
+    public DoubleArrayList(double[] items) {
+        this(items, 0, items.length);
+    }
+
+    public DoubleArrayList(double[] items, int index, int count) {
+        verifyNotNull("items", items);
+        verifyIndexBounds(index, count, 0, items.length);
+
+        this.items = new double[count];
+        System.arraycopy(items, index, this.items, 0, count);
+
+        length = count;
+    }
+
+    public DoubleArrayList(Sequence<Double> items) {
+        this(items, 0, items.getLength());
+    }
+
+    public DoubleArrayList(Sequence<Double> items, int index, int count) {
+        verifyNotNull("items", items);
+        verifyIndexBounds(index, count, 0, items.getLength());
+
+        this.items = new double[count];
+
+        for (int i = 0; i < count; i++) {
+            Double item = items.get(index + i);
+            verifyNotNull("item", item);
+
+            this.items[i] = item;
+        }
+
+        length = count;
+    }
+
+    public DoubleArrayList(DoubleArrayList doubleArrayList) {
+        this(doubleArrayList, 0, doubleArrayList.length);
+    }
+
+    public DoubleArrayList(DoubleArrayList doubleArrayList, int index, int count) {
+        verifyNotNull("doubleArrayList", doubleArrayList);
+        verifyIndexBounds(index, count, 0, doubleArrayList.length);
+
+        items = new double[count];
+        length = count;
+
+        System.arraycopy(doubleArrayList.items, index, items, 0, count);
+
+        comparator = doubleArrayList.comparator;
+    }
+
+    @Override
+    public int add(Double item) {
+        verifyNotNull("item", item);
+
+        return addDouble(item);
+    }
+
+    /**
+     * Adds a value to the list.
+     *
+     * @param value
+     *
+     * @return
+     * The index at which the value was added.
+     *
+     * @see #add(Double)
+     */
+    public int addDouble(double value) {
+        int index = -1;
+
+        if (comparator == null) {
+            index = length;
+            insert(value, index, false);
+        }
+        else {
+            // Perform a binary search to find the insertion point
+            index = binarySearch(value, comparator);
+            if (index < 0) {
+                index = -(index + 1);
+            }
+
+            insert(value, index, false);
+        }
+
+        return index;
+    }
+
+    @Override
+    public void insert(Double item, int index) {
+        verifyNotNull("item", item);
+
+        insert(item, index, true);
+    }
+
+    /**
+     * Inserts a value into the list at a given index.
+     *
+     * @param value
+     * @param index
+     *
+     * @see #insert(Double, int)
+     */
+    public void insertDouble(double value, int index) {
+        insert(value, index, true);
+    }
+
+    private void insert(double value, int index, boolean validate) {
+        verifyIndexBounds(index, 0, length);
+
+        if (comparator != null
+            && validate) {
+            int i = binarySearch(value, comparator);
+            if (i < 0) {
+                i = -(i + 1);
+            }
+
+            if (index != i) {
+                throw new IllegalArgumentException("Illegal insertion point.");
+            }
+        }
+
+        // Insert value
+        ensureCapacity(length + 1);
+        System.arraycopy(items, index, items, index + 1, length - index);
+        items[index] = value;
+
+        length++;
+        modificationCount++;
+
+        if (listListeners != null) {
+            listListeners.itemInserted(this, index);
+        }
+    }
+
+    @Override
+    public Double update(int index, Double item) {
+        verifyNotNull("item", item);
+
+        return updateDouble(index, item);
+    }
+
+    /**
+     * Updates the value at the given index.
+     *
+     * @param index
+     * @param value
+     *
+     * @return
+     * The value that was previously stored at the given index.
+     *
+     * @see #update(int, Double)
+     */
+    public double updateDouble(int index, double value) {
+        verifyIndexBounds(index, 0, length - 1);
+
+        double previousValue = items[index];
+
+        if (!(Double.compare(previousValue, value) == 0)) {
+            if (comparator != null) {
+                // Ensure that the new value is greater or equal to its
+                // predecessor and less than or equal to its successor
+                if ((index > 0
+                    && comparator.compare(value, items[index - 1]) < 0)
+                    || (index < length - 1
+                    && comparator.compare(value, items[index + 1]) > 0)) {
+                    throw new IllegalArgumentException("Illegal item modification.");
+                }
+            }
+
+            items[index] = value;
+
+            modificationCount++;
+        }
+
+        if (listListeners != null) {
+            listListeners.itemUpdated(this, index, previousValue);
+        }
+
+        return previousValue;
+    }
+
+    @Override
+    public int remove(Double item) {
+        int index = indexOf(item);
+
+        if (index >= 0) {
+           remove(index, 1);
+        }
+
+        return index;
+    }
+
+    @Override
+    public Sequence<Double> remove(int index, int count) {
+        verifyIndexBounds(index, count, 0, length);
+
+        DoubleArrayList removed = new DoubleArrayList(items, index, count);
+
+        // Remove values
+        if (count > 0) {
+            int end = index + count;
+            System.arraycopy(items, index + count, items, index, length - end);
+
+            length -= count;
+            modificationCount++;
+
+            if (listListeners != null) {
+                listListeners.itemsRemoved(this, index, removed);
+            }
+        }
+
+        return removed;
+    }
+
+    @Override
+    public void clear() {
+        if (length > 0) {
+            length = 0;
+            modificationCount++;
+
+            if (listListeners != null) {
+                listListeners.listCleared(this);
+            }
+        }
+    }
+
+    @Override
+    public Double get(int index) {
+        return getDouble(index);
+    }
+
+    /**
+     * Retrieves the value at the given index.
+     *
+     * @param index
+     *
+     * @see #get(int)
+     */
+    public double getDouble(int index) {
+        verifyIndexBounds(index, 0, length - 1);
+
+        return items[index];
+    }
+
+    @Override
+    public int indexOf(Double item) {
+        return (item == null) ? -1 : indexOfDouble(item);
+    }
+
+    /**
+     * Returns the index of a value in the list.
+     *
+     * @param value
+     *
+     * @return
+     * The index of the value, or <tt>-1</tt> if the value is not in the list.
+     *
+     * @see #indexOf(Double)
+     */
+    public int indexOfDouble(double value) {
+        int index = -1;
+
+        if (comparator == null) {
+            index = 0;
+            while (index < length) {
+                if (Double.compare(items[index], value) == 0) {
+                    break;
+                }
+
+                index++;
+            }
+
+            if (index == length) {
+                index = -1;
+            }
+        }
+        else {
+            // Perform a binary search to find the index
+            index = binarySearch(value, comparator);
+            if (index < 0) {
+                index = -1;
+            }
+        }
+
+        return index;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return (length == 0);
+    }
+
+    @Override
+    public int getLength() {
+        return length;
+    }
+
+    public void trimToSize() {
+        double[] items = new double[length];
+        System.arraycopy(this.items, 0, items, 0, length);
+
+        this.items = items;
+    }
+
+    public void ensureCapacity(int capacity) {
+        if (capacity > items.length) {
+            capacity = Math.max(this.items.length * 3 / 2, capacity);
+            double[] items = new double[capacity];
+            System.arraycopy(this.items, 0, items, 0, length);
+
+            this.items = items;
+        }
+    }
+
+    public int getCapacity() {
+        return items.length;
+    }
+
+    public double[] toArray() {
+        return Arrays.copyOf(items, length);
+    }
+
+    @Override
+    public Comparator<Double> getComparator() {
+        return comparator;
+    }
+
+    @Override
+    public void setComparator(Comparator<Double> comparator) {
+        Comparator<Double> previousComparator = this.comparator;
+
+        if (comparator != null) {
+            sort(this, comparator);
+        }
+
+        this.comparator = comparator;
+
+        if (listListeners != null) {
+            listListeners.comparatorChanged(this, previousComparator);
+        }
+    }
+
+    @Override
+    public ItemIterator<Double> iterator() {
+        return new DoubleArrayListItemIterator();
+    }
+
+    @Override
+    public ListenerList<ListListener<Double>> getListListeners() {
+        if (listListeners == null) {
+            listListeners = new ListListenerList<Double>();
+        }
+
+        return listListeners;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public boolean equals(Object o) {
+        boolean equals = false;
+
+        if (this == o) {
+            equals = true;
+        } else if (o instanceof DoubleArrayList) {
+            DoubleArrayList doubleArrayList = (DoubleArrayList)o;
+
+            if (length == doubleArrayList.length) {
+                equals = true;
+
+                for (int i = 0; i < length; i++) {
+                    if (!(Double.compare(items[i], doubleArrayList.items[i]) == 0)) {
+                        equals = false;
+                        break;
+                    }
+                }
+            }
+        } else if (o instanceof List) {
+            List<Object> list = (List<Object>)o;
+
+            if (length == list.getLength()) {
+                Iterator<Object> iterator = list.iterator();
+                equals = true;
+
+                for (Double item : this) {
+                    if (!(iterator.hasNext()
+                        && item.equals(iterator.next()))) {
+                        equals = false;
+                        break;
+                    }
+                }
+            }
+        }
+
+        return equals;
+    }
+
+    @Override
+    public int hashCode() {
+        int hashCode = 1;
+        for (int i = 0; i < length; i++) {
+            long bits = Double.doubleToLongBits(items[i]);
+            hashCode = 31 * hashCode + (int)(bits ^ (bits >>> 32));
+        }
+
+        return hashCode;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+
+        sb.append(getClass().getName());
+        sb.append(" [");
+
+        for (int i = 0; i < length; i++) {
+            if (i > 0) {
+                sb.append(", ");
+            }
+
+            sb.append(items[i]);
+        }
+
+        sb.append("]");
+
+        return sb.toString();
+    }
+
+    private int binarySearch(double value, Comparator<Double> comparator) {
+        int low = 0;
+        int high = length - 1;
+
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int result = comparator.compare(items[middle], value);
+
+            if (result < 0) {
+                low = middle + 1;
+            } else if (result > 0) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+
+        return -(low + 1);
+    }
+
+    /**
+     * Sorts the list in ascending numerical order.
+     *
+     * @param doubleArrayList
+     */
+    public static void sort(DoubleArrayList doubleArrayList) {
+        verifyNotNull("doubleArrayList", doubleArrayList);
+
+        Arrays.sort(doubleArrayList.items, 0, doubleArrayList.length);
+
+        doubleArrayList.modificationCount++;
+    }
+
+    public static void sort(DoubleArrayList doubleArrayList, Comparator<Double> comparator) {
+        sort(doubleArrayList, 0, doubleArrayList.getLength(), comparator);
+    }
+
+    public static void sort(DoubleArrayList doubleArrayList, int from, int to, Comparator<Double> comparator) {
+        verifyNotNull("doubleArrayList", doubleArrayList);
+        verifyNotNull("comparator", comparator);
+
+        // Sorting with a comparator requires boxed values
+        Double[] values = new Double[to - from];
+        for (int i = from; i < to; i++) {
+            values[i - from] = doubleArrayList.items[i];
+        }
+
+        Arrays.sort(values, comparator);
+
+        for (int i = from; i < to; i++) {
+            doubleArrayList.items[i] = values[i - from];
+        }
+
+        doubleArrayList.modificationCount++;
+    }
+
+    /**
+     * Searches a list that is sorted in ascending numerical order for a
+     * value.
+     *
+     * @param doubleArrayList
+     * @param value
+     *
+     * @return
+     * The index of the value, if found; otherwise, <tt>-(insertion point +
+     * 1)</tt>.
+     */
+    public static int binarySearch(DoubleArrayList doubleArrayList, double value) {
+        verifyNotNull("doubleArrayList", doubleArrayList);
+
+        return Arrays.binarySearch(doubleArrayList.items, 0, doubleArrayList.length, value);
+    }
+
+    public static int binarySearch(DoubleArrayList doubleArrayList, double value, Comparator<Double> comparator) {
+        verifyNotNull("doubleArrayList", doubleArrayList);
+        verifyNotNull("comparator", comparator);
+
+        return doubleArrayList.binarySearch(value, comparator);
+    }
+
+    private static void verifyNotNull(String argument, Object value) {
+        if (value == null) {
+            throw new IllegalArgumentException(argument + " cannot be null.");
+        }
+    }
+
+    private static void verifyNonNegative(String argument, int value) {
+        if (value < 0) {
+            throw new IllegalArgumentException(argument + " cannot be negative.");
+        }
+    }
+
+    private static void verifyIndexBounds(int index, int start, int end) {
+        if (index < start || index > end) {
+            throw new IndexOutOfBoundsException("index " + index + " out of bounds [" + start + "," + end + "].");
+        }
+    }
+
+    private static void verifyIndexBounds(int index, int count, int start, int end) {
+        if (count < 0) {
+            throw new IllegalArgumentException("count < 0, " + count);
+        }
+
+        if (index < start) {
+            throw new IndexOutOfBoundsException("index " + index + " out of bounds [" + start + "," + end + "].");
+        }
+
+        if (index + count > end) {
+            throw new IndexOutOfBoundsException("index + count " + index + "," + count + " out of bounds [" + start + "," + end + "].");
+        }
+    }
+}
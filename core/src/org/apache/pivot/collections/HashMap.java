@@ -16,34 +16,38 @@
  */
 package org.apache.pivot.collections;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.io.Serializable;
 import java.util.Comparator;
 import java.util.ConcurrentModificationException;
 import java.util.Iterator;
 import java.util.NoSuchElementException;
 
-import org.apache.pivot.util.EmptyIterator;
 import org.apache.pivot.util.ImmutableIterator;
 import org.apache.pivot.util.ListenerList;
 
 /**
  * Implementation of the {@link Map} interface that is backed by a
  * hash table.
+ * <p>
+ * Entries are stored in parallel key and value arrays using open addressing
+ * with linear probing, so no per-entry objects are allocated by
+ * {@link #put(Object, Object)} and lookups do not walk linked nodes. Removed
+ * entries leave a marker in the table that is reclaimed by subsequent puts
+ * or by the next rehash.
  */
 public class HashMap<K, V> implements Map<K, V>, Serializable {
-    private static final long serialVersionUID = -7079717428744528670L;
+    private static final long serialVersionUID = -279771911713347561L;
 
     private class KeyIterator implements Iterator<K> {
-        private int bucketIndex;
-        private Iterator<Pair<K, V>> entryIterator;
+        private int index = -1;
+        private int nextIndex;
         private int count;
 
-        private Pair<K, V> entry = null;
-
         public KeyIterator() {
-            bucketIndex = 0;
-            entryIterator = getBucketIterator(bucketIndex);
-
+            nextIndex = findNext(0);
             count = HashMap.this.count;
         }
 
@@ -53,55 +57,63 @@ public class HashMap<K, V> implements Map<K, V>, Serializable {
                 throw new ConcurrentModificationException();
             }
 
-            // Move to the next bucket
-            while (entryIterator != null
-                && !entryIterator.hasNext()) {
-                entryIterator = (++bucketIndex < buckets.getLength()) ?
-                    getBucketIterator(bucketIndex) : null;
-            }
-
-            return (entryIterator != null);
+            return (nextIndex < table.length);
         }
 
         @Override
+        @SuppressWarnings("unchecked")
         public K next() {
             if (!hasNext()) {
                 throw new NoSuchElementException();
             }
 
-            entry = entryIterator.next();
-            return entry.key;
+            index = nextIndex;
+            nextIndex = findNext(index + 1);
+
+            return (K)table[index];
         }
 
         @Override
         public void remove() {
-            if (entry == null
-                || entryIterator == null) {
+            if (index == -1) {
                 throw new IllegalStateException();
             }
 
-            entryIterator.remove();
+            @SuppressWarnings("unchecked")
+            K key = (K)table[index];
+            V value = removeAt(index);
             count--;
-            HashMap.this.count--;
+            index = -1;
 
             if (mapListeners != null) {
-                mapListeners.valueRemoved(HashMap.this, entry.key, entry.value);
+                mapListeners.valueRemoved(HashMap.this, key, value);
             }
-
-            entry = null;
         }
 
-        private Iterator<Pair<K, V>> getBucketIterator(int bucketIndex) {
-            LinkedList<Pair<K, V>> bucket = buckets.get(bucketIndex);
+        private int findNext(int index) {
+            Object[] table = HashMap.this.table;
+
+            while (index < table.length
+                && (table[index] == null
+                    || table[index] == DELETED)) {
+                index++;
+            }
 
-            return (bucket == null) ? new EmptyIterator<Pair<K,V>>() : bucket.iterator();
+            return index;
         }
     }
 
-    private ArrayList<LinkedList<Pair<K, V>>> buckets;
+    // Marker for a slot whose entry has been removed
+    private static final Object DELETED = new Object();
+
+    private transient Object[] table;
+    private transient Object[] values;
     private float loadFactor;
 
-    private int count = 0;
+    private transient int count = 0;
+    private transient int deletedCount = 0;
+    private transient int threshold;
+
     private ArrayList<K> keys = null;
 
     private transient MapListenerList<K, V> mapListeners = null;
@@ -118,9 +130,14 @@ public class HashMap<K, V> implements Map<K, V>, Serializable {
     }
 
     public HashMap(int capacity, float loadFactor) {
+        if (loadFactor <= 0
+            || Float.isNaN(loadFactor)) {
+            throw new IllegalArgumentException("loadFactor must be positive.");
+        }
+
         this.loadFactor = loadFactor;
 
-        rehash(capacity);
+        allocate(capacity);
     }
 
     public HashMap(Pair<K, V>... entries) {
@@ -153,27 +170,15 @@ public class HashMap<K, V> implements Map<K, V>, Serializable {
      * If {@code key} is {@literal null}.
      */
     @Override
+    @SuppressWarnings("unchecked")
     public V get(K key) {
         if (key == null) {
             throw new IllegalArgumentException("key cannot be null.");
         }
 
-        V value = null;
+        int index = indexOf(key);
 
-        // Locate the entry
-        LinkedList<Pair<K, V>> bucket = getBucket(key);
-
-        List.ItemIterator<Pair<K, V>> iterator = bucket.iterator();
-        while (iterator.hasNext()) {
-            Pair<K, V> entry = iterator.next();
-
-            if (entry.key.equals(key)) {
-                value = entry.value;
-                break;
-            }
-        }
-
-        return value;
+        return (index == -1) ? null : (V)values[index];
     }
 
     /**
@@ -184,59 +189,35 @@ public class HashMap<K, V> implements Map<K, V>, Serializable {
      */
     @Override
     public V put(K key, V value) {
-        return put(key, value, true);
-    }
-
-    private V put(K key, V value, boolean notifyListeners) {
         if (key == null) {
             throw new IllegalArgumentException("key cannot be null.");
         }
 
         V previousValue = null;
 
-        // Locate the entry
-        LinkedList<Pair<K, V>> bucket = getBucket(key);
-
-        int i = 0;
-        List.ItemIterator<Pair<K, V>> iterator = bucket.iterator();
-        while (iterator.hasNext()) {
-            Pair<K, V> entry = iterator.next();
-
-            if (entry.key.equals(key)) {
-                // Update the entry
-                previousValue = entry.value;
-                iterator.update(new Pair<K, V>(key, value));
-
-                if (mapListeners != null
-                    && notifyListeners) {
-                    mapListeners.valueUpdated(this, key, previousValue);
-                }
-
-                break;
-            }
-
-            i++;
-        }
-
-        if (i == bucket.getLength()) {
+        int index = indexOf(key);
+        if (index == -1) {
             // Add the entry
-            bucket.add(new Pair<K, V>(key, value));
+            insert(key, value);
 
             if (keys != null) {
                 keys.add(key);
             }
 
-            // Increment the count
-            count++;
-
-            int capacity = getCapacity();
-            if (count > (int)(capacity * loadFactor)) {
-                rehash(capacity * 2);
+            if (mapListeners != null) {
+                mapListeners.valueAdded(this, key);
             }
+        } else {
+            // Update the entry
+            @SuppressWarnings("unchecked")
+            V previous = (V)values[index];
+            previousValue = previous;
 
-            if (mapListeners != null
-                && notifyListeners) {
-                mapListeners.valueAdded(this, key);
+            table[index] = key;
+            values[index] = value;
+
+            if (mapListeners != null) {
+                mapListeners.valueUpdated(this, key, previousValue);
             }
         }
 
@@ -257,30 +238,16 @@ public class HashMap<K, V> implements Map<K, V>, Serializable {
 
         V value = null;
 
-        // Locate the entry
-        LinkedList<Pair<K, V>> bucket = getBucket(key);
+        int index = indexOf(key);
+        if (index != -1) {
+            value = removeAt(index);
 
-        List.ItemIterator<Pair<K, V>> iterator = bucket.iterator();
-        while (iterator.hasNext()) {
-            Pair<K, V> entry = iterator.next();
-
-            if (entry.key.equals(key)) {
-                // Remove the entry
-                value = entry.value;
-                iterator.remove();
-
-                if (keys != null) {
-                    keys.remove(key);
-                }
-
-                // Decrement the count
-                count--;
-
-                if (mapListeners != null) {
-                    mapListeners.valueRemoved(this, key, value);
-                }
+            if (keys != null) {
+                keys.remove(key);
+            }
 
-                break;
+            if (mapListeners != null) {
+                mapListeners.valueRemoved(this, key, value);
             }
         }
 
@@ -291,10 +258,9 @@ public class HashMap<K, V> implements Map<K, V>, Serializable {
     public void clear() {
         if (count > 0) {
             // Remove all entries
-            for (LinkedList<Pair<K, V>> bucket : buckets) {
-                if (bucket != null) {
-                    bucket.clear();
-                }
+            for (int i = 0; i < table.length; i++) {
+                table[i] = null;
+                values[i] = null;
             }
 
             if (keys != null) {
@@ -303,6 +269,7 @@ public class HashMap<K, V> implements Map<K, V>, Serializable {
 
             // Clear the count
             count = 0;
+            deletedCount = 0;
 
             if (mapListeners != null) {
                 mapListeners.mapCleared(this);
@@ -322,22 +289,7 @@ public class HashMap<K, V> implements Map<K, V>, Serializable {
             throw new IllegalArgumentException("key cannot be null.");
         }
 
-        // Locate the entry
-        LinkedList<Pair<K, V>> bucket = getBucket(key);
-
-        int i = 0;
-        List.ItemIterator<Pair<K, V>> iterator = bucket.iterator();
-        while (iterator.hasNext()) {
-            Pair<K, V> entry = iterator.next();
-
-            if (entry.key.equals(key)) {
-                break;
-            }
-
-            i++;
-        }
-
-        return (i < bucket.getLength());
+        return (indexOf(key) != -1);
     }
 
     @Override
@@ -351,45 +303,116 @@ public class HashMap<K, V> implements Map<K, V>, Serializable {
     }
 
     public int getCapacity() {
-        return buckets.getLength();
+        return table.length;
     }
 
-    private void rehash(int capacity) {
-        ArrayList<LinkedList<Pair<K, V>>> previousBuckets = this.buckets;
-        buckets = new ArrayList<LinkedList<Pair<K, V>>>(capacity);
+    private static int hash(Object key) {
+        int hashCode = key.hashCode();
 
-        for (int i = 0; i < capacity; i++) {
-            buckets.add(null);
-        }
+        // Spread the high bits into the low bits, which select the slot
+        return hashCode ^ (hashCode >>> 16);
+    }
 
-        if (previousBuckets != null) {
-            count = 0;
+    private int indexOf(Object key) {
+        Object[] table = this.table;
+        int mask = table.length - 1;
+        int index = hash(key) & mask;
 
-            if (keys != null) {
-                keys.clear();
+        Object slot;
+        while ((slot = table[index]) != null) {
+            if (slot != DELETED
+                && (slot == key || slot.equals(key))) {
+                return index;
             }
 
-            for (LinkedList<Pair<K, V>> bucket : previousBuckets) {
-                if (bucket != null) {
-                    for (Pair<K, V> entry : bucket) {
-                        put(entry.key, entry.value, false);
-                    }
-                }
-            }
+            index = (index + 1) & mask;
         }
+
+        return -1;
     }
 
-    private LinkedList<Pair<K, V>> getBucket(K key) {
-        int hashCode = key.hashCode();
-        int bucketIndex = Math.abs(hashCode % getCapacity());
+    private void insert(Object key, Object value) {
+        int mask = table.length - 1;
+        int index = hash(key) & mask;
+
+        // Reuse the first removed slot in the probe sequence, if any
+        while (table[index] != null
+            && table[index] != DELETED) {
+            index = (index + 1) & mask;
+        }
+
+        if (table[index] == DELETED) {
+            deletedCount--;
+        }
+
+        table[index] = key;
+        values[index] = value;
+
+        // Increment the count
+        count++;
+
+        if (count + deletedCount > threshold) {
+            rehash((count > threshold / 2) ? table.length * 2 : table.length);
+        }
+    }
+
+    /**
+     * Removes the entry in the given slot. Callers notify the listeners once
+     * the map, including its sorted key list, has been updated.
+     */
+    private V removeAt(int index) {
+        @SuppressWarnings("unchecked")
+        V value = (V)values[index];
+
+        int mask = table.length - 1;
+        if (table[(index + 1) & mask] == null) {
+            // The slot does not continue a probe sequence, so it can simply
+            // be cleared
+            table[index] = null;
+        } else {
+            table[index] = DELETED;
+            deletedCount++;
+        }
+
+        values[index] = null;
 
-        LinkedList<Pair<K, V>> bucket = buckets.get(bucketIndex);
-        if (bucket == null) {
-            bucket = new LinkedList<Pair<K, V>>();
-            buckets.update(bucketIndex, bucket);
+        // Decrement the count
+        count--;
+
+        return value;
+    }
+
+    private void allocate(int capacity) {
+        // Round the capacity up to a power of two
+        int n = 2;
+        while (n < capacity
+            && n < (1 << 30)) {
+            n <<= 1;
         }
 
-        return bucket;
+        table = new Object[n];
+        values = new Object[n];
+        deletedCount = 0;
+
+        // Always leave at least one empty slot to terminate probe sequences
+        threshold = Math.min((int)(n * loadFactor), n - 1);
+    }
+
+    private void rehash(int capacity) {
+        Object[] previousTable = table;
+        Object[] previousValues = values;
+
+        allocate(capacity);
+        count = 0;
+
+        for (int i = 0; i < previousTable.length; i++) {
+            Object key = previousTable[i];
+
+            if (key != null
+                && key != DELETED) {
+                insert(key, previousValues[i]);
+            }
+        }
     }
 
     @Override
@@ -499,4 +522,35 @@ public class HashMap<K, V> implements Map<K, V>, Serializable {
 
         return sb.toString();
     }
+
+    private void writeObject(ObjectOutputStream outputStream) throws IOException {
+        outputStream.defaultWriteObject();
+
+        outputStream.writeInt(table.length);
+        outputStream.writeInt(count);
+
+        for (int i = 0; i < table.length; i++) {
+            Object key = table[i];
+
+            if (key != null
+                && key != DELETED) {
+                outputStream.writeObject(key);
+                outputStream.writeObject(values[i]);
+            }
+        }
+    }
+
+    private void readObject(ObjectInputStream inputStream)
+        throws IOException, ClassNotFoundException {
+        inputStream.defaultReadObject();
+
+        allocate(inputStream.readInt());
+        int count = inputStream.readInt();
+
+        for (int i = 0; i < count; i++) {
+            Object key = inputStream.readObject();
+            Object value = inputStream.readObject();
+            insert(key, value);
+        }
+    }
 }
@@ -0,0 +1,697 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pivot.collections;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import org.apache.pivot.util.ListenerList;
+
+/**
+ * Implementation of the {@link List} interface that stores <tt>int</tt>
+ * values in a primitive array. Values can be accessed without boxing via
+ * {@link #addInt(int)}, {@link #getInt(int)} and related methods; the
+ * {@link List} methods box and unbox as needed, so the list can still be
+ * used as list data and will fire the usual {@link ListListener} events.
+ * <p>
+ * <tt>null</tt> values are not permitted.
+ * <p>
+ * NOTE This class is not thread-safe. For concurrent access, use a
+ * {@link org.apache.pivot.collections.concurrent.SynchronizedList}.
+ */
+public class IntArrayList implements List<Integer>, Serializable {
+    private static final long serialVersionUID = 8232386427264271841L;
+
+    private class IntArrayListItemIterator implements ItemIterator<Integer> {
+        private int index = 0;
+        private int modificationCount;
+        private boolean forward = true;
+
+        public IntArrayListItemIterator() {
+            modificationCount = IntArrayList.this.modificationCount;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (modificationCount != IntArrayList.this.modificationCount) {
+                throw new ConcurrentModificationException();
+            }
+
+            return (index < length);
+        }
+
+        @Override
+        public Integer next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+
+            forward = true;
+            return get(index++);
+        }
+
+        @Override
+        public boolean hasPrevious() {
+            if (modificationCount != IntArrayList.this.modificationCount) {
+                throw new ConcurrentModificationException();
+            }
+
+            return (index > 0);
+        }
+
+        @Override
+        public Integer previous() {
+            if (!hasPrevious()) {
+                throw new NoSuchElementException();
+            }
+
+            forward = false;
+            return get(--index);
+        }
+
+        @Override
+        public void toStart() {
+            index = 0;
+        }
+
+        @Override
+        public void toEnd() {
+            index = length;
+        }
+
+        @Override
+        public void insert(Integer item) {
+            indexBoundsCheck();
+
+            IntArrayList.this.insert(item, index);
+            modificationCount++;
+        }
+
+        @Override
+        public void update(Integer item) {
+            indexBoundsCheck();
+
+            IntArrayList.this.update(forward ? index - 1 : index, item);
+            modificationCount++;
+        }
+
+        @Override
+        public void remove() {
+            indexBoundsCheck();
+
+            if (forward) {
+                index--;
+            }
+
+            IntArrayList.this.remove(index, 1);
+            modificationCount++;
+        }
+
+        private void indexBoundsCheck() {
+            if (index < 0 || index > IntArrayList.this.length) {
+                throw new IllegalStateException("index  " + index + " out of bounds");
+            }
+        }
+    }
+
+    private int[] items;
+    private int length = 0;
+
+    private Comparator<Integer> comparator = null;
+
+    private transient int modificationCount = 0;
+    private transient ListListenerList<Integer> listListeners = null;
+
+    public static final int DEFAULT_CAPACITY = 10;
+
+    public IntArrayList() {
+        items = new int[DEFAULT_CAPACITY];
+    }
+
+    public IntArrayList(Comparator<Integer> comparator) {
+        this();
+        this.comparator = comparator;
+    }
+
+    public IntArrayList(int capacity) {
+        verifyNonNegative("capacity", capacity);
+
+        items = new int[capacity];
+    }
+
+    public IntArrayList(int[] items) {
+        this(items, 0, items.length);
+    }
+
+    public IntArrayList(int[] items, int index, int count) {
+        verifyNotNull("items", items);
+        verifyIndexBounds(index, count, 0, items.length);
+
+        this.items = new int[count];
+        System.arraycopy(items, index, this.items, 0, count);
+
+        length = count;
+    }
+
+    public IntArrayList(Sequence<Integer> items) {
+        this(items, 0, items.getLength());
+    }
+
+    public IntArrayList(Sequence<Integer> items, int index, int count) {
+        verifyNotNull("items", items);
+        verifyIndexBounds(index, count, 0, items.getLength());
+
+        this.items = new int[count];
+
+        for (int i = 0; i < count; i++) {
+            Integer item = items.get(index + i);
+            verifyNotNull("item", item);
+
+            this.items[i] = item;
+        }
+
+        length = count;
+    }
+
+    public IntArrayList(IntArrayList intArrayList) {
+        this(intArrayList, 0, intArrayList.length);
+    }
+
+    public IntArrayList(IntArrayList intArrayList, int index, int count) {
+        verifyNotNull("intArrayList", intArrayList);
+        verifyIndexBounds(index, count, 0, intArrayList.length);
+
+        items = new int[count];
+        length = count;
+
+        System.arraycopy(intArrayList.items, index, items, 0, count);
+
+        comparator = intArrayList.comparator;
+    }
+
+    @Override
+    public int add(Integer item) {
+        verifyNotNull("item", item);
+
+        return addInt(item);
+    }
+
+    /**
+     * Adds a value to the list.
+     *
+     * @param value
+     *
+     * @return
+     * The index at which the value was added.
+     *
+     * @see #add(Integer)
+     */
+    public int addInt(int value) {
+        int index = -1;
+
+        if (comparator == null) {
+            index = length;
+            insert(value, index, false);
+        }
+        else {
+            // Perform a binary search to find the insertion point
+            index = binarySearch(value, comparator);
+            if (index < 0) {
+                index = -(index + 1);
+            }
+
+            insert(value, index, false);
+        }
+
+        return index;
+    }
+
+    @Override
+    public void insert(Integer item, int index) {
+        verifyNotNull("item", item);
+
+        insert(item, index, true);
+    }
+
+    /**
+     * Inserts a value into the list at a given index.
+     *
+     * @param value
+     * @param index
+     *
+     * @see #insert(Integer, int)
+     */
+    public void insertInt(int value, int index) {
+        insert(value, index, true);
+    }
+
+    private void insert(int value, int index, boolean validate) {
+        verifyIndexBounds(index, 0, length);
+
+        if (comparator != null
+            && validate) {
+            int i = binarySearch(value, comparator);
+            if (i < 0) {
+                i = -(i + 1);
+            }
+
+            if (index != i) {
+                throw new IllegalArgumentException("Illegal insertion point.");
+            }
+        }
+
+        // Insert value
+        ensureCapacity(length + 1);
+        System.arraycopy(items, index, items, index + 1, length - index);
+        items[index] = value;
+
+        length++;
+        modificationCount++;
+
+        if (listListeners != null) {
+            listListeners.itemInserted(this, index);
+        }
+    }
+
+    @Override
+    public Integer update(int index, Integer item) {
+        verifyNotNull("item", item);
+
+        return updateInt(index, item);
+    }
+
+    /**
+     * Updates the value at the given index.
+     *
+     * @param index
+     * @param value
+     *
+     * @return
+     * The value that was previously stored at the given index.
+     *
+     * @see #update(int, Integer)
+     */
+    public int updateInt(int index, int value) {
+        verifyIndexBounds(index, 0, length - 1);
+
+        int previousValue = items[index];
+
+        if (!(previousValue == value)) {
+            if (comparator != null) {
+                // Ensure that the new value is greater or equal to its
+                // predecessor and less than or equal to its successor
+                if ((index > 0
+                    && comparator.compare(value, items[index - 1]) < 0)
+                    || (index < length - 1
+                    && comparator.compare(value, items[index + 1]) > 0)) {
+                    throw new IllegalArgumentException("Illegal item modification.");
+                }
+            }
+
+            items[index] = value;
+
+            modificationCount++;
+        }
+
+        if (listListeners != null) {
+            listListeners.itemUpdated(this, index, previousValue);
+        }
+
+        return previousValue;
+    }
+
+    @Override
+    public int remove(Integer item) {
+        int index = indexOf(item);
+
+        if (index >= 0) {
+           remove(index, 1);
+        }
+
+        return index;
+    }
+
+    @Override
+    public Sequence<Integer> remove(int index, int count) {
+        verifyIndexBounds(index, count, 0, length);
+
+        IntArrayList removed = new IntArrayList(items, index, count);
+
+        // Remove values
+        if (count > 0) {
+            int end = index + count;
+            System.arraycopy(items, index + count, items, index, length - end);
+
+            length -= count;
+            modificationCount++;
+
+            if (listListeners != null) {
+                listListeners.itemsRemoved(this, index, removed);
+            }
+        }
+
+        return removed;
+    }
+
+    @Override
+    public void clear() {
+        if (length > 0) {
+            length = 0;
+            modificationCount++;
+
+            if (listListeners != null) {
+                listListeners.listCleared(this);
+            }
+        }
+    }
+
+    @Override
+    public Integer get(int index) {
+        return getInt(index);
+    }
+
+    /**
+     * Retrieves the value at the given index.
+     *
+     * @param index
+     *
+     * @see #get(int)
+     */
+    public int getInt(int index) {
+        verifyIndexBounds(index, 0, length - 1);
+
+        return items[index];
+    }
+
+    @Override
+    public int indexOf(Integer item) {
+        return (item == null) ? -1 : indexOfInt(item);
+    }
+
+    /**
+     * Returns the index of a value in the list.
+     *
+     * @param value
+     *
+     * @return
+     * The index of the value, or <tt>-1</tt> if the value is not in the list.
+     *
+     * @see #indexOf(Integer)
+     */
+    public int indexOfInt(int value) {
+        int index = -1;
+
+        if (comparator == null) {
+            index = 0;
+            while (index < length) {
+                if (items[index] == value) {
+                    break;
+                }
+
+                index++;
+            }
+
+            if (index == length) {
+                index = -1;
+            }
+        }
+        else {
+            // Perform a binary search to find the index
+            index = binarySearch(value, comparator);
+            if (index < 0) {
+                index = -1;
+            }
+        }
+
+        return index;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return (length == 0);
+    }
+
+    @Override
+    public int getLength() {
+        return length;
+    }
+
+    public void trimToSize() {
+        int[] items = new int[length];
+        System.arraycopy(this.items, 0, items, 0, length);
+
+        this.items = items;
+    }
+
+    public void ensureCapacity(int capacity) {
+        if (capacity > items.length) {
+            capacity = Math.max(this.items.length * 3 / 2, capacity);
+            int[] items = new int[capacity];
+            System.arraycopy(this.items, 0, items, 0, length);
+
+            this.items = items;
+        }
+    }
+
+    public int getCapacity() {
+        return items.length;
+    }
+
+    public int[] toArray() {
+        return Arrays.copyOf(items, length);
+    }
+
+    @Override
+    public Comparator<Integer> getComparator() {
+        return comparator;
+    }
+
+    @Override
+    public void setComparator(Comparator<Integer> comparator) {
+        Comparator<Integer> previousComparator = this.comparator;
+
+        if (comparator != null) {
+            sort(this, comparator);
+        }
+
+        this.comparator = comparator;
+
+        if (listListeners != null) {
+            listListeners.comparatorChanged(this, previousComparator);
+        }
+    }
+
+    @Override
+    public ItemIterator<Integer> iterator() {
+        return new IntArrayListItemIterator();
+    }
+
+    @Override
+    public ListenerList<ListListener<Integer>> getListListeners() {
+        if (listListeners == null) {
+            listListeners = new ListListenerList<Integer>();
+        }
+
+        return listListeners;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public boolean equals(Object o) {
+        boolean equals = false;
+
+        if (this == o) {
+            equals = true;
+        } else if (o instanceof IntArrayList) {
+            IntArrayList intArrayList = (IntArrayList)o;
+
+            if (length == intArrayList.length) {
+                equals = true;
+
+                for (int i = 0; i < length; i++) {
+                    if (!(items[i] == intArrayList.items[i])) {
+                        equals = false;
+                        break;
+                    }
+                }
+            }
+        } else if (o instanceof List) {
+            List<Object> list = (List<Object>)o;
+
+            if (length == list.getLength()) {
+                Iterator<Object> iterator = list.iterator();
+                equals = true;
+
+                for (Integer item : this) {
+                    if (!(iterator.hasNext()
+                        && item.equals(iterator.next()))) {
+                        equals = false;
+                        break;
+                    }
+                }
+            }
+        }
+
+        return equals;
+    }
+
+    @Override
+    public int hashCode() {
+        int hashCode = 1;
+        for (int i = 0; i < length; i++) {
+            hashCode = 31 * hashCode + items[i];
+        }
+
+        return hashCode;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+
+        sb.append(getClass().getName());
+        sb.append(" [");
+
+        for (int i = 0; i < length; i++) {
+            if (i > 0) {
+                sb.append(", ");
+            }
+
+            sb.append(items[i]);
+        }
+
+        sb.append("]");
+
+        return sb.toString();
+    }
+
+    private int binarySearch(int value, Comparator<Integer> comparator) {
+        int low = 0;
+        int high = length - 1;
+
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int result = comparator.compare(items[middle], value);
+
+            if (result < 0) {
+                low = middle + 1;
+            } else if (result > 0) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+
+        return -(low + 1);
+    }
+
+    /**
+     * Sorts the list in ascending numerical order.
+     *
+     * @param intArrayList
+     */
+    public static void sort(IntArrayList intArrayList) {
+        verifyNotNull("intArrayList", intArrayList);
+
+        Arrays.sort(intArrayList.items, 0, intArrayList.length);
+
+        intArrayList.modificationCount++;
+    }
+
+    public static void sort(IntArrayList intArrayList, Comparator<Integer> comparator) {
+        sort(intArrayList, 0, intArrayList.getLength(), comparator);
+    }
+
+    public static void sort(IntArrayList intArrayList, int from, int to, Comparator<Integer> comparator) {
+        verifyNotNull("intArrayList", intArrayList);
+        verifyNotNull("comparator", comparator);
+
+        // Sorting with a comparator requires boxed values
+        Integer[] values = new Integer[to - from];
+        for (int i = from; i < to; i++) {
+            values[i - from] = intArrayList.items[i];
+        }
+
+        Arrays.sort(values, comparator);
+
+        for (int i = from; i < to; i++) {
+            intArrayList.items[i] = values[i - from];
+        }
+
+        intArrayList.modificationCount++;
+    }
+
+    /**
+     * Searches a list that is sorted in ascending numerical order for a
+     * value.
+     *
+     * @param intArrayList
+     * @param value
+     *
+     * @return
+     * The index of the value, if found; otherwise, <tt>-(insertion point +
+     * 1)</tt>.
+     */
+    public static int binarySearch(IntArrayList intArrayList, int value) {
+        verifyNotNull("intArrayList", intArrayList);
+
+        return Arrays.binarySearch(intArrayList.items, 0, intArrayList.length, value);
+    }
+
+    public static int binarySearch(IntArrayList intArrayList, int value, Comparator<Integer> comparator) {
+        verifyNotNull("intArrayList", intArrayList);
+        verifyNotNull("comparator", comparator);
+
+        return intArrayList.binarySearch(value, comparator);
+    }
+
+    private static void verifyNotNull(String argument, Object value) {
+        if (value == null) {
+            throw new IllegalArgumentException(argument + " cannot be null.");
+        }
+    }
+
+    private static void verifyNonNegative(String argument, int value) {
+        if (value < 0) {
+            throw new IllegalArgumentException(argument + " cannot be negative.");
+        }
+    }
+
+    private static void verifyIndexBounds(int index, int start, int end) {
+        if (index < start || index > end) {
+            throw new IndexOutOfBoundsException("index " + index + " out of bounds [" + start + "," + end + "].");
+        }
+    }
+
+    private static void verifyIndexBounds(int index, int count, int start, int end) {
+        if (count < 0) {
+            throw new IllegalArgumentException("count < 0, " + count);
+        }
+
+        if (index < start) {
+            throw new IndexOutOfBoundsException("index " + index + " out of bounds [" + start + "," + end + "].");
+        }
+
+        if (index + count > end) {
+            throw new IndexOutOfBoundsException("index + count " + index + "," + count + " out of bounds [" + start + "," + end + "].");
+        }
+    }
+}
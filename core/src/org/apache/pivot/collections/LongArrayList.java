@@ -0,0 +1,697 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pivot.collections;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import org.apache.pivot.util.ListenerList;
+
+/**
+ * Implementation of the {@link List} interface that stores <tt>long</tt>
+ * values in a primitive array. Values can be accessed without boxing via
+ * {@link #addLong(long)}, {@link #getLong(int)} and related methods; the
+ * {@link List} methods box and unbox as needed, so the list can still be
+ * used as list data and will fire the usual {@link ListListener} events.
+ * <p>
+ * <tt>null</tt> values are not permitted.
+ * <p>
+ * NOTE This class is not thread-safe. For concurrent access, use a
+ * {@link org.apache.pivot.collections.concurrent.SynchronizedList}.
+ */
+public class LongArrayList implements List<Long>, Serializable {
+    private static final long serialVersionUID = -4150231794213416735L;
+
+    private class LongArrayListItemIterator implements ItemIterator<Long> {
+        private int index = 0;
+        private int modificationCount;
+        private boolean forward = true;
+
+        public LongArrayListItemIterator() {
+            modificationCount = LongArrayList.this.modificationCount;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (modificationCount != LongArrayList.this.modificationCount) {
+                throw new ConcurrentModificationException();
+            }
+
+            return (index < length);
+        }
+
+        @Override
+        public Long next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+
+            forward = true;
+            return get(index++);
+        }
+
+        @Override
+        public boolean hasPrevious() {
+            if (modificationCount != LongArrayList.this.modificationCount) {
+                throw new ConcurrentModificationException();
+            }
+
+            return (index > 0);
+        }
+
+        @Override
+        public Long previous() {
+            if (!hasPrevious()) {
+                throw new NoSuchElementException();
+            }
+
+            forward = false;
+            return get(--index);
+        }
+
+        @Override
+        public void toStart() {
+            index = 0;
+        }
+
+        @Override
+        public void toEnd() {
+            index = length;
+        }
+
+        @Override
+        public void insert(Long item) {
+            indexBoundsCheck();
+
+            LongArrayList.this.insert(item, index);
+            modificationCount++;
+        }
+
+        @Override
+        public void update(Long item) {
+            indexBoundsCheck();
+
+            LongArrayList.this.update(forward ? index - 1 : index, item);
+            modificationCount++;
+        }
+
+        @Override
+        public void remove() {
+            indexBoundsCheck();
+
+            if (forward) {
+                index--;
+            }
+
+            LongArrayList.this.remove(index, 1);
+            modificationCount++;
+        }
+
+        private void indexBoundsCheck() {
+            if (index < 0 || index > LongArrayList.this.length) {
+                throw new IllegalStateException("index  " + index + " out of bounds");
+            }
+        }
+    }
+
+    private long[] items;
+    private int length = 0;
+
+    private Comparator<Long> comparator = null;
+
+    private transient int modificationCount = 0;
+    private transient ListListenerList<Long> listListeners = null;
+
+    public static final int DEFAULT_CAPACITY = 10;
+
+    public LongArrayList() {
+        items = new long[DEFAULT_CAPACITY];
+    }
+
+    public LongArrayList(Comparator<Long> comparator) {
+        this();
+        this.comparator = comparator;
+    }
+
+    public LongArrayList(int capacity) {
+        verifyNonNegative("capacity", capacity);
+
+        items = new long[capacity];
+    }
+
+    public LongArrayList(long[] items) {
+        this(items, 0, items.length);
+    }
+
+    public LongArrayList(long[] items, int index, int count) {
+        verifyNotNull("items", items);
+        verifyIndexBounds(index, count, 0, items.length);
+
+        this.items = new long[count];
+        System.arraycopy(items, index, this.items, 0, count);
+
+        length = count;
+    }
+
+    public LongArrayList(Sequence<Long> items) {
+        this(items, 0, items.getLength());
+    }
+
+    public LongArrayList(Sequence<Long> items, int index, int count) {
+        verifyNotNull("items", items);
+        verifyIndexBounds(index, count, 0, items.getLength());
+
+        this.items = new long[count];
+
+        for (int i = 0; i < count; i++) {
+            Long item = items.get(index + i);
+            verifyNotNull("item", item);
+
+            this.items[i] = item;
+        }
+
+        length = count;
+    }
+
+    public LongArrayList(LongArrayList longArrayList) {
+        this(longArrayList, 0, longArrayList.length);
+    }
+
+    public LongArrayList(LongArrayList longArrayList, int index, int count) {
+        verifyNotNull("longArrayList", longArrayList);
+        verifyIndexBounds(index, count, 0, longArrayList.length);
+
+        items = new long[count];
+        length = count;
+
+        System.arraycopy(longArrayList.items, index, items, 0, count);
+
+        comparator = longArrayList.comparator;
+    }
+
+    @Override
+    public int add(Long item) {
+        verifyNotNull("item", item);
+
+        return addLong(item);
+    }
+
+    /**
+     * Adds a value to the list.
+     *
+     * @param value
+     *
+     * @return
+     * The index at which the value was added.
+     *
+     * @see #add(Long)
+     */
+    public int addLong(long value) {
+        int index = -1;
+
+        if (comparator == null) {
+            index = length;
+            insert(value, index, false);
+        }
+        else {
+            // Perform a binary search to find the insertion point
+            index = binarySearch(value, comparator);
+            if (index < 0) {
+                index = -(index + 1);
+            }
+
+            insert(value, index, false);
+        }
+
+        return index;
+    }
+
+    @Override
+    public void insert(Long item, int index) {
+        verifyNotNull("item", item);
+
+        insert(item, index, true);
+    }
+
+    /**
+     * Inserts a value into the list at a given index.
+     *
+     * @param value
+     * @param index
+     *
+     * @see #insert(Long, int)
+     */
+    public void insertLong(long value, int index) {
+        insert(value, index, true);
+    }
+
+    private void insert(long value, int index, boolean validate) {
+        verifyIndexBounds(index, 0, length);
+
+        if (comparator != null
+            && validate) {
+            int i = binarySearch(value, comparator);
+            if (i < 0) {
+                i = -(i + 1);
+            }
+
+            if (index != i) {
+                throw new IllegalArgumentException("Illegal insertion point.");
+            }
+        }
+
+        // Insert value
+        ensureCapacity(length + 1);
+        System.arraycopy(items, index, items, index + 1, length - index);
+        items[index] = value;
+
+        length++;
+        modificationCount++;
+
+        if (listListeners != null) {
+            listListeners.itemInserted(this, index);
+        }
+    }
+
+    @Override
+    public Long update(int index, Long item) {
+        verifyNotNull("item", item);
+
+        return updateLong(index, item);
+    }
+
+    /**
+     * Updates the value at the given index.
+     *
+     * @param index
+     * @param value
+     *
+     * @return
+     * The value that was previously stored at the given index.
+     *
+     * @see #update(int, Long)
+     */
+    public long updateLong(int index, long value) {
+        verifyIndexBounds(index, 0, length - 1);
+
+        long previousValue = items[index];
+
+        if (!(previousValue == value)) {
+            if (comparator != null) {
+                // Ensure that the new value is greater or equal to its
+                // predecessor and less than or equal to its successor
+                if ((index > 0
+                    && comparator.compare(value, items[index - 1]) < 0)
+                    || (index < length - 1
+                    && comparator.compare(value, items[index + 1]) > 0)) {
+                    throw new IllegalArgumentException("Illegal item modification.");
+                }
+            }
+
+            items[index] = value;
+
+            modificationCount++;
+        }
+
+        if (listListeners != null) {
+            listListeners.itemUpdated(this, index, previousValue);
+        }
+
+        return previousValue;
+    }
+
+    @Override
+    public int remove(Long item) {
+        int index = indexOf(item);
+
+        if (index >= 0) {
+           remove(index, 1);
+        }
+
+        return index;
+    }
+
+    @Override
+    public Sequence<Long> remove(int index, int count) {
+        verifyIndexBounds(index, count, 0, length);
+
+        LongArrayList removed = new LongArrayList(items, index, count);
+
+        // Remove values
+        if (count > 0) {
+            int end = index + count;
+            System.arraycopy(items, index + count, items, index, length - end);
+
+            length -= count;
+            modificationCount++;
+
+            if (listListeners != null) {
+                listListeners.itemsRemoved(this, index, removed);
+            }
+        }
+
+        return removed;
+    }
+
+    @Override
+    public void clear() {
+        if (length > 0) {
+            length = 0;
+            modificationCount++;
+
+            if (listListeners != null) {
+                listListeners.listCleared(this);
+            }
+        }
+    }
+
+    @Override
+    public Long get(int index) {
+        return getLong(index);
+    }
+
+    /**
+     * Retrieves the value at the given index.
+     *
+     * @param index
+     *
+     * @see #get(int)
+     */
+    public long getLong(int index) {
+        verifyIndexBounds(index, 0, length - 1);
+
+        return items[index];
+    }
+
+    @Override
+    public int indexOf(Long item) {
+        return (item == null) ? -1 : indexOfLong(item);
+    }
+
+    /**
+     * Returns the index of a value in the list.
+     *
+     * @param value
+     *
+     * @return
+     * The index of the value, or <tt>-1</tt> if the value is not in the list.
+     *
+     * @see #indexOf(Long)
+     */
+    public int indexOfLong(long value) {
+        int index = -1;
+
+        if (comparator == null) {
+            index = 0;
+            while (index < length) {
+                if (items[index] == value) {
+                    break;
+                }
+
+                index++;
+            }
+
+            if (index == length) {
+                index = -1;
+            }
+        }
+        else {
+            // Perform a binary search to find the index
+            index = binarySearch(value, comparator);
+            if (index < 0) {
+                index = -1;
+            }
+        }
+
+        return index;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return (length == 0);
+    }
+
+    @Override
+    public int getLength() {
+        return length;
+    }
+
+    public void trimToSize() {
+        long[] items = new long[length];
+        System.arraycopy(this.items, 0, items, 0, length);
+
+        this.items = items;
+    }
+
+    public void ensureCapacity(int capacity) {
+        if (capacity > items.length) {
+            capacity = Math.max(this.items.length * 3 / 2, capacity);
+            long[] items = new long[capacity];
+            System.arraycopy(this.items, 0, items, 0, length);
+
+            this.items = items;
+        }
+    }
+
+    public int getCapacity() {
+        return items.length;
+    }
+
+    public long[] toArray() {
+        return Arrays.copyOf(items, length);
+    }
+
+    @Override
+    public Comparator<Long> getComparator() {
+        return comparator;
+    }
+
+    @Override
+    public void setComparator(Comparator<Long> comparator) {
+        Comparator<Long> previousComparator = this.comparator;
+
+        if (comparator != null) {
+            sort(this, comparator);
+        }
+
+        this.comparator = comparator;
+
+        if (listListeners != null) {
+            listListeners.comparatorChanged(this, previousComparator);
+        }
+    }
+
+    @Override
+    public ItemIterator<Long> iterator() {
+        return new LongArrayListItemIterator();
+    }
+
+    @Override
+    public ListenerList<ListListener<Long>> getListListeners() {
+        if (listListeners == null) {
+            listListeners = new ListListenerList<Long>();
+        }
+
+        return listListeners;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public boolean equals(Object o) {
+        boolean equals = false;
+
+        if (this == o) {
+            equals = true;
+        } else if (o instanceof LongArrayList) {
+            LongArrayList longArrayList = (LongArrayList)o;
+
+            if (length == longArrayList.length) {
+                equals = true;
+
+                for (int i = 0; i < length; i++) {
+                    if (!(items[i] == longArrayList.items[i])) {
+                        equals = false;
+                        break;
+                    }
+                }
+            }
+        } else if (o instanceof List) {
+            List<Object> list = (List<Object>)o;
+
+            if (length == list.getLength()) {
+                Iterator<Object> iterator = list.iterator();
+                equals = true;
+
+                for (Long item : this) {
+                    if (!(iterator.hasNext()
+                        && item.equals(iterator.next()))) {
+                        equals = false;
+                        break;
+                    }
+                }
+            }
+        }
+
+        return equals;
+    }
+
+    @Override
+    public int hashCode() {
+        int hashCode = 1;
+        for (int i = 0; i < length; i++) {
+            hashCode = 31 * hashCode + (int)(items[i] ^ (items[i] >>> 32));
+        }
+
+        return hashCode;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+
+        sb.append(getClass().getName());
+        sb.append(" [");
+
+        for (int i = 0; i < length; i++) {
+            if (i > 0) {
+                sb.append(", ");
+            }
+
+            sb.append(items[i]);
+        }
+
+        sb.append("]");
+
+        return sb.toString();
+    }
+
+    private int binarySearch(long value, Comparator<Long> comparator) {
+        int low = 0;
+        int high = length - 1;
+
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int result = comparator.compare(items[middle], value);
+
+            if (result < 0) {
+                low = middle + 1;
+            } else if (result > 0) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+
+        return -(low + 1);
+    }
+
+    /**
+     * Sorts the list in ascending numerical order.
+     *
+     * @param longArrayList
+     */
+    public static void sort(LongArrayList longArrayList) {
+        verifyNotNull("longArrayList", longArrayList);
+
+        Arrays.sort(longArrayList.items, 0, longArrayList.length);
+
+        longArrayList.modificationCount++;
+    }
+
+    public static void sort(LongArrayList longArrayList, Comparator<Long> comparator) {
+        sort(longArrayList, 0, longArrayList.getLength(), comparator);
+    }
+
+    public static void sort(LongArrayList longArrayList, int from, int to, Comparator<Long> comparator) {
+        verifyNotNull("longArrayList", longArrayList);
+        verifyNotNull("comparator", comparator);
+
+        // Sorting with a comparator requires boxed values
+        Long[] values = new Long[to - from];
+        for (int i = from; i < to; i++) {
+            values[i - from] = longArrayList.items[i];
+        }
+
+        Arrays.sort(values, comparator);
+
+        for (int i = from; i < to; i++) {
+            longArrayList.items[i] = values[i - from];
+        }
+
+        longArrayList.modificationCount++;
+    }
+
+    /**
+     * Searches a list that is sorted in ascending numerical order for a
+     * value.
+     *
+     * @param longArrayList
+     * @param value
+     *
+     * @return
+     * The index of the value, if found; otherwise, <tt>-(insertion point +
+     * 1)</tt>.
+     */
+    public static int binarySearch(LongArrayList longArrayList, long value) {
+        verifyNotNull("longArrayList", longArrayList);
+
+        return Arrays.binarySearch(longArrayList.items, 0, longArrayList.length, value);
+    }
+
+    public static int binarySearch(LongArrayList longArrayList, long value, Comparator<Long> comparator) {
+        verifyNotNull("longArrayList", longArrayList);
+        verifyNotNull("comparator", comparator);
+
+        return longArrayList.binarySearch(value, comparator);
+    }
+
+    private static void verifyNotNull(String argument, Object value) {
+        if (value == null) {
+            throw new IllegalArgumentException(argument + " cannot be null.");
+        }
+    }
+
+    private static void verifyNonNegative(String argument, int value) {
+        if (value < 0) {
+            throw new IllegalArgumentException(argument + " cannot be negative.");
+        }
+    }
+
+    private static void verifyIndexBounds(int index, int start, int end) {
+        if (index < start || index > end) {
+            throw new IndexOutOfBoundsException("index " + index + " out of bounds [" + start + "," + end + "].");
+        }
+    }
+
+    private static void verifyIndexBounds(int index, int count, int start, int end) {
+        if (count < 0) {
+            throw new IllegalArgumentException("count < 0, " + count);
+        }
+
+        if (index < start) {
+            throw new IndexOutOfBoundsException("index " + index + " out of bounds [" + start + "," + end + "].");
+        }
+
+        if (index + count > end) {
+            throw new IndexOutOfBoundsException("index + count " + index + "," + count + " out of bounds [" + start + "," + end + "].");
+        }
+    }
+}
@@ -0,0 +1,332 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pivot.collections.concurrent;
+
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+import org.apache.pivot.collections.ArrayList;
+import org.apache.pivot.collections.Queue;
+import org.apache.pivot.collections.QueueListener;
+import org.apache.pivot.util.ImmutableIterator;
+import org.apache.pivot.util.ListenerList;
+
+/**
+ * Bounded, lock-free implementation of the {@link Queue} interface for a
+ * single consumer and any number of producers, such as background tasks
+ * feeding results to the UI thread.
+ * <p>
+ * Items are stored in a fixed-size ring buffer. Producers claim a slot with a
+ * single compare-and-set and never block each other; {@link #offer(Object)}
+ * fails and {@link #enqueue(Object)} waits when the queue is full. Only one
+ * thread at a time may call the consumer methods ({@link #dequeue()},
+ * {@link #poll()}, {@link #peek()}, {@link #clear()} and
+ * {@link #iterator()}).
+ * <p>
+ * Queue events are fired on the thread that made the change. <tt>null</tt>
+ * items are not permitted, and a comparator cannot be set.
+ */
+public class ConcurrentArrayQueue<T> implements Queue<T> {
+    private Object[] items;
+    private int mask;
+
+    // The sequence number expected in each slot; a slot is free for the
+    // producer holding ticket t when its sequence is t, and holds an item for
+    // the consumer at head h when its sequence is h + 1
+    private AtomicLongArray sequences;
+
+    // Next ticket to be claimed by a producer
+    private AtomicLong tail = new AtomicLong();
+
+    // Next ticket to be consumed; only written by the consumer
+    private volatile long head = 0;
+
+    // The consumer, while it is waiting for an item
+    private volatile Thread waitingConsumer = null;
+
+    private QueueListenerList<T> queueListeners = new QueueListenerList<T>();
+
+    public static final int DEFAULT_CAPACITY = 1024;
+
+    // Number of times a waiting thread spins before it parks
+    private static final int SPIN_COUNT = 64;
+
+    // Time that a producer waits before retrying a full queue
+    private static final long FULL_WAIT_NANOS = 50000;
+
+    public ConcurrentArrayQueue() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates a new queue.
+     *
+     * @param capacity
+     * The minimum capacity of the queue; this will be rounded up to the next
+     * power of two.
+     */
+    public ConcurrentArrayQueue(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive.");
+        }
+
+        if (capacity > (1 << 30)) {
+            throw new IllegalArgumentException("capacity is too large.");
+        }
+
+        int n = 1;
+        while (n < capacity) {
+            n <<= 1;
+        }
+
+        items = new Object[n];
+        mask = n - 1;
+
+        sequences = new AtomicLongArray(n);
+        for (int i = 0; i < n; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    /**
+     * Adds an item to the queue, waiting for space to become available if
+     * the queue is full.
+     */
+    @Override
+    public void enqueue(T item) {
+        int spins = 0;
+
+        while (!offer(item)) {
+            if (spins < SPIN_COUNT) {
+                Thread.yield();
+                spins++;
+            } else {
+                LockSupport.parkNanos(this, FULL_WAIT_NANOS);
+            }
+        }
+    }
+
+    /**
+     * Adds an item to the queue if space is available.
+     *
+     * @param item
+     *
+     * @return
+     * <tt>true</tt> if the item was added; <tt>false</tt> if the queue is
+     * full.
+     */
+    public boolean offer(T item) {
+        if (item == null) {
+            throw new IllegalArgumentException("item is null.");
+        }
+
+        long ticket;
+        int index;
+
+        while (true) {
+            ticket = tail.get();
+            index = (int)ticket & mask;
+
+            long difference = sequences.get(index) - ticket;
+
+            if (difference == 0) {
+                if (tail.compareAndSet(ticket, ticket + 1)) {
+                    break;
+                }
+            } else if (difference < 0) {
+                // The consumer has not yet freed this slot
+                return false;
+            }
+        }
+
+        items[index] = item;
+
+        // Publish the item; this must be a volatile write so that the check
+        // for a waiting consumer below cannot be reordered ahead of it
+        sequences.set(index, ticket + 1);
+
+        Thread waitingConsumer = this.waitingConsumer;
+        if (waitingConsumer != null) {
+            LockSupport.unpark(waitingConsumer);
+        }
+
+        queueListeners.itemEnqueued(this, item);
+
+        return true;
+    }
+
+    /**
+     * Removes the item at the head of the queue, waiting for an item to
+     * become available if the queue is empty.
+     *
+     * @return
+     * The item, or <tt>null</tt> if the calling thread was interrupted while
+     * waiting.
+     */
+    @Override
+    public T dequeue() {
+        T item = poll();
+        int spins = 0;
+
+        while (item == null
+            && !Thread.currentThread().isInterrupted()) {
+            if (spins < SPIN_COUNT) {
+                Thread.yield();
+                spins++;
+            } else {
+                waitingConsumer = Thread.currentThread();
+
+                // Check again, in case an item was published before the
+                // producer could see that we are waiting
+                if (isEmpty()) {
+                    LockSupport.park(this);
+                }
+
+                waitingConsumer = null;
+            }
+
+            item = poll();
+        }
+
+        return item;
+    }
+
+    /**
+     * Removes the item at the head of the queue, if any.
+     *
+     * @return
+     * The item, or <tt>null</tt> if the queue is empty.
+     */
+    @SuppressWarnings("unchecked")
+    public T poll() {
+        long head = this.head;
+        int index = (int)head & mask;
+
+        T item = null;
+
+        if (sequences.get(index) == head + 1) {
+            item = (T)items[index];
+            items[index] = null;
+
+            // Free the slot for the producer that will wrap around to it
+            sequences.lazySet(index, head + items.length);
+            this.head = head + 1;
+
+            queueListeners.itemDequeued(this, item);
+        }
+
+        return item;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public T peek() {
+        long head = this.head;
+        int index = (int)head & mask;
+
+        T item = null;
+
+        if (sequences.get(index) == head + 1) {
+            item = (T)items[index];
+        }
+
+        return item;
+    }
+
+    @Override
+    public void clear() {
+        boolean cleared = false;
+
+        while (poll() != null) {
+            cleared = true;
+        }
+
+        if (cleared) {
+            queueListeners.queueCleared(this);
+        }
+    }
+
+    @Override
+    public boolean isEmpty() {
+        long head = this.head;
+        return (sequences.get((int)head & mask) != head + 1);
+    }
+
+    /**
+     * Returns the number of items in the queue. Items that producers are in
+     * the process of adding are included in the count.
+     */
+    @Override
+    public int getLength() {
+        long length = tail.get() - head;
+        return (int)Math.max(Math.min(length, items.length), 0);
+    }
+
+    /**
+     * Returns the capacity of the queue.
+     */
+    public int getCapacity() {
+        return items.length;
+    }
+
+    /**
+     * Returns <tt>null</tt>; concurrent queues are always FIFO.
+     */
+    @Override
+    public Comparator<T> getComparator() {
+        return null;
+    }
+
+    /**
+     * Throws {@link UnsupportedOperationException}; concurrent queues are
+     * always FIFO.
+     */
+    @Override
+    public void setComparator(Comparator<T> comparator) {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Returns an iterator over a snapshot of the items that have been
+     * published to the queue. This method may only be called by the consumer.
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public Iterator<T> iterator() {
+        ArrayList<T> snapshot = new ArrayList<T>();
+
+        long ticket = head;
+        int index = (int)ticket & mask;
+
+        while (sequences.get(index) == ticket + 1) {
+            snapshot.add((T)items[index]);
+
+            ticket++;
+            index = (int)ticket & mask;
+        }
+
+        return new ImmutableIterator<T>(snapshot.iterator());
+    }
+
+    @Override
+    public ListenerList<QueueListener<T>> getQueueListeners() {
+        return queueListeners;
+    }
+}
@@ -0,0 +1,249 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pivot.collections.concurrent;
+
+import java.util.Comparator;
+import java.util.Iterator;
+
+import org.apache.pivot.collections.Map;
+import org.apache.pivot.collections.MapListener;
+import org.apache.pivot.util.ImmutableIterator;
+import org.apache.pivot.util.ListenerList;
+
+/**
+ * Thread-safe implementation of the {@link Map} interface that does not
+ * serialize access through a single monitor. Entries are stored in a
+ * {@link java.util.concurrent.ConcurrentHashMap}, so readers never block and
+ * writers only contend when they update the same region of the table.
+ * <p>
+ * Map events are fired on the thread that made the change, after the change
+ * has been applied. Listeners may be added and removed from any thread.
+ * Since other threads may modify the map concurrently, a listener should not
+ * assume that the map is still in the state described by the event.
+ * <p>
+ * Unlike {@link SynchronizedMap}, iteration does not require the caller to
+ * lock the map; iterators are weakly consistent and never throw
+ * {@link java.util.ConcurrentModificationException}. Keys are not ordered,
+ * and a comparator cannot be set.
+ */
+public class ConcurrentHashMap<K, V> implements Map<K, V> {
+    private java.util.concurrent.ConcurrentHashMap<K, Object> map;
+    private MapListenerList<K, V> mapListeners = new MapListenerList<K, V>();
+
+    // Placeholder for null values, which the backing map does not support
+    private static final Object NULL_VALUE = new Object();
+
+    public static final int DEFAULT_CAPACITY = 16;
+    public static final float DEFAULT_LOAD_FACTOR = 0.75f;
+    public static final int DEFAULT_CONCURRENCY_LEVEL = 16;
+
+    public ConcurrentHashMap() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public ConcurrentHashMap(int capacity) {
+        this(capacity, DEFAULT_LOAD_FACTOR, DEFAULT_CONCURRENCY_LEVEL);
+    }
+
+    /**
+     * Creates a new map.
+     *
+     * @param capacity
+     * The initial capacity of the map.
+     *
+     * @param loadFactor
+     * The load factor of the map.
+     *
+     * @param concurrencyLevel
+     * The estimated number of threads that will update the map concurrently.
+     */
+    public ConcurrentHashMap(int capacity, float loadFactor, int concurrencyLevel) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException("capacity cannot be negative.");
+        }
+
+        if (loadFactor <= 0) {
+            throw new IllegalArgumentException("loadFactor must be positive.");
+        }
+
+        if (concurrencyLevel <= 0) {
+            throw new IllegalArgumentException("concurrencyLevel must be positive.");
+        }
+
+        map = new java.util.concurrent.ConcurrentHashMap<K, Object>(capacity, loadFactor,
+            concurrencyLevel);
+    }
+
+    public ConcurrentHashMap(Map<K, V> map) {
+        this(Math.max((int)(map.getCount() / DEFAULT_LOAD_FACTOR) + 1, DEFAULT_CAPACITY));
+
+        for (K key : map) {
+            put(key, map.get(key));
+        }
+    }
+
+    @Override
+    public V get(K key) {
+        if (key == null) {
+            throw new IllegalArgumentException("key is null.");
+        }
+
+        return decode(map.get(key));
+    }
+
+    @Override
+    public V put(K key, V value) {
+        if (key == null) {
+            throw new IllegalArgumentException("key is null.");
+        }
+
+        Object previousValue = map.put(key, encode(value));
+
+        if (previousValue == null) {
+            mapListeners.valueAdded(this, key);
+        } else {
+            mapListeners.valueUpdated(this, key, decode(previousValue));
+        }
+
+        return decode(previousValue);
+    }
+
+    /**
+     * Atomically associates a value with a key, if the key is not already
+     * present in the map.
+     *
+     * @param key
+     * @param value
+     *
+     * @return
+     * The value currently associated with the key, or <tt>null</tt> if the
+     * value was added.
+     */
+    public V putIfAbsent(K key, V value) {
+        if (key == null) {
+            throw new IllegalArgumentException("key is null.");
+        }
+
+        Object currentValue = map.putIfAbsent(key, encode(value));
+
+        if (currentValue == null) {
+            mapListeners.valueAdded(this, key);
+        }
+
+        return decode(currentValue);
+    }
+
+    @Override
+    public V remove(K key) {
+        if (key == null) {
+            throw new IllegalArgumentException("key is null.");
+        }
+
+        Object value = map.remove(key);
+
+        if (value != null) {
+            mapListeners.valueRemoved(this, key, decode(value));
+        }
+
+        return decode(value);
+    }
+
+    @Override
+    public void clear() {
+        if (!map.isEmpty()) {
+            map.clear();
+            mapListeners.mapCleared(this);
+        }
+    }
+
+    @Override
+    public boolean containsKey(K key) {
+        if (key == null) {
+            throw new IllegalArgumentException("key is null.");
+        }
+
+        return map.containsKey(key);
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return map.isEmpty();
+    }
+
+    @Override
+    public int getCount() {
+        return map.size();
+    }
+
+    /**
+     * Returns <tt>null</tt>; concurrent maps are not ordered.
+     */
+    @Override
+    public Comparator<K> getComparator() {
+        return null;
+    }
+
+    /**
+     * Throws {@link UnsupportedOperationException}; concurrent maps are not
+     * ordered.
+     */
+    @Override
+    public void setComparator(Comparator<K> comparator) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Iterator<K> iterator() {
+        return new ImmutableIterator<K>(map.keySet().iterator());
+    }
+
+    @Override
+    public ListenerList<MapListener<K, V>> getMapListeners() {
+        return mapListeners;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+
+        sb.append(getClass().getName());
+        sb.append(" {");
+
+        int i = 0;
+        for (K key : this) {
+            if (i > 0) {
+                sb.append(", ");
+            }
+
+            sb.append(key + ":" + get(key));
+            i++;
+        }
+
+        sb.append("}");
+
+        return sb.toString();
+    }
+
+    private static Object encode(Object value) {
+        return (value == null) ? NULL_VALUE : value;
+    }
+
+    @SuppressWarnings("unchecked")
+    private V decode(Object value) {
+        return (value == NULL_VALUE) ? null : (V)value;
+    }
+}
@@ -0,0 +1,190 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pivot.io;
+
+import java.io.IOException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectableChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Dispatches readiness events for non-blocking channels. A single daemon
+ * thread waits on a selector for all registered channels, so any number of
+ * transfers can be in progress without a thread per transfer. Handlers are
+ * called on the reactor thread and must not block.
+ */
+final class ChannelReactor implements Runnable {
+    /**
+     * Channel readiness handler.
+     */
+    public interface Handler {
+        /**
+         * Called on the reactor thread when the channel is ready for the
+         * operations it was registered for, or has been closed. The handler
+         * registers the channel again if it needs to wait again.
+         */
+        public void ready();
+    }
+
+    private Selector selector;
+    private Thread thread;
+
+    private ConcurrentLinkedQueue<Runnable> pendingCallbacks = new ConcurrentLinkedQueue<Runnable>();
+
+    private static ChannelReactor defaultReactor = null;
+
+    private ChannelReactor() throws IOException {
+        selector = Selector.open();
+
+        thread = new Thread(this, getClass().getName());
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Returns the shared reactor, starting it if necessary.
+     */
+    public static synchronized ChannelReactor getDefaultReactor() throws IOException {
+        if (defaultReactor == null) {
+            defaultReactor = new ChannelReactor();
+        }
+
+        return defaultReactor;
+    }
+
+    /**
+     * Waits for a channel to become ready for the given operations. The
+     * channel must be in non-blocking mode. May be called from any thread.
+     */
+    public void register(final SelectableChannel channel, final int operations,
+        final Handler handler) {
+        Runnable callback = new Runnable() {
+            @Override
+            public void run() {
+                SelectionKey key = channel.keyFor(selector);
+
+                try {
+                    if (key != null
+                        && !key.isValid()) {
+                        // Flush the cancelled key so that the channel can be
+                        // registered again
+                        selector.selectNow();
+                        key = null;
+                    }
+
+                    if (key == null) {
+                        key = channel.register(selector, operations, handler);
+                    } else {
+                        key.interestOps(operations);
+                        key.attach(handler);
+                    }
+                } catch (ClosedChannelException exception) {
+                    // Let the handler observe the closed channel
+                    handler.ready();
+                } catch (IOException exception) {
+                    throw new RuntimeException(exception);
+                }
+            }
+        };
+
+        if (Thread.currentThread() == thread) {
+            callback.run();
+        } else {
+            invokeLater(callback);
+        }
+    }
+
+    /**
+     * Runs a callback on the reactor thread.
+     */
+    public void invokeLater(Runnable callback) {
+        pendingCallbacks.add(callback);
+        selector.wakeup();
+    }
+
+    /**
+     * Tests whether the calling thread is the reactor thread.
+     */
+    public boolean isReactorThread() {
+        return (Thread.currentThread() == thread);
+    }
+
+    /**
+     * Stops waiting on a channel. May only be called on the reactor thread.
+     */
+    public void cancel(SelectableChannel channel) {
+        SelectionKey key = channel.keyFor(selector);
+        if (key != null) {
+            key.cancel();
+        }
+    }
+
+    @Override
+    public void run() {
+        while (true) {
+            try {
+                selector.select();
+            } catch (IOException exception) {
+                throw new RuntimeException(exception);
+            }
+
+            // Callbacks and handlers run code supplied by callers (e.g. task
+            // listeners); a failure in one of them must not stop the reactor
+            // thread, which is shared by all transfers
+            Runnable callback;
+            while ((callback = pendingCallbacks.poll()) != null) {
+                try {
+                    callback.run();
+                } catch (Throwable throwable) {
+                    handleUncaughtException(throwable);
+                }
+            }
+
+            Iterator<SelectionKey> iterator = selector.selectedKeys().iterator();
+            while (iterator.hasNext()) {
+                SelectionKey key = iterator.next();
+                iterator.remove();
+
+                try {
+                    if (key.isValid()) {
+                        key.interestOps(0);
+                    }
+
+                    Handler handler = (Handler)key.attachment();
+                    handler.ready();
+                } catch (Throwable throwable) {
+                    handleUncaughtException(throwable);
+                }
+            }
+        }
+    }
+
+    /**
+     * Passes an exception thrown by a callback or handler to the reactor
+     * thread's uncaught exception handler.
+     */
+    private void handleUncaughtException(Throwable throwable) {
+        Thread.UncaughtExceptionHandler handler = thread.getUncaughtExceptionHandler();
+
+        if (handler != null) {
+            handler.uncaughtException(thread, throwable);
+        }
+    }
+}
@@ -0,0 +1,471 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pivot.io;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.SelectableChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.WritableByteChannel;
+import java.util.concurrent.ExecutorService;
+
+import org.apache.pivot.util.concurrent.AbortException;
+import org.apache.pivot.util.concurrent.TaskExecutionException;
+
+/**
+ * Task that copies bytes from one channel to another, and returns the number
+ * of bytes copied.
+ * <p>
+ * When executed asynchronously, a transfer involving a selectable channel
+ * (such as a socket channel) is performed with non-blocking I/O: the task
+ * waits for the channel to become ready on a shared reactor thread rather
+ * than occupying a thread of its own, so any number of transfers may be in
+ * progress at once. File channels may be combined with selectable channels;
+ * reads from a file channel use {@link FileChannel#transferTo} so that the
+ * data is not copied through the Java heap. Other transfers are executed on
+ * the task's executor service as usual.
+ * <p>
+ * In non-blocking mode, the task listener and progress listener are notified
+ * on the reactor thread, and must not block. Selectable channels are left in
+ * non-blocking mode, and neither channel is closed by the task.
+ * <p>
+ * The {@link #bytesReceived} and {@link #bytesSent} members are updated once
+ * per block rather than per byte, and the progress listener, if any, is
+ * notified when another {@link #getProgressInterval() progress interval} of
+ * bytes has been written (at most once per block).
+ */
+public class ChannelTransferTask extends IOTask<Long> {
+    /**
+     * Transfer progress listener interface.
+     */
+    public interface ProgressListener {
+        /**
+         * Called when the number of bytes written has passed another
+         * multiple of the progress interval.
+         *
+         * @param task
+         * The source of the progress event.
+         */
+        public void progress(ChannelTransferTask task);
+    }
+
+    /**
+     * Readiness handler that resumes the transfer.
+     */
+    private class TransferHandler implements ChannelReactor.Handler, Runnable {
+        @Override
+        public void ready() {
+            resume();
+        }
+
+        @Override
+        public void run() {
+            resume();
+        }
+    }
+
+    private ReadableByteChannel source;
+    private WritableByteChannel target;
+    private long count;
+
+    private int bufferSize = DEFAULT_BUFFER_SIZE;
+    private long progressInterval = DEFAULT_PROGRESS_INTERVAL;
+    private ProgressListener progressListener = null;
+
+    // Transfer state
+    private ByteBuffer buffer = null;
+    private long position = 0;
+    private boolean endOfStream = false;
+    private long nextProgress = 0;
+
+    // Non-blocking transfer state; only accessed on the reactor thread,
+    // except for the reactor itself
+    private volatile ChannelReactor reactor = null;
+    private TransferHandler transferHandler = null;
+    private boolean initialized = false;
+    private boolean waiting = false;
+    private SelectableChannel waitChannel = null;
+    private int waitOperations = 0;
+
+    public static final int DEFAULT_BUFFER_SIZE = 65536;
+    public static final long DEFAULT_PROGRESS_INTERVAL = 65536;
+
+    /**
+     * Creates a task that copies the source channel to the target channel
+     * until the end of the source is reached.
+     */
+    public ChannelTransferTask(ReadableByteChannel source, WritableByteChannel target) {
+        this(source, target, -1);
+    }
+
+    /**
+     * Creates a task that copies a number of bytes from the source channel
+     * to the target channel.
+     *
+     * @param source
+     * @param target
+     *
+     * @param count
+     * The number of bytes to copy, or <tt>-1</tt> to copy until the end of
+     * the source is reached.
+     */
+    public ChannelTransferTask(ReadableByteChannel source, WritableByteChannel target, long count) {
+        this(source, target, count, DEFAULT_EXECUTOR_SERVICE);
+    }
+
+    public ChannelTransferTask(ReadableByteChannel source, WritableByteChannel target, long count,
+        ExecutorService executorService) {
+        super(executorService);
+
+        if (source == null) {
+            throw new IllegalArgumentException("source is null.");
+        }
+
+        if (target == null) {
+            throw new IllegalArgumentException("target is null.");
+        }
+
+        if (count < -1) {
+            throw new IllegalArgumentException("count is negative.");
+        }
+
+        this.source = source;
+        this.target = target;
+        this.count = count;
+    }
+
+    public ReadableByteChannel getSource() {
+        return source;
+    }
+
+    public WritableByteChannel getTarget() {
+        return target;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Gets the number of bytes that have been written to the target channel.
+     * Interested listeners can poll for this value while the task is
+     * executing.
+     */
+    public long getBytesSent() {
+        return bytesSent;
+    }
+
+    /**
+     * Gets the number of bytes that have been read from the source channel.
+     */
+    public long getBytesReceived() {
+        return bytesReceived;
+    }
+
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    public void setBufferSize(int bufferSize) {
+        if (bufferSize <= 0) {
+            throw new IllegalArgumentException("bufferSize must be positive.");
+        }
+
+        this.bufferSize = bufferSize;
+    }
+
+    public long getProgressInterval() {
+        return progressInterval;
+    }
+
+    public void setProgressInterval(long progressInterval) {
+        if (progressInterval <= 0) {
+            throw new IllegalArgumentException("progressInterval must be positive.");
+        }
+
+        this.progressInterval = progressInterval;
+    }
+
+    public ProgressListener getProgressListener() {
+        return progressListener;
+    }
+
+    public void setProgressListener(ProgressListener progressListener) {
+        this.progressListener = progressListener;
+    }
+
+    @Override
+    public Long execute() throws TaskExecutionException {
+        try {
+            if (source instanceof SelectableChannel) {
+                ((SelectableChannel)source).configureBlocking(true);
+            }
+
+            if (target instanceof SelectableChannel) {
+                ((SelectableChannel)target).configureBlocking(true);
+            }
+
+            initialize();
+
+            // Blocking channels always make progress, so this does not return
+            // until the transfer is complete
+            while (!transfer()) {
+                // No-op
+            }
+        } catch (IOException exception) {
+            throw new TaskExecutionException(exception);
+        } finally {
+            buffer = null;
+        }
+
+        return bytesSent;
+    }
+
+    @Override
+    protected void start(ExecutorService executorService) {
+        // Channels that are neither selectable nor file channels may block
+        // indefinitely, and cannot be used on the reactor thread
+        boolean selectable = (source instanceof SelectableChannel
+            || target instanceof SelectableChannel);
+
+        ChannelReactor reactor = null;
+        if (selectable
+            && (source instanceof SelectableChannel || source instanceof FileChannel)
+            && (target instanceof SelectableChannel || target instanceof FileChannel)) {
+            try {
+                reactor = ChannelReactor.getDefaultReactor();
+            } catch (IOException exception) {
+                // Transfer on a worker thread
+            }
+        }
+
+        if (reactor == null) {
+            this.reactor = null;
+            super.start(executorService);
+        } else {
+            transferHandler = new TransferHandler();
+            initialized = false;
+            waiting = true;
+
+            // Publish the reactor only once the handler exists, since abort()
+            // may be called on another thread as soon as it is visible
+            this.reactor = reactor;
+            reactor.invokeLater(transferHandler);
+        }
+    }
+
+    /**
+     * Sets the abort flag for this task. A non-blocking transfer that is
+     * waiting for a channel fails immediately with an {@link AbortException}.
+     */
+    @Override
+    public synchronized void abort() {
+        super.abort();
+
+        ChannelReactor reactor = this.reactor;
+        if (reactor != null) {
+            reactor.invokeLater(transferHandler);
+        }
+    }
+
+    private void initialize() throws IOException {
+        bytesReceived = 0;
+        bytesSent = 0;
+        endOfStream = false;
+        nextProgress = progressInterval;
+
+        if (source instanceof FileChannel) {
+            position = ((FileChannel)source).position();
+            buffer = null;
+        } else {
+            buffer = ByteBuffer.allocateDirect((count == -1) ?
+                bufferSize : (int)Math.min(bufferSize, Math.max(count, 1)));
+            buffer.limit(0);
+        }
+    }
+
+    /**
+     * Resumes a non-blocking transfer on the reactor thread.
+     */
+    private void resume() {
+        if (!waiting) {
+            return;
+        }
+
+        waiting = false;
+
+        Long result = null;
+        Throwable fault = null;
+
+        boolean complete;
+        try {
+            if (!initialized) {
+                if (source instanceof SelectableChannel) {
+                    ((SelectableChannel)source).configureBlocking(false);
+                }
+
+                if (target instanceof SelectableChannel) {
+                    ((SelectableChannel)target).configureBlocking(false);
+                }
+
+                initialize();
+                initialized = true;
+            }
+
+            complete = transfer();
+            if (complete) {
+                result = bytesSent;
+            }
+        } catch (Throwable throwable) {
+            fault = throwable;
+            complete = true;
+        }
+
+        if (complete) {
+            if (source instanceof SelectableChannel) {
+                reactor.cancel((SelectableChannel)source);
+            }
+
+            if (target instanceof SelectableChannel) {
+                reactor.cancel((SelectableChannel)target);
+            }
+
+            buffer = null;
+            reactor = null;
+
+            complete(result, fault);
+        } else {
+            waiting = true;
+            reactor.register(waitChannel, waitOperations, transferHandler);
+        }
+    }
+
+    /**
+     * Copies as much as possible without blocking.
+     *
+     * @return
+     * <tt>true</tt> if the transfer is complete; <tt>false</tt> if it must
+     * wait for {@link #waitChannel} to become ready.
+     */
+    private boolean transfer() throws IOException {
+        boolean complete = false;
+
+        while (!complete) {
+            if (abort) {
+                throw new AbortException();
+            }
+
+            if (source instanceof FileChannel) {
+                FileChannel fileChannel = (FileChannel)source;
+
+                long remaining = (count == -1) ? fileChannel.size() - position : count - bytesSent;
+                if (remaining <= 0) {
+                    fileChannel.position(position);
+                    complete = true;
+                } else {
+                    long n = fileChannel.transferTo(position, Math.min(remaining, bufferSize), target);
+
+                    if (n == 0) {
+                        if (position >= fileChannel.size()) {
+                            throw new EOFException("Unexpected end of file.");
+                        }
+
+                        if (waitFor(target, SelectionKey.OP_WRITE)) {
+                            return false;
+                        }
+                    } else {
+                        position += n;
+                        bytesReceived += n;
+                        bytesSent += n;
+                        updateProgress();
+                    }
+                }
+            } else if (buffer.hasRemaining()) {
+                int n = target.write(buffer);
+
+                if (n == 0) {
+                    if (waitFor(target, SelectionKey.OP_WRITE)) {
+                        return false;
+                    }
+                } else {
+                    bytesSent += n;
+                    updateProgress();
+                }
+            } else if (endOfStream
+                || (count != -1 && bytesReceived == count)) {
+                complete = true;
+            } else {
+                buffer.clear();
+
+                if (count != -1) {
+                    buffer.limit((int)Math.min(buffer.capacity(), count - bytesReceived));
+                }
+
+                int n = source.read(buffer);
+                buffer.flip();
+
+                if (n == -1) {
+                    if (count != -1) {
+                        throw new EOFException("Unexpected end of stream.");
+                    }
+
+                    endOfStream = true;
+                } else if (n == 0) {
+                    if (waitFor(source, SelectionKey.OP_READ)) {
+                        return false;
+                    }
+                } else {
+                    bytesReceived += n;
+                }
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Records the channel to wait for when no progress could be made.
+     *
+     * @return
+     * <tt>true</tt> if the channel is selectable and the transfer should wait
+     * for it; <tt>false</tt> if the operation should simply be retried.
+     */
+    private boolean waitFor(Object channel, int operations) {
+        boolean wait = (channel instanceof SelectableChannel
+            && !((SelectableChannel)channel).isBlocking());
+
+        if (wait) {
+            waitChannel = (SelectableChannel)channel;
+            waitOperations = operations;
+        }
+
+        return wait;
+    }
+
+    private void updateProgress() {
+        if (bytesSent >= nextProgress) {
+            nextProgress = bytesSent - (bytesSent % progressInterval) + progressInterval;
+
+            if (progressListener != null) {
+                progressListener.progress(this);
+            }
+        }
+    }
+}
@@ -0,0 +1,269 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pivot.io;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Single-character lookahead scanner that reads directly from a reusable
+ * <tt>char[]</tt> window over a {@link Reader}. Parsers inspect the current
+ * character via {@link #current()} and advance with {@link #next()}; runs of
+ * characters can be captured without copying them through a
+ * {@link StringBuilder} by calling {@link #mark()} at the start of the run and
+ * {@link #getMarkedText()} at its end.
+ * <p>
+ * Like {@link java.io.LineNumberReader}, the scanner compresses line
+ * terminators (<tt>\r</tt>, <tt>\n</tt> or <tt>\r\n</tt>) into a single
+ * <tt>\n</tt> character and tracks the current line number. A leading byte
+ * order mark is skipped. Callers that capture text containing line terminators
+ * via {@link #mark()} will receive the raw, uncompressed characters.
+ */
+public class TextScanner {
+    private Reader reader;
+
+    private char[] buffer;
+    private int position = 0;
+    private int limit = 0;
+    private int mark = -1;
+
+    private int c = -1;
+    private boolean skipLineFeed = false;
+    private int lineNumber = 0;
+
+    private String[] stringCache = new String[STRING_CACHE_SIZE];
+
+    public static final int DEFAULT_BUFFER_SIZE = 8192;
+
+    // Number of entries in the string cache (must be a power of two) and the
+    // maximum length of the strings it will hold
+    private static final int STRING_CACHE_SIZE = 512;
+    private static final int MAXIMUM_CACHED_STRING_LENGTH = 32;
+
+    public TextScanner(Reader reader) throws IOException {
+        this(reader, DEFAULT_BUFFER_SIZE);
+    }
+
+    public TextScanner(Reader reader, int bufferSize) throws IOException {
+        if (reader == null) {
+            throw new IllegalArgumentException("reader is null.");
+        }
+
+        if (bufferSize <= 0) {
+            throw new IllegalArgumentException("bufferSize must be positive.");
+        }
+
+        this.reader = reader;
+        buffer = new char[bufferSize];
+
+        // Move to the first character
+        position = -1;
+        next();
+
+        // Ignore BOM (if present)
+        if (c == 0xFEFF) {
+            next();
+        }
+    }
+
+    /**
+     * Returns the current character, or <tt>-1</tt> at the end of the input.
+     */
+    public int current() {
+        return c;
+    }
+
+    /**
+     * Moves to the next character in the input.
+     */
+    public void next() throws IOException {
+        position++;
+
+        if (position >= limit
+            && !fill()) {
+            c = -1;
+        } else {
+            c = buffer[position];
+
+            if (skipLineFeed) {
+                skipLineFeed = false;
+
+                if (c == '\n') {
+                    position++;
+
+                    if (position >= limit
+                        && !fill()) {
+                        c = -1;
+                    } else {
+                        c = buffer[position];
+                    }
+                }
+            }
+
+            if (c == '\r') {
+                c = '\n';
+                skipLineFeed = true;
+            }
+
+            if (c == '\n') {
+                lineNumber++;
+            }
+        }
+    }
+
+    private boolean fill() throws IOException {
+        // Preserve the marked region, if any
+        int offset = (mark == -1) ? position : mark;
+        int count = limit - offset;
+
+        if (count > 0
+            && offset > 0) {
+            System.arraycopy(buffer, offset, buffer, 0, count);
+        } else if (count < 0) {
+            count = 0;
+        }
+
+        if (mark != -1) {
+            mark = 0;
+        }
+
+        position -= offset;
+
+        if (count == buffer.length) {
+            // The marked region fills the buffer; grow it
+            char[] buffer = new char[this.buffer.length * 2];
+            System.arraycopy(this.buffer, 0, buffer, 0, count);
+            this.buffer = buffer;
+        }
+
+        limit = count;
+
+        int n = 0;
+        while (n == 0) {
+            n = reader.read(buffer, limit, buffer.length - limit);
+        }
+
+        boolean filled = (n > 0);
+        if (filled) {
+            limit += n;
+        }
+
+        return filled;
+    }
+
+    /**
+     * Returns the (zero-based) line number of the current character.
+     */
+    public int getLineNumber() {
+        return lineNumber;
+    }
+
+    /**
+     * Starts capturing text at the current character.
+     */
+    public void mark() {
+        mark = position;
+    }
+
+    /**
+     * Stops capturing text without retrieving it.
+     */
+    public void unmark() {
+        mark = -1;
+    }
+
+    /**
+     * Returns <tt>true</tt> if text is currently being captured.
+     */
+    public boolean isMarked() {
+        return (mark != -1);
+    }
+
+    /**
+     * Returns the text captured since the last call to {@link #mark()}, up to
+     * but not including the current character, and stops capturing.
+     */
+    public String getMarkedText() {
+        return getMarkedText(false);
+    }
+
+    /**
+     * Returns the text captured since the last call to {@link #mark()}, up to
+     * but not including the current character, and stops capturing.
+     *
+     * @param cache
+     * If <tt>true</tt>, short strings will be looked up in (and added to) a
+     * small per-scanner cache, so that repeated values such as map keys or
+     * column names share a single instance.
+     */
+    public String getMarkedText(boolean cache) {
+        if (mark == -1) {
+            throw new IllegalStateException("No text has been marked.");
+        }
+
+        int offset = mark;
+        int count = Math.min(position, limit) - mark;
+        mark = -1;
+
+        String text;
+        if (cache
+            && count <= MAXIMUM_CACHED_STRING_LENGTH) {
+            int hashCode = 0;
+            for (int i = offset, n = offset + count; i < n; i++) {
+                hashCode = 31 * hashCode + buffer[i];
+            }
+
+            int index = (hashCode ^ (hashCode >>> 16)) & (STRING_CACHE_SIZE - 1);
+
+            text = stringCache[index];
+            if (text == null
+                || !regionEquals(text, offset, count)) {
+                text = new String(buffer, offset, count);
+                stringCache[index] = text;
+            }
+        } else {
+            text = new String(buffer, offset, count);
+        }
+
+        return text;
+    }
+
+    private boolean regionEquals(String text, int offset, int count) {
+        boolean equals = (text.length() == count);
+
+        for (int i = 0; i < count && equals; i++) {
+            equals = (text.charAt(i) == buffer[offset + i]);
+        }
+
+        return equals;
+    }
+
+    /**
+     * Appends the text captured since the last call to {@link #mark()} to a
+     * string builder and stops capturing.
+     *
+     * @param stringBuilder
+     */
+    public void appendMarkedText(StringBuilder stringBuilder) {
+        if (mark == -1) {
+            throw new IllegalStateException("No text has been marked.");
+        }
+
+        stringBuilder.append(buffer, mark, Math.min(position, limit) - mark);
+        mark = -1;
+    }
+}
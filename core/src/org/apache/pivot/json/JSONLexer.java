@@ -0,0 +1,381 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pivot.json;
+
+import java.io.IOException;
+import java.io.Reader;
+
+import org.apache.pivot.io.TextScanner;
+import org.apache.pivot.serialization.SerializationException;
+
+/**
+ * Character-level scanner shared by {@link JSONSerializer} and
+ * {@link JSONReader}. The lexer keeps a single character of lookahead; callers
+ * inspect it via {@link #current()} and decide which primitive to invoke.
+ * <p>
+ * Strings and keys without escape sequences are sliced directly out of the
+ * scanner's buffer, map keys are shared through the scanner's string cache,
+ * and integral numbers are accumulated without an intermediate string.
+ */
+class JSONLexer {
+    private TextScanner scanner;
+    private int c = -1;
+
+    private StringBuilder stringBuilder = new StringBuilder();
+
+    // Maximum number of digits that can be accumulated without overflowing
+    // a long
+    private static final int MAXIMUM_LONG_DIGITS = 18;
+
+    public JSONLexer(Reader reader) throws IOException {
+        if (reader == null) {
+            throw new IllegalArgumentException("reader is null.");
+        }
+
+        scanner = new TextScanner(reader);
+        c = scanner.current();
+    }
+
+    /**
+     * Returns the current lookahead character, or <tt>-1</tt> at the end of
+     * the input.
+     */
+    public int current() {
+        return c;
+    }
+
+    /**
+     * Moves to the next character in the input.
+     */
+    public void next() throws IOException {
+        scanner.next();
+        c = scanner.current();
+    }
+
+    /**
+     * Returns the (zero-based) line number of the current character.
+     */
+    public int getLineNumber() {
+        return scanner.getLineNumber();
+    }
+
+    public void skipWhitespaceAndComments()
+        throws IOException, SerializationException {
+        while (c != -1
+            && (Character.isWhitespace(c)
+                || c == '/')) {
+            boolean comment = (c == '/');
+
+            // Read the next character
+            next();
+
+            if (comment) {
+                if (c == '/') {
+                    // Single-line comment
+                    while (c != -1
+                        && c != '\n'
+                        && c != '\r') {
+                        next();
+                    }
+                } else if (c == '*') {
+                    // Multi-line comment
+                    boolean closed = false;
+
+                    while (c != -1
+                        && !closed) {
+                        next();
+
+                        if (c == '*') {
+                            next();
+                            closed = (c == '/');
+                        }
+                    }
+
+                    if (!closed) {
+                        throw new SerializationException("Unexpected end of input stream.");
+                    }
+
+                    if (c != -1) {
+                        next();
+                    }
+                } else {
+                    throw new SerializationException("Unexpected character in input stream.");
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads the literal <tt>null</tt>.
+     */
+    public void readNull()
+        throws IOException, SerializationException {
+        readLiteral("null", "Incomplete null value in input stream.");
+    }
+
+    /**
+     * Reads one of the literals <tt>true</tt> or <tt>false</tt>.
+     */
+    public boolean readBoolean()
+        throws IOException, SerializationException {
+        boolean value = (c == 't');
+        readLiteral(value ? "true" : "false", "Incomplete boolean value in input stream.");
+
+        return value;
+    }
+
+    private void readLiteral(String text, String incompleteMessage)
+        throws IOException, SerializationException {
+        int n = text.length();
+        int i = 0;
+
+        while (c != -1 && i < n) {
+            if (text.charAt(i) != c) {
+                throw new SerializationException("Unexpected character in input stream.");
+            }
+
+            next();
+            i++;
+        }
+
+        if (i < n) {
+            throw new SerializationException(incompleteMessage);
+        }
+    }
+
+    /**
+     * Reads a string delimited by the current character (either a single or
+     * a double quote).
+     */
+    public String readString()
+        throws IOException, SerializationException {
+        return readString(false);
+    }
+
+    private String readString(boolean key)
+        throws IOException, SerializationException {
+        // Use the same delimiter to close the string
+        int t = c;
+
+        // Move to the next character after the delimiter
+        next();
+
+        // Slice the string directly out of the buffer until an escape
+        // sequence or control character requires it to be rebuilt
+        scanner.mark();
+
+        while (c != -1 && c != t
+            && c != '\\' && !Character.isISOControl(c)) {
+            next();
+        }
+
+        String string;
+        if (c == t) {
+            string = scanner.getMarkedText(key);
+        } else {
+            stringBuilder.setLength(0);
+            scanner.appendMarkedText(stringBuilder);
+
+            while (c != -1 && c != t) {
+                if (!Character.isISOControl(c)) {
+                    if (c == '\\') {
+                        next();
+
+                        if (c == 'b') {
+                            c = '\b';
+                        } else if (c == 'f') {
+                            c = '\f';
+                        } else if (c == 'n') {
+                            c = '\n';
+                        } else if (c == 'r') {
+                            c = '\r';
+                        } else if (c == 't') {
+                            c = '\t';
+                        } else if (c == 'u') {
+                            int unicode = 0;
+                            for (int i = 0; i < 4; i++) {
+                                next();
+
+                                int digit = Character.digit(c, 16);
+                                if (digit == -1) {
+                                    throw new SerializationException("Invalid unicode escape sequence in input stream.");
+                                }
+
+                                unicode = unicode * 16 + digit;
+                            }
+
+                            c = (char)unicode;
+                        } else {
+                            if (!(c == '\\'
+                                || c == '/'
+                                || c == '\"'
+                                || c == '\''
+                                || c == t)) {
+                                throw new SerializationException("Unsupported escape sequence in input stream.");
+                            }
+                        }
+                    }
+
+                    stringBuilder.append((char)c);
+                }
+
+                next();
+            }
+
+            string = stringBuilder.toString();
+        }
+
+        if (c != t) {
+            throw new SerializationException("Unterminated string in input stream.");
+        }
+
+        // Move to the next character after the delimiter
+        next();
+
+        return string;
+    }
+
+    /**
+     * Reads a map key, which is either a delimited string or an undelimited
+     * string adhering to Java identifier syntax.
+     */
+    public String readKey()
+        throws IOException, SerializationException {
+        String key = null;
+
+        if (c == '"' || c == '\'') {
+            // The key is a delimited string
+            key = readString(true);
+        } else {
+            // The key is an undelimited string; it must adhere to Java
+            // identifier syntax
+            if (!Character.isJavaIdentifierStart(c)) {
+                throw new SerializationException("Illegal identifier start character.");
+            }
+
+            scanner.mark();
+
+            while (c != -1
+                && c != ':' && !Character.isWhitespace(c)) {
+                if (!Character.isJavaIdentifierPart(c)) {
+                    throw new SerializationException("Illegal identifier character.");
+                }
+
+                next();
+            }
+
+            if (c == -1) {
+                throw new SerializationException("Unexpected end of input stream.");
+            }
+
+            key = scanner.getMarkedText(true);
+        }
+
+        if (key == null
+            || key.length() == 0) {
+            throw new SerializationException("\"" + key + "\" is not a valid key.");
+        }
+
+        return key;
+    }
+
+    /**
+     * Reads a number. Integral values are returned as an {@link Integer} when
+     * they fit, and as a {@link Long} otherwise; all other values are
+     * returned as a {@link Double}.
+     */
+    public Number readNumber()
+        throws IOException, SerializationException {
+        Number number = null;
+
+        boolean negative = false;
+        boolean integer = true;
+        boolean exponent = false;
+
+        if (c == '+' || c == '-') {
+            negative = (c == '-');
+            next();
+        }
+
+        // Accumulate integral values directly; the text is only converted
+        // when the value is fractional or too long to fit in a long
+        scanner.mark();
+
+        long value = 0;
+        int digits = 0;
+
+        while (c != -1 && (Character.isDigit(c) || c == '.'
+            || c == 'e' || c == 'E' || c == '-')) {
+            if (c >= '0' && c <= '9') {
+                value = value * 10 + (c - '0');
+                digits++;
+            } else {
+                integer &= !(c == '.');
+                exponent |= (c != '.');
+            }
+
+            next();
+        }
+
+        if (integer
+            && !exponent
+            && digits > 0
+            && digits <= MAXIMUM_LONG_DIGITS) {
+            scanner.unmark();
+
+            value *= (negative ? -1 : 1);
+
+            if (value > Integer.MAX_VALUE
+                || value < Integer.MIN_VALUE) {
+                number = value;
+            } else {
+                number = (int)value;
+            }
+        } else {
+            String text = scanner.getMarkedText();
+
+            if (integer
+                && !exponent) {
+                long longValue = Long.parseLong(text) * (negative ? -1 : 1);
+
+                if (longValue > Integer.MAX_VALUE
+                    || longValue < Integer.MIN_VALUE) {
+                    number = longValue;
+                } else {
+                    number = (int)longValue;
+                }
+            } else {
+                number = Double.parseDouble(text) * (negative ? -1.0d : 1.0d);
+            }
+        }
+
+        return number;
+    }
+
+    /**
+     * Verifies that the current character is the given separator and moves
+     * past it.
+     */
+    public void readSeparator(char separator)
+        throws IOException, SerializationException {
+        if (c != separator) {
+            throw new SerializationException("Unexpected character in input stream.");
+        }
+
+        next();
+    }
+}
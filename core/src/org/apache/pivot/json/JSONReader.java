@@ -0,0 +1,520 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pivot.json;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.Charset;
+
+import org.apache.pivot.collections.ArrayList;
+import org.apache.pivot.collections.HashMap;
+import org.apache.pivot.collections.Sequence;
+import org.apache.pivot.serialization.SerializationException;
+
+/**
+ * Pull parser that reads JSON data one token at a time. Unlike
+ * {@link JSONSerializer#readObject(Reader)}, the reader never builds more of
+ * the document than the caller asks for, so arbitrarily large documents can be
+ * processed in constant memory.
+ * <p>
+ * Callers typically either walk the token stream directly:
+ * <pre>
+ * JSONReader jsonReader = new JSONReader(reader);
+ * JSONReader.Token token;
+ * while ((token = jsonReader.nextToken()) != null) {
+ *     ...
+ * }
+ * </pre>
+ * or use {@link #seek(String)} to stream only the values matching a path
+ * pattern, materializing each one with {@link #readValue()}:
+ * <pre>
+ * while (jsonReader.seek("rows[*]")) {
+ *     tableData.add(jsonReader.readValue());
+ * }
+ * </pre>
+ * Once the root value has been read, the reader will continue on to any
+ * subsequent root value in the input, which allows it to consume
+ * whitespace-delimited streams of JSON documents.
+ * <p>
+ * This class is not thread safe.
+ */
+public class JSONReader implements Closeable {
+    /**
+     * Enumeration representing the tokens returned by {@link JSONReader#nextToken()}.
+     */
+    public enum Token {
+        BEGIN_MAP,
+        END_MAP,
+        BEGIN_LIST,
+        END_LIST,
+        KEY,
+        STRING,
+        NUMBER,
+        BOOLEAN,
+        NULL
+    }
+
+    private Reader reader;
+    private JSONLexer lexer;
+
+    private Token token = null;
+    private Object value = null;
+
+    // Stack of open containers; for lists, indexes holds the index of the
+    // current item; for maps, keys holds the current key
+    private int depth = 0;
+    private boolean[] lists = new boolean[INITIAL_DEPTH];
+    private int[] indexes = new int[INITIAL_DEPTH];
+    private String[] keys = new String[INITIAL_DEPTH];
+
+    // Whether the next token in the innermost container is its first
+    private boolean first = false;
+
+    // Whether the innermost map is positioned between a key and its value
+    private boolean valuePending = false;
+
+    private static final int INITIAL_DEPTH = 16;
+
+    /**
+     * Creates a JSON reader that decodes the given stream using the default
+     * JSON character set.
+     *
+     * @param inputStream
+     */
+    public JSONReader(InputStream inputStream) throws IOException {
+        this(inputStream, Charset.forName(JSONSerializer.DEFAULT_CHARSET_NAME));
+    }
+
+    public JSONReader(InputStream inputStream, Charset charset) throws IOException {
+        this(new InputStreamReader(inputStream, charset));
+    }
+
+    public JSONReader(Reader reader) throws IOException {
+        if (reader == null) {
+            throw new IllegalArgumentException("reader is null.");
+        }
+
+        this.reader = reader;
+        lexer = new JSONLexer(reader);
+    }
+
+    /**
+     * Advances to the next token.
+     *
+     * @return
+     * The next token, or <tt>null</tt> if the end of the input has been
+     * reached.
+     */
+    public Token nextToken() throws IOException, SerializationException {
+        value = null;
+
+        lexer.skipWhitespaceAndComments();
+        int c = lexer.current();
+
+        if (depth == 0) {
+            if (c == -1) {
+                token = null;
+            } else {
+                readValueToken();
+            }
+        } else if (lists[depth - 1]) {
+            if (c == ']') {
+                lexer.next();
+                pop();
+                token = Token.END_LIST;
+            } else {
+                if (!first) {
+                    readSeparator(',');
+                    lexer.skipWhitespaceAndComments();
+                }
+
+                if (lexer.current() == ']') {
+                    lexer.next();
+                    pop();
+                    token = Token.END_LIST;
+                } else {
+                    first = false;
+                    indexes[depth - 1]++;
+                    readValueToken();
+                }
+            }
+        } else {
+            if (valuePending) {
+                readSeparator(':');
+                valuePending = false;
+                readValueToken();
+            } else if (c == '}') {
+                lexer.next();
+                pop();
+                token = Token.END_MAP;
+            } else {
+                if (!first) {
+                    readSeparator(',');
+                    lexer.skipWhitespaceAndComments();
+                }
+
+                if (lexer.current() == '}') {
+                    lexer.next();
+                    pop();
+                    token = Token.END_MAP;
+                } else {
+                    first = false;
+
+                    String key = lexer.readKey();
+                    keys[depth - 1] = key;
+                    value = key;
+                    valuePending = true;
+                    token = Token.KEY;
+                }
+            }
+        }
+
+        return token;
+    }
+
+    private void readSeparator(char separator) throws IOException, SerializationException {
+        if (lexer.current() == -1) {
+            throw new SerializationException("Unexpected end of input stream.");
+        }
+
+        lexer.readSeparator(separator);
+    }
+
+    private void readValueToken() throws IOException, SerializationException {
+        lexer.skipWhitespaceAndComments();
+        int c = lexer.current();
+
+        if (c == -1) {
+            throw new SerializationException("Unexpected end of input stream.");
+        }
+
+        if (c == 'n') {
+            lexer.readNull();
+            token = Token.NULL;
+        } else if (c == '"' || c == '\'') {
+            value = lexer.readString();
+            token = Token.STRING;
+        } else if (c == '+' || c == '-' || Character.isDigit(c)) {
+            value = lexer.readNumber();
+            token = Token.NUMBER;
+        } else if (c == 't' || c == 'f') {
+            value = lexer.readBoolean();
+            token = Token.BOOLEAN;
+        } else if (c == '[') {
+            lexer.next();
+            push(true);
+            token = Token.BEGIN_LIST;
+        } else if (c == '{') {
+            lexer.next();
+            push(false);
+            token = Token.BEGIN_MAP;
+        } else {
+            throw new SerializationException("Unexpected character in input stream.");
+        }
+    }
+
+    private void push(boolean list) {
+        if (depth == lists.length) {
+            int capacity = depth * 2;
+
+            boolean[] lists = new boolean[capacity];
+            System.arraycopy(this.lists, 0, lists, 0, depth);
+            this.lists = lists;
+
+            int[] indexes = new int[capacity];
+            System.arraycopy(this.indexes, 0, indexes, 0, depth);
+            this.indexes = indexes;
+
+            String[] keys = new String[capacity];
+            System.arraycopy(this.keys, 0, keys, 0, depth);
+            this.keys = keys;
+        }
+
+        lists[depth] = list;
+        indexes[depth] = -1;
+        keys[depth] = null;
+        depth++;
+
+        first = true;
+    }
+
+    private void pop() {
+        depth--;
+        keys[depth] = null;
+
+        first = false;
+    }
+
+    /**
+     * Returns the current token, or <tt>null</tt> if {@link #nextToken()} has
+     * not yet been called or the end of the input has been reached.
+     */
+    public Token getToken() {
+        return token;
+    }
+
+    /**
+     * Returns the number of containers enclosing the current position.
+     * The start and end tokens of a container are reported at the container's
+     * own depth.
+     */
+    public int getDepth() {
+        return (token == Token.BEGIN_LIST || token == Token.BEGIN_MAP) ? depth - 1 : depth;
+    }
+
+    /**
+     * Returns the current map key, if the current token is {@link Token#KEY}.
+     */
+    public String getKey() {
+        return (token == Token.KEY) ? (String)value : null;
+    }
+
+    /**
+     * Returns the current string value, if the current token is
+     * {@link Token#STRING}.
+     */
+    public String getString() {
+        return (token == Token.STRING) ? (String)value : null;
+    }
+
+    /**
+     * Returns the current number value, if the current token is
+     * {@link Token#NUMBER}.
+     */
+    public Number getNumber() {
+        return (token == Token.NUMBER) ? (Number)value : null;
+    }
+
+    /**
+     * Returns the current boolean value, if the current token is
+     * {@link Token#BOOLEAN}.
+     */
+    public Boolean getBoolean() {
+        return (token == Token.BOOLEAN) ? (Boolean)value : null;
+    }
+
+    /**
+     * Returns the path of the current value as a sequence of keys, in the
+     * same form as returned by {@link JSON#parse(String)}. List indexes are
+     * represented by their string values.
+     */
+    public Sequence<String> getPath() {
+        int n = getDepth();
+        ArrayList<String> path = new ArrayList<String>(n);
+
+        for (int i = 0; i < n; i++) {
+            path.add(getPathElement(i));
+        }
+
+        return path;
+    }
+
+    private String getPathElement(int level) {
+        return lists[level] ? Integer.toString(indexes[level]) : keys[level];
+    }
+
+    /**
+     * Skips the current value. If the current token begins a list or map,
+     * the reader is advanced to the matching end token without materializing
+     * the contents. If the current token is a key, the key's value is
+     * skipped. Otherwise, this method has no effect.
+     */
+    public void skipValue() throws IOException, SerializationException {
+        if (token == Token.KEY) {
+            nextToken();
+        }
+
+        if (token == Token.BEGIN_LIST
+            || token == Token.BEGIN_MAP) {
+            int targetDepth = depth - 1;
+
+            while (depth > targetDepth) {
+                if (nextToken() == null) {
+                    throw new SerializationException("Unexpected end of input stream.");
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads the current value. If the current token begins a list or map,
+     * the entire subtree is materialized and the reader is left positioned at
+     * the matching end token. If the current token is a key, the key's value
+     * is read.
+     *
+     * @return
+     * One of the types returned by {@link JSONSerializer#readObject(Reader)}
+     * for untyped content.
+     */
+    public Object readValue() throws IOException, SerializationException {
+        if (token == Token.KEY) {
+            nextToken();
+        }
+
+        if (token == null) {
+            throw new IllegalStateException("Reader is not positioned at a value.");
+        }
+
+        Object result;
+        switch (token) {
+            case BEGIN_LIST: {
+                ArrayList<Object> list = new ArrayList<Object>();
+
+                while (nextToken() != Token.END_LIST) {
+                    if (token == null) {
+                        throw new SerializationException("Unexpected end of input stream.");
+                    }
+
+                    list.add(readValue());
+                }
+
+                result = list;
+                break;
+            }
+
+            case BEGIN_MAP: {
+                HashMap<String, Object> map = new HashMap<String, Object>();
+
+                while (nextToken() != Token.END_MAP) {
+                    if (token == null) {
+                        throw new SerializationException("Unexpected end of input stream.");
+                    }
+
+                    String key = (String)value;
+                    map.put(key, readValue());
+                }
+
+                result = map;
+                break;
+            }
+
+            case END_LIST:
+            case END_MAP: {
+                throw new IllegalStateException("Reader is not positioned at a value.");
+            }
+
+            default: {
+                result = value;
+                break;
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Advances to the next value whose path matches the given pattern.
+     *
+     * @param path
+     * A JSON path, as accepted by {@link JSON#parse(String)}. The key
+     * <tt>*</tt> (e.g. <tt>rows[*].name</tt>) matches any map key or list
+     * index.
+     *
+     * @return
+     * <tt>true</tt> if a matching value was found; <tt>false</tt> if the end of
+     * the input was reached.
+     *
+     * @see #seek(Sequence)
+     */
+    public boolean seek(String path) throws IOException, SerializationException {
+        return seek(JSON.parse(path));
+    }
+
+    /**
+     * Advances to the next value whose path matches the given pattern.
+     * Subtrees that cannot contain a match are skipped without being
+     * materialized. When this method returns <tt>true</tt>, the reader is
+     * positioned at the start of the matching value, which the caller may
+     * then consume via {@link #readValue()} or {@link #skipValue()}.
+     *
+     * @param pattern
+     * The path pattern as a sequence of keys.
+     */
+    public boolean seek(Sequence<String> pattern) throws IOException, SerializationException {
+        if (pattern == null) {
+            throw new IllegalArgumentException("pattern is null.");
+        }
+
+        int n = pattern.getLength();
+        boolean match = false;
+
+        while (!match
+            && nextToken() != null) {
+            if (token == Token.KEY
+                || token == Token.END_LIST
+                || token == Token.END_MAP) {
+                continue;
+            }
+
+            int level = getDepth();
+            boolean prefix = (level <= n);
+
+            for (int i = 0; i < level && prefix; i++) {
+                prefix = matches(pattern.get(i), i);
+            }
+
+            if (prefix
+                && level == n) {
+                match = true;
+            } else if (!prefix) {
+                skipValue();
+            }
+        }
+
+        return match;
+    }
+
+    private boolean matches(String key, int level) {
+        boolean matches;
+
+        if (key.equals("*")) {
+            matches = true;
+        } else if (lists[level]) {
+            // Compare the index without converting it to a string
+            int n = key.length();
+            matches = (n > 0 && n < 10);
+
+            int index = 0;
+            for (int i = 0; i < n && matches; i++) {
+                char c = key.charAt(i);
+                matches = (c >= '0' && c <= '9');
+                index = index * 10 + (c - '0');
+            }
+
+            matches &= (index == indexes[level]);
+        } else {
+            matches = key.equals(keys[level]);
+        }
+
+        return matches;
+    }
+
+    /**
+     * Returns the (zero-based) line number of the current position.
+     */
+    public int getLineNumber() {
+        return lexer.getLineNumber();
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+}
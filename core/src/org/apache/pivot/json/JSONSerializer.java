@@ -16,12 +16,10 @@
  */
 package org.apache.pivot.json;
 
-import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.io.LineNumberReader;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.Reader;
@@ -123,8 +121,6 @@ public class JSONSerializer implements Serializer<Object> {
     private boolean alwaysDelimitMapKeys = false;
     private boolean verbose = false;
 
-    private int c = -1;
-
     private JSONSerializerListenerList jsonSerializerListeners = null;
 
     public static final String DEFAULT_CHARSET_NAME = "UTF-8";
@@ -224,7 +220,9 @@ public class JSONSerializer implements Serializer<Object> {
             throw new IllegalArgumentException("inputStream is null.");
         }
 
-        Reader reader = new BufferedReader(new InputStreamReader(inputStream, charset), BUFFER_SIZE);
+        // The lexer reads through its own buffer, so the stream reader does not
+        // need to be buffered
+        Reader reader = new InputStreamReader(inputStream, charset);
         if (verbose) {
             reader = new EchoReader(reader);
         }
@@ -258,22 +256,15 @@ public class JSONSerializer implements Serializer<Object> {
             throw new IllegalArgumentException("reader is null.");
         }
 
-        // Move to the first character
-        LineNumberReader lineNumberReader = new LineNumberReader(reader);
-        c = lineNumberReader.read();
-
-        // Ignore BOM (if present)
-        if (c == 0xFEFF) {
-            c = lineNumberReader.read();
-        }
+        JSONLexer lexer = new JSONLexer(reader);
 
         // Read the root value
         Object object;
         try {
-            object = readValue(lineNumberReader, type);
+            object = readValue(lexer, type);
         } catch (SerializationException exception) {
             System.err.println("An error occurred while processing input at line number "
-                + (lineNumberReader.getLineNumber() + 1));
+                + (lexer.getLineNumber() + 1));
 
             throw exception;
         }
@@ -281,28 +272,29 @@ public class JSONSerializer implements Serializer<Object> {
         return object;
     }
 
-    private Object readValue(Reader reader, Type type)
+    private Object readValue(JSONLexer lexer, Type type)
         throws IOException, SerializationException {
         Object object = null;
 
-        skipWhitespaceAndComments(reader);
+        lexer.skipWhitespaceAndComments();
 
+        int c = lexer.current();
         if (c == -1) {
             throw new SerializationException("Unexpected end of input stream.");
         }
 
         if (c == 'n') {
-            object = readNullValue(reader);
+            object = readNullValue(lexer);
         } else if (c == '"' || c == '\'') {
-            object = readStringValue(reader, type);
+            object = readStringValue(lexer, type);
         } else if (c == '+' || c == '-' || Character.isDigit(c)) {
-            object = readNumberValue(reader, type);
+            object = readNumberValue(lexer, type);
         } else if (c == 't' || c == 'f') {
-            object = readBooleanValue(reader, type);
+            object = readBooleanValue(lexer, type);
         } else if (c == '[') {
-            object = readListValue(reader, type);
+            object = readListValue(lexer, type);
         } else if (c == '{') {
-            object = readMapValue(reader, type);
+            object = readMapValue(lexer, type);
         } else {
             throw new SerializationException("Unexpected character in input stream.");
         }
@@ -310,71 +302,9 @@ public class JSONSerializer implements Serializer<Object> {
         return object;
     }
 
-    private void skipWhitespaceAndComments(Reader reader)
-        throws IOException, SerializationException {
-        while (c != -1
-            && (Character.isWhitespace(c)
-                || c == '/')) {
-            boolean comment = (c == '/');
-
-            // Read the next character
-            c = reader.read();
-
-            if (comment) {
-                if (c == '/') {
-                    // Single-line comment
-                    while (c != -1
-                        && c != '\n'
-                        && c != '\r') {
-                        c = reader.read();
-                    }
-                } else if (c == '*') {
-                    // Multi-line comment
-                    boolean closed = false;
-
-                    while (c != -1
-                        && !closed) {
-                        c = reader.read();
-
-                        if (c == '*') {
-                            c = reader.read();
-                            closed = (c == '/');
-                        }
-                    }
-
-                    if (!closed) {
-                        throw new SerializationException("Unexpected end of input stream.");
-                    }
-
-                    if (c != -1) {
-                        c = reader.read();
-                    }
-                } else {
-                    throw new SerializationException("Unexpected character in input stream.");
-                }
-            }
-        }
-    }
-
-    private Object readNullValue(Reader reader)
+    private Object readNullValue(JSONLexer lexer)
         throws IOException, SerializationException {
-        String nullString = "null";
-
-        int n = nullString.length();
-        int i = 0;
-
-        while (c != -1 && i < n) {
-            if (nullString.charAt(i) != c) {
-                throw new SerializationException("Unexpected character in input stream.");
-            }
-
-            c = reader.read();
-            i++;
-        }
-
-        if (i < n) {
-            throw new SerializationException("Incomplete null value in input stream.");
-        }
+        lexer.readNull();
 
         // Notify the listeners
         if (jsonSerializerListeners != null) {
@@ -384,74 +314,13 @@ public class JSONSerializer implements Serializer<Object> {
         return null;
     }
 
-    private String readString(Reader reader)
-        throws IOException, SerializationException {
-        StringBuilder stringBuilder = new StringBuilder();
-
-        // Use the same delimiter to close the string
-        int t = c;
-
-        // Move to the next character after the delimiter
-        c = reader.read();
-
-        while (c != -1 && c != t) {
-            if (!Character.isISOControl(c)) {
-                if (c == '\\') {
-                    c = reader.read();
-
-                    if (c == 'b') {
-                        c = '\b';
-                    } else if (c == 'f') {
-                        c = '\f';
-                    } else if (c == 'n') {
-                        c = '\n';
-                    } else if (c == 'r') {
-                        c = '\r';
-                    } else if (c == 't') {
-                        c = '\t';
-                    } else if (c == 'u') {
-                        StringBuilder unicodeBuilder = new StringBuilder();
-                        while (unicodeBuilder.length() < 4) {
-                            c = reader.read();
-                            unicodeBuilder.append((char)c);
-                        }
-
-                        String unicode = unicodeBuilder.toString();
-                        c = (char)Integer.parseInt(unicode, 16);
-                    } else {
-                        if (!(c == '\\'
-                            || c == '/'
-                            || c == '\"'
-                            || c == '\''
-                            || c == t)) {
-                            throw new SerializationException("Unsupported escape sequence in input stream.");
-                        }
-                    }
-                }
-
-                stringBuilder.append((char)c);
-            }
-
-            c = reader.read();
-        }
-
-        if (c != t) {
-            throw new SerializationException("Unterminated string in input stream.");
-        }
-
-        // Move to the next character after the delimiter
-        c = reader.read();
-
-        return stringBuilder.toString();
-    }
-
-    private Object readStringValue(Reader reader, Type type)
+    private Object readStringValue(JSONLexer lexer, Type type)
         throws IOException, SerializationException {
         if (!(type instanceof Class<?>)) {
             throw new SerializationException("Cannot convert string to " + type + ".");
         }
 
-        String string = readString(reader);
+        String string = lexer.readString();
 
         // Notify the listeners
         if (jsonSerializerListeners != null) {
@@ -461,42 +330,13 @@ public class JSONSerializer implements Serializer<Object> {
         return BeanAdapter.coerce(string, (Class<?>)type);
     }
 
-    private Object readNumberValue(Reader reader, Type type)
+    private Object readNumberValue(JSONLexer lexer, Type type)
         throws IOException, SerializationException {
         if (!(type instanceof Class<?>)) {
             throw new SerializationException("Cannot convert number to " + type + ".");
         }
 
-        Number number = null;
-
-        StringBuilder stringBuilder = new StringBuilder();
-        boolean negative = false;
-        boolean integer = true;
-
-        if (c == '+' || c == '-') {
-            negative = (c == '-');
-            c = reader.read();
-        }
-
-        while (c != -1 && (Character.isDigit(c) || c == '.'
-            || c == 'e' || c == 'E' || c == '-')) {
-            stringBuilder.append((char)c);
-            integer &= !(c == '.');
-            c = reader.read();
-        }
-
-        if (integer) {
-            long value = Long.parseLong(stringBuilder.toString()) * (negative ? -1 : 1);
-
-            if (value > Integer.MAX_VALUE
-                || value < Integer.MIN_VALUE) {
-                number = value;
-            } else {
-                number = (int)value;
-            }
-        } else {
-            number = Double.parseDouble(stringBuilder.toString()) * (negative ? -1.0d : 1.0d);
-        }
+        Number number = lexer.readNumber();
 
         // Notify the listeners
         if (jsonSerializerListeners != null) {
@@ -506,31 +346,14 @@ public class JSONSerializer implements Serializer<Object> {
         return BeanAdapter.coerce(number, (Class<?>)type);
     }
 
-    private Object readBooleanValue(Reader reader, Type type)
+    private Object readBooleanValue(JSONLexer lexer, Type type)
         throws IOException, SerializationException {
         if (!(type instanceof Class<?>)) {
             throw new SerializationException("Cannot convert number to " + type + ".");
         }
 
-        String text = (c == 't') ? "true" : "false";
-        int n = text.length();
-        int i = 0;
-
-        while (c != -1 && i < n) {
-            if (text.charAt(i) != c) {
-                throw new SerializationException("Unexpected character in input stream.");
-            }
-
-            c = reader.read();
-            i++;
-        }
-
-        if (i < n) {
-            throw new SerializationException("Incomplete boolean value in input stream.");
-        }
-
         // Get the boolean value
-        Boolean value = Boolean.parseBoolean(text);
+        Boolean value = lexer.readBoolean();
 
         // Notify the listeners
         if (jsonSerializerListeners != null) {
@@ -541,7 +364,7 @@ public class JSONSerializer implements Serializer<Object> {
     }
 
     @SuppressWarnings("unchecked")
-    private Object readListValue(Reader reader, Type type)
+    private Object readListValue(JSONLexer lexer, Type type)
         throws IOException, SerializationException {
         Sequence<Object> sequence = null;
         Type itemType = null;
@@ -622,27 +445,27 @@ public class JSONSerializer implements Serializer<Object> {
         }
 
         // Move to the next character after '['
-        c = reader.read();
-        skipWhitespaceAndComments(reader);
+        lexer.next();
+        lexer.skipWhitespaceAndComments();
 
-        while (c != -1 && c != ']') {
-            sequence.add(readValue(reader, itemType));
-            skipWhitespaceAndComments(reader);
+        while (lexer.current() != -1 && lexer.current() != ']') {
+            sequence.add(readValue(lexer, itemType));
+            lexer.skipWhitespaceAndComments();
 
-            if (c == ',') {
-                c = reader.read();
-                skipWhitespaceAndComments(reader);
-            } else if (c == -1) {
+            if (lexer.current() == ',') {
+                lexer.next();
+                lexer.skipWhitespaceAndComments();
+            } else if (lexer.current() == -1) {
                 throw new SerializationException("Unexpected end of input stream.");
             } else {
-                if (c != ']') {
+                if (lexer.current() != ']') {
                     throw new SerializationException("Unexpected character in input stream.");
                 }
             }
         }
 
         // Move to the next character after ']'
-        c = reader.read();
+        lexer.next();
 
         // Notify the listeners
         if (jsonSerializerListeners != null) {
@@ -653,7 +476,7 @@ public class JSONSerializer implements Serializer<Object> {
     }
 
     @SuppressWarnings("unchecked")
-    private Object readMapValue(Reader reader, Type type)
+    private Object readMapValue(JSONLexer lexer, Type type)
         throws IOException, SerializationException {
         Dictionary<String, Object> dictionary = null;
         Type valueType = null;
@@ -742,59 +565,21 @@ public class JSONSerializer implements Serializer<Object> {
         }
 
         // Move to the next character after '{'
-        c = reader.read();
-        skipWhitespaceAndComments(reader);
-
-        while (c != -1 && c != '}') {
-            String key = null;
-
-            if (c == '"' || c == '\'') {
-                // The key is a delimited string
-                key = readString(reader);
-            } else {
-                // The key is an undelimited string; it must adhere to Java
-                // identifier syntax
-                StringBuilder keyBuilder = new StringBuilder();
+        lexer.next();
+        lexer.skipWhitespaceAndComments();
 
-                if (!Character.isJavaIdentifierStart(c)) {
-                    throw new SerializationException("Illegal identifier start character.");
-                }
-
-                while (c != -1
-                    && c != ':' && !Character.isWhitespace(c)) {
-                    if (!Character.isJavaIdentifierPart(c)) {
-                        throw new SerializationException("Illegal identifier character.");
-                    }
-
-                    keyBuilder.append((char)c);
-                    c = reader.read();
-                }
-
-                if (c == -1) {
-                    throw new SerializationException("Unexpected end of input stream.");
-                }
-
-                key = keyBuilder.toString();
-            }
-
-            if (key == null
-                || key.length() == 0) {
-                throw new SerializationException("\"" + key + "\" is not a valid key.");
-            }
+        while (lexer.current() != -1 && lexer.current() != '}') {
+            String key = lexer.readKey();
 
             // Notify listeners
             if (jsonSerializerListeners != null) {
                 jsonSerializerListeners.readKey(this, key);
             }
 
-            skipWhitespaceAndComments(reader);
-
-            if (c != ':') {
-                throw new SerializationException("Unexpected character in input stream.");
-            }
+            lexer.skipWhitespaceAndComments();
 
             // Move to the first character after ':'
-            c = reader.read();
+            lexer.readSeparator(':');
 
             if (valueType == null) {
                 // The map is a bean instance; get the generic type of the property
@@ -802,31 +587,31 @@ public class JSONSerializer implements Serializer<Object> {
 
                 if (genericValueType != null) {
                     // Set the value in the bean
-                    dictionary.put(key, readValue(reader, genericValueType));
+                    dictionary.put(key, readValue(lexer, genericValueType));
                 } else {
                     // The property does not exist; ignore this value
-                    readValue(reader, Object.class);
+                    readValue(lexer, Object.class);
                 }
             } else {
-                dictionary.put(key, readValue(reader, valueType));
+                dictionary.put(key, readValue(lexer, valueType));
             }
 
-            skipWhitespaceAndComments(reader);
+            lexer.skipWhitespaceAndComments();
 
-            if (c == ',') {
-                c = reader.read();
-                skipWhitespaceAndComments(reader);
-            } else if (c == -1) {
+            if (lexer.current() == ',') {
+                lexer.next();
+                lexer.skipWhitespaceAndComments();
+            } else if (lexer.current() == -1) {
                 throw new SerializationException("Unexpected end of input stream.");
             } else {
-                if (c != '}') {
+                if (lexer.current() != '}') {
                     throw new SerializationException("Unexpected character in input stream.");
                 }
             }
         }
 
         // Move to the first character after '}'
-        c = reader.read();
+        lexer.next();
 
         // Notify the listeners
         if (jsonSerializerListeners != null) {
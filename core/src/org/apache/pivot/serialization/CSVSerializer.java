@@ -16,12 +16,10 @@
  */
 package org.apache.pivot.serialization;
 
-import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.io.LineNumberReader;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.Reader;
@@ -29,6 +27,7 @@ import java.io.Writer;
 import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
 import java.nio.charset.Charset;
+import java.util.NoSuchElementException;
 
 import org.apache.pivot.beans.BeanAdapter;
 import org.apache.pivot.collections.ArrayAdapter;
@@ -39,6 +38,7 @@ import org.apache.pivot.collections.List;
 import org.apache.pivot.collections.Sequence;
 import org.apache.pivot.io.EchoReader;
 import org.apache.pivot.io.EchoWriter;
+import org.apache.pivot.io.TextScanner;
 import org.apache.pivot.util.ListenerList;
 
 /**
@@ -70,6 +70,144 @@ public class CSVSerializer implements Serializer<List<?>> {
         }
     }
 
+    /**
+     * Reads items from a CSV stream one at a time. Only the scanner's buffer
+     * and the current item are held in memory, so streams of any size can be
+     * processed; the caller controls the rate at which the stream is
+     * consumed.
+     */
+    public class StreamIterator {
+        private TextScanner scanner;
+        private Object item = null;
+
+        private StreamIterator(Reader reader) throws IOException, SerializationException {
+            scanner = new TextScanner(reader);
+
+            if (keys.getLength() == 0) {
+                readKeys(scanner);
+            }
+
+            skipLineBreaks();
+        }
+
+        /**
+         * Tests whether the stream contains another item.
+         */
+        public boolean hasNext() throws IOException, SerializationException {
+            if (item == null) {
+                try {
+                    item = readItem(scanner);
+                } catch (SerializationException exception) {
+                    System.err.println("An error occurred while processing input at line number "
+                        + (scanner.getLineNumber() + 1));
+
+                    throw exception;
+                }
+
+                skipLineBreaks();
+            }
+
+            return (item != null);
+        }
+
+        /**
+         * Reads the next item from the stream.
+         */
+        public Object next() throws IOException, SerializationException {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+
+            Object item = this.item;
+            this.item = null;
+
+            return item;
+        }
+
+        /**
+         * Reads up to <tt>count</tt> items from the stream and adds them to the
+         * given list.
+         *
+         * @return
+         * The number of items read; 0 if the end of the stream was reached.
+         */
+        public int next(List<Object> items, int count) throws IOException, SerializationException {
+            if (items == null) {
+                throw new IllegalArgumentException("items is null.");
+            }
+
+            int i = 0;
+            while (i < count
+                && hasNext()) {
+                items.add(next());
+                i++;
+            }
+
+            return i;
+        }
+
+        private void skipLineBreaks() throws IOException {
+            while (scanner.current() == '\n') {
+                scanner.next();
+            }
+        }
+    }
+
+    /**
+     * Writes items to a CSV stream one at a time. Output passes through a
+     * buffer of {@link #BUFFER_SIZE} characters, so memory use does not
+     * depend on the number of items written.
+     */
+    public class StreamWriter {
+        private Writer writer;
+
+        private StreamWriter(Writer writer) throws IOException {
+            this.writer = writer;
+
+            if (writeKeys) {
+                writeKeys(writer);
+            }
+        }
+
+        /**
+         * Writes an item to the stream.
+         */
+        public void write(Object item) throws IOException {
+            if (item == null) {
+                throw new IllegalArgumentException("item is null.");
+            }
+
+            writeItem(item, writer);
+        }
+
+        /**
+         * Writes a sequence of items to the stream.
+         */
+        public void write(Sequence<?> items) throws IOException {
+            if (items == null) {
+                throw new IllegalArgumentException("items is null.");
+            }
+
+            for (int i = 0, n = items.getLength(); i < n; i++) {
+                write(items.get(i));
+            }
+        }
+
+        /**
+         * Flushes any buffered output to the underlying stream.
+         */
+        public void flush() throws IOException {
+            writer.flush();
+        }
+
+        /**
+         * Flushes any buffered output and closes the underlying stream.
+         */
+        public void close() throws IOException {
+            writer.close();
+        }
+    }
+
     private Charset charset;
     private Type itemType;
 
@@ -78,7 +216,7 @@ public class CSVSerializer implements Serializer<List<?>> {
     private boolean writeKeys = false;
     private boolean verbose = false;
 
-    private int c = -1;
+    private StringBuilder valueBuilder = new StringBuilder();
 
     private CSVSerializerListenerList csvSerializerListeners = null;
 
@@ -212,7 +350,9 @@ public class CSVSerializer implements Serializer<List<?>> {
             throw new IllegalArgumentException("inputStream is null.");
         }
 
-        Reader reader = new BufferedReader(new InputStreamReader(inputStream, charset), BUFFER_SIZE);
+        // The scanner reads through its own buffer, so the stream reader does
+        // not need to be buffered
+        Reader reader = new InputStreamReader(inputStream, charset);
         if (verbose) {
             reader = new EchoReader(reader);
         }
@@ -240,22 +380,10 @@ public class CSVSerializer implements Serializer<List<?>> {
             throw new IllegalArgumentException("reader is null.");
         }
 
-        LineNumberReader lineNumberReader = new LineNumberReader(reader);
+        TextScanner scanner = new TextScanner(reader);
 
         if (keys.getLength() == 0) {
-            // Read keys from first line
-            String line = lineNumberReader.readLine();
-            if (line == null) {
-                throw new SerializationException("Could not read keys from input.");
-            }
-
-            String[] keys = line.split(",");
-            this.keys = new ArrayList<String>(keys.length);
-
-            for (int i = 0; i < keys.length; i++) {
-                String key = keys[i];
-                this.keys.add(key.trim());
-            }
+            readKeys(scanner);
         }
 
         // Create the list and notify the listeners
@@ -265,33 +393,24 @@ public class CSVSerializer implements Serializer<List<?>> {
             csvSerializerListeners.beginList(this, items);
         }
 
-        // Move to the first character
-        c = lineNumberReader.read();
-
-        // Ignore BOM (if present)
-        if (c == 0xFEFF) {
-            c = lineNumberReader.read();
-        }
-
         try {
-            while (c != -1) {
-                Object item = readItem(lineNumberReader);
+            while (scanner.current() != -1) {
+                Object item = readItem(scanner);
                 while (item != null) {
                     items.add(item);
 
                     // Move to next line
-                    while (c != -1
-                        && (c == '\r' || c == '\n')) {
-                        c = lineNumberReader.read();
+                    while (scanner.current() == '\n') {
+                        scanner.next();
                     }
 
                     // Read the next item
-                    item = readItem(lineNumberReader);
+                    item = readItem(scanner);
                 }
             }
         } catch (SerializationException exception) {
             System.err.println("An error occurred while processing input at line number "
-                + (lineNumberReader.getLineNumber() + 1));
+                + (scanner.getLineNumber() + 1));
 
             throw exception;
         }
@@ -304,12 +423,85 @@ public class CSVSerializer implements Serializer<List<?>> {
         return items;
     }
 
+    /**
+     * Returns an iterator that reads items from a comma-separated value
+     * stream on demand.
+     *
+     * @param inputStream
+     * The input stream from which data will be read.
+     *
+     * @see #getStreamIterator(Reader)
+     */
+    public StreamIterator getStreamIterator(InputStream inputStream)
+        throws IOException, SerializationException {
+        if (inputStream == null) {
+            throw new IllegalArgumentException("inputStream is null.");
+        }
+
+        Reader reader = new InputStreamReader(inputStream, charset);
+        if (verbose) {
+            reader = new EchoReader(reader);
+        }
+
+        return getStreamIterator(reader);
+    }
+
+    /**
+     * Returns an iterator that reads items from a comma-separated value
+     * stream on demand. Items are read as described in
+     * {@link #readObject(Reader)}; the list listeners are not notified, but
+     * {@link CSVSerializerListener#readItem(CSVSerializer, Object)} is called
+     * for each item.
+     * <p>
+     * For example, a task can load a large file into a table view in batches
+     * by reading a fixed number of items at a time via
+     * {@link StreamIterator#next(List, int)} and adding each batch to the
+     * table data on the UI thread.
+     *
+     * @param reader
+     * The reader from which data will be read.
+     */
+    public StreamIterator getStreamIterator(Reader reader)
+        throws IOException, SerializationException {
+        if (reader == null) {
+            throw new IllegalArgumentException("reader is null.");
+        }
+
+        return new StreamIterator(reader);
+    }
+
+    private void readKeys(TextScanner scanner)
+        throws IOException, SerializationException {
+        // Read keys from first line
+        if (scanner.current() == -1) {
+            throw new SerializationException("Could not read keys from input.");
+        }
+
+        scanner.mark();
+
+        while (scanner.current() != -1
+            && scanner.current() != '\n') {
+            scanner.next();
+        }
+
+        String line = scanner.getMarkedText();
+        scanner.next();
+
+        String[] keys = line.split(",");
+        this.keys = new ArrayList<String>(keys.length);
+
+        for (int i = 0; i < keys.length; i++) {
+            String key = keys[i];
+            this.keys.add(key.trim());
+        }
+    }
+
     @SuppressWarnings("unchecked")
-    private Object readItem(Reader reader)
+    private Object readItem(TextScanner scanner)
         throws IOException, SerializationException {
         Object item = null;
 
-        if (c != -1) {
+        if (scanner.current() != -1) {
             // Instantiate the item
             Dictionary<String, Object> itemDictionary;
 
@@ -337,23 +529,19 @@ public class CSVSerializer implements Serializer<List<?>> {
             // Add values to the item
             for (int i = 0, n = keys.getLength(); i < n; i++) {
                 String key = keys.get(i);
-                String value = readValue(reader);
+                String value = readValue(scanner);
                 if (value == null) {
                     throw new SerializationException("Error reading value for "
                         + key + " from input stream.");
                 }
 
-                if (c == '\r' || c == '\n') {
+                if (scanner.current() == '\n') {
                     if (i < n - 1) {
                         throw new SerializationException("Line data is incomplete.");
                     }
 
-                    // Move to next char; if LF, move again
-                    c = reader.read();
-
-                    if (c == '\n') {
-                        c = reader.read();
-                    }
+                    // Move to next line
+                    scanner.next();
                 }
 
                 itemDictionary.put(key, value);
@@ -368,58 +556,73 @@ public class CSVSerializer implements Serializer<List<?>> {
         return item;
     }
 
-    private String readValue(Reader reader)
+    private String readValue(TextScanner scanner)
         throws IOException, SerializationException {
         String value = null;
 
         // Read the next value from this line, returning null if there are
         // no more values on the line
+        int c = scanner.current();
+
         if (c != -1
-            && (c != '\r' && c != '\n')) {
-            // Read the value
-            StringBuilder valueBuilder = new StringBuilder();
-
-            // Values may be bounded in quotes; the double-quote character is
-            // escaped by two successive occurrences
-            boolean quoted = (c == '"');
-            if (quoted) {
-                c = reader.read();
-            }
+            && c != '\n') {
+            if (c == '"') {
+                // The value is bounded in quotes; the double-quote character is
+                // escaped by two successive occurrences
+                valueBuilder.setLength(0);
+
+                boolean quoted = true;
+                scanner.next();
+                c = scanner.current();
+
+                while (c != -1
+                    && (quoted || (c != ',' && c != '\n'))) {
+                    if (c == '"') {
+                        scanner.next();
+                        c = scanner.current();
+
+                        if (c != '"'
+                            && (c != ',' && c != '\n' && c != -1)) {
+                            throw new SerializationException("Prematurely terminated quote.");
+                        }
 
-            while (c != -1
-                && (quoted || (c != ',' && c != '\r' && c != '\n'))) {
-                if (c == '"') {
-                    if (!quoted) {
-                        throw new SerializationException("Dangling quote.");
+                        quoted &= (c == '"');
                     }
 
-                    c = reader.read();
-
-                    if (c != '"'
-                        && (c != ',' && c != '\r' && c != '\n' && c != -1)) {
-                        throw new SerializationException("Prematurely terminated quote.");
+                    if (c != -1
+                        && (quoted || (c != ',' && c != '\n'))) {
+                        valueBuilder.append((char)c);
+                        scanner.next();
+                        c = scanner.current();
                     }
+                }
 
-                    quoted &= (c == '"');
+                if (quoted) {
+                    throw new SerializationException("Unterminated string.");
                 }
 
-                if (c != -1
-                    && (quoted || (c != ',' && c != '\r' && c != '\n'))) {
-                    valueBuilder.append((char)c);
-                    c = reader.read();
+                value = valueBuilder.toString();
+            } else {
+                // Slice unquoted values directly out of the scanner's buffer
+                scanner.mark();
+
+                while (c != -1
+                    && c != ',' && c != '\n') {
+                    if (c == '"') {
+                        throw new SerializationException("Dangling quote.");
+                    }
+
+                    scanner.next();
+                    c = scanner.current();
                 }
-            }
 
-            if (quoted) {
-                throw new SerializationException("Unterminated string.");
+                value = scanner.getMarkedText(true);
             }
 
-            value = valueBuilder.toString();
-
             // Move to the next character after ',' (don't automatically advance to
             // the next line)
             if (c == ',') {
-                c = reader.read();
+                scanner.next();
             }
         }
 
@@ -472,7 +675,6 @@ public class CSVSerializer implements Serializer<List<?>> {
      * @param writer
      * The writer to which data will be written.
      */
-    @SuppressWarnings("unchecked")
     public void writeObject(List<?> items, Writer writer) throws IOException {
         if (items == null) {
             throw new IllegalArgumentException("items is null.");
@@ -483,61 +685,112 @@ public class CSVSerializer implements Serializer<List<?>> {
         }
 
         if (writeKeys) {
-            // Write keys as first line
-            for (int i = 0, n = keys.getLength(); i < n; i++) {
-                String key = keys.get(i);
+            writeKeys(writer);
+        }
 
-                if (i > 0) {
-                    writer.append(",");
-                }
+        for (Object item : items) {
+            writeItem(item, writer);
+        }
 
-                writer.append(key);
-            }
+        writer.flush();
+    }
+
+    /**
+     * Returns a writer that writes items to a comma-separated value stream
+     * one at a time.
+     *
+     * @param outputStream
+     * The output stream to which data will be written.
+     *
+     * @see #getStreamWriter(Writer)
+     */
+    public StreamWriter getStreamWriter(OutputStream outputStream) throws IOException {
+        if (outputStream == null) {
+            throw new IllegalArgumentException("outputStream is null.");
         }
 
-        for (Object item : items) {
-            Dictionary<String, Object> itemDictionary;
-            if (item instanceof Dictionary<?, ?>) {
-                itemDictionary = (Dictionary<String, Object>)item;
-            } else {
-                itemDictionary = new BeanAdapter(item);
+        Writer writer = new BufferedWriter(new OutputStreamWriter(outputStream, charset), BUFFER_SIZE);
+        if (verbose) {
+            writer = new EchoWriter(writer);
+        }
+
+        return new StreamWriter(writer);
+    }
+
+    /**
+     * Returns a writer that writes items to a comma-separated value stream
+     * one at a time. Items are written as described in
+     * {@link #writeObject(List, Writer)}. If the write keys flag is set, the
+     * keys are written immediately.
+     *
+     * @param writer
+     * The writer to which data will be written. The writer is not buffered by
+     * the stream writer.
+     */
+    public StreamWriter getStreamWriter(Writer writer) throws IOException {
+        if (writer == null) {
+            throw new IllegalArgumentException("writer is null.");
+        }
+
+        return new StreamWriter(writer);
+    }
+
+    private void writeKeys(Writer writer) throws IOException {
+        // Write keys as first line
+        for (int i = 0, n = keys.getLength(); i < n; i++) {
+            String key = keys.get(i);
+
+            if (i > 0) {
+                writer.append(",");
             }
 
-            for (int i = 0, n = keys.getLength(); i < n; i++) {
-                String key = keys.get(i);
+            writer.append(key);
+        }
 
-                if (i > 0) {
-                    writer.append(",");
-                }
+        writer.append("\r\n");
+    }
 
-                Object value = itemDictionary.get(key);
+    @SuppressWarnings("unchecked")
+    private void writeItem(Object item, Writer writer) throws IOException {
+        Dictionary<String, Object> itemDictionary;
+        if (item instanceof Dictionary<?, ?>) {
+            itemDictionary = (Dictionary<String, Object>)item;
+        } else {
+            itemDictionary = new BeanAdapter(item);
+        }
 
-                if (value != null) {
-                    String string = value.toString();
+        for (int i = 0, n = keys.getLength(); i < n; i++) {
+            String key = keys.get(i);
 
-                    if (string.indexOf(',') >= 0
-                        || string.indexOf('"') >= 0
-                        || string.indexOf('\r') >= 0
-                        || string.indexOf('\n') >= 0) {
-                        writer.append('"');
+            if (i > 0) {
+                writer.append(',');
+            }
 
-                        if (string.indexOf('"') == -1) {
-                            writer.append(string);
-                        } else {
-                            writer.append(string.replace("\"", "\"\""));
-                        }
+            Object value = itemDictionary.get(key);
 
-                        writer.append('"');
-                    } else {
+            if (value != null) {
+                String string = value.toString();
+
+                if (string.indexOf(',') >= 0
+                    || string.indexOf('"') >= 0
+                    || string.indexOf('\r') >= 0
+                    || string.indexOf('\n') >= 0) {
+                    writer.append('"');
+
+                    if (string.indexOf('"') == -1) {
                         writer.append(string);
+                    } else {
+                        writer.append(string.replace("\"", "\"\""));
                     }
+
+                    writer.append('"');
+                } else {
+                    writer.write(string);
                 }
             }
-
-            writer.append("\r\n");
         }
 
-        writer.flush();
+        writer.append("\r\n");
     }
 
     @Override
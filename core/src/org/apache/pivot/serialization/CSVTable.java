@@ -0,0 +1,876 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pivot.serialization;
+
+import java.nio.charset.Charset;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import org.apache.pivot.collections.ArrayList;
+import org.apache.pivot.collections.Dictionary;
+import org.apache.pivot.collections.HashMap;
+import org.apache.pivot.collections.List;
+import org.apache.pivot.collections.ListListener;
+import org.apache.pivot.collections.Sequence;
+import org.apache.pivot.util.ListenerList;
+
+/**
+ * Read-only list of CSV rows whose values are stored by column in primitive
+ * arrays, as produced by {@link CSVTableReader}. Values can be read without
+ * boxing via the typed accessors, such as {@link #getInt(int, int)}.
+ * <p>
+ * List items are lightweight {@link Dictionary} views of a single row, created
+ * on demand, so the list can be used directly as table view data. Values can
+ * be updated via the row views; rows cannot be added or removed.
+ */
+public class CSVTable implements List<Dictionary<String, Object>> {
+    /**
+     * Dictionary view of a single row.
+     */
+    public final class Row implements Dictionary<String, Object> {
+        private final int index;
+
+        private Row(int index) {
+            this.index = index;
+        }
+
+        /**
+         * Returns the index of the row in the table.
+         */
+        public int getIndex() {
+            return index;
+        }
+
+        @Override
+        public Object get(String key) {
+            Integer column = columnIndexes.get(key);
+            return (column == null) ? null : getValue(index, column);
+        }
+
+        @Override
+        public Object put(String key, Object value) {
+            return setValue(index, getColumnIndex(key), value);
+        }
+
+        @Override
+        public Object remove(String key) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean containsKey(String key) {
+            return columnIndexes.containsKey(key);
+        }
+
+        @Override
+        public boolean equals(Object object) {
+            boolean equals = false;
+
+            if (object instanceof Row) {
+                Row row = (Row)object;
+                equals = (row.getTable() == CSVTable.this
+                    && row.index == index);
+            }
+
+            return equals;
+        }
+
+        @Override
+        public int hashCode() {
+            return index;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder("{");
+
+            for (int i = 0; i < columns.length; i++) {
+                if (i > 0) {
+                    sb.append(", ");
+                }
+
+                sb.append(keys.get(i) + ": " + getValue(index, i));
+            }
+
+            sb.append("}");
+
+            return sb.toString();
+        }
+
+        private CSVTable getTable() {
+            return CSVTable.this;
+        }
+    }
+
+    /**
+     * Column storage. Subclasses store values of a single type in a growable
+     * primitive array; <tt>null</tt> values are tracked in a bit set.
+     */
+    abstract static class Column {
+        protected int length = 0;
+        private long[] nulls = null;
+
+        public abstract Class<?> getType();
+
+        public abstract Object get(int index);
+
+        public abstract void set(int index, Object value);
+
+        /**
+         * Appends a value from raw bytes.
+         */
+        public abstract void append(byte[] buffer, int start, int end, Charset charset)
+            throws SerializationException;
+
+        /**
+         * Appends a value from decoded text.
+         */
+        public abstract void append(String value) throws SerializationException;
+
+        /**
+         * Appends the values of another column of the same type.
+         */
+        public abstract void appendAll(Column column);
+
+        protected abstract void ensureCapacity(int capacity);
+
+        public void appendNull() {
+            ensureCapacity(length + 1);
+            setNull(length++, true);
+        }
+
+        public boolean isNull(int index) {
+            return (nulls != null
+                && index >> 6 < nulls.length
+                && (nulls[index >> 6] & (1L << index)) != 0);
+        }
+
+        protected void setNull(int index, boolean isNull) {
+            if (isNull) {
+                if (nulls == null) {
+                    nulls = new long[Math.max((index >> 6) + 1, 16)];
+                } else if (index >> 6 >= nulls.length) {
+                    long[] nulls = new long[Math.max((index >> 6) + 1, this.nulls.length * 2)];
+                    System.arraycopy(this.nulls, 0, nulls, 0, this.nulls.length);
+                    this.nulls = nulls;
+                }
+
+                nulls[index >> 6] |= (1L << index);
+            } else if (nulls != null
+                && index >> 6 < nulls.length) {
+                nulls[index >> 6] &= ~(1L << index);
+            }
+        }
+
+        protected void appendNulls(Column column) {
+            if (column.nulls != null) {
+                int offset = length - column.length;
+
+                for (int i = 0; i < column.length; i++) {
+                    if (column.isNull(i)) {
+                        setNull(offset + i, true);
+                    }
+                }
+            }
+        }
+
+        protected static int getCapacity(int capacity, int minimumCapacity) {
+            return Math.max(minimumCapacity, capacity + (capacity >> 1) + 16);
+        }
+
+        public static Column newInstance(Class<?> type) {
+            Column column;
+            if (type == String.class) {
+                column = new StringColumn();
+            } else if (type == Integer.class) {
+                column = new IntColumn();
+            } else if (type == Long.class) {
+                column = new LongColumn();
+            } else if (type == Double.class) {
+                column = new DoubleColumn();
+            } else if (type == Boolean.class) {
+                column = new BooleanColumn();
+            } else {
+                throw new IllegalArgumentException(type.getName() + " is not a supported column type.");
+            }
+
+            return column;
+        }
+
+        protected static SerializationException invalidValue(Class<?> type, String value) {
+            return new SerializationException("\"" + value + "\" is not a valid "
+                + type.getSimpleName() + " value.");
+        }
+    }
+
+    static final class StringColumn extends Column {
+        private String[] values = new String[0];
+
+        @Override
+        public Class<?> getType() {
+            return String.class;
+        }
+
+        @Override
+        public Object get(int index) {
+            return values[index];
+        }
+
+        @Override
+        public void set(int index, Object value) {
+            values[index] = (String)value;
+        }
+
+        @Override
+        public void append(byte[] buffer, int start, int end, Charset charset) {
+            append(new String(buffer, start, end - start, charset));
+        }
+
+        @Override
+        public void append(String value) {
+            ensureCapacity(length + 1);
+            values[length++] = value;
+        }
+
+        @Override
+        public void appendAll(Column column) {
+            StringColumn stringColumn = (StringColumn)column;
+            ensureCapacity(length + column.length);
+            System.arraycopy(stringColumn.values, 0, values, length, column.length);
+            length += column.length;
+        }
+
+        @Override
+        public void appendNull() {
+            append((String)null);
+        }
+
+        @Override
+        public boolean isNull(int index) {
+            return (values[index] == null);
+        }
+
+        @Override
+        protected void ensureCapacity(int capacity) {
+            if (capacity > values.length) {
+                String[] values = new String[getCapacity(this.values.length, capacity)];
+                System.arraycopy(this.values, 0, values, 0, length);
+                this.values = values;
+            }
+        }
+    }
+
+    static final class IntColumn extends Column {
+        private int[] values = new int[0];
+
+        @Override
+        public Class<?> getType() {
+            return Integer.class;
+        }
+
+        @Override
+        public Object get(int index) {
+            return isNull(index) ? null : Integer.valueOf(values[index]);
+        }
+
+        public int getInt(int index) {
+            return values[index];
+        }
+
+        @Override
+        public void set(int index, Object value) {
+            values[index] = (value == null) ? 0 : (Integer)value;
+        }
+
+        @Override
+        public void append(byte[] buffer, int start, int end, Charset charset)
+            throws SerializationException {
+            long value = parseLong(buffer, start, end, charset, Integer.class);
+
+            if (value < Integer.MIN_VALUE
+                || value > Integer.MAX_VALUE) {
+                throw invalidValue(Integer.class, new String(buffer, start, end - start, charset));
+            }
+
+            ensureCapacity(length + 1);
+            values[length++] = (int)value;
+        }
+
+        @Override
+        public void append(String value) throws SerializationException {
+            try {
+                int intValue = Integer.parseInt(value);
+                ensureCapacity(length + 1);
+                values[length++] = intValue;
+            } catch (NumberFormatException exception) {
+                throw invalidValue(Integer.class, value);
+            }
+        }
+
+        @Override
+        public void appendAll(Column column) {
+            IntColumn intColumn = (IntColumn)column;
+            ensureCapacity(length + column.length);
+            System.arraycopy(intColumn.values, 0, values, length, column.length);
+            length += column.length;
+            appendNulls(column);
+        }
+
+        @Override
+        protected void ensureCapacity(int capacity) {
+            if (capacity > values.length) {
+                int[] values = new int[getCapacity(this.values.length, capacity)];
+                System.arraycopy(this.values, 0, values, 0, length);
+                this.values = values;
+            }
+        }
+    }
+
+    static final class LongColumn extends Column {
+        private long[] values = new long[0];
+
+        @Override
+        public Class<?> getType() {
+            return Long.class;
+        }
+
+        @Override
+        public Object get(int index) {
+            return isNull(index) ? null : Long.valueOf(values[index]);
+        }
+
+        public long getLong(int index) {
+            return values[index];
+        }
+
+        @Override
+        public void set(int index, Object value) {
+            values[index] = (value == null) ? 0 : (Long)value;
+        }
+
+        @Override
+        public void append(byte[] buffer, int start, int end, Charset charset)
+            throws SerializationException {
+            long value = parseLong(buffer, start, end, charset, Long.class);
+            ensureCapacity(length + 1);
+            values[length++] = value;
+        }
+
+        @Override
+        public void append(String value) throws SerializationException {
+            try {
+                long longValue = Long.parseLong(value);
+                ensureCapacity(length + 1);
+                values[length++] = longValue;
+            } catch (NumberFormatException exception) {
+                throw invalidValue(Long.class, value);
+            }
+        }
+
+        @Override
+        public void appendAll(Column column) {
+            LongColumn longColumn = (LongColumn)column;
+            ensureCapacity(length + column.length);
+            System.arraycopy(longColumn.values, 0, values, length, column.length);
+            length += column.length;
+            appendNulls(column);
+        }
+
+        @Override
+        protected void ensureCapacity(int capacity) {
+            if (capacity > values.length) {
+                long[] values = new long[getCapacity(this.values.length, capacity)];
+                System.arraycopy(this.values, 0, values, 0, length);
+                this.values = values;
+            }
+        }
+    }
+
+    static final class DoubleColumn extends Column {
+        private double[] values = new double[0];
+
+        // Powers of ten that can be represented exactly as doubles
+        private static final double[] POWERS_OF_TEN = new double[23];
+
+        // Largest mantissa that can be represented exactly as a double
+        private static final long MAXIMUM_EXACT_MANTISSA = (1L << 53);
+
+        static {
+            POWERS_OF_TEN[0] = 1;
+            for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+                POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+            }
+        }
+
+        @Override
+        public Class<?> getType() {
+            return Double.class;
+        }
+
+        @Override
+        public Object get(int index) {
+            return isNull(index) ? null : Double.valueOf(values[index]);
+        }
+
+        public double getDouble(int index) {
+            return values[index];
+        }
+
+        @Override
+        public void set(int index, Object value) {
+            values[index] = (value == null) ? 0 : (Double)value;
+        }
+
+        @Override
+        public void append(byte[] buffer, int start, int end, Charset charset)
+            throws SerializationException {
+            // Simple decimal values whose mantissa and scale are exactly
+            // representable are converted with a single (correctly rounded)
+            // division; all other values are parsed as text
+            int i = start;
+            boolean negative = false;
+            if (i < end
+                && (buffer[i] == '-' || buffer[i] == '+')) {
+                negative = (buffer[i] == '-');
+                i++;
+            }
+
+            long mantissa = 0;
+            int digits = 0;
+            int scale = -1;
+
+            while (i < end) {
+                byte b = buffer[i];
+
+                if (b >= '0' && b <= '9') {
+                    mantissa = mantissa * 10 + (b - '0');
+                    digits++;
+
+                    if (scale != -1) {
+                        scale++;
+                    }
+                } else if (b == '.' && scale == -1) {
+                    scale = 0;
+                } else {
+                    break;
+                }
+
+                i++;
+            }
+
+            double value;
+            if (i == end
+                && digits > 0
+                && digits <= 18
+                && mantissa <= MAXIMUM_EXACT_MANTISSA
+                && scale < POWERS_OF_TEN.length) {
+                value = (scale > 0) ? mantissa / POWERS_OF_TEN[scale] : mantissa;
+
+                if (negative) {
+                    value = -value;
+                }
+            } else {
+                String text = new String(buffer, start, end - start, charset);
+
+                try {
+                    value = Double.parseDouble(text);
+                } catch (NumberFormatException exception) {
+                    throw invalidValue(Double.class, text);
+                }
+            }
+
+            ensureCapacity(length + 1);
+            values[length++] = value;
+        }
+
+        @Override
+        public void append(String value) throws SerializationException {
+            try {
+                double doubleValue = Double.parseDouble(value);
+                ensureCapacity(length + 1);
+                values[length++] = doubleValue;
+            } catch (NumberFormatException exception) {
+                throw invalidValue(Double.class, value);
+            }
+        }
+
+        @Override
+        public void appendAll(Column column) {
+            DoubleColumn doubleColumn = (DoubleColumn)column;
+            ensureCapacity(length + column.length);
+            System.arraycopy(doubleColumn.values, 0, values, length, column.length);
+            length += column.length;
+            appendNulls(column);
+        }
+
+        @Override
+        protected void ensureCapacity(int capacity) {
+            if (capacity > values.length) {
+                double[] values = new double[getCapacity(this.values.length, capacity)];
+                System.arraycopy(this.values, 0, values, 0, length);
+                this.values = values;
+            }
+        }
+    }
+
+    static final class BooleanColumn extends Column {
+        private boolean[] values = new boolean[0];
+
+        @Override
+        public Class<?> getType() {
+            return Boolean.class;
+        }
+
+        @Override
+        public Object get(int index) {
+            return isNull(index) ? null : Boolean.valueOf(values[index]);
+        }
+
+        public boolean getBoolean(int index) {
+            return values[index];
+        }
+
+        @Override
+        public void set(int index, Object value) {
+            values[index] = (value == null) ? false : (Boolean)value;
+        }
+
+        @Override
+        public void append(byte[] buffer, int start, int end, Charset charset)
+            throws SerializationException {
+            append(new String(buffer, start, end - start, charset));
+        }
+
+        @Override
+        public void append(String value) throws SerializationException {
+            boolean booleanValue;
+            if (value.equalsIgnoreCase("true")) {
+                booleanValue = true;
+            } else if (value.equalsIgnoreCase("false")) {
+                booleanValue = false;
+            } else {
+                throw invalidValue(Boolean.class, value);
+            }
+
+            ensureCapacity(length + 1);
+            values[length++] = booleanValue;
+        }
+
+        @Override
+        public void appendAll(Column column) {
+            BooleanColumn booleanColumn = (BooleanColumn)column;
+            ensureCapacity(length + column.length);
+            System.arraycopy(booleanColumn.values, 0, values, length, column.length);
+            length += column.length;
+            appendNulls(column);
+        }
+
+        @Override
+        protected void ensureCapacity(int capacity) {
+            if (capacity > values.length) {
+                boolean[] values = new boolean[getCapacity(this.values.length, capacity)];
+                System.arraycopy(this.values, 0, values, 0, length);
+                this.values = values;
+            }
+        }
+    }
+
+    private class RowIterator implements Iterator<Dictionary<String, Object>> {
+        private int index = 0;
+
+        @Override
+        public boolean hasNext() {
+            return (index < length);
+        }
+
+        @Override
+        public Dictionary<String, Object> next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+
+            return new Row(index++);
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    private ArrayList<String> keys;
+    private Column[] columns;
+    private int length;
+
+    private HashMap<String, Integer> columnIndexes = new HashMap<String, Integer>();
+
+    private ListListenerList<Dictionary<String, Object>> listListeners =
+        new ListListenerList<Dictionary<String, Object>>();
+
+    CSVTable(Sequence<String> keys, Column[] columns, int length) {
+        this.keys = new ArrayList<String>(keys);
+        this.columns = columns;
+        this.length = length;
+
+        for (int i = 0, n = keys.getLength(); i < n; i++) {
+            columnIndexes.put(keys.get(i), i);
+        }
+    }
+
+    /**
+     * Returns the column keys.
+     */
+    public Sequence<String> getKeys() {
+        return new org.apache.pivot.collections.immutable.ImmutableList<String>(keys);
+    }
+
+    /**
+     * Returns the index of the column with the given key.
+     */
+    public int getColumnIndex(String key) {
+        Integer index = columnIndexes.get(key);
+        if (index == null) {
+            throw new IllegalArgumentException("\"" + key + "\" is not a column key.");
+        }
+
+        return index;
+    }
+
+    /**
+     * Returns the type of the values in the given column.
+     */
+    public Class<?> getColumnType(int column) {
+        return columns[column].getType();
+    }
+
+    /**
+     * Returns a value, boxed if necessary.
+     */
+    public Object getValue(int row, int column) {
+        checkRow(row);
+        return columns[column].get(row);
+    }
+
+    /**
+     * Updates a value.
+     *
+     * @return
+     * The previous value.
+     */
+    public Object setValue(int row, int column, Object value) {
+        checkRow(row);
+
+        Column c = columns[column];
+        if (value != null
+            && !c.getType().isInstance(value)) {
+            throw new IllegalArgumentException("value is not an instance of "
+                + c.getType().getName() + ".");
+        }
+
+        Object previousValue = c.get(row);
+
+        c.setNull(row, (value == null));
+        c.set(row, value);
+
+        listListeners.itemUpdated(this, row, new Row(row));
+
+        return previousValue;
+    }
+
+    /**
+     * Returns <tt>true</tt> if the given value is <tt>null</tt>.
+     */
+    public boolean isNull(int row, int column) {
+        checkRow(row);
+        return columns[column].isNull(row);
+    }
+
+    public String getString(int row, int column) {
+        checkRow(row);
+        return (String)columns[column].get(row);
+    }
+
+    /**
+     * Returns a value from an <tt>Integer</tt> column, or 0 if the value is
+     * <tt>null</tt>.
+     */
+    public int getInt(int row, int column) {
+        checkRow(row);
+        return ((IntColumn)columns[column]).getInt(row);
+    }
+
+    /**
+     * Returns a value from a <tt>Long</tt> column, or 0 if the value is
+     * <tt>null</tt>.
+     */
+    public long getLong(int row, int column) {
+        checkRow(row);
+        return ((LongColumn)columns[column]).getLong(row);
+    }
+
+    /**
+     * Returns a value from a <tt>Double</tt> column, or 0 if the value is
+     * <tt>null</tt>.
+     */
+    public double getDouble(int row, int column) {
+        checkRow(row);
+        return ((DoubleColumn)columns[column]).getDouble(row);
+    }
+
+    /**
+     * Returns a value from a <tt>Boolean</tt> column, or <tt>false</tt> if the
+     * value is <tt>null</tt>.
+     */
+    public boolean getBoolean(int row, int column) {
+        checkRow(row);
+        return ((BooleanColumn)columns[column]).getBoolean(row);
+    }
+
+    private void checkRow(int row) {
+        if (row < 0 || row >= length) {
+            throw new IndexOutOfBoundsException();
+        }
+    }
+
+    @Override
+    public int add(Dictionary<String, Object> item) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void insert(Dictionary<String, Object> item, int index) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Dictionary<String, Object> update(int index, Dictionary<String, Object> item) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public int remove(Dictionary<String, Object> item) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Sequence<Dictionary<String, Object>> remove(int index, int count) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void clear() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Dictionary<String, Object> get(int index) {
+        checkRow(index);
+        return new Row(index);
+    }
+
+    @Override
+    public int indexOf(Dictionary<String, Object> item) {
+        int index = -1;
+
+        if (item instanceof Row) {
+            Row row = (Row)item;
+            if (row.getTable() == this) {
+                index = row.index;
+            }
+        }
+
+        return index;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return (length == 0);
+    }
+
+    @Override
+    public int getLength() {
+        return length;
+    }
+
+    @Override
+    public Comparator<Dictionary<String, Object>> getComparator() {
+        return null;
+    }
+
+    @Override
+    public void setComparator(Comparator<Dictionary<String, Object>> comparator) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Iterator<Dictionary<String, Object>> iterator() {
+        return new RowIterator();
+    }
+
+    @Override
+    public ListenerList<ListListener<Dictionary<String, Object>>> getListListeners() {
+        return listListeners;
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getName() + " [" + length + " rows]";
+    }
+
+    /**
+     * Parses an integral value from ASCII digits.
+     */
+    static long parseLong(byte[] buffer, int start, int end, Charset charset, Class<?> type)
+        throws SerializationException {
+        int i = start;
+        boolean negative = false;
+        if (i < end
+            && (buffer[i] == '-' || buffer[i] == '+')) {
+            negative = (buffer[i] == '-');
+            i++;
+        }
+
+        // Accumulate negatively so that Long.MIN_VALUE can be represented
+        long value = 0;
+        long limit = negative ? Long.MIN_VALUE : -Long.MAX_VALUE;
+        boolean valid = (i < end);
+
+        while (i < end && valid) {
+            int digit = buffer[i++] - '0';
+
+            if (digit < 0 || digit > 9
+                || value < limit / 10) {
+                valid = false;
+            } else {
+                value *= 10;
+
+                if (value < limit + digit) {
+                    valid = false;
+                } else {
+                    value -= digit;
+                }
+            }
+        }
+
+        if (!valid) {
+            throw Column.invalidValue(type, new String(buffer, start, end - start, charset));
+        }
+
+        return negative ? value : -value;
+    }
+}
@@ -0,0 +1,777 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pivot.serialization;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import org.apache.pivot.collections.ArrayAdapter;
+import org.apache.pivot.collections.ArrayList;
+import org.apache.pivot.collections.ArrayQueue;
+import org.apache.pivot.collections.HashMap;
+import org.apache.pivot.collections.Sequence;
+
+/**
+ * Reads comma-separated value (CSV) data into a {@link CSVTable}. The input is
+ * split into line-aligned chunks that are parsed in parallel, and values are
+ * converted directly from the encoded bytes into typed column storage, so no
+ * per-row objects are created.
+ * <p>
+ * The CSV syntax is the same as that accepted by {@link CSVSerializer}. Column
+ * types are assigned per key via {@link #setColumnType(String, Class)}; the
+ * supported types are <tt>String</tt> (the default), <tt>Integer</tt>,
+ * <tt>Long</tt>, <tt>Double</tt> and <tt>Boolean</tt>. Empty values in
+ * non-string columns are read as <tt>null</tt>.
+ * <p>
+ * The character set must encode the comma, double quote, carriage return and
+ * line feed characters as the corresponding single ASCII bytes, and must not
+ * use those bytes within multi-byte sequences (e.g. UTF-8 or ISO-8859-1).
+ */
+public class CSVTableReader {
+    /**
+     * Input stream that reads a file via a series of memory-mapped windows.
+     */
+    private static class MappedFileInputStream extends InputStream {
+        private FileChannel fileChannel;
+        private long position = 0;
+        private long size;
+
+        private MappedByteBuffer buffer = null;
+
+        private static final int WINDOW_SIZE = 64 * 1024 * 1024;
+
+        public MappedFileInputStream(FileChannel fileChannel) throws IOException {
+            this.fileChannel = fileChannel;
+            size = fileChannel.size();
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] b = new byte[1];
+            return (read(b, 0, 1) == -1) ? -1 : (b[0] & 0xff);
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (buffer == null
+                || !buffer.hasRemaining()) {
+                if (position == size) {
+                    return -1;
+                }
+
+                long count = Math.min(WINDOW_SIZE, size - position);
+                buffer = fileChannel.map(FileChannel.MapMode.READ_ONLY, position, count);
+                position += count;
+            }
+
+            int count = Math.min(len, buffer.remaining());
+            buffer.get(b, off, count);
+
+            return count;
+        }
+    }
+
+    /**
+     * Range of lines to be parsed.
+     */
+    private static class Chunk {
+        public final byte[] buffer;
+        public final int start;
+        public final int end;
+        public final int lineNumber;
+
+        public Chunk(byte[] buffer, int start, int end, int lineNumber) {
+            this.buffer = buffer;
+            this.start = start;
+            this.end = end;
+            this.lineNumber = lineNumber;
+        }
+    }
+
+    /**
+     * Finds line boundaries. The quote parity determines whether a line break
+     * is part of a quoted value.
+     */
+    private static class Scanner {
+        public boolean quoted = false;
+        public int lineCount = 0;
+
+        // The end of the last line found outside of quotes, and the number of
+        // line feeds preceding it
+        public int boundary = -1;
+        public int boundaryLineCount = 0;
+
+        public void scan(byte[] buffer, int start, int end) {
+            boolean quoted = this.quoted;
+            int lineCount = this.lineCount;
+
+            for (int i = start; i < end; i++) {
+                byte b = buffer[i];
+
+                if (b <= '"') {
+                    if (b == '"') {
+                        quoted = !quoted;
+                    } else if (b == '\n' || b == '\r') {
+                        if (b == '\n') {
+                            lineCount++;
+                        }
+
+                        if (!quoted) {
+                            boundary = i + 1;
+                            boundaryLineCount = lineCount;
+                        }
+                    }
+                }
+            }
+
+            this.quoted = quoted;
+            this.lineCount = lineCount;
+        }
+    }
+
+    /**
+     * Parses the values in a chunk.
+     */
+    private class ChunkParser implements Callable<CSVTable.Column[]> {
+        private Chunk chunk;
+        private CSVTable.Column[] columns;
+
+        private byte[] buffer;
+        private int lineNumber;
+
+        // Bounds of the most recently parsed value; quoted values are
+        // unescaped into the scratch buffer
+        private byte[] value = null;
+        private int valueStart = 0;
+        private int valueEnd = 0;
+        private boolean quoted = false;
+
+        private byte[] scratch = new byte[256];
+
+        public ChunkParser(Chunk chunk, CSVTable.Column[] columns) {
+            this.chunk = chunk;
+            this.columns = columns;
+
+            buffer = chunk.buffer;
+            lineNumber = chunk.lineNumber;
+        }
+
+        @Override
+        public CSVTable.Column[] call() throws SerializationException {
+            try {
+                int end = chunk.end;
+                int i = chunk.start;
+
+                while (i < end) {
+                    byte b = buffer[i];
+
+                    if (b == '\n' || b == '\r') {
+                        // Skip blank lines
+                        i = nextLine(i, end);
+                    } else {
+                        i = parseLine(i, end);
+                    }
+                }
+            } catch (SerializationException exception) {
+                throw new SerializationException("An error occurred while processing input at line number "
+                    + (lineNumber + 1) + ": " + exception.getMessage(), exception);
+            }
+
+            return columns;
+        }
+
+        public int parseKeys(ArrayList<String> keys) throws SerializationException {
+            int end = chunk.end;
+            int i = chunk.start;
+
+            while (i < end) {
+                i = parseValue(i, end);
+                keys.add(new String(value, valueStart, valueEnd - valueStart, charset));
+
+                if (i < end
+                    && buffer[i] == ',') {
+                    i++;
+                } else {
+                    break;
+                }
+            }
+
+            return (i < end) ? nextLine(i, end) : i;
+        }
+
+        private int parseLine(int i, int end) throws SerializationException {
+            int n = columns.length;
+            int column = 0;
+
+            while (true) {
+                i = parseValue(i, end);
+
+                if (column == n) {
+                    throw new SerializationException("Line has too many values.");
+                }
+
+                CSVTable.Column c = columns[column++];
+
+                if (valueStart == valueEnd
+                    && !(quoted && c instanceof CSVTable.StringColumn)) {
+                    if (c instanceof CSVTable.StringColumn) {
+                        c.append("");
+                    } else {
+                        c.appendNull();
+                    }
+                } else if (quoted) {
+                    c.append(new String(value, valueStart, valueEnd - valueStart, charset));
+                } else {
+                    c.append(value, valueStart, valueEnd, charset);
+                }
+
+                if (i < end
+                    && buffer[i] == ',') {
+                    i++;
+                } else {
+                    break;
+                }
+            }
+
+            if (column < n) {
+                throw new SerializationException("Line data is incomplete.");
+            }
+
+            return (i < end) ? nextLine(i, end) : i;
+        }
+
+        private int parseValue(int i, int end) throws SerializationException {
+            i = skipWhitespace(i, end);
+
+            if (i < end
+                && buffer[i] == '"') {
+                // The value is bounded in quotes; the double-quote character
+                // is escaped by two successive occurrences
+                int length = 0;
+                boolean closed = false;
+                i++;
+
+                while (i < end && !closed) {
+                    byte b = buffer[i++];
+
+                    if (b == '"') {
+                        if (i < end
+                            && buffer[i] == '"') {
+                            i++;
+                        } else {
+                            closed = true;
+                        }
+                    } else if (b == '\r') {
+                        // Normalize line endings
+                        if (i < end
+                            && buffer[i] == '\n') {
+                            i++;
+                        }
+
+                        b = '\n';
+                        lineNumber++;
+                    } else if (b == '\n') {
+                        lineNumber++;
+                    }
+
+                    if (!closed) {
+                        if (length == scratch.length) {
+                            byte[] scratch = new byte[length * 2];
+                            System.arraycopy(this.scratch, 0, scratch, 0, length);
+                            this.scratch = scratch;
+                        }
+
+                        scratch[length++] = b;
+                    }
+                }
+
+                if (!closed) {
+                    throw new SerializationException("Unterminated string.");
+                }
+
+                i = skipWhitespace(i, end);
+
+                if (i < end
+                    && !isDelimiter(buffer[i])) {
+                    throw new SerializationException("Prematurely terminated quote.");
+                }
+
+                value = scratch;
+                quoted = true;
+                trim(0, length);
+            } else {
+                int start = i;
+
+                while (i < end
+                    && !isDelimiter(buffer[i])) {
+                    if (buffer[i] == '"') {
+                        throw new SerializationException("Dangling quote.");
+                    }
+
+                    i++;
+                }
+
+                value = buffer;
+                quoted = false;
+                trim(start, i);
+            }
+
+            return i;
+        }
+
+        private int nextLine(int i, int end) {
+            if (buffer[i] == '\r'
+                && i + 1 < end
+                && buffer[i + 1] == '\n') {
+                i++;
+            }
+
+            lineNumber++;
+
+            return i + 1;
+        }
+
+        private int skipWhitespace(int i, int end) {
+            while (i < end
+                && isWhitespace(buffer[i])) {
+                i++;
+            }
+
+            return i;
+        }
+
+        private void trim(int start, int end) {
+            while (start < end
+                && isTrimmable(value[start])) {
+                start++;
+            }
+
+            while (end > start
+                && isTrimmable(value[end - 1])) {
+                end--;
+            }
+
+            valueStart = start;
+            valueEnd = end;
+        }
+    }
+
+    private Charset charset;
+
+    private ArrayList<String> keys = new ArrayList<String>();
+    private HashMap<String, Class<?>> columnTypes = new HashMap<String, Class<?>>();
+
+    private int chunkSize = DEFAULT_CHUNK_SIZE;
+    private ExecutorService executorService = null;
+
+    public static final int DEFAULT_CHUNK_SIZE = 4 * 1024 * 1024;
+
+    private static final int MINIMUM_CHUNK_SIZE = 1024;
+
+    public CSVTableReader() {
+        this(Charset.forName(CSVSerializer.DEFAULT_CHARSET_NAME));
+    }
+
+    public CSVTableReader(Charset charset) {
+        if (charset == null) {
+            throw new IllegalArgumentException("charset is null.");
+        }
+
+        byte[] delimiters = ",\"\r\n".getBytes(charset);
+        if (delimiters.length != 4
+            || delimiters[0] != ','
+            || delimiters[1] != '"'
+            || delimiters[2] != '\r'
+            || delimiters[3] != '\n') {
+            throw new IllegalArgumentException(charset.name() + " is not a supported character set.");
+        }
+
+        this.charset = charset;
+    }
+
+    /**
+     * Returns the character set used to decode the CSV data.
+     */
+    public Charset getCharset() {
+        return charset;
+    }
+
+    /**
+     * Returns the keys that will be read by this reader.
+     */
+    public Sequence<String> getKeys() {
+        return keys;
+    }
+
+    /**
+     * Sets the keys that will be read by this reader. If no keys are set, they
+     * are read from the first line of the input.
+     *
+     * @param keys
+     */
+    public void setKeys(Sequence<String> keys) {
+        if (keys == null) {
+            throw new IllegalArgumentException();
+        }
+
+        this.keys = new ArrayList<String>(keys);
+    }
+
+    /**
+     * Sets the keys that will be read by this reader.
+     *
+     * @param keys
+     */
+    public void setKeys(String... keys) {
+        if (keys == null) {
+            throw new IllegalArgumentException();
+        }
+
+        setKeys(new ArrayAdapter<String>(keys));
+    }
+
+    /**
+     * Returns the type of the values in the given column.
+     */
+    public Class<?> getColumnType(String key) {
+        if (key == null) {
+            throw new IllegalArgumentException("key is null.");
+        }
+
+        Class<?> type = columnTypes.get(key);
+        return (type == null) ? String.class : type;
+    }
+
+    /**
+     * Sets the type of the values in the given column.
+     *
+     * @param key
+     *
+     * @param type
+     * The column type. Primitive types are mapped to the corresponding wrapper
+     * types.
+     */
+    public void setColumnType(String key, Class<?> type) {
+        if (key == null) {
+            throw new IllegalArgumentException("key is null.");
+        }
+
+        if (type == null) {
+            throw new IllegalArgumentException("type is null.");
+        }
+
+        if (type == Integer.TYPE) {
+            type = Integer.class;
+        } else if (type == Long.TYPE) {
+            type = Long.class;
+        } else if (type == Double.TYPE) {
+            type = Double.class;
+        } else if (type == Boolean.TYPE) {
+            type = Boolean.class;
+        }
+
+        // Validate the type
+        CSVTable.Column.newInstance(type);
+
+        columnTypes.put(key, type);
+    }
+
+    /**
+     * Returns the approximate number of bytes parsed by each task.
+     */
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    public void setChunkSize(int chunkSize) {
+        if (chunkSize < MINIMUM_CHUNK_SIZE) {
+            throw new IllegalArgumentException("chunkSize is less than " + MINIMUM_CHUNK_SIZE + ".");
+        }
+
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Returns the executor service used to parse chunks.
+     *
+     * @return
+     * The executor service, or <tt>null</tt> if a pool with one thread per
+     * available processor is created for each read.
+     */
+    public ExecutorService getExecutorService() {
+        return executorService;
+    }
+
+    public void setExecutorService(ExecutorService executorService) {
+        this.executorService = executorService;
+    }
+
+    /**
+     * Reads values from a CSV file. The file is read via memory-mapped
+     * windows.
+     *
+     * @param file
+     */
+    public CSVTable read(File file) throws IOException, SerializationException {
+        if (file == null) {
+            throw new IllegalArgumentException("file is null.");
+        }
+
+        FileInputStream fileInputStream = new FileInputStream(file);
+
+        CSVTable table;
+        try {
+            table = read(new MappedFileInputStream(fileInputStream.getChannel()));
+        } finally {
+            fileInputStream.close();
+        }
+
+        return table;
+    }
+
+    /**
+     * Reads values from a CSV stream. The stream is read sequentially and split
+     * into chunks, which are parsed while reading continues.
+     *
+     * @param inputStream
+     */
+    public CSVTable read(InputStream inputStream) throws IOException, SerializationException {
+        if (inputStream == null) {
+            throw new IllegalArgumentException("inputStream is null.");
+        }
+
+        ExecutorService executorService = this.executorService;
+        if (executorService == null) {
+            executorService = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(),
+                new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, CSVTableReader.class.getSimpleName());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+
+        try {
+            return read(inputStream, executorService);
+        } finally {
+            if (executorService != this.executorService) {
+                executorService.shutdown();
+            }
+        }
+    }
+
+    private CSVTable read(InputStream inputStream, ExecutorService executorService)
+        throws IOException, SerializationException {
+        // Limit the number of chunks held in memory at any one time
+        int maximumPendingCount = Runtime.getRuntime().availableProcessors() * 2;
+
+        ArrayQueue<Future<CSVTable.Column[]>> pending = new ArrayQueue<Future<CSVTable.Column[]>>();
+        ArrayList<CSVTable.Column[]> results = new ArrayList<CSVTable.Column[]>();
+
+        Sequence<String> keys = this.keys;
+        Class<?>[] types = null;
+
+        byte[] buffer = new byte[chunkSize];
+        int length = 0;
+        boolean eof = false;
+
+        int scanned = 0;
+        int lineNumber = 0;
+        Scanner scanner = new Scanner();
+
+        try {
+            while (!eof) {
+                // Fill the buffer
+                while (!eof
+                    && length < buffer.length) {
+                    int count = inputStream.read(buffer, length, buffer.length - length);
+                    if (count == -1) {
+                        eof = true;
+                    } else {
+                        length += count;
+                    }
+                }
+
+                // Find the last line boundary
+                scanner.scan(buffer, scanned, length);
+                scanned = length;
+
+                if (eof) {
+                    scanner.boundary = length;
+                    scanner.boundaryLineCount = scanner.lineCount;
+                }
+
+                int boundary = scanner.boundary;
+
+                if (boundary == -1) {
+                    // The buffer does not contain a complete line
+                    byte[] previousBuffer = buffer;
+                    buffer = new byte[previousBuffer.length * 2];
+                    System.arraycopy(previousBuffer, 0, buffer, 0, length);
+                    continue;
+                }
+
+                int start = 0;
+
+                if (keys.getLength() == 0) {
+                    // Read the keys from the first line
+                    ArrayList<String> header = new ArrayList<String>();
+                    start = new ChunkParser(new Chunk(buffer, 0, boundary, 0), null).parseKeys(header);
+
+                    if (header.getLength() == 0) {
+                        throw new SerializationException("Could not read keys from input.");
+                    }
+
+                    keys = header;
+                    this.keys = header;
+
+                    for (int i = 0; i < start; i++) {
+                        if (buffer[i] == '\n') {
+                            lineNumber++;
+                        }
+                    }
+                }
+
+                if (types == null) {
+                    int n = keys.getLength();
+                    types = new Class<?>[n];
+
+                    for (int i = 0; i < n; i++) {
+                        types[i] = getColumnType(keys.get(i));
+                    }
+                }
+
+                // Parse the chunk
+                if (start < boundary) {
+                    // Size the columns using the number of lines in the chunk
+                    int capacity = scanner.boundaryLineCount - lineNumber + 1;
+
+                    CSVTable.Column[] columns = new CSVTable.Column[types.length];
+                    for (int i = 0; i < types.length; i++) {
+                        columns[i] = CSVTable.Column.newInstance(types[i]);
+                        columns[i].ensureCapacity(capacity);
+                    }
+
+                    pending.enqueue(executorService.submit(new ChunkParser(new Chunk(buffer, start,
+                        boundary, lineNumber), columns)));
+
+                    while (pending.getLength() > maximumPendingCount) {
+                        results.add(getResult(pending.dequeue()));
+                    }
+                }
+
+                lineNumber = scanner.boundaryLineCount;
+
+                // Move the remainder of the buffer to a new buffer
+                int remainder = length - boundary;
+                byte[] previousBuffer = buffer;
+                buffer = new byte[Math.max(chunkSize, remainder * 2)];
+                System.arraycopy(previousBuffer, boundary, buffer, 0, remainder);
+
+                length = remainder;
+                scanned = remainder;
+                scanner.boundary = -1;
+            }
+
+            while (pending.getLength() > 0) {
+                results.add(getResult(pending.dequeue()));
+            }
+        } finally {
+            while (pending.getLength() > 0) {
+                pending.dequeue().cancel(true);
+            }
+        }
+
+        if (types == null) {
+            throw new SerializationException("Could not read keys from input.");
+        }
+
+        // Join the chunk columns
+        int rowCount = 0;
+        for (CSVTable.Column[] columns : results) {
+            rowCount += columns[0].length;
+        }
+
+        CSVTable.Column[] columns = new CSVTable.Column[types.length];
+
+        for (int i = 0; i < types.length; i++) {
+            CSVTable.Column column = CSVTable.Column.newInstance(types[i]);
+            column.ensureCapacity(rowCount);
+
+            for (int j = 0, n = results.getLength(); j < n; j++) {
+                CSVTable.Column[] chunkColumns = results.get(j);
+                column.appendAll(chunkColumns[i]);
+                chunkColumns[i] = null;
+            }
+
+            columns[i] = column;
+        }
+
+        return new CSVTable(keys, columns, rowCount);
+    }
+
+    private static CSVTable.Column[] getResult(Future<CSVTable.Column[]> future)
+        throws IOException, SerializationException {
+        CSVTable.Column[] columns;
+
+        try {
+            columns = future.get();
+        } catch (InterruptedException exception) {
+            throw new InterruptedIOException();
+        } catch (ExecutionException exception) {
+            Throwable cause = exception.getCause();
+
+            if (cause instanceof SerializationException) {
+                throw new SerializationException(cause.getMessage(), cause);
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException)cause;
+            } else if (cause instanceof Error) {
+                throw (Error)cause;
+            } else {
+                throw new SerializationException(cause);
+            }
+        }
+
+        return columns;
+    }
+
+    private static boolean isDelimiter(byte b) {
+        return (b == ',' || b == '\n' || b == '\r');
+    }
+
+    private static boolean isWhitespace(byte b) {
+        return (b >= 0 && b <= ' ' && b != '\n' && b != '\r');
+    }
+
+    private static boolean isTrimmable(byte b) {
+        return (b >= 0 && b <= ' ');
+    }
+}
@@ -17,27 +17,40 @@
 package org.apache.pivot.sql;
 
 import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
 import java.util.Comparator;
 import java.util.Date;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.NoSuchElementException;
+import java.util.concurrent.ExecutorService;
 
 import org.apache.pivot.collections.ArrayList;
 import org.apache.pivot.collections.ArrayAdapter;
 import org.apache.pivot.collections.HashMap;
+import org.apache.pivot.collections.HashSet;
 import org.apache.pivot.collections.List;
 import org.apache.pivot.collections.ListListener;
 import org.apache.pivot.collections.Map;
 import org.apache.pivot.collections.Sequence;
 import org.apache.pivot.util.ListenerList;
+import org.apache.pivot.util.concurrent.Task;
+import org.apache.pivot.util.concurrent.TaskExecutorService;
 
 /**
 * Implementation of the {@link List} interface that is backed by a
 * instance of {@link java.sql.ResultSet}.
 * <p>
-* Note that this list is not suitable for random access and can only be
-* navigated via an iterator.
+* If the result set is scrollable, the list supports random access: rows are
+* read on demand in windows of {@link #getWindowSize()} rows and held in a
+* least-recently-used cache of {@link #getCacheSize()} rows, and the windows
+* adjacent to the most recently read window are prefetched in the background.
+* The list can therefore be used directly as table view data. Otherwise, the
+* list can only be navigated via an iterator.
+* <p>
+* If no fields are specified, all columns are included, keyed by column
+* label.
 */
 public class ResultList implements List<Map<String, Object>> {
    /**
@@ -98,6 +111,118 @@ public class ResultList implements List<Map<String, Object>> {
        }
    }
 
+   /**
+    * Reads a column value from the current row of a result set.
+    */
+   private abstract static class Extractor {
+       public abstract Object get(ResultSet resultSet, int column) throws SQLException;
+
+       public static Extractor getExtractor(Class<?> type) {
+           Extractor extractor;
+
+           if (type == Boolean.class
+               || type == Boolean.TYPE) {
+               extractor = BOOLEAN_EXTRACTOR;
+           } else if (type == Byte.class
+               || type == Byte.TYPE) {
+               extractor = BYTE_EXTRACTOR;
+           } else if (type == Short.class
+               || type == Short.TYPE) {
+               extractor = SHORT_EXTRACTOR;
+           } else if (type == Integer.class
+               || type == Integer.TYPE) {
+               extractor = INTEGER_EXTRACTOR;
+           } else if (type == Long.class
+               || type == Long.TYPE) {
+               extractor = LONG_EXTRACTOR;
+           } else if (type == Float.class
+               || type == Float.TYPE) {
+               extractor = FLOAT_EXTRACTOR;
+           } else if (type == Double.class
+               || type == Double.TYPE) {
+               extractor = DOUBLE_EXTRACTOR;
+           } else if (type == String.class) {
+               extractor = STRING_EXTRACTOR;
+           } else if (type == Date.class) {
+               extractor = DATE_EXTRACTOR;
+           } else {
+               extractor = OBJECT_EXTRACTOR;
+           }
+
+           return extractor;
+       }
+   }
+
+   private static final Extractor BOOLEAN_EXTRACTOR = new Extractor() {
+       @Override
+       public Object get(ResultSet resultSet, int column) throws SQLException {
+           return resultSet.getBoolean(column);
+       }
+   };
+
+   private static final Extractor BYTE_EXTRACTOR = new Extractor() {
+       @Override
+       public Object get(ResultSet resultSet, int column) throws SQLException {
+           return resultSet.getByte(column);
+       }
+   };
+
+   private static final Extractor SHORT_EXTRACTOR = new Extractor() {
+       @Override
+       public Object get(ResultSet resultSet, int column) throws SQLException {
+           return resultSet.getShort(column);
+       }
+   };
+
+   private static final Extractor INTEGER_EXTRACTOR = new Extractor() {
+       @Override
+       public Object get(ResultSet resultSet, int column) throws SQLException {
+           return resultSet.getInt(column);
+       }
+   };
+
+   private static final Extractor LONG_EXTRACTOR = new Extractor() {
+       @Override
+       public Object get(ResultSet resultSet, int column) throws SQLException {
+           return resultSet.getLong(column);
+       }
+   };
+
+   private static final Extractor FLOAT_EXTRACTOR = new Extractor() {
+       @Override
+       public Object get(ResultSet resultSet, int column) throws SQLException {
+           return resultSet.getFloat(column);
+       }
+   };
+
+   private static final Extractor DOUBLE_EXTRACTOR = new Extractor() {
+       @Override
+       public Object get(ResultSet resultSet, int column) throws SQLException {
+           return resultSet.getDouble(column);
+       }
+   };
+
+   private static final Extractor STRING_EXTRACTOR = new Extractor() {
+       @Override
+       public Object get(ResultSet resultSet, int column) throws SQLException {
+           return resultSet.getString(column);
+       }
+   };
+
+   private static final Extractor DATE_EXTRACTOR = new Extractor() {
+       @Override
+       public Object get(ResultSet resultSet, int column) throws SQLException {
+           return resultSet.getDate(column);
+       }
+   };
+
+   private static final Extractor OBJECT_EXTRACTOR = new Extractor() {
+       @Override
+       public Object get(ResultSet resultSet, int column) throws SQLException {
+           return resultSet.getObject(column);
+       }
+   };
+
    private class ResultListItemIterator implements Iterator<Map<String, Object>> {
        private boolean hasNext = true;
        private boolean moveNext = true;
@@ -123,49 +248,9 @@ public class ResultList implements List<Map<String, Object>> {
                throw new NoSuchElementException();
            }
 
-           HashMap<String, Object> item = new HashMap<String, Object>();
-
+           Map<String, Object> item;
            try {
-               for (Field field : fields) {
-                   Object value;
-
-                   if (field.type == Boolean.class
-                       || field.type == Boolean.TYPE) {
-                       value = resultSet.getBoolean(field.columnName);
-                   } else if (field.type == Byte.class
-                       || field.type == Byte.TYPE) {
-                       value = resultSet.getByte(field.columnName);
-                   } else if (field.type == Short.class
-                       || field.type == Short.TYPE) {
-                       value = resultSet.getShort(field.columnName);
-                   } else if (field.type == Integer.class
-                       || field.type == Integer.TYPE) {
-                       value = resultSet.getInt(field.columnName);
-                   } else if (field.type == Long.class
-                       || field.type == Long.TYPE) {
-                       value = resultSet.getLong(field.columnName);
-                   } else if (field.type == Float.class
-                       || field.type == Float.TYPE) {
-                       value = resultSet.getFloat(field.columnName);
-                   } else if (field.type == Double.class
-                       || field.type == Double.TYPE) {
-                       value = resultSet.getDouble(field.columnName);
-                   } else if (field.type == String.class) {
-                       value = resultSet.getString(field.columnName);
-                   } else if (field.type == Date.class) {
-                       value = resultSet.getDate(field.columnName);
-                   } else {
-                       value = resultSet.getObject(field.columnName);
-                   }
-
-                   if (resultSet.wasNull()) {
-                       value = null;
-                   }
-
-                   if (value != null || includeNullValues) {
-                       item.put((field.key == null) ? field.columnName : field.key, value);
-                   }
-               }
+               item = readItem();
            } catch (SQLException exception) {
                throw new RuntimeException(exception);
            }
@@ -181,12 +266,104 @@ public class ResultList implements List<Map<String, Object>> {
        }
    }
 
+   private class ScrollableItemIterator implements Iterator<Map<String, Object>> {
+       private int index = 0;
+
+       private ArrayList<Map<String, Object>> window = null;
+       private int windowStart = 0;
+
+       @Override
+       public boolean hasNext() {
+           return (index < getLength());
+       }
+
+       @Override
+       public Map<String, Object> next() {
+           if (!hasNext()) {
+               throw new NoSuchElementException();
+           }
+
+           // Iterate over whole windows so that rows are read once even if
+           // they do not remain in the cache
+           if (window == null
+               || index >= windowStart + window.getLength()) {
+               windowStart = index;
+
+               try {
+                   window = loadWindow(windowStart);
+               } catch (SQLException exception) {
+                   throw new RuntimeException(exception);
+               }
+
+               if (window.getLength() == 0) {
+                   throw new NoSuchElementException();
+               }
+
+               prefetch(windowStart + window.getLength());
+           }
+
+           return window.get(index++ - windowStart);
+       }
+
+       @Override
+       public void remove() {
+           throw new UnsupportedOperationException();
+       }
+   }
+
+   private class Prefetch implements Runnable {
+       private int start;
+
+       public Prefetch(int start) {
+           this.start = start;
+       }
+
+       @Override
+       public void run() {
+           try {
+               loadWindow(start);
+           } catch (SQLException exception) {
+               // The error will be reported if the rows are requested
+           } finally {
+               synchronized (cache) {
+                   pendingWindows.remove(start);
+               }
+           }
+       }
+   }
+
    private ResultSet resultSet;
    private ArrayList<Field> fields = new ArrayList<Field>();
    private boolean includeNullValues = false;
 
+   private int windowSize = DEFAULT_WINDOW_SIZE;
+   private int cacheSize = DEFAULT_CACHE_SIZE;
+   private ExecutorService executorService = null;
+
+   // Per-column extractors and keys, resolved when the first row is read
+   private Extractor[] extractors = null;
+   private int[] columns = null;
+   private String[] keys = null;
+
+   private volatile int length = -1;
+
+   private LinkedHashMap<Integer, Map<String, Object>> cache =
+       new LinkedHashMap<Integer, Map<String, Object>>(16, 0.75f, true) {
+       private static final long serialVersionUID = 0;
+
+       @Override
+       protected boolean removeEldestEntry(java.util.Map.Entry<Integer, Map<String, Object>> eldest) {
+           return (size() > cacheSize);
+       }
+   };
+
+   private HashSet<Integer> pendingWindows = new HashSet<Integer>();
+
    private ListListenerList<Map<String, Object>> listListeners = new ListListenerList<Map<String,Object>>();
 
+   public static final int DEFAULT_WINDOW_SIZE = 100;
+   public static final int DEFAULT_CACHE_SIZE = 1000;
+
    public ResultList(ResultSet resultSet) {
        if (resultSet == null) {
            throw new IllegalArgumentException();
@@ -209,6 +386,7 @@ public class ResultList implements List<Map<String, Object>> {
        }
 
        this.fields = new ArrayList<Field>(fields);
+       invalidate();
    }
 
    public void setFields(Field... fields) {
@@ -225,6 +403,89 @@ public class ResultList implements List<Map<String, Object>> {
 
    public void setIncludeNullValues(boolean includeNullValues) {
        this.includeNullValues = includeNullValues;
+       invalidate();
+   }
+
+   /**
+    * Returns the number of rows read from the result set at a time.
+    */
+   public int getWindowSize() {
+       return windowSize;
+   }
+
+   public void setWindowSize(int windowSize) {
+       if (windowSize < 1) {
+           throw new IllegalArgumentException("windowSize must be positive.");
+       }
+
+       synchronized (cache) {
+           this.windowSize = windowSize;
+       }
+   }
+
+   /**
+    * Returns the maximum number of rows held in the row cache.
+    */
+   public int getCacheSize() {
+       return cacheSize;
+   }
+
+   public void setCacheSize(int cacheSize) {
+       if (cacheSize < 0) {
+           throw new IllegalArgumentException("cacheSize is negative.");
+       }
+
+       synchronized (cache) {
+           this.cacheSize = cacheSize;
+
+           Iterator<Integer> iterator = cache.keySet().iterator();
+           while (cache.size() > cacheSize) {
+               iterator.next();
+               iterator.remove();
+           }
+       }
+   }
+
+   /**
+    * Returns the executor service used to prefetch rows.
+    *
+    * @return
+    * The executor service, or <tt>null</tt> if prefetches are executed at
+    * {@link Task.Priority#LOW low} priority by
+    * {@link Task#DEFAULT_EXECUTOR_SERVICE}.
+    */
+   public ExecutorService getExecutorService() {
+       return executorService;
+   }
+
+   public void setExecutorService(ExecutorService executorService) {
+       this.executorService = executorService;
+   }
+
+   /**
+    * Tests whether the list supports random access; i.e. whether the result
+    * set is scrollable.
+    */
+   public boolean isScrollable() {
+       try {
+           return (resultSet.getType() != ResultSet.TYPE_FORWARD_ONLY);
+       } catch (SQLException exception) {
+           throw new RuntimeException(exception);
+       }
+   }
+
+   /**
+    * Discards the cached rows and row count, so that they will be re-read
+    * from the result set.
+    */
+   public void invalidate() {
+       synchronized (resultSet) {
+           synchronized (cache) {
+               cache.clear();
+               extractors = null;
+               length = -1;
+           }
+       }
    }
 
    @Override
@@ -259,22 +520,85 @@ public class ResultList implements List<Map<String, Object>> {
 
    @Override
    public Map<String, Object> get(int index) {
-       throw new UnsupportedOperationException();
+       if (!isScrollable()) {
+           throw new UnsupportedOperationException();
+       }
+
+       if (index < 0
+           || index >= getLength()) {
+           throw new IndexOutOfBoundsException();
+       }
+
+       Map<String, Object> item;
+       int windowSize;
+
+       synchronized (cache) {
+           item = cache.get(index);
+           windowSize = this.windowSize;
+       }
+
+       int start = index - (index % windowSize);
+
+       if (item == null) {
+           try {
+               item = loadWindow(start).get(index - start);
+           } catch (SQLException exception) {
+               throw new RuntimeException(exception);
+           }
+
+           // Prefetch the adjacent windows
+           prefetch(start + windowSize);
+           prefetch(start - windowSize);
+       }
+
+       return item;
    }
 
    @Override
    public int indexOf(Map<String, Object> item) {
-       throw new UnsupportedOperationException();
+       int index = -1;
+
+       synchronized (cache) {
+           for (java.util.Map.Entry<Integer, Map<String, Object>> entry : cache.entrySet()) {
+               if (entry.getValue() == item) {
+                   index = entry.getKey();
+                   break;
+               }
+           }
+       }
+
+       return index;
    }
 
    @Override
    public boolean isEmpty() {
-       throw new UnsupportedOperationException();
+       if (!isScrollable()) {
+           throw new UnsupportedOperationException();
+       }
+
+       return (getLength() == 0);
    }
 
+   /**
+    * Returns the number of rows in the result set, or <tt>-1</tt> if the result
+    * set is not scrollable.
+    */
    @Override
    public int getLength() {
-       return -1;
+       if (length == -1
+           && isScrollable()) {
+           synchronized (resultSet) {
+               if (length == -1) {
+                   try {
+                       length = resultSet.last() ? resultSet.getRow() : 0;
+                   } catch (SQLException exception) {
+                       throw new RuntimeException(exception);
+                   }
+               }
+           }
+       }
+
+       return length;
    }
 
    @Override
@@ -289,11 +613,151 @@ public class ResultList implements List<Map<String, Object>> {
 
    @Override
    public Iterator<Map<String, Object>> iterator() {
-       return new ResultListItemIterator();
+       return isScrollable() ? new ScrollableItemIterator() : new ResultListItemIterator();
    }
 
    @Override
    public ListenerList<ListListener<Map<String, Object>>> getListListeners() {
        return listListeners;
    }
+
+   /**
+    * Reads the window of rows beginning at the given index into the cache.
+    */
+   private ArrayList<Map<String, Object>> loadWindow(int start) throws SQLException {
+       ArrayList<Map<String, Object>> items = new ArrayList<Map<String, Object>>(windowSize);
+
+       synchronized (resultSet) {
+           int end = Math.min(start + windowSize, getLength());
+
+           // Return the window from the cache if it has been prefetched
+           synchronized (cache) {
+               for (int i = start; i < end; i++) {
+                   Map<String, Object> item = cache.get(i);
+                   if (item == null) {
+                       break;
+                   }
+
+                   items.add(item);
+               }
+           }
+
+           if (start + items.getLength() == end) {
+               return items;
+           }
+
+           items.clear();
+
+           if (resultSet.absolute(start + 1)) {
+               for (int i = start; i < end; i++) {
+                   if (i > start
+                       && !resultSet.next()) {
+                       break;
+                   }
+
+                   items.add(readItem());
+               }
+           }
+       }
+
+       synchronized (cache) {
+           for (int i = 0, n = items.getLength(); i < n; i++) {
+               Map<String, Object> item = cache.get(start + i);
+
+               if (item == null) {
+                   cache.put(start + i, items.get(i));
+               } else {
+                   // Preserve the identity of rows that are already cached
+                   items.update(i, item);
+               }
+           }
+       }
+
+       return items;
+   }
+
+   private void prefetch(int start) {
+       if (start >= 0
+           && start < getLength()
+           && cacheSize >= windowSize * 3) {
+           synchronized (cache) {
+               if (cache.containsKey(start)
+                   || pendingWindows.contains(start)) {
+                   return;
+               }
+
+               pendingWindows.add(start);
+           }
+
+           ExecutorService executorService = this.executorService;
+           if (executorService == null) {
+               executorService = Task.DEFAULT_EXECUTOR_SERVICE;
+           }
+
+           Prefetch prefetch = new Prefetch(start);
+
+           if (executorService instanceof TaskExecutorService) {
+               ((TaskExecutorService)executorService).execute(prefetch, Task.Priority.LOW);
+           } else {
+               executorService.execute(prefetch);
+           }
+       }
+   }
+
+   /**
+    * Reads the current row of the result set.
+    */
+   private Map<String, Object> readItem() throws SQLException {
+       if (extractors == null) {
+           resolveColumns();
+       }
+
+       HashMap<String, Object> item = new HashMap<String, Object>();
+
+       for (int i = 0; i < extractors.length; i++) {
+           Object value = extractors[i].get(resultSet, columns[i]);
+
+           if (resultSet.wasNull()) {
+               value = null;
+           }
+
+           if (value != null || includeNullValues) {
+               item.put(keys[i], value);
+           }
+       }
+
+       return item;
+   }
+
+   private void resolveColumns() throws SQLException {
+       int n = fields.getLength();
+
+       if (n == 0) {
+           ResultSetMetaData resultSetMetaData = resultSet.getMetaData();
+           n = resultSetMetaData.getColumnCount();
+
+           extractors = new Extractor[n];
+           columns = new int[n];
+           keys = new String[n];
+
+           for (int i = 0; i < n; i++) {
+               extractors[i] = OBJECT_EXTRACTOR;
+               columns[i] = i + 1;
+               keys[i] = resultSetMetaData.getColumnLabel(i + 1);
+           }
+       } else {
+           Extractor[] extractors = new Extractor[n];
+           columns = new int[n];
+           keys = new String[n];
+
+           for (int i = 0; i < n; i++) {
+               Field field = fields.get(i);
+               extractors[i] = Extractor.getExtractor(field.type);
+               columns[i] = resultSet.findColumn(field.columnName);
+               keys[i] = (field.key == null) ? field.columnName : field.key;
+           }
+
+           this.extractors = extractors;
+       }
+   }
 }
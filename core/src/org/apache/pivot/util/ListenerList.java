@@ -18,52 +18,44 @@ package org.apache.pivot.util;
 
 import java.util.Iterator;
 import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 
 /**
  * Abstract base class for listener lists.
  * <p>
- * NOTE This class is not inherently thread safe. Subclasses that require
- * thread-safe access should synchronize method access appropriately. Callers
- * must manually synchronize on the listener list instance to ensure thread
- * safety during iteration.
+ * Listeners are stored in an immutable array that is replaced whenever a
+ * listener is added or removed. Iteration walks the array that was current
+ * when the iterator was created, so listeners may safely be added or removed
+ * (from any thread) while an event is being fired; such changes take effect
+ * the next time the list is iterated.
+ * <p>
+ * Firing an event to an empty list costs a single array length check, and
+ * the iterator is small enough that the JIT can usually eliminate its
+ * allocation altogether.
  */
 public abstract class ListenerList<T> implements Iterable<T> {
-    // Node containing a listener in the list
-    private class Node {
-        private Node previous;
-        private Node next;
-        private T listener;
-
-        public Node(Node previous, Node next, T listener) {
-            this.previous = previous;
-            this.next = next;
-            this.listener = listener;
-        }
-    }
+    // Iterator over a snapshot of the listener array
+    private static final class ArrayIterator<T> implements Iterator<T> {
+        private final Object[] listeners;
+        private int index = 0;
 
-    // Node iterator
-    private class NodeIterator implements Iterator<T> {
-        private Node node;
-
-        public NodeIterator() {
-            this.node = first;
+        public ArrayIterator(Object[] listeners) {
+            this.listeners = listeners;
         }
 
         @Override
         public boolean hasNext() {
-            return (node != null);
+            return (index < listeners.length);
         }
 
         @Override
+        @SuppressWarnings("unchecked")
         public T next() {
-            if (node == null) {
+            if (index >= listeners.length) {
                 throw new NoSuchElementException();
             }
 
-            T listener = node.listener;
-            node = node.next;
-
-            return listener;
+            return (T)listeners[index++];
         }
 
         @Override
@@ -72,9 +64,15 @@ public abstract class ListenerList<T> implements Iterable<T> {
         }
     }
 
-    // First node in the list (we don't maintain a reference to the last
-    // node, since we need to walk the list looking for duplicates on add)
-    private Node first = null;
+    private static final Object[] EMPTY_LISTENERS = new Object[0];
+
+    @SuppressWarnings("rawtypes")
+    private static final AtomicReferenceFieldUpdater<ListenerList, Object[]> LISTENERS_UPDATER =
+        AtomicReferenceFieldUpdater.newUpdater(ListenerList.class, Object[].class, "listeners");
+
+    // The current listeners; the array is never modified once it has been
+    // published
+    private volatile Object[] listeners = EMPTY_LISTENERS;
 
     /**
      * Adds a listener to the list, if it has not previously been added.
@@ -86,22 +84,22 @@ public abstract class ListenerList<T> implements Iterable<T> {
             throw new IllegalArgumentException("listener is null.");
         }
 
-        Node node = first;
+        boolean added = false;
 
-        if (node == null) {
-            first = new Node(null, null, listener);
-        } else {
-            while (node.next != null
-                && node.listener != listener) {
-                node = node.next;
-            }
+        while (!added) {
+            Object[] listeners = this.listeners;
 
-            if (node.next == null
-                && node.listener != listener) {
-                node.next = new Node(node, null, listener);
-            } else {
+            if (indexOf(listeners, listener) != -1) {
                 System.err.println("Duplicate listener " + listener + " added to " + this);
+                break;
             }
+
+            int n = listeners.length;
+            Object[] updatedListeners = new Object[n + 1];
+            System.arraycopy(listeners, 0, updatedListeners, 0, n);
+            updatedListeners[n] = listener;
+
+            added = LISTENERS_UPDATER.compareAndSet(this, listeners, updatedListeners);
         }
     }
 
@@ -115,29 +113,43 @@ public abstract class ListenerList<T> implements Iterable<T> {
             throw new IllegalArgumentException("listener is null.");
         }
 
-        Node node = first;
-        while (node != null
-            && node.listener != listener) {
-            node = node.next;
-        }
+        boolean removed = false;
 
-        if (node == null) {
-            System.err.println("Nonexistent listener " + listener + " removed from " + this);
-        } else {
-            if (node.previous == null) {
-                first = node.next;
+        while (!removed) {
+            Object[] listeners = this.listeners;
 
-                if (first != null) {
-                    first.previous = null;
-                }
+            int index = indexOf(listeners, listener);
+            if (index == -1) {
+                System.err.println("Nonexistent listener " + listener + " removed from " + this);
+                break;
+            }
+
+            int n = listeners.length - 1;
+
+            Object[] updatedListeners;
+            if (n == 0) {
+                updatedListeners = EMPTY_LISTENERS;
             } else {
-                node.previous.next = node.next;
+                updatedListeners = new Object[n];
+                System.arraycopy(listeners, 0, updatedListeners, 0, index);
+                System.arraycopy(listeners, index + 1, updatedListeners, index, n - index);
+            }
 
-                if (node.next != null) {
-                    node.next.previous = node.previous;
-                }
+            removed = LISTENERS_UPDATER.compareAndSet(this, listeners, updatedListeners);
+        }
+    }
+
+    private static int indexOf(Object[] listeners, Object listener) {
+        int index = -1;
+
+        for (int i = 0; i < listeners.length; i++) {
+            if (listeners[i] == listener) {
+                index = i;
+                break;
             }
         }
+
+        return index;
     }
 
     /**
@@ -154,13 +166,7 @@ public abstract class ListenerList<T> implements Iterable<T> {
             throw new IllegalArgumentException("listener is null.");
         }
 
-        Node node = first;
-        while (node != null
-            && node.listener != listener) {
-            node = node.next;
-        }
-
-        return (node != null);
+        return (indexOf(listeners, listener) != -1);
     }
 
     /**
@@ -171,11 +177,11 @@ public abstract class ListenerList<T> implements Iterable<T> {
      * otherwise.
      */
     public boolean isEmpty() {
-        return (first == null);
+        return (listeners.length == 0);
     }
 
     @Override
     public Iterator<T> iterator() {
-        return new NodeIterator();
+        return new ArrayIterator<T>(listeners);
     }
 }
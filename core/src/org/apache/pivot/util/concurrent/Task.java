@@ -16,9 +16,7 @@
  */
 package org.apache.pivot.util.concurrent;
 
-import java.util.concurrent.AbstractExecutorService;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.TimeUnit;
 
 /**
  * Abstract base class for "tasks". A task is an asynchronous operation that
@@ -45,60 +43,30 @@ public abstract class Task<V> {
                 fault = throwable;
             }
 
-            TaskListener<V> taskListener;
-            synchronized (Task.this) {
-                Task.this.result = result;
-                Task.this.fault = fault;
-
-                abort = false;
-
-                taskListener = Task.this.taskListener;
-                Task.this.taskListener = null;
-            }
-
-            if (fault == null) {
-                taskListener.taskExecuted(Task.this);
-            }
-            else {
-                taskListener.executeFailed(Task.this);
-            }
+            complete(result, fault);
         }
     }
 
-    private static class DefaultExecutorService extends AbstractExecutorService {
-        private boolean shutdown = false;
-
-        @Override
-        public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
-            return true;
-        }
-
-        @Override
-        public void shutdown() {
-            shutdownNow();
-        }
-
-        @Override
-        public java.util.List<Runnable> shutdownNow() {
-            shutdown = true;
-            return new java.util.ArrayList<Runnable>();
-        }
-
-        @Override
-        public boolean isShutdown() {
-            return shutdown;
-        }
-
-        @Override
-        public boolean isTerminated() {
-            return isShutdown();
-        }
-
-        @Override
-        public void execute(Runnable command) {
-            Thread thread = new Thread(command);
-            thread.start();
-        }
+    /**
+     * Task priorities. When a task is executed by a {@link TaskExecutorService},
+     * tasks with higher priority are started before tasks with lower priority.
+     */
+    public enum Priority {
+        /**
+         * Work the user is waiting for, such as a query issued in response to
+         * user input.
+         */
+        HIGH,
+
+        /**
+         * The default priority.
+         */
+        NORMAL,
+
+        /**
+         * Background work, such as prefetching.
+         */
+        LOW
     }
 
     private ExecutorService executorService;
@@ -107,12 +75,22 @@ public abstract class Task<V> {
     private Throwable fault = null;
     private TaskListener<V> taskListener = null;
 
+    private volatile Priority priority = Priority.NORMAL;
+
     protected volatile long timeout = Long.MAX_VALUE;
     protected volatile boolean abort = false;
 
-    // TODO This is a workaround for an issue with Executors.newCachedThreadPool(), which
-    // unpredictably throws IllegalThreadStateException when run in an applet.
-    public static final ExecutorService DEFAULT_EXECUTOR_SERVICE = new DefaultExecutorService();
+    /**
+     * The executor service used by tasks that are not given one: a shared
+     * {@link TaskExecutorService}. Its worker threads are created in the thread
+     * group of the submitting thread, which avoids the
+     * <tt>IllegalThreadStateException</tt> that
+     * <tt>Executors.newCachedThreadPool()</tt> can throw in an applet. The VM
+     * does not exit while tasks are queued or running, but idle workers, which
+     * are retired after {@link TaskExecutorService#DEFAULT_KEEP_ALIVE_TIME},
+     * do not keep it alive.
+     */
+    public static final ExecutorService DEFAULT_EXECUTOR_SERVICE = new TaskExecutorService();
 
     public Task() {
         this(DEFAULT_EXECUTOR_SERVICE);
@@ -179,9 +157,65 @@ public abstract class Task<V> {
         fault = null;
         abort = false;
 
+        start(executorService);
+    }
+
+    /**
+     * Starts asynchronous execution of the task. The default implementation
+     * posts a callback that calls {@link #execute()} to the executor service.
+     * <p>
+     * Tasks whose work does not need a dedicated thread (for example,
+     * non-blocking I/O) may override this method to initiate the work
+     * directly. Such tasks must call {@link #complete(Object, Throwable)}
+     * exactly once when the work has finished.
+     *
+     * @param executorService
+     * The executor service the task was submitted to.
+     */
+    protected void start(ExecutorService executorService) {
         // Create a new execute callback and post it to the executor service
         ExecuteCallback executeCallback = new ExecuteCallback();
-        executorService.submit(executeCallback);
+
+        if (executorService instanceof TaskExecutorService) {
+            ((TaskExecutorService)executorService).execute(executeCallback, priority);
+        } else {
+            executorService.submit(executeCallback);
+        }
+    }
+
+    /**
+     * Completes asynchronous execution of the task, and notifies the task
+     * listener on the calling thread.
+     *
+     * @param result
+     * The result of the task's execution.
+     *
+     * @param fault
+     * The fault that occurred while executing the task, or <tt>null</tt> if
+     * the task succeeded.
+     */
+    protected void complete(V result, Throwable fault) {
+        TaskListener<V> taskListener;
+        synchronized (this) {
+            if (this.taskListener == null) {
+                throw new IllegalStateException("Task is not pending.");
+            }
+
+            this.result = result;
+            this.fault = fault;
+
+            abort = false;
+
+            taskListener = this.taskListener;
+            this.taskListener = null;
+        }
+
+        if (fault == null) {
+            taskListener.taskExecuted(this);
+        }
+        else {
+            taskListener.executeFailed(this);
+        }
     }
 
     /**
@@ -228,6 +262,28 @@ public abstract class Task<V> {
     }
 
 
+    /**
+     * Returns the priority with which this task is executed.
+     */
+    public Priority getPriority() {
+        return priority;
+    }
+
+    /**
+     * Sets the priority with which this task is executed. The priority is
+     * respected by {@link TaskExecutorService}; other executor services ignore
+     * it.
+     *
+     * @param priority
+     */
+    public void setPriority(Priority priority) {
+        if (priority == null) {
+            throw new IllegalArgumentException("priority is null.");
+        }
+
+        this.priority = priority;
+    }
+
     /**
      * Returns the timeout value for this task.
      *
@@ -0,0 +1,667 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pivot.util.concurrent;
+
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Executor service that runs commands on a bounded pool of worker threads,
+ * taking commands from one queue ("lane") per {@link Task.Priority task
+ * priority}. Workers always take the oldest command from the highest-priority
+ * non-empty lane, so interactive work is not held up behind background work.
+ * <p>
+ * Worker threads are created on demand, up to the maximum thread count, and
+ * retired after they have been idle for the keep-alive time. By default they
+ * are daemon threads created in the thread group of the thread that submits
+ * the command that requires them. While commands are queued or running, the
+ * executor service also keeps a single non-daemon thread alive, so pending
+ * commands are run before the VM exits but idle workers do not delay its
+ * exit.
+ * <p>
+ * Each lane keeps statistics: the number of commands submitted and completed,
+ * the current and peak queue lengths, and histograms of the time commands
+ * spend waiting in the queue and executing.
+ * <p>
+ * Because the pool is bounded, a command that blocks waiting for other
+ * commands submitted to the same executor may wait indefinitely if every
+ * worker is doing the same.
+ */
+public class TaskExecutorService extends AbstractExecutorService {
+    /**
+     * Histogram of durations. Bucket <i>i</i> counts the durations of less
+     * than 2<sup><i>i</i></sup> microseconds that do not fall into a lower
+     * bucket; the last bucket counts all longer durations.
+     */
+    public static final class Histogram {
+        private long[] counts = new long[BUCKET_COUNT];
+        private long count = 0;
+        private long total = 0;
+        private long maximum = 0;
+
+        public static final int BUCKET_COUNT = 32;
+
+        private Histogram() {
+        }
+
+        private Histogram(Histogram histogram) {
+            counts = histogram.counts.clone();
+            count = histogram.count;
+            total = histogram.total;
+            maximum = histogram.maximum;
+        }
+
+        private void add(long nanoseconds) {
+            long microseconds = nanoseconds / 1000;
+
+            int bucket = 64 - Long.numberOfLeadingZeros(microseconds);
+            counts[Math.min(bucket, BUCKET_COUNT - 1)]++;
+
+            count++;
+            total += microseconds;
+            maximum = Math.max(maximum, microseconds);
+        }
+
+        /**
+         * Returns the number of durations in the given bucket.
+         */
+        public long getCount(int bucket) {
+            return counts[bucket];
+        }
+
+        /**
+         * Returns the exclusive upper bound of the given bucket, in
+         * microseconds, or {@link Long#MAX_VALUE} for the last bucket.
+         */
+        public static long getUpperBound(int bucket) {
+            return (bucket == BUCKET_COUNT - 1) ? Long.MAX_VALUE : 1L << bucket;
+        }
+
+        /**
+         * Returns the total number of durations recorded.
+         */
+        public long getCount() {
+            return count;
+        }
+
+        /**
+         * Returns the mean duration, in microseconds.
+         */
+        public long getMean() {
+            return (count == 0) ? 0 : total / count;
+        }
+
+        /**
+         * Returns the longest duration, in microseconds.
+         */
+        public long getMaximum() {
+            return maximum;
+        }
+
+        /**
+         * Returns an upper bound for the given percentile of the durations, in
+         * microseconds.
+         *
+         * @param percentile
+         * The percentile, between 0 and 100.
+         */
+        public long getPercentile(double percentile) {
+            if (percentile < 0
+                || percentile > 100) {
+                throw new IllegalArgumentException("percentile is out of range.");
+            }
+
+            long threshold = (long)Math.ceil(count * percentile / 100);
+
+            long n = 0;
+            int bucket = 0;
+            while (bucket < BUCKET_COUNT - 1
+                && (n += counts[bucket]) < threshold) {
+                bucket++;
+            }
+
+            return Math.min(getUpperBound(bucket), maximum);
+        }
+    }
+
+    /**
+     * Queue and statistics for a single task priority.
+     */
+    public final class Lane {
+        private final Task.Priority priority;
+        private ArrayDeque<Command> queue = new ArrayDeque<Command>();
+
+        private long submittedCount = 0;
+        private long completedCount = 0;
+        private int peakQueueLength = 0;
+        private Histogram waitTimes = new Histogram();
+        private Histogram executionTimes = new Histogram();
+
+        private Lane(Task.Priority priority) {
+            this.priority = priority;
+        }
+
+        public Task.Priority getPriority() {
+            return priority;
+        }
+
+        /**
+         * Returns the number of commands waiting in the lane.
+         */
+        public int getQueueLength() {
+            synchronized (TaskExecutorService.this) {
+                return queue.size();
+            }
+        }
+
+        /**
+         * Returns the largest number of commands that have waited in the lane
+         * at once.
+         */
+        public int getPeakQueueLength() {
+            synchronized (TaskExecutorService.this) {
+                return peakQueueLength;
+            }
+        }
+
+        public long getSubmittedCount() {
+            synchronized (TaskExecutorService.this) {
+                return submittedCount;
+            }
+        }
+
+        public long getCompletedCount() {
+            synchronized (TaskExecutorService.this) {
+                return completedCount;
+            }
+        }
+
+        /**
+         * Returns a snapshot of the times that commands have waited in the
+         * lane before starting.
+         */
+        public Histogram getWaitTimes() {
+            synchronized (TaskExecutorService.this) {
+                return new Histogram(waitTimes);
+            }
+        }
+
+        /**
+         * Returns a snapshot of the times that commands have taken to
+         * execute.
+         */
+        public Histogram getExecutionTimes() {
+            synchronized (TaskExecutorService.this) {
+                return new Histogram(executionTimes);
+            }
+        }
+
+        /**
+         * Resets the lane's statistics.
+         */
+        public void resetStatistics() {
+            synchronized (TaskExecutorService.this) {
+                submittedCount = 0;
+                completedCount = 0;
+                peakQueueLength = queue.size();
+                waitTimes = new Histogram();
+                executionTimes = new Histogram();
+            }
+        }
+    }
+
+    /**
+     * A queued command.
+     */
+    private static class Command {
+        public final Runnable runnable;
+        public final Lane lane;
+        public final long submitTime;
+
+        public Command(Runnable runnable, Lane lane) {
+            this.runnable = runnable;
+            this.lane = lane;
+            submitTime = System.nanoTime();
+        }
+    }
+
+    /**
+     * Body of the non-daemon thread that keeps the VM running while default
+     * workers have commands queued or running. It lingers briefly once no
+     * commands remain, so that a burst of commands does not start one guard
+     * per command.
+     */
+    private class ExitGuard implements Runnable {
+        @Override
+        public void run() {
+            while (true) {
+                long lingerTime = 0;
+
+                synchronized (TaskExecutorService.this) {
+                    if (pendingCount == 0) {
+                        lingerTime = EXIT_GUARD_LINGER_TIME - (System.nanoTime() - exitGuardIdleTime);
+
+                        if (lingerTime <= 0) {
+                            exitGuardThread = null;
+                            break;
+                        }
+                    }
+                }
+
+                if (lingerTime > 0) {
+                    LockSupport.parkNanos(this, lingerTime);
+                } else {
+                    LockSupport.park(this);
+                }
+
+                Thread.interrupted();
+            }
+        }
+    }
+
+    /**
+     * Worker thread body.
+     */
+    private class Worker implements Runnable {
+        @Override
+        public void run() {
+            try {
+                Command command;
+                while ((command = take()) != null) {
+                    long startTime = System.nanoTime();
+
+                    try {
+                        command.runnable.run();
+                    } catch (RuntimeException exception) {
+                        handleUncaughtException(exception);
+                    } catch (Error error) {
+                        handleUncaughtException(error);
+                    }
+
+                    long endTime = System.nanoTime();
+
+                    synchronized (TaskExecutorService.this) {
+                        Lane lane = command.lane;
+                        lane.completedCount++;
+                        lane.waitTimes.add(startTime - command.submitTime);
+                        lane.executionTimes.add(endTime - startTime);
+
+                        idleThreadCount++;
+                        commandCompleted(1);
+                    }
+
+                    // Clear any interrupt left by the command or by shutdownNow()
+                    Thread.interrupted();
+                }
+            } finally {
+                synchronized (TaskExecutorService.this) {
+                    workers.remove(Thread.currentThread());
+                    TaskExecutorService.this.notifyAll();
+                }
+            }
+        }
+    }
+
+    private int maximumThreadCount;
+    private long keepAliveTime;
+    private ThreadFactory threadFactory;
+
+    private Lane[] lanes;
+
+    private java.util.HashSet<Thread> workers = new java.util.HashSet<Thread>();
+    private int idleThreadCount = 0;
+    private int queueLength = 0;
+    private int pendingCount = 0;
+    private Thread exitGuardThread = null;
+    private long exitGuardIdleTime = 0;
+    private boolean shutdown = false;
+
+    public static final int DEFAULT_MAXIMUM_THREAD_COUNT =
+        Math.max(8, Runtime.getRuntime().availableProcessors() * 4);
+    public static final long DEFAULT_KEEP_ALIVE_TIME = 60000;
+
+    private static final long EXIT_GUARD_LINGER_TIME = 100000000; // 100 ms
+
+    /**
+     * Creates an executor service with the default maximum thread count and
+     * keep-alive time, which creates daemon threads.
+     */
+    public TaskExecutorService() {
+        this(DEFAULT_MAXIMUM_THREAD_COUNT, DEFAULT_KEEP_ALIVE_TIME, null);
+    }
+
+    /**
+     * Creates an executor service.
+     *
+     * @param maximumThreadCount
+     * The maximum number of worker threads.
+     *
+     * @param keepAliveTime
+     * The time, in milliseconds, after which an idle worker thread is retired.
+     *
+     * @param threadFactory
+     * The factory used to create worker threads, or <tt>null</tt> to create
+     * daemon threads, with a non-daemon thread kept alive while commands are
+     * queued or running.
+     */
+    public TaskExecutorService(int maximumThreadCount, long keepAliveTime,
+        ThreadFactory threadFactory) {
+        if (maximumThreadCount <= 0) {
+            throw new IllegalArgumentException("maximumThreadCount must be positive.");
+        }
+
+        if (keepAliveTime < 0) {
+            throw new IllegalArgumentException("keepAliveTime is negative.");
+        }
+
+        this.maximumThreadCount = maximumThreadCount;
+        this.keepAliveTime = keepAliveTime;
+        this.threadFactory = threadFactory;
+
+        Task.Priority[] priorities = Task.Priority.values();
+        lanes = new Lane[priorities.length];
+        for (int i = 0; i < priorities.length; i++) {
+            lanes[i] = new Lane(priorities[i]);
+        }
+    }
+
+    /**
+     * Returns a thread factory that creates virtual threads, if the Java
+     * runtime supports them.
+     *
+     * @return
+     * The thread factory, or <tt>null</tt> if virtual threads are not
+     * supported.
+     */
+    public static ThreadFactory getVirtualThreadFactory() {
+        ThreadFactory threadFactory;
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            threadFactory = (ThreadFactory)Class.forName("java.lang.Thread$Builder")
+                .getMethod("factory").invoke(builder);
+        } catch (Exception exception) {
+            threadFactory = null;
+        }
+
+        return threadFactory;
+    }
+
+    public synchronized int getMaximumThreadCount() {
+        return maximumThreadCount;
+    }
+
+    public synchronized void setMaximumThreadCount(int maximumThreadCount) {
+        if (maximumThreadCount <= 0) {
+            throw new IllegalArgumentException("maximumThreadCount must be positive.");
+        }
+
+        this.maximumThreadCount = maximumThreadCount;
+
+        // Retire surplus idle workers, or start workers for queued commands
+        notifyAll();
+        startWorkers();
+    }
+
+    public synchronized long getKeepAliveTime() {
+        return keepAliveTime;
+    }
+
+    public synchronized void setKeepAliveTime(long keepAliveTime) {
+        if (keepAliveTime < 0) {
+            throw new IllegalArgumentException("keepAliveTime is negative.");
+        }
+
+        this.keepAliveTime = keepAliveTime;
+        notifyAll();
+    }
+
+    /**
+     * Returns the number of worker threads.
+     */
+    public synchronized int getThreadCount() {
+        return workers.size();
+    }
+
+    /**
+     * Returns the lane for the given priority.
+     */
+    public Lane getLane(Task.Priority priority) {
+        if (priority == null) {
+            throw new IllegalArgumentException("priority is null.");
+        }
+
+        return lanes[priority.ordinal()];
+    }
+
+    /**
+     * Executes a command with {@link Task.Priority#NORMAL normal} priority.
+     */
+    @Override
+    public void execute(Runnable command) {
+        execute(command, Task.Priority.NORMAL);
+    }
+
+    /**
+     * Executes a command with the given priority.
+     *
+     * @throws RejectedExecutionException
+     * If the executor service has been shut down.
+     */
+    public synchronized void execute(Runnable command, Task.Priority priority) {
+        if (command == null) {
+            throw new IllegalArgumentException("command is null.");
+        }
+
+        if (shutdown) {
+            throw new RejectedExecutionException("Executor service has been shut down.");
+        }
+
+        Lane lane = getLane(priority);
+        lane.queue.add(new Command(command, lane));
+        lane.submittedCount++;
+        lane.peakQueueLength = Math.max(lane.peakQueueLength, lane.queue.size());
+        queueLength++;
+        pendingCount++;
+
+        if (threadFactory == null
+            && exitGuardThread == null) {
+            exitGuardThread = new Thread(new ExitGuard(), getClass().getName() + "$ExitGuard");
+            exitGuardThread.setDaemon(false);
+            exitGuardThread.start();
+        }
+
+        notify();
+        startWorkers();
+    }
+
+    @Override
+    public synchronized void shutdown() {
+        shutdown = true;
+        notifyAll();
+    }
+
+    @Override
+    public List<Runnable> shutdownNow() {
+        java.util.ArrayList<Runnable> commands = new java.util.ArrayList<Runnable>();
+
+        synchronized (this) {
+            shutdown = true;
+
+            for (Lane lane : lanes) {
+                for (Command command : lane.queue) {
+                    commands.add(command.runnable);
+                }
+
+                lane.queue.clear();
+            }
+
+            commandCompleted(queueLength);
+            queueLength = 0;
+
+            for (Thread worker : workers) {
+                worker.interrupt();
+            }
+
+            notifyAll();
+        }
+
+        return commands;
+    }
+
+    @Override
+    public synchronized boolean isShutdown() {
+        return shutdown;
+    }
+
+    @Override
+    public synchronized boolean isTerminated() {
+        return (shutdown
+            && queueLength == 0
+            && workers.isEmpty());
+    }
+
+    @Override
+    public synchronized boolean awaitTermination(long timeout, TimeUnit unit)
+        throws InterruptedException {
+        long remaining = unit.toNanos(timeout);
+        long deadline = System.nanoTime() + remaining;
+
+        while (!isTerminated()
+            && remaining > 0) {
+            TimeUnit.NANOSECONDS.timedWait(this, remaining);
+            remaining = deadline - System.nanoTime();
+        }
+
+        return isTerminated();
+    }
+
+    /**
+     * Called when a command throws. The default implementation passes the
+     * exception to the thread's uncaught exception handler.
+     */
+    protected void handleUncaughtException(Throwable throwable) {
+        Thread thread = Thread.currentThread();
+        Thread.UncaughtExceptionHandler handler = thread.getUncaughtExceptionHandler();
+
+        if (handler != null) {
+            handler.uncaughtException(thread, throwable);
+        }
+    }
+
+    /**
+     * Records that commands have completed or been removed from the queue,
+     * and releases the exit guard when none remain.
+     */
+    private void commandCompleted(int count) {
+        pendingCount -= count;
+
+        if (pendingCount == 0
+            && exitGuardThread != null) {
+            exitGuardIdleTime = System.nanoTime();
+            LockSupport.unpark(exitGuardThread);
+        }
+    }
+
+    /**
+     * Starts workers until there is one for each queued command that is not
+     * going to be taken by an idle worker, or the maximum is reached.
+     */
+    private void startWorkers() {
+        while (queueLength > idleThreadCount
+            && workers.size() < maximumThreadCount) {
+            Worker worker = new Worker();
+
+            Thread thread;
+            if (threadFactory == null) {
+                thread = new Thread(worker, getClass().getName());
+                thread.setDaemon(true);
+            } else {
+                thread = threadFactory.newThread(worker);
+            }
+
+            workers.add(thread);
+            thread.start();
+
+            // Count the new worker as idle until it takes a command
+            idleThreadCount++;
+        }
+    }
+
+    /**
+     * Waits for the next command.
+     *
+     * @return
+     * The command, or <tt>null</tt> if the worker should exit.
+     */
+    private synchronized Command take() {
+        // New workers are counted as idle; see startWorkers()
+        Command command = null;
+        long idleTime = 0;
+
+        while (command == null) {
+            if (workers.size() > maximumThreadCount) {
+                break;
+            }
+
+            command = poll();
+
+            if (command == null) {
+                if (shutdown
+                    || idleTime >= keepAliveTime) {
+                    break;
+                }
+
+                long time = System.currentTimeMillis();
+
+                try {
+                    wait(keepAliveTime - idleTime);
+                } catch (InterruptedException exception) {
+                    // Interrupted by shutdownNow(); re-check the state
+                }
+
+                idleTime += System.currentTimeMillis() - time;
+            }
+        }
+
+        idleThreadCount--;
+
+        if (command == null) {
+            workers.remove(Thread.currentThread());
+        }
+
+        return command;
+    }
+
+    private Command poll() {
+        Command command = null;
+
+        for (int i = 0; i < lanes.length && command == null; i++) {
+            command = lanes[i].queue.poll();
+        }
+
+        if (command != null) {
+            queueLength--;
+        }
+
+        return command;
+    }
+}
@@ -32,6 +32,7 @@ public class TaskGroup extends Task<Void>
     implements Group<Task<?>>, Iterable<Task<?>> {
     private HashSet<Task<?>> tasks = new HashSet<Task<?>>();
     private int complete = 0;
+    private RuntimeException startFault = null;
 
     public TaskGroup() {
         this(DEFAULT_EXECUTOR_SERVICE);
@@ -78,6 +79,63 @@ public class TaskGroup extends Task<Void>
         return null;
     }
 
+    /**
+     * Executes the tasks in the group without occupying a thread while they
+     * run; the group completes when the last task completes.
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    protected void start(ExecutorService executorService) {
+        final int count = getCount();
+
+        if (count == 0) {
+            super.start(executorService);
+        } else {
+            TaskListener<Object> taskListener = new TaskListener<Object>() {
+                @Override
+                public void taskExecuted(Task<Object> task) {
+                    subtaskCompleted(count, null);
+                }
+
+                @Override
+                public void executeFailed(Task<Object> task) {
+                    subtaskCompleted(count, null);
+                }
+            };
+
+            complete = 0;
+            startFault = null;
+
+            for (Task<?> task : tasks) {
+                try {
+                    ((Task<Object>)task).execute(taskListener);
+                } catch (RuntimeException exception) {
+                    // The task will not notify the listener
+                    subtaskCompleted(count, exception);
+                }
+            }
+        }
+    }
+
+    private void subtaskCompleted(int count, RuntimeException exception) {
+        boolean completed;
+        Throwable fault;
+        synchronized (this) {
+            if (exception != null
+                && startFault == null) {
+                startFault = exception;
+            }
+
+            complete++;
+            completed = (complete == count);
+            fault = startFault;
+        }
+
+        if (completed) {
+            complete(null, fault);
+        }
+    }
+
     /**
      * Aborts all tasks in this group.
      */
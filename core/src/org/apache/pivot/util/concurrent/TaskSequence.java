@@ -76,6 +76,58 @@ public class TaskSequence extends Task<Void>
         return null;
     }
 
+    /**
+     * Executes the tasks in the sequence without occupying a thread while they
+     * run; each task is started when the previous one completes.
+     */
+    @Override
+    protected void start(ExecutorService executorService) {
+        if (tasks.getLength() == 0) {
+            super.start(executorService);
+        } else {
+            executeTask(0);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void executeTask(final int index) {
+        if (abort) {
+            complete(null, new AbortException());
+            return;
+        }
+
+        Task<Object> task;
+        synchronized (this) {
+            task = (Task<Object>)tasks.get(index);
+        }
+
+        try {
+            task.execute(new TaskListener<Object>() {
+                @Override
+                public void taskExecuted(Task<Object> task) {
+                    taskCompleted();
+                }
+
+                @Override
+                public void executeFailed(Task<Object> task) {
+                    taskCompleted();
+                }
+
+                private void taskCompleted() {
+                    int next = index + 1;
+
+                    if (next == getLength()) {
+                        complete(null, null);
+                    } else {
+                        executeTask(next);
+                    }
+                }
+            });
+        } catch (RuntimeException exception) {
+            complete(null, exception);
+        }
+    }
+
     @Override
     public synchronized int add(Task<?> task) {
         int index = tasks.getLength();
@@ -0,0 +1,128 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pivot.beans;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.StringReader;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.junit.Test;
+
+/**
+ * Tests the stream reader that replays a recorded template. The template is
+ * package-private, so this test lives in the template's package.
+ */
+public class BXMLTemplateTest {
+    private static final String DOCUMENT = "<root>\n"
+        + "    <!-- Comment -->\n"
+        + "    <?test data?>\n"
+        + "    <a>one<?test data?> two<!-- Comment --></a>\n"
+        + "    <b/>\n"
+        + "    <c>text</c>\n"
+        + "</root>";
+
+    @Test
+    public void testNextTag() throws XMLStreamException {
+        XMLStreamReader reader = replay(DOCUMENT);
+
+        assertEquals(XMLStreamConstants.START_ELEMENT, reader.nextTag());
+        assertEquals("root", reader.getLocalName());
+
+        // Whitespace, comments and processing instructions are skipped
+        assertEquals(XMLStreamConstants.START_ELEMENT, reader.nextTag());
+        assertEquals("a", reader.getLocalName());
+
+        reader.next();
+        try {
+            reader.nextTag();
+            fail("Expected XMLStreamException.");
+        } catch (XMLStreamException exception) {
+            // Expected; " two" is not whitespace
+        }
+
+        reader = replay(DOCUMENT);
+        reader.nextTag();
+        reader.nextTag();
+        reader.getElementText();
+
+        assertEquals(XMLStreamConstants.START_ELEMENT, reader.nextTag());
+        assertEquals("b", reader.getLocalName());
+        assertEquals(XMLStreamConstants.END_ELEMENT, reader.nextTag());
+        assertEquals("b", reader.getLocalName());
+    }
+
+    @Test
+    public void testGetElementText() throws XMLStreamException {
+        XMLStreamReader reader = replay(DOCUMENT);
+
+        reader.nextTag();
+        reader.nextTag();
+
+        // Character data is concatenated up to the end element, skipping
+        // processing instructions and comments
+        assertEquals("one two", reader.getElementText());
+        assertEquals(XMLStreamConstants.END_ELEMENT, reader.getEventType());
+        assertEquals("a", reader.getLocalName());
+
+        reader.nextTag();
+        assertEquals("", reader.getElementText());
+        assertEquals("b", reader.getLocalName());
+
+        reader.nextTag();
+        assertEquals("text", reader.getElementText());
+
+        // The reader must be on a start element
+        try {
+            reader.getElementText();
+            fail("Expected XMLStreamException.");
+        } catch (XMLStreamException exception) {
+            // Expected
+        }
+
+        // The element may not contain other elements
+        reader = replay(DOCUMENT);
+        reader.nextTag();
+
+        try {
+            reader.getElementText();
+            fail("Expected XMLStreamException.");
+        } catch (XMLStreamException exception) {
+            // Expected
+        }
+    }
+
+    private static XMLStreamReader replay(String document) throws XMLStreamException {
+        XMLInputFactory xmlInputFactory = XMLInputFactory.newInstance();
+        xmlInputFactory.setProperty("javax.xml.stream.isCoalescing", true);
+
+        BXMLTemplate.Recorder recorder = new BXMLTemplate.Recorder(
+            xmlInputFactory.createXMLStreamReader(new StringReader(document)),
+            BXMLTemplateTest.class.getClassLoader());
+
+        while (recorder.hasNext()) {
+            recorder.next();
+        }
+
+        return recorder.getTemplate().getXMLStreamReader();
+    }
+}
@@ -0,0 +1,263 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pivot.beans.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.net.URLClassLoader;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+
+import org.apache.pivot.beans.BXMLCompiler;
+import org.apache.pivot.beans.BXMLSerializer;
+import org.apache.pivot.beans.CompiledBXML;
+import org.apache.pivot.collections.Map;
+import org.apache.pivot.serialization.SerializationException;
+import org.junit.Test;
+
+public class BXMLCompilerTest {
+    private static final String RESOURCE_NAME = "bxml_compiler_test.bxml";
+    private static final String INCLUDE_RESOURCE_NAME = "bxml_compiler_test_include.bxml";
+
+    private static final int LOAD_COUNT = 2000;
+
+    @Test
+    public void testClassName() {
+        assertEquals("org.apache.pivot.tutorials.hello_bxml",
+            CompiledBXML.getClassName("org/apache/pivot/tutorials/hello.bxml"));
+        assertEquals("a.list_views_bxml", CompiledBXML.getClassName("/a/list-views.bxml"));
+        assertEquals("_1_bxml", CompiledBXML.getClassName("1.bxml"));
+    }
+
+    @Test(expected=SerializationException.class)
+    public void testScriptNotSupported() throws IOException, SerializationException {
+        String bxml = "<test:BXMLSampleContainer xmlns:bxml=\"http://pivot.apache.org/bxml\""
+            + " xmlns:test=\"org.apache.pivot.beans.test\">"
+            + "<bxml:script>var x = 1;</bxml:script></test:BXMLSampleContainer>";
+
+        new BXMLCompiler().compile("org/apache/pivot/beans/test/script.bxml",
+            new java.io.ByteArrayInputStream(bxml.getBytes("UTF-8")));
+    }
+
+    @Test
+    public void testCompiledBXML() throws IOException, SerializationException {
+        ClassLoader classLoader = compile();
+        if (classLoader == null) {
+            System.out.println("No system Java compiler is available; skipping test.");
+            return;
+        }
+
+        // Load the document via the interpreter
+        BXMLSerializer interpretingSerializer = new BXMLSerializer();
+        BXMLSampleContainer interpreted = (BXMLSampleContainer)interpretingSerializer.readObject(
+            getClass().getResource(RESOURCE_NAME));
+        verify(interpreted, interpretingSerializer.getNamespace());
+
+        // Load the document via the compiled class
+        Thread thread = Thread.currentThread();
+        ClassLoader contextClassLoader = thread.getContextClassLoader();
+        thread.setContextClassLoader(classLoader);
+
+        BXMLSampleContainer compiled;
+        BXMLSerializer compiledSerializer = new BXMLSerializer();
+        try {
+            compiled = (BXMLSampleContainer)compiledSerializer.readObject(getClass(), RESOURCE_NAME);
+        } finally {
+            thread.setContextClassLoader(contextClassLoader);
+        }
+
+        verify(compiled, compiledSerializer.getNamespace());
+        assertSame(compiled, compiledSerializer.getRoot());
+
+        assertEquals(interpretingSerializer.getNamespace().getCount(),
+            compiledSerializer.getNamespace().getCount());
+    }
+
+    private static void verify(BXMLSampleContainer root, Map<String, Object> namespace) {
+        assertEquals("Sample", root.getTitle());
+        assertTrue(root.isInitialized());
+
+        assertEquals("red", root.getProperties().get("color"));
+        assertEquals("1", root.getProperties().get("size"));
+
+        @SuppressWarnings("unchecked")
+        Map<String, Object> content = (Map<String, Object>)root.getContent();
+        assertEquals("1", content.get("a"));
+        assertEquals("Shared", content.get("b"));
+        assertEquals("$literal", content.get("c"));
+
+        assertEquals(4, root.getItems().getLength());
+
+        BXMLSampleItem shared = (BXMLSampleItem)namespace.get("shared");
+        assertEquals("shared", shared.getId());
+        assertEquals(7, shared.getCount());
+
+        BXMLSampleItem first = (BXMLSampleItem)root.getItems().get(0);
+        assertSame(first, root.getFirst());
+        assertSame(first, namespace.get("first"));
+        assertSame(content, namespace.get("data"));
+        assertEquals("first", first.getId());
+        assertEquals("First", first.getName());
+        assertEquals(1, first.getCount());
+        assertEquals(2.5, first.getWeight(), 0);
+        assertEquals(BXMLSampleItem.Kind.FANCY, first.getKind());
+        assertTrue(first.getIcon().toString().endsWith("/org/apache/pivot/beans/test/icon.png"));
+        assertSame(shared, first.getNext());
+        assertEquals("L1", BXMLSampleContainer.getLabel(first));
+
+        // The second item's name is bound to the first item's name
+        BXMLSampleItem second = (BXMLSampleItem)root.getItems().get(1);
+        assertNull(second.getId());
+        assertEquals("1", second.getName());
+        assertEquals(2, second.getCount());
+        assertEquals("L2", BXMLSampleContainer.getLabel(second));
+
+        content.put("a", "2");
+        assertEquals("2", second.getName());
+        assertEquals("2", root.getProperties().get("size"));
+
+        assertSame(shared, root.getItems().get(2));
+
+        BXMLSampleItem included = (BXMLSampleItem)root.getItems().get(3);
+        assertSame(included, namespace.get("included"));
+        assertEquals("included", included.getId());
+        assertEquals("Included", included.getName());
+        assertEquals(5, included.getCount());
+        assertEquals(0.5, included.getWeight(), 0);
+    }
+
+    @Test
+    public void startupSpeedTest() throws IOException, SerializationException {
+        ClassLoader classLoader = compile();
+        if (classLoader == null) {
+            System.out.println("No system Java compiler is available; skipping test.");
+            return;
+        }
+
+        URL location = getClass().getResource(RESOURCE_NAME);
+
+        // Time the first load, which includes class loading and (for the
+        // interpreter) XML parser initialization
+        long t0 = System.nanoTime();
+        new BXMLSerializer().readObject(location);
+        long t1 = System.nanoTime();
+        System.out.println("Interpreted BXML, first load: " + ((t1 - t0) / 1000) + "us");
+
+        Thread thread = Thread.currentThread();
+        ClassLoader contextClassLoader = thread.getContextClassLoader();
+        thread.setContextClassLoader(classLoader);
+
+        try {
+            t0 = System.nanoTime();
+            new BXMLSerializer().readObject(getClass(), RESOURCE_NAME);
+            t1 = System.nanoTime();
+            System.out.println("Compiled BXML, first load: " + ((t1 - t0) / 1000) + "us");
+
+            // Time subsequent loads
+            for (int i = 0; i < LOAD_COUNT; i++) {
+                new BXMLSerializer().readObject(location);
+                new BXMLSerializer().readObject(getClass(), RESOURCE_NAME);
+            }
+
+            t0 = System.nanoTime();
+            for (int i = 0; i < LOAD_COUNT; i++) {
+                new BXMLSerializer().readObject(location);
+            }
+            t1 = System.nanoTime();
+            System.out.println("Interpreted BXML: " + ((t1 - t0) / (LOAD_COUNT * 1000L)) + "us per load");
+
+            t0 = System.nanoTime();
+            for (int i = 0; i < LOAD_COUNT; i++) {
+                new BXMLSerializer().readObject(getClass(), RESOURCE_NAME);
+            }
+            t1 = System.nanoTime();
+            System.out.println("Compiled BXML: " + ((t1 - t0) / (LOAD_COUNT * 1000L)) + "us per load");
+        } finally {
+            thread.setContextClassLoader(contextClassLoader);
+        }
+    }
+
+    /**
+     * Compiles the test documents and returns a class loader for the
+     * generated classes, or <tt>null</tt> if no Java compiler is available.
+     */
+    private ClassLoader compile() throws IOException, SerializationException {
+        JavaCompiler javaCompiler = ToolProvider.getSystemJavaCompiler();
+        if (javaCompiler == null) {
+            return null;
+        }
+
+        File directory = File.createTempFile("bxml", "");
+        directory.delete();
+        directory.mkdir();
+        directory.deleteOnExit();
+
+        BXMLCompiler bxmlCompiler = new BXMLCompiler();
+        String packagePath = getClass().getPackage().getName().replace('.', '/');
+
+        String[] arguments = {"-nowarn", "-classpath", System.getProperty("java.class.path"),
+            "-d", directory.getPath(), null, null};
+
+        String[] resourceNames = {RESOURCE_NAME, INCLUDE_RESOURCE_NAME};
+        for (int i = 0; i < resourceNames.length; i++) {
+            String resourcePath = packagePath + "/" + resourceNames[i];
+
+            InputStream inputStream = getClass().getResourceAsStream(resourceNames[i]);
+            String source;
+            try {
+                source = bxmlCompiler.compile(resourcePath, inputStream);
+            } finally {
+                inputStream.close();
+            }
+
+            String className = CompiledBXML.getClassName(resourcePath);
+            File sourceFile = new File(directory, className.substring(className.lastIndexOf('.') + 1)
+                + ".java");
+            sourceFile.deleteOnExit();
+
+            java.io.Writer writer = new java.io.OutputStreamWriter(new java.io.FileOutputStream(sourceFile),
+                "UTF-8");
+            try {
+                writer.write(source);
+            } finally {
+                writer.close();
+            }
+
+            arguments[5 + i] = sourceFile.getPath();
+        }
+
+        assertEquals(0, javaCompiler.run(null, null, null, arguments));
+
+        File classDirectory = new File(directory, packagePath);
+        assertNotNull(classDirectory.list());
+        for (File file : classDirectory.listFiles()) {
+            file.deleteOnExit();
+        }
+
+        return new URLClassLoader(new URL[] {directory.toURI().toURL()},
+            getClass().getClassLoader());
+    }
+}
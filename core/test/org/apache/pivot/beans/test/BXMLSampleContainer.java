@@ -0,0 +1,87 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pivot.beans.test;
+
+import java.net.URL;
+
+import org.apache.pivot.beans.BXML;
+import org.apache.pivot.beans.Bindable;
+import org.apache.pivot.beans.DefaultProperty;
+import org.apache.pivot.collections.ArrayList;
+import org.apache.pivot.collections.HashMap;
+import org.apache.pivot.collections.Map;
+import org.apache.pivot.util.Resources;
+
+@DefaultProperty("items")
+public class BXMLSampleContainer implements Bindable {
+    private String title = null;
+    private Object content = null;
+    private ArrayList<Object> items = new ArrayList<Object>();
+    private HashMap<String, Object> properties = new HashMap<String, Object>();
+
+    @BXML private BXMLSampleItem first = null;
+    private boolean initialized = false;
+
+    public BXMLSampleContainer() {
+        properties.put("size", null);
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public void setTitle(String title) {
+        this.title = title;
+    }
+
+    public Object getContent() {
+        return content;
+    }
+
+    public void setContent(Object content) {
+        this.content = content;
+    }
+
+    public ArrayList<Object> getItems() {
+        return items;
+    }
+
+    public HashMap<String, Object> getProperties() {
+        return properties;
+    }
+
+    public BXMLSampleItem getFirst() {
+        return first;
+    }
+
+    public boolean isInitialized() {
+        return initialized;
+    }
+
+    @Override
+    public void initialize(Map<String, Object> namespace, URL location, Resources resources) {
+        initialized = true;
+    }
+
+    public static String getLabel(BXMLSampleItem item) {
+        return item.label;
+    }
+
+    public static void setLabel(BXMLSampleItem item, String label) {
+        item.label = label;
+    }
+}
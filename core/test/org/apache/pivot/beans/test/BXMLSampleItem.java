@@ -0,0 +1,110 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pivot.beans.test;
+
+import java.net.URL;
+
+import org.apache.pivot.beans.IDProperty;
+import org.apache.pivot.util.ListenerList;
+
+@IDProperty("id")
+public class BXMLSampleItem {
+    public enum Kind {
+        PLAIN,
+        FANCY
+    }
+
+    private String id = null;
+    private String name = null;
+    private int count = 0;
+    private double weight = 0;
+    private Kind kind = Kind.PLAIN;
+    private URL icon = null;
+    private Object next = null;
+
+    private ListenerList<BXMLSampleItemListener> listeners = new ListenerList<BXMLSampleItemListener>() {};
+
+    String label = null;
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public void setCount(int count) {
+        int previousCount = this.count;
+
+        if (count != previousCount) {
+            this.count = count;
+
+            for (BXMLSampleItemListener listener : listeners) {
+                listener.countChanged(this, previousCount);
+            }
+        }
+    }
+
+    public double getWeight() {
+        return weight;
+    }
+
+    public void setWeight(double weight) {
+        this.weight = weight;
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    public void setKind(Kind kind) {
+        this.kind = kind;
+    }
+
+    public URL getIcon() {
+        return icon;
+    }
+
+    public void setIcon(URL icon) {
+        this.icon = icon;
+    }
+
+    public Object getNext() {
+        return next;
+    }
+
+    public void setNext(Object next) {
+        this.next = next;
+    }
+
+    public ListenerList<BXMLSampleItemListener> getBXMLSampleItemListeners() {
+        return listeners;
+    }
+}
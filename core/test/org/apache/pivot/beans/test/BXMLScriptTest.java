@@ -0,0 +1,160 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pivot.beans.test;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+
+import javax.script.ScriptContext;
+import javax.script.ScriptEngine;
+import javax.script.ScriptEngineManager;
+import javax.script.ScriptException;
+import javax.script.SimpleBindings;
+
+import org.apache.pivot.beans.BXMLSerializer;
+import org.apache.pivot.collections.List;
+import org.apache.pivot.serialization.SerializationException;
+import org.junit.Test;
+
+public class BXMLScriptTest {
+    private static final int EVENT_COUNT = 100000;
+
+    // Nashorn's global object defines its own "arguments" property, which
+    // hides the handler's binding of the same name
+    private static final String ARGUMENTS = "context.getAttribute('arguments')";
+
+    @Test
+    public void testListenerScript() throws IOException, SerializationException {
+        if (!isScriptingAvailable()) {
+            System.out.println("No JavaScript engine is available; skipping test.");
+            return;
+        }
+
+        // The handler fires its own event; each invocation must see its own
+        // arguments
+        BXMLSerializer serializer = new BXMLSerializer();
+        BXMLSampleItem item = (BXMLSampleItem)read(serializer,
+            "(function(args) { if (args[0].count &lt; 3) { args[0].count = args[0].count + 1; }"
+            + " log.add(args[1]); })(" + ARGUMENTS + ");");
+
+        item.setCount(1);
+
+        @SuppressWarnings("unchecked")
+        List<Object> log = (List<Object>)serializer.getNamespace().get("log");
+        assertEquals(3, log.getLength());
+        assertEquals(2, ((Number)log.get(0)).intValue());
+        assertEquals(1, ((Number)log.get(1)).intValue());
+        assertEquals(0, ((Number)log.get(2)).intValue());
+        assertEquals(3, item.getCount());
+
+        item.setCount(2);
+        assertEquals(5, log.getLength());
+        assertEquals(2, ((Number)log.get(3)).intValue());
+        assertEquals(3, ((Number)log.get(4)).intValue());
+    }
+
+    @Test
+    public void testListenerScriptVariables() throws IOException, SerializationException {
+        if (!isScriptingAvailable()) {
+            System.out.println("No JavaScript engine is available; skipping test.");
+            return;
+        }
+
+        // Variables defined by one invocation are not visible to the next
+        BXMLSerializer serializer = new BXMLSerializer();
+        BXMLSampleItem item = (BXMLSampleItem)read(serializer,
+            "log.add(typeof previous); var previous = 1;");
+
+        item.setCount(1);
+        item.setCount(2);
+
+        @SuppressWarnings("unchecked")
+        List<Object> log = (List<Object>)serializer.getNamespace().get("log");
+        assertEquals(2, log.getLength());
+        assertEquals("undefined", log.get(0));
+        assertEquals("undefined", log.get(1));
+    }
+
+    @Test
+    public void dispatchSpeedTest() throws IOException, SerializationException, ScriptException {
+        if (!isScriptingAvailable()) {
+            System.out.println("No JavaScript engine is available; skipping test.");
+            return;
+        }
+
+        String script = "(function(args) { args[0].name = 'Count ' + args[1]; })(" + ARGUMENTS + ");";
+
+        // Evaluate the script source for every event, as the handler did
+        // before scripts were compiled
+        ScriptEngine scriptEngine = new ScriptEngineManager().getEngineByName("javascript");
+        BXMLSampleItem item = new BXMLSampleItem();
+
+        for (int i = 0; i < EVENT_COUNT / 10; i++) {
+            evaluate(scriptEngine, script, item, i);
+        }
+
+        long t0 = System.nanoTime();
+        for (int i = 0; i < EVENT_COUNT; i++) {
+            evaluate(scriptEngine, script, item, i);
+        }
+        long t1 = System.nanoTime();
+        System.out.println("Evaluated handler: " + ((t1 - t0) / EVENT_COUNT) + "ns per event");
+
+        // Dispatch events to a handler loaded from BXML
+        item = (BXMLSampleItem)read(new BXMLSerializer(), script);
+
+        for (int i = 0; i < EVENT_COUNT / 10; i++) {
+            item.setCount(i + 1);
+        }
+
+        t0 = System.nanoTime();
+        for (int i = 0; i < EVENT_COUNT; i++) {
+            item.setCount(i);
+        }
+        t1 = System.nanoTime();
+        System.out.println("Compiled handler: " + ((t1 - t0) / EVENT_COUNT) + "ns per event");
+
+        assertEquals("Count " + (EVENT_COUNT - 2), item.getName());
+    }
+
+    private static void evaluate(ScriptEngine scriptEngine, String script, BXMLSampleItem item,
+        int previousCount) throws ScriptException {
+        SimpleBindings bindings = new SimpleBindings();
+        bindings.put("arguments", new Object[] {item, previousCount});
+        scriptEngine.setBindings(bindings, ScriptContext.ENGINE_SCOPE);
+        scriptEngine.eval(script);
+    }
+
+    private static Object read(BXMLSerializer serializer, String script)
+        throws IOException, SerializationException {
+        String bxml = "<?language javascript?>"
+            + "<test:BXMLSampleItem xmlns:bxml=\"http://pivot.apache.org/bxml\""
+            + " xmlns:test=\"org.apache.pivot.beans.test\""
+            + " xmlns:collections=\"org.apache.pivot.collections\""
+            + " test:BXMLSampleItemListener.countChanged=\"" + script + "\">"
+            + "<bxml:define><collections:ArrayList bxml:id=\"log\"/></bxml:define>"
+            + "</test:BXMLSampleItem>";
+
+        return serializer.readObject(new ByteArrayInputStream(bxml.getBytes("UTF-8")));
+    }
+
+    private static boolean isScriptingAvailable() {
+        return (new ScriptEngineManager().getEngineByName("javascript") != null);
+    }
+}
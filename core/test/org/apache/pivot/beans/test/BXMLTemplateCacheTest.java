@@ -0,0 +1,215 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pivot.beans.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.net.URL;
+
+import org.apache.pivot.beans.BXMLSerializer;
+import org.apache.pivot.beans.BXMLTemplateCache;
+import org.apache.pivot.collections.Map;
+import org.apache.pivot.serialization.SerializationException;
+import org.junit.Test;
+
+public class BXMLTemplateCacheTest {
+    private static final String RESOURCE_NAME = "bxml_compiler_test.bxml";
+
+    private static final int LOAD_COUNT = 2000;
+
+    @Test
+    public void testCachedRead() throws IOException, SerializationException {
+        BXMLTemplateCache templateCache = new BXMLTemplateCache();
+        URL location = getClass().getResource(RESOURCE_NAME);
+
+        // The first read parses the document and its include
+        BXMLSerializer serializer = new BXMLSerializer();
+        serializer.setTemplateCache(templateCache);
+        verify((BXMLSampleContainer)serializer.readObject(location), serializer.getNamespace());
+
+        assertEquals(0L, templateCache.getHits());
+        assertEquals(2L, templateCache.getMisses());
+        assertEquals(2, templateCache.getCount());
+
+        // Subsequent reads replay the parsed documents
+        for (int i = 0; i < 2; i++) {
+            serializer = new BXMLSerializer();
+            serializer.setTemplateCache(templateCache);
+            verify((BXMLSampleContainer)serializer.readObject(location), serializer.getNamespace());
+        }
+
+        assertEquals(4L, templateCache.getHits());
+        assertEquals(2L, templateCache.getMisses());
+        assertTrue(templateCache.getParseTimeSaved() > 0);
+
+        templateCache.resetStatistics();
+        assertEquals(0L, templateCache.getHits());
+        assertEquals(0L, templateCache.getMisses());
+        assertEquals(0L, templateCache.getParseTimeSaved());
+    }
+
+    @Test
+    public void testInvalidate() throws IOException, SerializationException {
+        BXMLTemplateCache templateCache = new BXMLTemplateCache();
+        URL location = getClass().getResource(RESOURCE_NAME);
+
+        read(templateCache, location);
+
+        assertTrue(templateCache.invalidate(location));
+        assertFalse(templateCache.invalidate(location));
+        assertEquals(1, templateCache.getCount());
+
+        read(templateCache, location);
+        assertEquals(3L, templateCache.getMisses());
+        assertEquals(1L, templateCache.getHits());
+
+        templateCache.clear();
+        assertEquals(0, templateCache.getCount());
+    }
+
+    @Test
+    public void testEviction() throws IOException, SerializationException {
+        BXMLTemplateCache templateCache = new BXMLTemplateCache(1);
+        URL location = getClass().getResource(RESOURCE_NAME);
+
+        // The include is the most recently used document, so the main
+        // document is evicted
+        read(templateCache, location);
+        assertEquals(1, templateCache.getCount());
+
+        read(templateCache, location);
+        assertEquals(3L, templateCache.getMisses());
+        assertEquals(1L, templateCache.getHits());
+
+        templateCache.setCapacity(0);
+        assertEquals(0, templateCache.getCount());
+    }
+
+    @Test
+    public void testFileModified() throws IOException, SerializationException {
+        BXMLTemplateCache templateCache = new BXMLTemplateCache();
+
+        File file = File.createTempFile("bxml_template_cache_test", ".bxml");
+        file.deleteOnExit();
+
+        try {
+            write(file, "A");
+
+            URL location = file.toURI().toURL();
+            assertEquals("A", ((BXMLSampleItem)read(templateCache, location)).getName());
+            assertEquals("A", ((BXMLSampleItem)read(templateCache, location)).getName());
+            assertEquals(1L, templateCache.getHits());
+
+            write(file, "B");
+            file.setLastModified(file.lastModified() + 2000);
+
+            assertEquals("B", ((BXMLSampleItem)read(templateCache, location)).getName());
+            assertEquals(1L, templateCache.getHits());
+            assertEquals(2L, templateCache.getMisses());
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void loadSpeedTest() throws IOException, SerializationException {
+        URL location = getClass().getResource(RESOURCE_NAME);
+
+        BXMLTemplateCache templateCache = new BXMLTemplateCache();
+
+        for (int i = 0; i < LOAD_COUNT; i++) {
+            BXMLSerializer serializer = new BXMLSerializer();
+            serializer.setTemplateCache(null);
+            serializer.readObject(location);
+
+            serializer = new BXMLSerializer();
+            serializer.setTemplateCache(templateCache);
+            serializer.readObject(location);
+        }
+
+        long t0 = System.nanoTime();
+        for (int i = 0; i < LOAD_COUNT; i++) {
+            BXMLSerializer serializer = new BXMLSerializer();
+            serializer.setTemplateCache(null);
+            serializer.readObject(location);
+        }
+        long t1 = System.nanoTime();
+        System.out.println("Uncached BXML: " + ((t1 - t0) / (LOAD_COUNT * 1000L)) + "us per load");
+
+        templateCache.resetStatistics();
+
+        t0 = System.nanoTime();
+        for (int i = 0; i < LOAD_COUNT; i++) {
+            BXMLSerializer serializer = new BXMLSerializer();
+            serializer.setTemplateCache(templateCache);
+            serializer.readObject(location);
+        }
+        t1 = System.nanoTime();
+        System.out.println("Cached BXML: " + ((t1 - t0) / (LOAD_COUNT * 1000L)) + "us per load ("
+            + templateCache.getHits() + " hits, " + templateCache.getMisses() + " misses, "
+            + (templateCache.getParseTimeSaved() / 1000000) + "ms parse time saved)");
+    }
+
+    private static void verify(BXMLSampleContainer root, Map<String, Object> namespace) {
+        assertEquals("Sample", root.getTitle());
+        assertTrue(root.isInitialized());
+        assertEquals("red", root.getProperties().get("color"));
+        assertEquals("1", root.getProperties().get("size"));
+        assertEquals(4, root.getItems().getLength());
+
+        BXMLSampleItem first = (BXMLSampleItem)root.getItems().get(0);
+        assertEquals("First", first.getName());
+        assertEquals(BXMLSampleItem.Kind.FANCY, first.getKind());
+        assertEquals("L1", BXMLSampleContainer.getLabel(first));
+
+        BXMLSampleItem second = (BXMLSampleItem)root.getItems().get(1);
+        assertEquals("L2", BXMLSampleContainer.getLabel(second));
+
+        @SuppressWarnings("unchecked")
+        Map<String, Object> content = (Map<String, Object>)root.getContent();
+        content.put("a", "2");
+        assertEquals("2", second.getName());
+
+        BXMLSampleItem included = (BXMLSampleItem)namespace.get("included");
+        assertEquals("Included", included.getName());
+        assertEquals(5, included.getCount());
+        assertEquals(BXMLSampleItem.Kind.PLAIN, included.getKind());
+    }
+
+    private static Object read(BXMLTemplateCache templateCache, URL location)
+        throws IOException, SerializationException {
+        BXMLSerializer serializer = new BXMLSerializer();
+        serializer.setTemplateCache(templateCache);
+
+        return serializer.readObject(location);
+    }
+
+    private static void write(File file, String name) throws IOException {
+        FileWriter writer = new FileWriter(file);
+        try {
+            writer.write("<test:BXMLSampleItem xmlns:test=\"org.apache.pivot.beans.test\" name=\""
+                + name + "\"/>");
+        } finally {
+            writer.close();
+        }
+    }
+}
@@ -16,7 +16,10 @@
  */
 package org.apache.pivot.beans.test;
 
+import static org.apache.pivot.util.test.AllocationMeter.getAllocatedBytes;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import java.io.StringReader;
@@ -27,6 +30,7 @@ import java.math.MathContext;
 import java.util.Date;
 import java.util.Random;
 
+import org.apache.pivot.beans.BeanAdapter;
 import org.apache.pivot.json.JSONSerializer;
 import org.junit.After;
 import org.junit.AfterClass;
@@ -35,6 +39,77 @@ import org.junit.BeforeClass;
 import org.junit.Test;
 
 public class BeanAdapterTest {
+    /**
+     * Bean with a style set similar to that of a Terra skin.
+     */
+    public static class StyleBean {
+        private String font = "Arial 12";
+        private String color = "#000000";
+        private String backgroundColor = "#ffffff";
+        private int padding = 2;
+        private boolean wrapText = false;
+        private HorizontalAlignment horizontalAlignment = HorizontalAlignment.LEFT;
+
+        public String getFont() {
+            return font;
+        }
+
+        public void setFont(String font) {
+            this.font = font;
+        }
+
+        public String getColor() {
+            return color;
+        }
+
+        public void setColor(String color) {
+            this.color = color;
+        }
+
+        public String getBackgroundColor() {
+            return backgroundColor;
+        }
+
+        public void setBackgroundColor(String backgroundColor) {
+            this.backgroundColor = backgroundColor;
+        }
+
+        public int getPadding() {
+            return padding;
+        }
+
+        public void setPadding(int padding) {
+            this.padding = padding;
+        }
+
+        public void setPadding(Number padding) {
+            setPadding(padding.intValue());
+        }
+
+        public boolean getWrapText() {
+            return wrapText;
+        }
+
+        public void setWrapText(boolean wrapText) {
+            this.wrapText = wrapText;
+        }
+
+        public HorizontalAlignment getHorizontalAlignment() {
+            return horizontalAlignment;
+        }
+
+        public void setHorizontalAlignment(HorizontalAlignment horizontalAlignment) {
+            this.horizontalAlignment = horizontalAlignment;
+        }
+    }
+
+    public enum HorizontalAlignment {
+        LEFT, RIGHT, CENTER
+    }
+
+    private static final String[] STYLE_KEYS = {"font", "color", "backgroundColor",
+        "padding", "wrapText", "horizontalAlignment"};
+    private static final int ACCESS_COUNT = 1000000;
 
     private static Random rnd;
 
@@ -177,4 +252,70 @@ public class BeanAdapterTest {
         assertEquals(src_test.getString(), target_test.getString());
     }
 
+    @Test
+    public void testStyles() {
+        StyleBean styleBean = new StyleBean();
+        BeanAdapter styles = new BeanAdapter(styleBean);
+
+        assertEquals("Arial 12", styles.get("font"));
+        assertEquals(2, styles.get("padding"));
+        assertTrue(styles.containsKey("wrapText"));
+        assertFalse(styles.containsKey("margin"));
+        assertEquals(Integer.TYPE, styles.getType("padding"));
+
+        styles.put("padding", 4L);
+        assertEquals(4, styleBean.getPadding());
+        styles.put("padding", "5");
+        assertEquals(5, styleBean.getPadding());
+        styles.put("wrapText", "true");
+        assertTrue(styleBean.getWrapText());
+        styles.put("horizontalAlignment", "center");
+        assertEquals(HorizontalAlignment.CENTER, styleBean.getHorizontalAlignment());
+
+        // A second adapter for the same class shares the cached metadata
+        BeanAdapter otherStyles = new BeanAdapter(new StyleBean());
+        otherStyles.put("color", "#ff0000");
+        assertEquals("#ff0000", otherStyles.get("color"));
+        assertFalse(BeanAdapter.isReadOnly(StyleBean.class, "color"));
+    }
+
+    @Test
+    public void styleSpeedTest() {
+        StyleBean styleBean = new StyleBean();
+        BeanAdapter styles = new BeanAdapter(styleBean);
+
+        Object[] values = new Object[STYLE_KEYS.length];
+        for (int i = 0; i < STYLE_KEYS.length; i++) {
+            values[i] = styles.get(STYLE_KEYS[i]);
+        }
+
+        // Warm up
+        for (int i = 0; i < ACCESS_COUNT; i++) {
+            int j = i % STYLE_KEYS.length;
+            styles.put(STYLE_KEYS[j], styles.get(STYLE_KEYS[j]));
+        }
+
+        long a0 = getAllocatedBytes();
+        long t0 = System.nanoTime();
+        for (int i = 0; i < ACCESS_COUNT; i++) {
+            styles.get(STYLE_KEYS[i % STYLE_KEYS.length]);
+        }
+        long t1 = System.nanoTime();
+        long a1 = getAllocatedBytes();
+        System.out.println("BeanAdapter get " + ((t1 - t0) / ACCESS_COUNT) + "ns, "
+            + ((a1 - a0) / ACCESS_COUNT) + " bytes per call");
+
+        a0 = getAllocatedBytes();
+        t0 = System.nanoTime();
+        for (int i = 0; i < ACCESS_COUNT; i++) {
+            int j = i % STYLE_KEYS.length;
+            styles.put(STYLE_KEYS[j], values[j]);
+        }
+        t1 = System.nanoTime();
+        a1 = getAllocatedBytes();
+        System.out.println("BeanAdapter put " + ((t1 - t0) / ACCESS_COUNT) + "ns, "
+            + ((a1 - a0) / ACCESS_COUNT) + " bytes per call");
+
+        assertEquals(values[0], styleBean.getFont());
+    }
 }
@@ -0,0 +1,148 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pivot.collections.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Iterator;
+
+import org.apache.pivot.collections.ArrayQueue;
+import org.apache.pivot.collections.Queue;
+import org.apache.pivot.collections.concurrent.ConcurrentArrayQueue;
+import org.apache.pivot.collections.concurrent.SynchronizedQueue;
+import org.junit.Test;
+
+public class ConcurrentArrayQueueTest {
+    private static final int ITEM_COUNT = 1000000;
+
+    @Test
+    public void basicTest() {
+        ConcurrentArrayQueue<String> queue = new ConcurrentArrayQueue<String>(3);
+        assertEquals(4, queue.getCapacity());
+        assertTrue(queue.isEmpty());
+        assertNull(queue.poll());
+
+        assertTrue(queue.offer("A"));
+        assertTrue(queue.offer("B"));
+        assertTrue(queue.offer("C"));
+        assertTrue(queue.offer("D"));
+        assertFalse(queue.offer("E"));
+        assertEquals(4, queue.getLength());
+
+        Iterator<String> iterator = queue.iterator();
+        assertEquals("A", iterator.next());
+        assertEquals("B", iterator.next());
+
+        assertEquals("A", queue.peek());
+        assertEquals("A", queue.dequeue());
+        assertTrue(queue.offer("E"));
+        assertEquals("B", queue.poll());
+
+        queue.clear();
+        assertTrue(queue.isEmpty());
+        assertEquals(0, queue.getLength());
+    }
+
+    @Test
+    public void producerConsumerTest() throws InterruptedException {
+        final ConcurrentArrayQueue<Integer> queue = new ConcurrentArrayQueue<Integer>(16);
+
+        int producerCount = 4;
+        final int itemCount = 50000;
+
+        Thread[] producers = new Thread[producerCount];
+        for (int i = 0; i < producerCount; i++) {
+            final int producer = i;
+
+            producers[i] = new Thread() {
+                @Override
+                public void run() {
+                    for (int j = 0; j < itemCount; j++) {
+                        queue.enqueue(producer * itemCount + j);
+                    }
+                }
+            };
+
+            producers[i].start();
+        }
+
+        // Items from each producer must arrive in order
+        int[] next = new int[producerCount];
+        for (int i = 0; i < producerCount * itemCount; i++) {
+            int item = queue.dequeue();
+            int producer = item / itemCount;
+
+            assertEquals(next[producer], item % itemCount);
+            next[producer]++;
+        }
+
+        for (Thread producer : producers) {
+            producer.join();
+        }
+
+        assertTrue(queue.isEmpty());
+    }
+
+    @Test
+    public void contentionSpeedTest() throws InterruptedException {
+        int[] threadCounts = {2, 4, 8, 16};
+
+        for (int threadCount : threadCounts) {
+            long t0 = System.currentTimeMillis();
+            run(new SynchronizedQueue<Integer>(new ArrayQueue<Integer>()), threadCount);
+            long t1 = System.currentTimeMillis();
+            System.out.println("SynchronizedQueue, " + threadCount + " threads: " + (t1 - t0) + "ms");
+
+            t0 = System.currentTimeMillis();
+            run(new ConcurrentArrayQueue<Integer>(), threadCount);
+            t1 = System.currentTimeMillis();
+            System.out.println("ConcurrentArrayQueue, " + threadCount + " threads: " + (t1 - t0) + "ms");
+        }
+    }
+
+    private static void run(final Queue<Integer> queue, int threadCount)
+        throws InterruptedException {
+        // One consumer (the current thread) and threadCount - 1 producers
+        int producerCount = threadCount - 1;
+        final int itemCount = ITEM_COUNT / producerCount;
+
+        Thread[] producers = new Thread[producerCount];
+        for (int i = 0; i < producerCount; i++) {
+            producers[i] = new Thread() {
+                @Override
+                public void run() {
+                    for (int j = 0; j < itemCount; j++) {
+                        queue.enqueue(j);
+                    }
+                }
+            };
+
+            producers[i].start();
+        }
+
+        for (int i = 0, n = itemCount * producerCount; i < n; i++) {
+            queue.dequeue();
+        }
+
+        for (Thread producer : producers) {
+            producer.join();
+        }
+    }
+}
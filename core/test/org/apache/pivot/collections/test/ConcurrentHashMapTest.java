@@ -0,0 +1,170 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pivot.collections.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.pivot.collections.HashMap;
+import org.apache.pivot.collections.Map;
+import org.apache.pivot.collections.MapListener;
+import org.apache.pivot.collections.concurrent.ConcurrentHashMap;
+import org.apache.pivot.collections.concurrent.SynchronizedMap;
+import org.junit.Test;
+
+public class ConcurrentHashMapTest {
+    private static final int OPERATION_COUNT = 2000000;
+    private static final int KEY_COUNT = 1024;
+
+    @Test
+    public void basicTest() {
+        ConcurrentHashMap<String, Integer> map = new ConcurrentHashMap<String, Integer>();
+        assertTrue(map.isEmpty());
+
+        assertNull(map.put("a", 1));
+        assertNull(map.put("b", null));
+        assertEquals(2, map.getCount());
+        assertTrue(map.containsKey("b"));
+        assertNull(map.get("b"));
+
+        assertEquals(Integer.valueOf(1), map.put("a", 2));
+        assertEquals(Integer.valueOf(2), map.putIfAbsent("a", 3));
+        assertNull(map.putIfAbsent("c", 3));
+
+        assertNull(map.remove("b"));
+        assertFalse(map.containsKey("b"));
+        assertEquals(Integer.valueOf(3), map.remove("c"));
+
+        int count = 0;
+        for (String key : map) {
+            assertEquals("a", key);
+            count++;
+        }
+
+        assertEquals(1, count);
+
+        map.clear();
+        assertTrue(map.isEmpty());
+    }
+
+    @Test
+    public void listenerTest() throws InterruptedException {
+        final ConcurrentHashMap<Integer, Integer> map = new ConcurrentHashMap<Integer, Integer>();
+
+        final AtomicInteger added = new AtomicInteger();
+        final AtomicInteger updated = new AtomicInteger();
+        final AtomicInteger removed = new AtomicInteger();
+
+        map.getMapListeners().add(new MapListener.Adapter<Integer, Integer>() {
+            @Override
+            public void valueAdded(Map<Integer, Integer> map, Integer key) {
+                added.incrementAndGet();
+            }
+
+            @Override
+            public void valueUpdated(Map<Integer, Integer> map, Integer key, Integer previousValue) {
+                updated.incrementAndGet();
+            }
+
+            @Override
+            public void valueRemoved(Map<Integer, Integer> map, Integer key, Integer value) {
+                removed.incrementAndGet();
+            }
+        });
+
+        Thread[] threads = new Thread[4];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread() {
+                @Override
+                public void run() {
+                    for (int j = 0; j < 10000; j++) {
+                        Integer key = j % 100;
+                        map.put(key, j);
+                        map.remove(key);
+                    }
+                }
+            };
+
+            threads[i].start();
+        }
+
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        // Every value that was added was either updated in place or removed
+        assertEquals(40000, added.get() + updated.get());
+        assertEquals(added.get(), removed.get() + map.getCount());
+    }
+
+    @Test
+    public void contentionSpeedTest() throws InterruptedException {
+        int[] threadCounts = {2, 4, 8, 16};
+
+        for (int threadCount : threadCounts) {
+            long t0 = System.currentTimeMillis();
+            run(new SynchronizedMap<Integer, Integer>(new HashMap<Integer, Integer>()), threadCount);
+            long t1 = System.currentTimeMillis();
+            System.out.println("SynchronizedMap, " + threadCount + " threads: " + (t1 - t0) + "ms");
+
+            t0 = System.currentTimeMillis();
+            run(new ConcurrentHashMap<Integer, Integer>(), threadCount);
+            t1 = System.currentTimeMillis();
+            System.out.println("ConcurrentHashMap, " + threadCount + " threads: " + (t1 - t0) + "ms");
+        }
+    }
+
+    private static void run(final Map<Integer, Integer> map, int threadCount)
+        throws InterruptedException {
+        final int operationCount = OPERATION_COUNT / threadCount;
+
+        Thread[] threads = new Thread[threadCount];
+        for (int i = 0; i < threadCount; i++) {
+            final int seed = i;
+
+            threads[i] = new Thread() {
+                @Override
+                public void run() {
+                    // Mostly reads, with one write in every eight operations
+                    int value = seed;
+                    for (int j = 0; j < operationCount; j++) {
+                        value = value * 1103515245 + 12345;
+                        Integer key = (value >>> 8) % KEY_COUNT;
+
+                        if ((value & 7) == 0) {
+                            map.put(key, value);
+                        } else {
+                            map.get(key);
+                        }
+                    }
+                }
+            };
+        }
+
+        for (Thread thread : threads) {
+            thread.start();
+        }
+
+        for (Thread thread : threads) {
+            thread.join();
+        }
+    }
+}
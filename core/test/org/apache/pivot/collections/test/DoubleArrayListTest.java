@@ -0,0 +1,45 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pivot.collections.test;
+
+import static org.junit.Assert.*;
+
+import org.apache.pivot.collections.ArrayList;
+import org.apache.pivot.collections.DoubleArrayList;
+import org.junit.Test;
+
+public class DoubleArrayListTest {
+    @Test
+    public void basicTest() {
+        DoubleArrayList list = new DoubleArrayList();
+        list.addDouble(0.5);
+        list.addDouble(Double.NaN);
+        list.add(2.5);
+
+        assertEquals(3, list.getLength());
+        assertEquals(0.5, list.getDouble(0), 0);
+        assertEquals(1, list.indexOfDouble(Double.NaN));
+        assertEquals(2, list.indexOf(2.5));
+
+        assertTrue(list.equals(new ArrayList<Double>(0.5, Double.NaN, 2.5)));
+        assertEquals(new ArrayList<Double>(0.5, Double.NaN, 2.5).hashCode(), list.hashCode());
+
+        list.remove(Double.NaN);
+        DoubleArrayList.sort(list);
+        assertEquals(1, DoubleArrayList.binarySearch(list, 2.5));
+    }
+}
@@ -24,13 +24,14 @@ import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
-// import java.util.Comparator;
+import java.util.Comparator;
 import java.util.ConcurrentModificationException;
 import java.util.Iterator;
 
 // import org.apache.pivot.collections.ArrayList;
 import org.apache.pivot.collections.HashMap;
 import org.apache.pivot.collections.Map;
+import org.apache.pivot.collections.MapListener;
 import org.junit.Test;
 
 public class HashMapTest {
@@ -188,6 +189,143 @@ public class HashMapTest {
         System.out.println("java.util.HashMap " + (t1 - t0) + "ms");
     }
 
+    @Test
+    public void pivotHashMapGetSpeedTest() {
+        HashMap<Integer, Integer> map = new HashMap<Integer, Integer>();
+        for (int i = 0; i < LOAD_COUNT; i++) {
+            map.put(Integer.valueOf(i), Integer.valueOf(i));
+        }
+
+        long t0 = System.currentTimeMillis();
+        int sum = 0;
+        for (int j = 0; j < 20; j++) {
+            for (int i = 0; i < LOAD_COUNT; i++) {
+                sum += map.get(Integer.valueOf(i));
+            }
+        }
+        long t1 = System.currentTimeMillis();
+        System.out.println("org.apache.pivot.HashMap get " + (t1 - t0) + "ms (" + sum + ")");
+
+        t0 = System.currentTimeMillis();
+        int count = 0;
+        for (int j = 0; j < 20; j++) {
+            for (Integer key : map) {
+                count += (key == null) ? 0 : 1;
+            }
+        }
+        t1 = System.currentTimeMillis();
+        assertEquals(20 * LOAD_COUNT, count);
+        System.out.println("org.apache.pivot.HashMap iteration " + (t1 - t0) + "ms");
+    }
+
+    @Test
+    public void pivotHashMapFootprintTest() {
+        Integer[] values = new Integer[LOAD_COUNT];
+        for (int i = 0; i < LOAD_COUNT; i++) {
+            values[i] = Integer.valueOf(i);
+        }
+
+        long m0 = getUsedMemory();
+        HashMap<Integer, Integer> map = new HashMap<Integer, Integer>();
+        for (int i = 0; i < LOAD_COUNT; i++) {
+            map.put(values[i], values[i]);
+        }
+        long m1 = getUsedMemory();
+
+        assertEquals(LOAD_COUNT, map.getCount());
+        System.out.println("org.apache.pivot.HashMap " + ((m1 - m0) / LOAD_COUNT) + " bytes per entry");
+    }
+
+    private static long getUsedMemory() {
+        Runtime runtime = Runtime.getRuntime();
+
+        for (int i = 0; i < 4; i++) {
+            System.gc();
+        }
+
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    @Test
+    public void removeAndReinsertTest() {
+        HashMap<Integer, Integer> map = new HashMap<Integer, Integer>();
+
+        for (int j = 0; j < 10; j++) {
+            for (int i = 0; i < 1000; i++) {
+                map.put(i, i * j);
+            }
+
+            for (int i = 0; i < 1000; i += 2) {
+                assertEquals(i * j, (int)map.remove(i));
+            }
+
+            assertEquals(500, map.getCount());
+
+            for (int i = 0; i < 1000; i++) {
+                assertEquals(i % 2 == 1, map.containsKey(i));
+            }
+        }
+
+        int count = 0;
+        Iterator<Integer> iterator = map.iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next() % 3 == 0) {
+                iterator.remove();
+            } else {
+                count++;
+            }
+        }
+
+        assertEquals(count, map.getCount());
+
+        for (Integer key : map) {
+            assertTrue(key % 3 != 0);
+        }
+    }
+
+    @Test
+    public void removeListenerTest() {
+        final HashMap<String, Integer> map = new HashMap<String, Integer>(new Comparator<String>() {
+            @Override
+            public int compare(String s1, String s2) {
+                return s1.compareTo(s2);
+            }
+        });
+
+        map.put("a", 1);
+        map.put("b", 2);
+        map.put("c", 3);
+
+        final int[] removedCount = new int[1];
+        map.getMapListeners().add(new MapListener.Adapter<String, Integer>() {
+            @Override
+            public void valueRemoved(Map<String, Integer> map, String key, Integer value) {
+                // The map, including its sorted keys, is updated before listeners are notified
+                assertFalse(map.containsKey(key));
+
+                int count = 0;
+                for (String k : map) {
+                    assertFalse(k.equals(key));
+                    count++;
+                }
+
+                assertEquals(map.getCount(), count);
+                removedCount[0]++;
+            }
+        });
+
+        assertEquals(Integer.valueOf(2), map.remove("b"));
+        assertEquals(1, removedCount[0]);
+
+        map.setComparator(null);
+
+        Iterator<String> iterator = map.iterator();
+        iterator.next();
+        iterator.remove();
+        assertEquals(2, removedCount[0]);
+        assertEquals(1, map.getCount());
+    }
+
     @Test
     public void iteratorTest() {
         HashMap<String, Object> map = new HashMap<String, Object>();
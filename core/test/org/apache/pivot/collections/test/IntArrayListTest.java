@@ -0,0 +1,186 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pivot.collections.test;
+
+import static org.junit.Assert.*;
+
+import java.util.Comparator;
+
+import org.apache.pivot.collections.ArrayList;
+import org.apache.pivot.collections.IntArrayList;
+import org.apache.pivot.collections.List;
+import org.apache.pivot.collections.ListListener;
+import org.apache.pivot.collections.Sequence;
+import org.junit.Test;
+
+public class IntArrayListTest {
+    private static final int LOAD_COUNT = 1000000;
+
+    @Test
+    public void basicTest() {
+        IntArrayList list = new IntArrayList();
+        list.insertInt(2, 0);
+        list.insertInt(3, 1);
+        list.insertInt(4, 2);
+        list.insertInt(1, 0);
+
+        int[] array = list.toArray();
+        assertEquals(4, array.length);
+        assertEquals(1, array[0]);
+
+        assertEquals(0, IntArrayList.binarySearch(list, 1));
+        assertEquals(-5, IntArrayList.binarySearch(list, 5));
+
+        list.remove(0, 1);
+        assertEquals(2, list.getInt(0));
+        assertEquals(3, list.getLength());
+        assertEquals(1, list.indexOfInt(3));
+        assertEquals(1, list.indexOf(3));
+        assertEquals(-1, list.indexOf(null));
+
+        Sequence<Integer> removed = list.remove(1, 1);
+        assertEquals(Integer.valueOf(3), removed.get(0));
+
+        list.trimToSize();
+        assertEquals(2, list.getCapacity());
+        list.ensureCapacity(10);
+        assertEquals(10, list.getCapacity());
+
+        list.insert(5, 1);
+        assertEquals(Integer.valueOf(5), list.get(1));
+        assertEquals(5, list.updateInt(1, 6));
+
+        assertTrue(list.equals(new IntArrayList(new int[] {2, 6, 4})));
+        assertTrue(list.equals(new ArrayList<Integer>(2, 6, 4)));
+        assertFalse(list.equals(new IntArrayList(new int[] {2, 6, 4, 3})));
+        assertEquals(new ArrayList<Integer>(2, 6, 4).hashCode(), list.hashCode());
+
+        List.ItemIterator<Integer> iterator = list.iterator();
+        assertEquals(Integer.valueOf(2), iterator.next());
+        iterator.remove();
+        assertEquals(2, list.getLength());
+        assertEquals(6, list.getInt(0));
+
+        list.clear();
+        assertTrue(list.isEmpty());
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void nullItemTest() {
+        IntArrayList list = new IntArrayList();
+        list.add(null);
+    }
+
+    @Test
+    public void comparatorTest() {
+        IntArrayList list = new IntArrayList(new int[] {5, 1, 4, 2, 3});
+        list.setComparator(new Comparator<Integer>() {
+            @Override
+            public int compare(Integer i1, Integer i2) {
+                return i2.compareTo(i1);
+            }
+        });
+
+        assertTrue(list.equals(new IntArrayList(new int[] {5, 4, 3, 2, 1})));
+        assertEquals(2, list.addInt(3));
+        assertEquals(0, list.addInt(6));
+        assertEquals(3, list.indexOfInt(3));
+
+        try {
+            list.insertInt(0, 0);
+            fail("Expected IllegalArgumentException.");
+        } catch (IllegalArgumentException exception) {
+            // Expected
+        }
+
+        list.setComparator(null);
+        IntArrayList.sort(list);
+        assertTrue(list.equals(new IntArrayList(new int[] {1, 2, 3, 3, 4, 5, 6})));
+    }
+
+    @Test
+    public void listenerTest() {
+        final int[] events = new int[4];
+
+        IntArrayList list = new IntArrayList();
+        list.getListListeners().add(new ListListener.Adapter<Integer>() {
+            @Override
+            public void itemInserted(List<Integer> list, int index) {
+                events[0]++;
+            }
+
+            @Override
+            public void itemsRemoved(List<Integer> list, int index, Sequence<Integer> items) {
+                events[1] += items.getLength();
+            }
+
+            @Override
+            public void itemUpdated(List<Integer> list, int index, Integer previousItem) {
+                events[2] += previousItem;
+            }
+
+            @Override
+            public void listCleared(List<Integer> list) {
+                events[3]++;
+            }
+        });
+
+        list.addInt(1);
+        list.addInt(2);
+        list.add(3);
+        list.updateInt(0, 10);
+        list.remove(1, 2);
+        list.addInt(4);
+        list.clear();
+
+        assertEquals(4, events[0]);
+        assertEquals(2, events[1]);
+        assertEquals(1, events[2]);
+        assertEquals(1, events[3]);
+    }
+
+    @Test
+    public void intArrayListSpeedTest() {
+        long t0 = System.currentTimeMillis();
+        ArrayList<Integer> arrayList = new ArrayList<Integer>(LOAD_COUNT);
+        for (int i = 0; i < LOAD_COUNT; i++) {
+            arrayList.add(i);
+        }
+
+        long sum = 0;
+        for (int i = 0; i < LOAD_COUNT; i++) {
+            sum += arrayList.get(i);
+        }
+        long t1 = System.currentTimeMillis();
+        System.out.println("org.apache.pivot.ArrayList<Integer> " + (t1 - t0) + "ms");
+
+        t0 = System.currentTimeMillis();
+        IntArrayList intArrayList = new IntArrayList(LOAD_COUNT);
+        for (int i = 0; i < LOAD_COUNT; i++) {
+            intArrayList.addInt(i);
+        }
+
+        long intSum = 0;
+        for (int i = 0; i < LOAD_COUNT; i++) {
+            intSum += intArrayList.getInt(i);
+        }
+        t1 = System.currentTimeMillis();
+        System.out.println("org.apache.pivot.IntArrayList " + (t1 - t0) + "ms");
+
+        assertEquals(sum, intSum);
+    }
+}
@@ -0,0 +1,169 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pivot.collections.test;
+
+import static org.junit.Assert.*;
+
+import java.util.Comparator;
+
+import org.apache.pivot.collections.ArrayList;
+import org.apache.pivot.collections.List;
+import org.apache.pivot.collections.ListListener;
+import org.apache.pivot.collections.LongArrayList;
+import org.junit.Test;
+
+public class LongArrayListTest {
+    // Values that an int-backed list would truncate
+    private static final long BEYOND_INT = (long)Integer.MAX_VALUE + 1;
+    private static final long HIGH_BITS = 1L << 40;
+
+    @Test
+    public void rangeTest() {
+        LongArrayList list = new LongArrayList();
+        list.addLong(Long.MIN_VALUE);
+        list.addLong(Long.MAX_VALUE);
+        list.addLong(BEYOND_INT);
+        list.add(HIGH_BITS);
+
+        assertEquals(Long.MIN_VALUE, list.getLong(0));
+        assertEquals(Long.MAX_VALUE, list.getLong(1));
+        assertEquals(BEYOND_INT, list.getLong(2));
+        assertEquals(Long.valueOf(HIGH_BITS), list.get(3));
+
+        // Lookups compare all 64 bits
+        assertEquals(2, list.indexOfLong(BEYOND_INT));
+        assertEquals(-1, list.indexOfLong(Integer.MIN_VALUE));
+        assertEquals(3, list.indexOf(HIGH_BITS));
+        assertEquals(-1, list.indexOfLong((int)HIGH_BITS));
+        assertEquals(-1, list.indexOfLong(Long.MAX_VALUE - 1));
+
+        long[] array = list.toArray();
+        assertItems(new long[] {Long.MIN_VALUE, Long.MAX_VALUE, BEYOND_INT, HIGH_BITS}, array);
+
+        assertEquals(Long.MAX_VALUE, list.updateLong(1, -HIGH_BITS));
+        assertEquals(-HIGH_BITS, list.getLong(1));
+        assertEquals(Long.valueOf(Long.MIN_VALUE), list.update(0, Long.MAX_VALUE));
+
+        assertEquals(Long.valueOf(BEYOND_INT), list.remove(2, 1).get(0));
+        assertTrue(list.equals(new ArrayList<Long>(Long.MAX_VALUE, -HIGH_BITS, HIGH_BITS)));
+        assertEquals(new ArrayList<Long>(Long.MAX_VALUE, -HIGH_BITS, HIGH_BITS).hashCode(),
+            list.hashCode());
+
+        // Values that differ only in their high bits are not equal
+        assertFalse(new LongArrayList(new long[] {HIGH_BITS}).equals(
+            new LongArrayList(new long[] {0})));
+    }
+
+    @Test
+    public void copyTest() {
+        long[] items = {Long.MIN_VALUE, -1, BEYOND_INT, Long.MAX_VALUE};
+
+        LongArrayList list = new LongArrayList(items, 1, 2);
+        assertItems(new long[] {-1, BEYOND_INT}, list.toArray());
+
+        // The list does not share the array
+        items[1] = 0;
+        assertEquals(-1L, list.getLong(0));
+
+        list = new LongArrayList(new ArrayList<Long>(Long.MIN_VALUE, Long.MAX_VALUE));
+        assertItems(new long[] {Long.MIN_VALUE, Long.MAX_VALUE}, list.toArray());
+
+        LongArrayList copy = new LongArrayList(list);
+        copy.updateLong(0, 0);
+        assertEquals(Long.MIN_VALUE, list.getLong(0));
+    }
+
+    @Test
+    public void sortTest() {
+        LongArrayList list = new LongArrayList(new long[] {Long.MAX_VALUE, BEYOND_INT, -1,
+            Long.MIN_VALUE, 0, -HIGH_BITS});
+        LongArrayList.sort(list);
+
+        assertItems(new long[] {Long.MIN_VALUE, -HIGH_BITS, -1, 0, BEYOND_INT, Long.MAX_VALUE},
+            list.toArray());
+
+        assertEquals(0, LongArrayList.binarySearch(list, Long.MIN_VALUE));
+        assertEquals(5, LongArrayList.binarySearch(list, Long.MAX_VALUE));
+        assertEquals(4, LongArrayList.binarySearch(list, BEYOND_INT));
+        assertEquals(-5, LongArrayList.binarySearch(list, 1));
+        assertEquals(-6, LongArrayList.binarySearch(list, Long.MAX_VALUE - 1));
+    }
+
+    @Test
+    public void comparatorTest() {
+        Comparator<Long> reverse = new Comparator<Long>() {
+            @Override
+            public int compare(Long l1, Long l2) {
+                return l2.compareTo(l1);
+            }
+        };
+
+        LongArrayList list = new LongArrayList(reverse);
+        assertEquals(0, list.addLong(0));
+        assertEquals(0, list.addLong(Long.MAX_VALUE));
+        assertEquals(2, list.addLong(Long.MIN_VALUE));
+        assertEquals(1, list.addLong(BEYOND_INT));
+
+        assertItems(new long[] {Long.MAX_VALUE, BEYOND_INT, 0, Long.MIN_VALUE},
+            list.toArray());
+        assertEquals(3, LongArrayList.binarySearch(list, Long.MIN_VALUE, reverse));
+
+        // Values out of order are rejected
+        try {
+            list.insertLong(Long.MIN_VALUE, 0);
+            fail("Expected IllegalArgumentException.");
+        } catch (IllegalArgumentException exception) {
+            // Expected
+        }
+
+        list.setComparator(null);
+        LongArrayList.sort(list);
+        assertItems(new long[] {Long.MIN_VALUE, 0, BEYOND_INT, Long.MAX_VALUE},
+            list.toArray());
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void nullItemTest() {
+        LongArrayList list = new LongArrayList();
+        list.add(null);
+    }
+
+    @Test
+    public void listenerTest() {
+        final long[] previousItems = new long[1];
+
+        LongArrayList list = new LongArrayList(new long[] {Long.MAX_VALUE});
+        list.getListListeners().add(new ListListener.Adapter<Long>() {
+            @Override
+            public void itemUpdated(List<Long> list, int index, Long previousItem) {
+                previousItems[0] = previousItem;
+            }
+        });
+
+        // The previous item is reported without truncation
+        list.updateLong(0, 0);
+        assertEquals(Long.MAX_VALUE, previousItems[0]);
+    }
+
+    private static void assertItems(long[] expected, long[] actual) {
+        assertEquals(expected.length, actual.length);
+
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(expected[i], actual[i]);
+        }
+    }
+}
@@ -0,0 +1,463 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pivot.io.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.net.InetSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.pivot.io.ChannelTransferTask;
+import org.apache.pivot.util.concurrent.AbortException;
+import org.apache.pivot.util.concurrent.Task;
+import org.apache.pivot.util.concurrent.TaskListener;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ChannelTransferTaskTest {
+    /**
+     * Task listener that counts down a latch when the task completes.
+     */
+    private static class LatchTaskListener implements TaskListener<Long> {
+        private CountDownLatch latch;
+        public final AtomicInteger failedCount = new AtomicInteger();
+
+        public LatchTaskListener(CountDownLatch latch) {
+            this.latch = latch;
+        }
+
+        @Override
+        public void taskExecuted(Task<Long> task) {
+            latch.countDown();
+        }
+
+        @Override
+        public void executeFailed(Task<Long> task) {
+            failedCount.incrementAndGet();
+            latch.countDown();
+        }
+    }
+
+    private static final int DATA_LENGTH = 256 * 1024;
+
+    private File dataFile = null;
+    private byte[] data = null;
+
+    private ServerSocketChannel serverSocketChannel = null;
+    private Thread acceptThread = null;
+    private volatile boolean serving = true;
+    private List<SocketChannel> acceptedChannels = new ArrayList<SocketChannel>();
+    private List<File> files = new ArrayList<File>();
+
+    @Before
+    public void setUp() throws IOException {
+        data = new byte[DATA_LENGTH];
+        for (int i = 0; i < DATA_LENGTH; i++) {
+            data[i] = (byte)(i * 31);
+        }
+
+        dataFile = createFile();
+        FileOutputStream outputStream = new FileOutputStream(dataFile);
+        try {
+            outputStream.write(data);
+        } finally {
+            outputStream.close();
+        }
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        if (serverSocketChannel != null) {
+            serving = false;
+            serverSocketChannel.close();
+
+            for (SocketChannel socketChannel : acceptedChannels) {
+                socketChannel.close();
+            }
+        }
+
+        for (File file : files) {
+            file.delete();
+        }
+    }
+
+    private File createFile() throws IOException {
+        File file = File.createTempFile(getClass().getSimpleName(), null);
+        files.add(file);
+        return file;
+    }
+
+    private static byte[] read(File file) throws IOException {
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+        try {
+            byte[] bytes = new byte[(int)randomAccessFile.length()];
+            randomAccessFile.readFully(bytes);
+            return bytes;
+        } finally {
+            randomAccessFile.close();
+        }
+    }
+
+    /**
+     * Starts a server that accepts connections. The data file is sent to the
+     * connections accepted so far when {@link #send()} is called.
+     */
+    private InetSocketAddress startServer() throws IOException {
+        serverSocketChannel = ServerSocketChannel.open();
+        serverSocketChannel.socket().bind(new InetSocketAddress("127.0.0.1", 0), 1024);
+
+        acceptThread = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    while (serving) {
+                        SocketChannel socketChannel = serverSocketChannel.accept();
+
+                        synchronized (acceptedChannels) {
+                            acceptedChannels.add(socketChannel);
+                            acceptedChannels.notifyAll();
+                        }
+                    }
+                } catch (IOException exception) {
+                    // The server socket was closed
+                }
+            }
+        };
+
+        acceptThread.setDaemon(true);
+        acceptThread.start();
+
+        return (InetSocketAddress)serverSocketChannel.socket().getLocalSocketAddress();
+    }
+
+    /**
+     * Waits for the server to accept the given number of connections, then
+     * sends the data file to each of them using non-blocking transfers.
+     */
+    private void send(int connectionCount) throws IOException, InterruptedException {
+        List<SocketChannel> socketChannels;
+        synchronized (acceptedChannels) {
+            while (acceptedChannels.size() < connectionCount) {
+                acceptedChannels.wait();
+            }
+
+            socketChannels = new ArrayList<SocketChannel>(acceptedChannels);
+            acceptedChannels.clear();
+        }
+
+        for (final SocketChannel socketChannel : socketChannels) {
+            final RandomAccessFile randomAccessFile = new RandomAccessFile(dataFile, "r");
+
+            ChannelTransferTask task = new ChannelTransferTask(randomAccessFile.getChannel(),
+                socketChannel);
+            task.execute(new TaskListener<Long>() {
+                @Override
+                public void taskExecuted(Task<Long> task) {
+                    close();
+                }
+
+                @Override
+                public void executeFailed(Task<Long> task) {
+                    close();
+                }
+
+                private void close() {
+                    try {
+                        randomAccessFile.close();
+                        socketChannel.close();
+                    } catch (IOException exception) {
+                        // No-op
+                    }
+                }
+            });
+        }
+    }
+
+    @Test
+    public void testFileCopy() throws Exception {
+        File file = createFile();
+
+        RandomAccessFile source = new RandomAccessFile(dataFile, "r");
+        FileOutputStream target = new FileOutputStream(file);
+        try {
+            ChannelTransferTask task = new ChannelTransferTask(source.getChannel(),
+                target.getChannel());
+            assertEquals((long)DATA_LENGTH, task.execute().longValue());
+            assertEquals(source.length(), source.getChannel().position());
+        } finally {
+            source.close();
+            target.close();
+        }
+
+        assertTrue(Arrays.equals(data, read(file)));
+
+        // A partial copy through a stream-backed channel
+        source = new RandomAccessFile(dataFile, "r");
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        try {
+            source.seek(1000);
+            ChannelTransferTask task = new ChannelTransferTask(
+                Channels.newChannel(Channels.newInputStream(source.getChannel())),
+                Channels.newChannel(outputStream), 5000);
+            task.setBufferSize(1024);
+            assertEquals(5000L, task.execute().longValue());
+        } finally {
+            source.close();
+        }
+
+        assertTrue(Arrays.equals(Arrays.copyOfRange(data, 1000, 6000),
+            outputStream.toByteArray()));
+    }
+
+    @Test
+    public void testDownload() throws Exception {
+        InetSocketAddress address = startServer();
+
+        File file = createFile();
+        SocketChannel socketChannel = SocketChannel.open(address);
+        FileOutputStream outputStream = new FileOutputStream(file);
+
+        final AtomicInteger progressCount = new AtomicInteger();
+        final long[] progress = new long[1];
+
+        CountDownLatch latch = new CountDownLatch(1);
+        LatchTaskListener taskListener = new LatchTaskListener(latch);
+
+        ChannelTransferTask task = new ChannelTransferTask(socketChannel,
+            outputStream.getChannel());
+        task.setBufferSize(DATA_LENGTH / 16);
+        task.setProgressInterval(DATA_LENGTH / 16);
+        task.setProgressListener(new ChannelTransferTask.ProgressListener() {
+            @Override
+            public void progress(ChannelTransferTask task) {
+                progressCount.incrementAndGet();
+                progress[0] = task.getBytesSent();
+            }
+        });
+
+        try {
+            task.execute(taskListener);
+            send(1);
+            assertTrue(latch.await(10, TimeUnit.SECONDS));
+        } finally {
+            socketChannel.close();
+            outputStream.close();
+        }
+
+        assertNull(task.getFault());
+        assertEquals((long)DATA_LENGTH, task.getResult().longValue());
+        assertTrue(Arrays.equals(data, read(file)));
+
+        // Notified once per interval, not per byte
+        assertEquals(16, progressCount.get());
+        assertEquals((long)DATA_LENGTH, progress[0]);
+    }
+
+    @Test
+    public void testAbort() throws Exception {
+        InetSocketAddress address = startServer();
+
+        File file = createFile();
+        SocketChannel socketChannel = SocketChannel.open(address);
+        FileOutputStream outputStream = new FileOutputStream(file);
+
+        CountDownLatch latch = new CountDownLatch(1);
+        LatchTaskListener taskListener = new LatchTaskListener(latch);
+
+        ChannelTransferTask task = new ChannelTransferTask(socketChannel,
+            outputStream.getChannel());
+
+        try {
+            task.execute(taskListener);
+            Thread.sleep(100);
+            assertTrue(task.isPending());
+
+            task.abort();
+            assertTrue(latch.await(10, TimeUnit.SECONDS));
+        } finally {
+            socketChannel.close();
+            outputStream.close();
+        }
+
+        assertEquals(1, taskListener.failedCount.get());
+        assertTrue(task.getFault() instanceof AbortException);
+        assertEquals(0L, file.length());
+    }
+
+    @Test
+    public void testListenerFailure() throws Exception {
+        InetSocketAddress address = startServer();
+
+        // A listener that throws on the reactor thread must not stop later
+        // transfers from completing
+        for (int i = 0; i < 2; i++) {
+            File file = createFile();
+            SocketChannel socketChannel = SocketChannel.open(address);
+            FileOutputStream outputStream = new FileOutputStream(file);
+
+            final CountDownLatch latch = new CountDownLatch(1);
+            final boolean fail = (i == 0);
+
+            ChannelTransferTask task = new ChannelTransferTask(socketChannel,
+                outputStream.getChannel());
+
+            try {
+                task.execute(new TaskListener<Long>() {
+                    @Override
+                    public void taskExecuted(Task<Long> task) {
+                        latch.countDown();
+
+                        if (fail) {
+                            throw new IllegalStateException("Listener failure (expected).");
+                        }
+                    }
+
+                    @Override
+                    public void executeFailed(Task<Long> task) {
+                        latch.countDown();
+                    }
+                });
+
+                send(1);
+                assertTrue(latch.await(10, TimeUnit.SECONDS));
+            } finally {
+                socketChannel.close();
+                outputStream.close();
+            }
+
+            assertNull(task.getFault());
+            assertEquals((long)DATA_LENGTH, task.getResult().longValue());
+        }
+    }
+
+    @Test
+    public void concurrentDownloadTest() throws Exception {
+        final int downloadCount = 200;
+
+        InetSocketAddress address = startServer();
+
+        // Warm up
+        runDownloads(address, 20, null);
+
+        ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+
+        int threadCount = threadMXBean.getThreadCount();
+        threadMXBean.resetPeakThreadCount();
+
+        long t0 = System.nanoTime();
+        runDownloads(address, downloadCount, null);
+        long t1 = System.nanoTime();
+
+        int nonBlockingThreadCount = threadMXBean.getPeakThreadCount() - threadCount;
+
+        ExecutorService executorService = Executors.newCachedThreadPool();
+        threadMXBean.resetPeakThreadCount();
+
+        long t2 = System.nanoTime();
+        try {
+            runDownloads(address, downloadCount, executorService);
+        } finally {
+            executorService.shutdown();
+        }
+        long t3 = System.nanoTime();
+
+        int blockingThreadCount = threadMXBean.getPeakThreadCount() - threadCount;
+
+        System.out.println(downloadCount + " concurrent " + DATA_LENGTH / 1024
+            + "KB downloads, non-blocking: " + (t1 - t0) / 1000000 + "ms, "
+            + nonBlockingThreadCount + " additional threads");
+        System.out.println(downloadCount + " concurrent " + DATA_LENGTH / 1024
+            + "KB downloads, blocking: " + (t3 - t2) / 1000000 + "ms, "
+            + blockingThreadCount + " additional threads");
+
+        assertTrue(nonBlockingThreadCount < downloadCount / 10);
+    }
+
+    /**
+     * Runs concurrent downloads into files. If an executor service is given,
+     * the downloads are performed with blocking I/O on its threads.
+     */
+    private void runDownloads(InetSocketAddress address, int downloadCount,
+        ExecutorService executorService) throws Exception {
+        CountDownLatch latch = new CountDownLatch(downloadCount);
+        LatchTaskListener taskListener = new LatchTaskListener(latch);
+
+        List<SocketChannel> socketChannels = new ArrayList<SocketChannel>(downloadCount);
+        List<FileOutputStream> outputStreams = new ArrayList<FileOutputStream>(downloadCount);
+        List<File> downloadFiles = new ArrayList<File>(downloadCount);
+
+        try {
+            for (int i = 0; i < downloadCount; i++) {
+                File file = createFile();
+                downloadFiles.add(file);
+
+                SocketChannel socketChannel = SocketChannel.open(address);
+                socketChannels.add(socketChannel);
+
+                FileOutputStream outputStream = new FileOutputStream(file);
+                outputStreams.add(outputStream);
+
+                if (executorService == null) {
+                    new ChannelTransferTask(socketChannel, outputStream.getChannel())
+                        .execute(taskListener);
+                } else {
+                    new ChannelTransferTask(Channels.newChannel(socketChannel.socket().getInputStream()),
+                        outputStream.getChannel(), -1, executorService).execute(taskListener);
+                }
+            }
+
+            // All downloads are in progress before any data is sent
+            send(downloadCount);
+
+            assertTrue(latch.await(60, TimeUnit.SECONDS));
+            assertEquals(0, taskListener.failedCount.get());
+        } finally {
+            for (SocketChannel socketChannel : socketChannels) {
+                socketChannel.close();
+            }
+
+            for (FileOutputStream outputStream : outputStreams) {
+                outputStream.close();
+            }
+        }
+
+        for (File file : downloadFiles) {
+            assertEquals((long)DATA_LENGTH, file.length());
+            file.delete();
+        }
+    }
+}
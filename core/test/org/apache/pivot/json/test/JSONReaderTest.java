@@ -0,0 +1,216 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pivot.json.test;
+
+import static org.apache.pivot.util.test.AllocationMeter.getAllocatedBytes;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+
+import org.apache.pivot.collections.List;
+import org.apache.pivot.collections.Map;
+import org.apache.pivot.collections.Sequence;
+import org.apache.pivot.json.JSON;
+import org.apache.pivot.json.JSONReader;
+import org.apache.pivot.json.JSONSerializer;
+import org.apache.pivot.serialization.SerializationException;
+import org.junit.Test;
+
+public class JSONReaderTest {
+    private static final int ROW_COUNT = 100000;
+
+    @Test
+    public void testTokens() throws IOException, SerializationException {
+        JSONReader jsonReader = new JSONReader(new StringReader("{a: 1, 'b': [true, null, \"x\"], c: {}}"));
+
+        assertEquals(JSONReader.Token.BEGIN_MAP, jsonReader.nextToken());
+        assertEquals(JSONReader.Token.KEY, jsonReader.nextToken());
+        assertEquals("a", jsonReader.getKey());
+        assertEquals(JSONReader.Token.NUMBER, jsonReader.nextToken());
+        assertEquals(1, jsonReader.getNumber());
+        assertEquals(JSONReader.Token.KEY, jsonReader.nextToken());
+        assertEquals("b", jsonReader.getKey());
+        assertEquals(JSONReader.Token.BEGIN_LIST, jsonReader.nextToken());
+        assertEquals(JSONReader.Token.BOOLEAN, jsonReader.nextToken());
+        assertEquals(Boolean.TRUE, jsonReader.getBoolean());
+        assertEquals("b.0", pathString(jsonReader));
+        assertEquals(JSONReader.Token.NULL, jsonReader.nextToken());
+        assertEquals(JSONReader.Token.STRING, jsonReader.nextToken());
+        assertEquals("x", jsonReader.getString());
+        assertEquals("b.2", pathString(jsonReader));
+        assertEquals(JSONReader.Token.END_LIST, jsonReader.nextToken());
+        assertEquals(JSONReader.Token.KEY, jsonReader.nextToken());
+        assertEquals(JSONReader.Token.BEGIN_MAP, jsonReader.nextToken());
+        assertEquals(1, jsonReader.getDepth());
+        assertEquals(JSONReader.Token.END_MAP, jsonReader.nextToken());
+        assertEquals(JSONReader.Token.END_MAP, jsonReader.nextToken());
+        assertEquals(0, jsonReader.getDepth());
+        assertNull(jsonReader.nextToken());
+    }
+
+    @Test
+    public void testSkipValue() throws IOException, SerializationException {
+        JSONReader jsonReader = new JSONReader(new StringReader("{a: [1, [2, {b: 3}]], c: 4}"));
+
+        jsonReader.nextToken();
+        jsonReader.nextToken();
+        jsonReader.skipValue();
+        assertEquals(JSONReader.Token.END_LIST, jsonReader.getToken());
+        assertEquals(JSONReader.Token.KEY, jsonReader.nextToken());
+        assertEquals("c", jsonReader.getKey());
+    }
+
+    @Test
+    public void testReadValue() throws IOException, SerializationException {
+        Object tree;
+        InputStream inputStream = getClass().getResourceAsStream("map.json");
+        try {
+            tree = new JSONSerializer().readObject(inputStream);
+        } finally {
+            inputStream.close();
+        }
+
+        JSONReader jsonReader = new JSONReader(getClass().getResourceAsStream("map.json"));
+        try {
+            jsonReader.nextToken();
+            assertEquals(tree, jsonReader.readValue());
+            assertNull(jsonReader.nextToken());
+        } finally {
+            jsonReader.close();
+        }
+    }
+
+    @Test
+    public void testSeek() throws IOException, SerializationException {
+        JSONReader jsonReader = new JSONReader(getClass().getResourceAsStream("map.json"));
+
+        int count = 0;
+        while (jsonReader.seek("k[*].c")) {
+            assertEquals("k", jsonReader.getPath().get(0));
+            assertEquals(Integer.toString(count), jsonReader.getPath().get(1));
+            count++;
+            assertTrue(jsonReader.readValue() instanceof String);
+        }
+
+        assertEquals(3, count);
+
+        jsonReader = new JSONReader(getClass().getResourceAsStream("map.json"));
+        assertTrue(jsonReader.seek("k[1]"));
+
+        @SuppressWarnings("unchecked")
+        Map<String, Object> row = (Map<String, Object>)jsonReader.readValue();
+        assertEquals("30", row.get("c"));
+        assertFalse(jsonReader.seek("k[1]"));
+    }
+
+    @Test
+    public void testMultipleRoots() throws IOException, SerializationException {
+        JSONReader jsonReader = new JSONReader(new StringReader("{a: 1}\n{a: 2}\n{a: 3}"));
+
+        int sum = 0;
+        while (jsonReader.seek("a")) {
+            sum += ((Number)jsonReader.readValue()).intValue();
+        }
+
+        assertEquals(6, sum);
+    }
+
+    @Test(expected=SerializationException.class)
+    public void testUnterminatedList() throws IOException, SerializationException {
+        JSONReader jsonReader = new JSONReader(new StringReader("[1, 2"));
+        while (jsonReader.nextToken() != null) {
+            // No-op
+        }
+    }
+
+    @Test
+    public void treeVersusStreamSpeedTest() throws IOException, SerializationException {
+        String json = createRows(ROW_COUNT);
+
+        long a0 = getAllocatedBytes();
+        long t0 = System.currentTimeMillis();
+        List<?> rows = JSON.get(new JSONSerializer().readObject(new StringReader(json)), "rows");
+        long t1 = System.currentTimeMillis();
+        long a1 = getAllocatedBytes();
+        assertEquals(ROW_COUNT, rows.getLength());
+        System.out.println("JSONSerializer (tree) " + (t1 - t0) + "ms, "
+            + ((a1 - a0) / 1024) + "KB allocated");
+
+        a0 = getAllocatedBytes();
+        t0 = System.currentTimeMillis();
+        JSONReader jsonReader = new JSONReader(new StringReader(json));
+        int count = 0;
+        while (jsonReader.seek("rows[*]")) {
+            jsonReader.readValue();
+            count++;
+        }
+        t1 = System.currentTimeMillis();
+        a1 = getAllocatedBytes();
+        assertEquals(ROW_COUNT, count);
+        System.out.println("JSONReader (stream) " + (t1 - t0) + "ms, "
+            + ((a1 - a0) / 1024) + "KB allocated");
+
+        a0 = getAllocatedBytes();
+        t0 = System.currentTimeMillis();
+        jsonReader = new JSONReader(new StringReader(json));
+        count = 0;
+        while (jsonReader.nextToken() != null) {
+            count++;
+        }
+        t1 = System.currentTimeMillis();
+        a1 = getAllocatedBytes();
+        System.out.println("JSONReader (tokens) " + (t1 - t0) + "ms, "
+            + ((a1 - a0) / 1024) + "KB allocated, " + count + " tokens");
+    }
+
+    private static String createRows(int count) {
+        StringBuilder json = new StringBuilder("{\"rows\": [");
+
+        for (int i = 0; i < count; i++) {
+            if (i > 0) {
+                json.append(",\n");
+            }
+
+            json.append("{\"id\": " + i + ", \"name\": \"Row " + i
+                + "\", \"value\": " + (i * 0.5) + ", \"active\": " + (i % 2 == 0) + "}");
+        }
+
+        json.append("]}");
+
+        return json.toString();
+    }
+
+    private static String pathString(JSONReader jsonReader) {
+        StringBuilder pathBuilder = new StringBuilder();
+        Sequence<String> path = jsonReader.getPath();
+
+        for (int i = 0, n = path.getLength(); i < n; i++) {
+            if (i > 0) {
+                pathBuilder.append('.');
+            }
+
+            pathBuilder.append(path.get(i));
+        }
+
+        return pathBuilder.toString();
+    }
+}
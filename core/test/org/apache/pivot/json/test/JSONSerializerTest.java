@@ -21,6 +21,10 @@ import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
 
 import org.apache.pivot.collections.Dictionary;
 import org.apache.pivot.collections.List;
@@ -161,4 +165,42 @@ public class JSONSerializerTest {
         assertEquals(childName, "John Doe");
     }
 
+    @Test
+    public void testNumbers() throws SerializationException {
+        assertEquals(42, JSONSerializer.parse("42"));
+        assertEquals(-42, JSONSerializer.parse("-42"));
+        assertEquals(4294967296L, JSONSerializer.parse("4294967296"));
+        assertEquals(-9223372036854775807L, JSONSerializer.parse("-9223372036854775807"));
+        assertEquals(5000000.0, JSONSerializer.parse("5E6"));
+        assertEquals(0.25, JSONSerializer.parse("0.25"));
+    }
+
+    @Test
+    public void testEscapes() throws SerializationException {
+        assertEquals("a\"b\\c\u00e9\n", JSONSerializer.parse("\"a\\\"b\\\\c\\u00e9\\n\""));
+        assertEquals("it's", JSONSerializer.parse("'it\\'s'"));
+    }
+
+    @Test
+    public void readSpeedTest() throws IOException, SerializationException {
+        final int COUNT = 20000;
+
+        StringBuilder buf = new StringBuilder();
+        InputStream inputStream = getClass().getResourceAsStream("map.json");
+        Reader reader = new InputStreamReader(inputStream, "UTF-8");
+        for (int c = reader.read(); c != -1; c = reader.read()) {
+            buf.append((char)c);
+        }
+
+        String json = buf.toString();
+
+        JSONSerializer jsonSerializer = new JSONSerializer();
+        long t0 = System.currentTimeMillis();
+        for (int i = 0; i < COUNT; i++) {
+            jsonSerializer.readObject(new StringReader(json));
+        }
+        long t1 = System.currentTimeMillis();
+
+        System.out.println("JSONSerializer read map.json " + COUNT + " times in " + (t1 - t0) + "ms");
+    }
 }
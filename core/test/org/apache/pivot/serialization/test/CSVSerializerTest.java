@@ -16,9 +16,17 @@
  */
 package org.apache.pivot.serialization.test;
 
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.StringReader;
 import java.io.StringWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
 
 import org.apache.pivot.collections.ArrayList;
 import org.apache.pivot.collections.Dictionary;
@@ -31,6 +39,8 @@ import org.apache.pivot.serialization.SerializationException;
 import org.junit.Test;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
 public class CSVSerializerTest {
     @Test
@@ -233,8 +243,54 @@ public class CSVSerializerTest {
     }
 
     @Test
-    public void testStreamReader() {
-        // TODO
+    @SuppressWarnings("unchecked")
+    public void testStreamReader() throws IOException, SerializationException {
+        StringBuilder buf = new StringBuilder();
+        buf.append("A,B,C\n");
+        buf.append("a1,b1,c1\r\n");
+        buf.append("a2,\"b\n2\",c2\r\n");
+        buf.append("\r\n");
+        buf.append("a3,b3,c3");
+
+        CSVSerializer serializer = new CSVSerializer();
+        CSVSerializer.StreamIterator streamIterator =
+            serializer.getStreamIterator(new StringReader(buf.toString()));
+
+        assertTrue(streamIterator.hasNext());
+        assertTrue(streamIterator.hasNext());
+
+        Dictionary<String, Object> row = (Dictionary<String, Object>)streamIterator.next();
+        assertEquals("a1", row.get("A"));
+        assertEquals("c1", row.get("C"));
+
+        List<Object> items = new ArrayList<Object>();
+        assertEquals(2, streamIterator.next(items, 5));
+        assertEquals("b\n2", ((Dictionary<String, Object>)items.get(0)).get("B"));
+        assertEquals("c3", ((Dictionary<String, Object>)items.get(1)).get("C"));
+
+        assertFalse(streamIterator.hasNext());
+        assertEquals(0, streamIterator.next(items, 5));
+    }
+
+    @Test
+    public void testStreamWriter() throws IOException {
+        StringWriter writer = new StringWriter();
+
+        CSVSerializer serializer = new CSVSerializer();
+        serializer.setKeys("A", "B");
+        serializer.setWriteKeys(true);
+
+        CSVSerializer.StreamWriter streamWriter = serializer.getStreamWriter(writer);
+        streamWriter.write(new HashMap<String, Object>(
+            new Dictionary.Pair<String, Object>("A", "a1"),
+            new Dictionary.Pair<String, Object>("B", "b,1")
+        ));
+        streamWriter.write(new HashMap<String, Object>(
+            new Dictionary.Pair<String, Object>("A", "a2")
+        ));
+        streamWriter.flush();
+
+        assertEquals("A,B\r\na1,\"b,1\"\r\na2,\r\n", writer.toString());
     }
 
     @Test
@@ -253,4 +309,105 @@ public class CSVSerializerTest {
         assertEquals(row.get("B"), "b1");
         assertEquals(row.get("C"), "c1");
     }
+
+    @Test
+    public void readSpeedTest() throws IOException, SerializationException {
+        final int ROW_COUNT = 200000;
+
+        StringBuilder buf = new StringBuilder("id,name,category,value\r\n");
+        for (int i = 0; i < ROW_COUNT; i++) {
+            buf.append(i + ",\"Item " + i + "\",category" + (i % 10) + "," + (i * 0.25) + "\r\n");
+        }
+
+        String csv = buf.toString();
+
+        long t0 = System.currentTimeMillis();
+        List<?> result = new CSVSerializer().readObject(new StringReader(csv));
+        long t1 = System.currentTimeMillis();
+
+        assertEquals(ROW_COUNT, result.getLength());
+        System.out.println("CSVSerializer read " + ROW_COUNT + " rows in " + (t1 - t0) + "ms");
+    }
+
+    @Test
+    public void streamRoundTripSpeedTest() throws IOException, SerializationException {
+        final int ROW_COUNT = 1000000;
+
+        File file = File.createTempFile("csv_serializer_test", ".csv");
+        file.deleteOnExit();
+
+        try {
+            CSVSerializer serializer = new CSVSerializer();
+            serializer.setKeys("id", "name", "category", "value");
+
+            resetPeakHeapUsage();
+
+            // Write the rows
+            long t0 = System.currentTimeMillis();
+            OutputStream outputStream = new FileOutputStream(file);
+            try {
+                CSVSerializer.StreamWriter streamWriter = serializer.getStreamWriter(outputStream);
+                HashMap<String, Object> item = new HashMap<String, Object>();
+
+                for (int i = 0; i < ROW_COUNT; i++) {
+                    item.put("id", i);
+                    item.put("name", "Item " + i);
+                    item.put("category", "category" + (i % 10));
+                    item.put("value", i * 0.25);
+                    streamWriter.write(item);
+                }
+
+                streamWriter.flush();
+            } finally {
+                outputStream.close();
+            }
+            long t1 = System.currentTimeMillis();
+
+            System.out.println("CSVSerializer.StreamWriter wrote " + ROW_COUNT + " rows ("
+                + (file.length() / (1024 * 1024)) + "MB) in " + (t1 - t0) + "ms");
+
+            // Read the rows
+            t0 = System.currentTimeMillis();
+            InputStream inputStream = new FileInputStream(file);
+            int count = 0;
+            try {
+                CSVSerializer.StreamIterator streamIterator = serializer.getStreamIterator(inputStream);
+                while (streamIterator.hasNext()) {
+                    streamIterator.next();
+                    count++;
+                }
+            } finally {
+                inputStream.close();
+            }
+            t1 = System.currentTimeMillis();
+
+            assertEquals(ROW_COUNT, count);
+            System.out.println("CSVSerializer.StreamIterator read " + ROW_COUNT + " rows in "
+                + (t1 - t0) + "ms; peak heap usage " + (getPeakHeapUsage() / (1024 * 1024)) + "MB");
+        } finally {
+            file.delete();
+        }
+    }
+
+    private static void resetPeakHeapUsage() {
+        System.gc();
+
+        for (MemoryPoolMXBean memoryPoolMXBean : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (memoryPoolMXBean.getType() == MemoryType.HEAP) {
+                memoryPoolMXBean.resetPeakUsage();
+            }
+        }
+    }
+
+    private static long getPeakHeapUsage() {
+        long peakHeapUsage = 0;
+
+        for (MemoryPoolMXBean memoryPoolMXBean : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (memoryPoolMXBean.getType() == MemoryType.HEAP) {
+                peakHeapUsage += memoryPoolMXBean.getPeakUsage().getUsed();
+            }
+        }
+
+        return peakHeapUsage;
+    }
 }
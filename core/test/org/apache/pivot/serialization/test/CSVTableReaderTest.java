@@ -0,0 +1,234 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pivot.serialization.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+
+import org.apache.pivot.collections.Dictionary;
+import org.apache.pivot.collections.List;
+import org.apache.pivot.serialization.CSVSerializer;
+import org.apache.pivot.serialization.CSVTable;
+import org.apache.pivot.serialization.CSVTableReader;
+import org.apache.pivot.serialization.SerializationException;
+import org.junit.Test;
+
+public class CSVTableReaderTest {
+    @Test
+    public void testBasicRead() throws IOException, SerializationException {
+        CSVTableReader reader = new CSVTableReader();
+        reader.setKeys("A", "B", "C");
+
+        CSVTable table = reader.read(toStream("a1,b1,c1\r\na2,b2,c2\na3,b3,c3\ra4 , b4,c4"));
+        assertEquals(4, table.getLength());
+
+        for (int i = 0; i < 4; i++) {
+            Dictionary<String, Object> row = table.get(i);
+            assertEquals("a" + (i + 1), row.get("A"));
+            assertEquals("b" + (i + 1), row.get("B"));
+            assertEquals("c" + (i + 1), row.get("C"));
+        }
+    }
+
+    @Test
+    public void testQuotedValues() throws IOException, SerializationException {
+        CSVTableReader reader = new CSVTableReader();
+        reader.setKeys("A", "B", "C");
+
+        CSVTable table = reader.read(toStream("a,\",b,\",c\r\n"
+            + "a,\"\"\"b\"\"\",c\r\n"
+            + "a,\"b\r\nb  \",c\r\n"
+            + "a,\"\",c\r\n"));
+
+        assertEquals(4, table.getLength());
+        assertEquals(",b,", table.get(0).get("B"));
+        assertEquals("\"b\"", table.get(1).get("B"));
+        assertEquals("b\nb", table.get(2).get("B"));
+        assertEquals("", table.get(3).get("B"));
+        assertEquals("c", table.get(3).get("C"));
+    }
+
+    @Test
+    public void testInlineKeys() throws IOException, SerializationException {
+        CSVTableReader reader = new CSVTableReader();
+        CSVTable table = reader.read(toStream("A \t, B ,C \na1,b1,c1\n"));
+
+        assertEquals(3, table.getKeys().getLength());
+        assertEquals("B", table.getKeys().get(1));
+        assertEquals(1, table.getLength());
+        assertEquals("b1", table.get(0).get("B"));
+    }
+
+    @Test
+    public void testTypedColumns() throws IOException, SerializationException {
+        CSVTableReader reader = new CSVTableReader();
+        reader.setColumnType("id", Integer.TYPE);
+        reader.setColumnType("size", Long.class);
+        reader.setColumnType("value", Double.class);
+        reader.setColumnType("enabled", Boolean.class);
+
+        CSVTable table = reader.read(toStream("id,name,size,value,enabled\n"
+            + "1,One,-9223372036854775808,0.25,true\n"
+            + "-2,\"Two\",,\"1e3\",FALSE\n"
+            + "3,Three,42,,\n"));
+
+        assertEquals(3, table.getLength());
+
+        int id = table.getColumnIndex("id");
+        int size = table.getColumnIndex("size");
+        int value = table.getColumnIndex("value");
+        int enabled = table.getColumnIndex("enabled");
+
+        assertEquals(Integer.class, table.getColumnType(id));
+        assertEquals(-2, table.getInt(1, id));
+        assertEquals(Long.MIN_VALUE, table.getLong(0, size));
+        assertTrue(table.isNull(1, size));
+        assertNull(table.get(1).get("size"));
+        assertEquals(0.25, table.getDouble(0, value), 0);
+        assertEquals(1000, table.getDouble(1, value), 0);
+        assertTrue(table.isNull(2, value));
+        assertTrue(table.getBoolean(0, enabled));
+        assertFalse(table.getBoolean(1, enabled));
+        assertTrue(table.isNull(2, enabled));
+        assertEquals("Two", table.get(1).get("name"));
+        assertEquals(3, table.get(2).get("id"));
+
+        // Update a value via a row view
+        Dictionary<String, Object> row = table.get(2);
+        assertEquals(42L, row.put("size", 43L));
+        assertEquals(43L, table.getLong(2, size));
+        row.put("size", null);
+        assertTrue(table.isNull(2, size));
+        assertEquals(-1L, table.getLong(2, size) - 1);
+        assertEquals(2, table.indexOf(row));
+    }
+
+    @Test(expected=SerializationException.class)
+    public void testInvalidValue() throws IOException, SerializationException {
+        CSVTableReader reader = new CSVTableReader();
+        reader.setKeys("A", "B");
+        reader.setColumnType("B", Integer.class);
+        reader.read(toStream("a,1\nb,2147483648\n"));
+    }
+
+    @Test(expected=SerializationException.class)
+    public void testIncompleteLine() throws IOException, SerializationException {
+        CSVTableReader reader = new CSVTableReader();
+        reader.setKeys("A", "B", "C");
+        reader.read(toStream("a,b,c\na,b\n"));
+    }
+
+    @Test
+    public void testChunks() throws IOException, SerializationException {
+        // Use small chunks so that chunk boundaries fall inside quoted
+        // values, and compare the results to those of the serializer
+        StringBuilder buf = new StringBuilder("id,name,value\r\n");
+        for (int i = 0; i < 5000; i++) {
+            buf.append(i + ",\"Item\r\n" + i + ", \"\"quoted\"\"\"," + (i * 0.5) + "\r\n");
+        }
+
+        String csv = buf.toString();
+
+        CSVTableReader reader = new CSVTableReader();
+        reader.setChunkSize(1024);
+        reader.setColumnType("id", Integer.class);
+        reader.setColumnType("value", Double.class);
+
+        CSVTable table = reader.read(toStream(csv));
+        List<?> items = new CSVSerializer().readObject(toStream(csv));
+
+        assertEquals(items.getLength(), table.getLength());
+
+        for (int i = 0, n = items.getLength(); i < n; i++) {
+            @SuppressWarnings("unchecked")
+            Dictionary<String, Object> item = (Dictionary<String, Object>)items.get(i);
+            Dictionary<String, Object> row = table.get(i);
+
+            assertEquals(Integer.parseInt((String)item.get("id")), row.get("id"));
+            assertEquals(item.get("name"), row.get("name"));
+            assertEquals(Double.parseDouble((String)item.get("value")), row.get("value"));
+        }
+    }
+
+    @Test
+    public void readSpeedTest() throws IOException, SerializationException {
+        final int ROW_COUNT = 500000;
+
+        File file = File.createTempFile("csv_table_reader_test", ".csv");
+        file.deleteOnExit();
+
+        try {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file),
+                CSVSerializer.DEFAULT_CHARSET_NAME));
+
+            try {
+                writer.write("id,name,category,value\r\n");
+                for (int i = 0; i < ROW_COUNT; i++) {
+                    writer.write(i + ",\"Item " + i + "\",category" + (i % 10) + "," + (i * 0.25) + "\r\n");
+                }
+            } finally {
+                writer.close();
+            }
+
+            long t0 = System.currentTimeMillis();
+            InputStream inputStream = new FileInputStream(file);
+            List<?> items;
+            try {
+                items = new CSVSerializer().readObject(inputStream);
+            } finally {
+                inputStream.close();
+            }
+            long t1 = System.currentTimeMillis();
+
+            assertEquals(ROW_COUNT, items.getLength());
+            System.out.println("CSVSerializer read " + ROW_COUNT + " rows ("
+                + (file.length() / (1024 * 1024)) + "MB) in " + (t1 - t0) + "ms");
+
+            items = null;
+
+            CSVTableReader reader = new CSVTableReader();
+            reader.setColumnType("id", Integer.class);
+            reader.setColumnType("value", Double.class);
+
+            t0 = System.currentTimeMillis();
+            CSVTable table = reader.read(file);
+            t1 = System.currentTimeMillis();
+
+            assertEquals(ROW_COUNT, table.getLength());
+            System.out.println("CSVTableReader read " + ROW_COUNT + " rows ("
+                + (file.length() / (1024 * 1024)) + "MB) in " + (t1 - t0) + "ms");
+        } finally {
+            file.delete();
+        }
+    }
+
+    private static InputStream toStream(String csv) throws IOException {
+        return new ByteArrayInputStream(csv.getBytes(CSVSerializer.DEFAULT_CHARSET_NAME));
+    }
+}
@@ -0,0 +1,311 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pivot.sql.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.Iterator;
+
+import org.apache.pivot.collections.Map;
+import org.apache.pivot.sql.ResultList;
+import org.junit.Test;
+
+public class ResultListTest {
+    /**
+     * In-memory result set with the columns ID (int), NAME (string) and
+     * VALUE (double, null for every tenth row).
+     */
+    private static class TestResultSet implements InvocationHandler {
+        private static final String[] COLUMNS = {"ID", "NAME", "VALUE"};
+
+        public final int rowCount;
+        public final int type;
+
+        public int row = 0;
+        public int rowsRead = 0;
+        public int seekCount = 0;
+
+        private boolean wasNull = false;
+
+        public TestResultSet(int rowCount, int type) {
+            this.rowCount = rowCount;
+            this.type = type;
+        }
+
+        public ResultSet getResultSet() {
+            return (ResultSet)Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[] {ResultSet.class}, this);
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            Object result;
+
+            if (name.equals("getType")) {
+                result = type;
+            } else if (name.equals("next")) {
+                row++;
+                result = (row <= rowCount);
+                if ((Boolean)result) {
+                    rowsRead++;
+                }
+            } else if (name.equals("absolute")) {
+                requireScrollable();
+                seekCount++;
+                row = (Integer)args[0];
+                result = (row >= 1 && row <= rowCount);
+                if ((Boolean)result) {
+                    rowsRead++;
+                }
+            } else if (name.equals("last")) {
+                requireScrollable();
+                row = rowCount;
+                result = (rowCount > 0);
+            } else if (name.equals("getRow")) {
+                result = (row >= 1 && row <= rowCount) ? row : 0;
+            } else if (name.equals("findColumn")) {
+                result = findColumn((String)args[0]);
+            } else if (name.equals("getMetaData")) {
+                result = Proxy.newProxyInstance(getClass().getClassLoader(),
+                    new Class<?>[] {ResultSetMetaData.class}, new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        String name = method.getName();
+                        if (name.equals("getColumnCount")) {
+                            return COLUMNS.length;
+                        } else if (name.equals("getColumnLabel")
+                            || name.equals("getColumnName")) {
+                            return COLUMNS[(Integer)args[0] - 1];
+                        }
+
+                        throw new UnsupportedOperationException(name);
+                    }
+                });
+            } else if (name.equals("wasNull")) {
+                result = wasNull;
+            } else if (name.startsWith("get")) {
+                int column = (args[0] instanceof String) ?
+                    findColumn((String)args[0]) : (Integer)args[0];
+                result = getValue(column);
+                wasNull = (result == null);
+
+                if (name.equals("getInt")) {
+                    result = (result == null) ? 0 : ((Number)result).intValue();
+                } else if (name.equals("getDouble")) {
+                    result = (result == null) ? 0.0 : ((Number)result).doubleValue();
+                } else if (name.equals("getString")) {
+                    result = (result == null) ? null : result.toString();
+                } else if (!name.equals("getObject")) {
+                    throw new UnsupportedOperationException(name);
+                }
+            } else {
+                throw new UnsupportedOperationException(name);
+            }
+
+            return result;
+        }
+
+        private void requireScrollable() throws SQLException {
+            if (type == ResultSet.TYPE_FORWARD_ONLY) {
+                throw new SQLException("Result set is forward only.");
+            }
+        }
+
+        private int findColumn(String columnName) throws SQLException {
+            for (int i = 0; i < COLUMNS.length; i++) {
+                if (COLUMNS[i].equalsIgnoreCase(columnName)) {
+                    return i + 1;
+                }
+            }
+
+            throw new SQLException("Invalid column name: " + columnName);
+        }
+
+        private Object getValue(int column) throws SQLException {
+            if (row < 1 || row > rowCount) {
+                throw new SQLException("Invalid cursor position.");
+            }
+
+            Object value;
+            switch (column) {
+                case 1: {
+                    value = row;
+                    break;
+                }
+
+                case 2: {
+                    value = "Row " + row;
+                    break;
+                }
+
+                case 3: {
+                    value = (row % 10 == 0) ? null : row * 0.5;
+                    break;
+                }
+
+                default: {
+                    throw new SQLException("Invalid column index: " + column);
+                }
+            }
+
+            return value;
+        }
+    }
+
+    private static ResultList createResultList(ResultSet resultSet) {
+        ResultList resultList = new ResultList(resultSet);
+        resultList.setFields(new ResultList.Field("ID", "id", Integer.class),
+            new ResultList.Field("NAME", "name", String.class),
+            new ResultList.Field("VALUE", "value", Double.class));
+
+        return resultList;
+    }
+
+    @Test
+    public void testForwardOnly() {
+        TestResultSet testResultSet = new TestResultSet(25, ResultSet.TYPE_FORWARD_ONLY);
+        ResultList resultList = createResultList(testResultSet.getResultSet());
+
+        assertFalse(resultList.isScrollable());
+        assertEquals(-1, resultList.getLength());
+
+        int i = 0;
+        for (Map<String, Object> item : resultList) {
+            i++;
+            assertEquals(i, item.get("id"));
+            assertEquals("Row " + i, item.get("name"));
+            assertEquals((i % 10 == 0), !item.containsKey("value"));
+        }
+
+        assertEquals(25, i);
+    }
+
+    @Test
+    public void testRandomAccess() {
+        TestResultSet testResultSet = new TestResultSet(1050, ResultSet.TYPE_SCROLL_INSENSITIVE);
+        ResultList resultList = createResultList(testResultSet.getResultSet());
+        resultList.setIncludeNullValues(true);
+        resultList.setWindowSize(100);
+        resultList.setCacheSize(250);
+
+        assertTrue(resultList.isScrollable());
+        assertFalse(resultList.isEmpty());
+        assertEquals(1050, resultList.getLength());
+
+        Map<String, Object> item = resultList.get(1049);
+        assertEquals(1050, item.get("id"));
+        assertTrue(item.containsKey("value"));
+        assertNull(item.get("value"));
+
+        item = resultList.get(0);
+        assertEquals(1, item.get("id"));
+        assertEquals(0.5, item.get("value"));
+        assertSame(item, resultList.get(0));
+        assertEquals(0, resultList.indexOf(item));
+
+        for (int i = 517; i >= 0; i -= 3) {
+            assertEquals(i + 1, resultList.get(i).get("id"));
+        }
+
+        // Rows are read a window at a time
+        assertTrue(testResultSet.rowsRead <= 1050 + 250);
+        assertTrue(testResultSet.seekCount <= 12);
+
+        try {
+            resultList.get(1050);
+            assertTrue(false);
+        } catch (IndexOutOfBoundsException exception) {
+            // No-op
+        }
+    }
+
+    @Test
+    public void testIterator() {
+        TestResultSet testResultSet = new TestResultSet(345, ResultSet.TYPE_SCROLL_INSENSITIVE);
+        ResultList resultList = new ResultList(testResultSet.getResultSet());
+        resultList.setCacheSize(0);
+
+        int i = 0;
+        Iterator<Map<String, Object>> iterator = resultList.iterator();
+        while (iterator.hasNext()) {
+            Map<String, Object> item = iterator.next();
+            i++;
+
+            // With no fields, all columns are returned keyed by label
+            assertEquals(i, item.get("ID"));
+            assertEquals("Row " + i, item.get("NAME"));
+        }
+
+        assertEquals(345, i);
+        assertEquals(345, testResultSet.rowsRead);
+    }
+
+    @Test
+    public void testEmpty() {
+        TestResultSet testResultSet = new TestResultSet(0, ResultSet.TYPE_SCROLL_INSENSITIVE);
+        ResultList resultList = createResultList(testResultSet.getResultSet());
+
+        assertTrue(resultList.isEmpty());
+        assertFalse(resultList.iterator().hasNext());
+    }
+
+    @Test
+    public void scrollSpeedTest() {
+        final int rowCount = 1000000;
+        final int visibleRowCount = 40;
+
+        TestResultSet testResultSet = new TestResultSet(rowCount, ResultSet.TYPE_SCROLL_INSENSITIVE);
+        ResultList resultList = createResultList(testResultSet.getResultSet());
+
+        // Scroll through the table a page at a time, as a table view would
+        long t0 = System.nanoTime();
+        int updateCount = 0;
+        for (int top = 0; top < rowCount; top += visibleRowCount) {
+            for (int i = top, n = Math.min(top + visibleRowCount, rowCount); i < n; i++) {
+                resultList.get(i);
+            }
+
+            updateCount++;
+        }
+        long t1 = System.nanoTime();
+
+        // Jump to random positions
+        java.util.Random random = new java.util.Random(0);
+        for (int j = 0; j < 1000; j++) {
+            int top = random.nextInt(rowCount - visibleRowCount);
+            for (int i = top; i < top + visibleRowCount; i++) {
+                assertEquals(i + 1, resultList.get(i).get("id"));
+            }
+        }
+        long t2 = System.nanoTime();
+
+        System.out.println("Sequential scroll over " + rowCount + " rows: "
+            + (t1 - t0) / 1000 / updateCount + "us per viewport update");
+        System.out.println("Random jump: " + (t2 - t1) / 1000 / 1000 + "us per viewport update");
+    }
+}
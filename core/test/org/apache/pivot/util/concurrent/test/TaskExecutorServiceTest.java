@@ -0,0 +1,499 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pivot.util.concurrent.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.pivot.util.concurrent.Task;
+import org.apache.pivot.util.concurrent.TaskExecutorService;
+import org.apache.pivot.util.concurrent.TaskGroup;
+import org.apache.pivot.util.concurrent.TaskListener;
+import org.apache.pivot.util.concurrent.TaskSequence;
+import org.junit.Test;
+
+public class TaskExecutorServiceTest {
+    /**
+     * Task that records its name when it is executed.
+     */
+    private static class RecordTask extends Task<Void> {
+        private String name;
+        private List<String> names;
+
+        public RecordTask(String name, List<String> names, TaskExecutorService executorService) {
+            super(executorService);
+
+            this.name = name;
+            this.names = names;
+        }
+
+        @Override
+        public Void execute() {
+            names.add(name);
+            return null;
+        }
+    }
+
+    /**
+     * Task listener that counts down a latch when the task completes.
+     */
+    private static class LatchTaskListener<V> implements TaskListener<V> {
+        private CountDownLatch latch;
+
+        public LatchTaskListener(CountDownLatch latch) {
+            this.latch = latch;
+        }
+
+        @Override
+        public void taskExecuted(Task<V> task) {
+            latch.countDown();
+        }
+
+        @Override
+        public void executeFailed(Task<V> task) {
+            latch.countDown();
+        }
+    }
+
+    /**
+     * Task that fails to start.
+     */
+    private static class UnstartableTask extends Task<Void> {
+        public UnstartableTask(TaskExecutorService executorService) {
+            super(executorService);
+        }
+
+        @Override
+        public Void execute() {
+            return null;
+        }
+
+        @Override
+        protected void start(ExecutorService executorService) {
+            throw new RejectedExecutionException();
+        }
+    }
+
+    /**
+     * Program that executes a task on the default executor service and
+     * returns from <tt>main()</tt> before the task completes.
+     */
+    public static class ExitProgram {
+        public static void main(String[] args) {
+            Task<String> task = new Task<String>() {
+                @Override
+                public String execute() {
+                    try {
+                        Thread.sleep(500);
+                    } catch (InterruptedException exception) {
+                        // No-op
+                    }
+
+                    return "executed";
+                }
+            };
+
+            task.execute(new TaskListener<String>() {
+                @Override
+                public void taskExecuted(Task<String> task) {
+                    System.out.println(task.getResult());
+                }
+
+                @Override
+                public void executeFailed(Task<String> task) {
+                    System.out.println(task.getFault());
+                }
+            });
+        }
+    }
+
+    private static Runnable await(final CountDownLatch latch) {
+        return new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    latch.await();
+                } catch (InterruptedException exception) {
+                    // No-op
+                }
+            }
+        };
+    }
+
+    @Test
+    public void testPriority() throws InterruptedException {
+        TaskExecutorService executorService = new TaskExecutorService(1, 1000, null);
+
+        // Occupy the only worker while the tasks are queued
+        CountDownLatch gate = new CountDownLatch(1);
+        executorService.execute(await(gate));
+
+        List<String> names = Collections.synchronizedList(new ArrayList<String>());
+        CountDownLatch latch = new CountDownLatch(5);
+
+        String[] order = {"low 1", "normal 1", "high 1", "low 2", "high 2"};
+        for (String name : order) {
+            RecordTask task = new RecordTask(name, names, executorService);
+            task.setPriority(name.startsWith("high") ? Task.Priority.HIGH
+                : name.startsWith("low") ? Task.Priority.LOW : Task.Priority.NORMAL);
+            task.execute(new LatchTaskListener<Void>(latch));
+        }
+
+        assertEquals(2, executorService.getLane(Task.Priority.LOW).getQueueLength());
+        assertEquals(2, executorService.getLane(Task.Priority.HIGH).getQueueLength());
+
+        gate.countDown();
+        assertTrue(latch.await(10, TimeUnit.SECONDS));
+
+        assertEquals("[high 1, high 2, normal 1, low 1, low 2]", names.toString());
+
+        TaskExecutorService.Lane lane = executorService.getLane(Task.Priority.HIGH);
+        assertEquals(2L, lane.getSubmittedCount());
+        assertEquals(2L, lane.getCompletedCount());
+        assertEquals(2, lane.getPeakQueueLength());
+        assertEquals(2L, lane.getWaitTimes().getCount());
+        assertEquals(2L, lane.getExecutionTimes().getCount());
+
+        executorService.shutdown();
+        assertTrue(executorService.awaitTermination(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testBounds() throws InterruptedException {
+        final TaskExecutorService executorService = new TaskExecutorService(4, 100, null);
+        final AtomicInteger maximumThreadCount = new AtomicInteger();
+        final CountDownLatch latch = new CountDownLatch(100);
+
+        for (int i = 0; i < 100; i++) {
+            executorService.execute(new Runnable() {
+                @Override
+                public void run() {
+                    int threadCount = executorService.getThreadCount();
+
+                    synchronized (maximumThreadCount) {
+                        maximumThreadCount.set(Math.max(maximumThreadCount.get(), threadCount));
+                    }
+
+                    try {
+                        Thread.sleep(1);
+                    } catch (InterruptedException exception) {
+                        // No-op
+                    }
+
+                    latch.countDown();
+                }
+            });
+        }
+
+        assertTrue(latch.await(10, TimeUnit.SECONDS));
+        assertEquals(4, maximumThreadCount.get());
+
+        // Idle workers are retired after the keep-alive time
+        long t0 = System.currentTimeMillis();
+        while (executorService.getThreadCount() > 0
+            && System.currentTimeMillis() - t0 < 5000) {
+            Thread.sleep(10);
+        }
+
+        assertEquals(0, executorService.getThreadCount());
+
+        TaskExecutorService.Histogram histogram =
+            executorService.getLane(Task.Priority.NORMAL).getExecutionTimes();
+        assertEquals(100L, histogram.getCount());
+        assertTrue(histogram.getPercentile(50) >= 1000);
+        assertTrue(histogram.getPercentile(100) <= histogram.getMaximum());
+    }
+
+    @Test
+    public void testShutdown() throws InterruptedException {
+        TaskExecutorService executorService = new TaskExecutorService(1, 1000, null);
+
+        CountDownLatch gate = new CountDownLatch(1);
+        executorService.execute(await(gate));
+
+        final AtomicInteger count = new AtomicInteger();
+        Runnable increment = new Runnable() {
+            @Override
+            public void run() {
+                count.incrementAndGet();
+            }
+        };
+
+        executorService.execute(increment);
+        executorService.execute(increment);
+
+        // Queued commands still run after shutdown
+        executorService.shutdown();
+        assertTrue(executorService.isShutdown());
+        assertTrue(!executorService.isTerminated());
+
+        try {
+            executorService.execute(increment);
+            assertTrue(false);
+        } catch (RejectedExecutionException exception) {
+            // Expected
+        }
+
+        gate.countDown();
+        assertTrue(executorService.awaitTermination(10, TimeUnit.SECONDS));
+        assertEquals(2, count.get());
+
+        // Queued commands are returned by shutdownNow(), and the running
+        // command is interrupted
+        executorService = new TaskExecutorService(1, 1000, null);
+
+        final CountDownLatch started = new CountDownLatch(1);
+        final Runnable await = await(new CountDownLatch(1));
+        executorService.execute(new Runnable() {
+            @Override
+            public void run() {
+                started.countDown();
+                await.run();
+            }
+        });
+
+        executorService.execute(increment);
+        executorService.execute(increment);
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+
+        assertEquals(2, executorService.shutdownNow().size());
+        assertTrue(executorService.awaitTermination(10, TimeUnit.SECONDS));
+        assertEquals(2, count.get());
+    }
+
+    @Test
+    public void testGroupAndSequence() throws InterruptedException {
+        // A group or sequence does not occupy a worker while its tasks run,
+        // so it completes even on a single worker
+        TaskExecutorService executorService = new TaskExecutorService(1, 1000, null);
+
+        List<String> names = Collections.synchronizedList(new ArrayList<String>());
+
+        TaskGroup taskGroup = new TaskGroup(executorService);
+        TaskSequence taskSequence = new TaskSequence(executorService);
+        for (int i = 0; i < 5; i++) {
+            taskGroup.add(new RecordTask("group " + i, names, executorService));
+            taskSequence.add(new RecordTask("sequence " + i, names, executorService));
+        }
+
+        CountDownLatch latch = new CountDownLatch(1);
+        taskGroup.execute(new LatchTaskListener<Void>(latch));
+        assertTrue(latch.await(10, TimeUnit.SECONDS));
+        assertEquals(5, names.size());
+
+        names.clear();
+
+        latch = new CountDownLatch(1);
+        taskSequence.execute(new LatchTaskListener<Void>(latch));
+        assertTrue(latch.await(10, TimeUnit.SECONDS));
+        assertEquals("[sequence 0, sequence 1, sequence 2, sequence 3, sequence 4]",
+            names.toString());
+
+        executorService.shutdown();
+    }
+
+    @Test
+    public void testGroupAndSequenceFaults() throws InterruptedException {
+        TaskExecutorService executorService = new TaskExecutorService(1, 1000, null);
+
+        List<String> names = Collections.synchronizedList(new ArrayList<String>());
+
+        // A task that cannot be started fails the sequence, and the tasks
+        // after it are not run
+        TaskSequence taskSequence = new TaskSequence(executorService);
+        taskSequence.add(new RecordTask("sequence 0", names, executorService));
+        taskSequence.add(new UnstartableTask(executorService));
+        taskSequence.add(new RecordTask("sequence 2", names, executorService));
+
+        CountDownLatch latch = new CountDownLatch(1);
+        taskSequence.execute(new LatchTaskListener<Void>(latch));
+        assertTrue(latch.await(10, TimeUnit.SECONDS));
+        assertTrue(taskSequence.getFault() instanceof RejectedExecutionException);
+        assertEquals("[sequence 0]", names.toString());
+
+        // ...and the group, once its other tasks are complete
+        names.clear();
+
+        TaskGroup taskGroup = new TaskGroup(executorService);
+        taskGroup.add(new RecordTask("group 0", names, executorService));
+        taskGroup.add(new UnstartableTask(executorService));
+
+        latch = new CountDownLatch(1);
+        taskGroup.execute(new LatchTaskListener<Void>(latch));
+        assertTrue(latch.await(10, TimeUnit.SECONDS));
+        assertTrue(taskGroup.getFault() instanceof RejectedExecutionException);
+        assertEquals("[group 0]", names.toString());
+
+        // A sequence aborted while its last task runs completes normally
+        final CountDownLatch runningLatch = new CountDownLatch(1);
+        final CountDownLatch releaseLatch = new CountDownLatch(1);
+
+        taskSequence = new TaskSequence(executorService);
+        taskSequence.add(new Task<Void>(executorService) {
+            @Override
+            public Void execute() {
+                runningLatch.countDown();
+
+                try {
+                    releaseLatch.await();
+                } catch (InterruptedException exception) {
+                    // No-op
+                }
+
+                return null;
+            }
+        });
+
+        latch = new CountDownLatch(1);
+        taskSequence.execute(new LatchTaskListener<Void>(latch));
+        assertTrue(runningLatch.await(10, TimeUnit.SECONDS));
+        taskSequence.abort();
+        releaseLatch.countDown();
+        assertTrue(latch.await(10, TimeUnit.SECONDS));
+        assertNull(taskSequence.getFault());
+
+        executorService.shutdown();
+    }
+
+    @Test
+    public void testExit() throws IOException, InterruptedException {
+        String java = System.getProperty("java.home") + File.separator + "bin"
+            + File.separator + "java";
+        ProcessBuilder processBuilder = new ProcessBuilder(java, "-cp",
+            System.getProperty("java.class.path"), ExitProgram.class.getName());
+        processBuilder.redirectErrorStream(true);
+
+        long t0 = System.currentTimeMillis();
+        Process process = processBuilder.start();
+
+        StringBuilder output = new StringBuilder();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                output.append(line);
+            }
+        } finally {
+            reader.close();
+        }
+
+        assertEquals(0, process.waitFor());
+        long t1 = System.currentTimeMillis();
+
+        // The pending task keeps the VM alive, but the idle worker, which is
+        // not retired for a minute, does not
+        assertEquals("executed", output.toString());
+        assertTrue(t1 - t0 < 30000);
+    }
+
+    @Test
+    public void testVirtualThreads() throws InterruptedException {
+        ThreadFactory threadFactory = TaskExecutorService.getVirtualThreadFactory();
+
+        // Only available on newer runtimes
+        if (threadFactory != null) {
+            TaskExecutorService executorService = new TaskExecutorService(100, 1000, threadFactory);
+            CountDownLatch latch = new CountDownLatch(10);
+            for (int i = 0; i < 10; i++) {
+                new RecordTask("", Collections.synchronizedList(new ArrayList<String>()), executorService)
+                    .execute(new LatchTaskListener<Void>(latch));
+            }
+
+            assertTrue(latch.await(10, TimeUnit.SECONDS));
+
+            executorService.shutdown();
+            assertTrue(executorService.awaitTermination(10, TimeUnit.SECONDS));
+        }
+    }
+
+    @Test
+    public void burstTest() throws InterruptedException {
+        final int taskCount = 2000;
+
+        ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+
+        // One thread per task, as Task.DEFAULT_EXECUTOR_SERVICE used to do
+        long startedThreadCount = threadMXBean.getTotalStartedThreadCount();
+        threadMXBean.resetPeakThreadCount();
+        int threadCount = threadMXBean.getThreadCount();
+
+        final CountDownLatch threadLatch = new CountDownLatch(taskCount);
+        long t0 = System.nanoTime();
+        for (int i = 0; i < taskCount; i++) {
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    threadLatch.countDown();
+                }
+            }).start();
+        }
+
+        assertTrue(threadLatch.await(60, TimeUnit.SECONDS));
+        long t1 = System.nanoTime();
+
+        System.out.println(taskCount + " tasks, thread per task: " + (t1 - t0) / 1000000 + "ms, "
+            + (threadMXBean.getTotalStartedThreadCount() - startedThreadCount) + " threads started, "
+            + (threadMXBean.getPeakThreadCount() - threadCount) + " peak");
+
+        startedThreadCount = threadMXBean.getTotalStartedThreadCount();
+        threadMXBean.resetPeakThreadCount();
+        threadCount = threadMXBean.getThreadCount();
+
+        CountDownLatch latch = new CountDownLatch(taskCount);
+        List<String> names = Collections.synchronizedList(new ArrayList<String>());
+
+        TaskExecutorService executorService = (TaskExecutorService)Task.DEFAULT_EXECUTOR_SERVICE;
+
+        long t2 = System.nanoTime();
+        for (int i = 0; i < taskCount; i++) {
+            new RecordTask("", names, executorService).execute(new LatchTaskListener<Void>(latch));
+        }
+
+        assertTrue(latch.await(60, TimeUnit.SECONDS));
+        long t3 = System.nanoTime();
+
+        TaskExecutorService.Histogram waitTimes =
+            executorService.getLane(Task.Priority.NORMAL).getWaitTimes();
+
+        System.out.println(taskCount + " tasks, " + TaskExecutorService.class.getSimpleName() + ": "
+            + (t3 - t2) / 1000000 + "ms, "
+            + (threadMXBean.getTotalStartedThreadCount() - startedThreadCount) + " threads started, "
+            + (threadMXBean.getPeakThreadCount() - threadCount) + " peak; wait time p50 "
+            + waitTimes.getPercentile(50) + "us, p99 " + waitTimes.getPercentile(99) + "us");
+
+        // Workers, plus the thread that keeps the VM alive while tasks are pending
+        assertTrue(threadMXBean.getTotalStartedThreadCount() - startedThreadCount
+            <= executorService.getMaximumThreadCount() + 1);
+    }
+}
@@ -0,0 +1,54 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pivot.util.test;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * Reports the memory allocated by the current thread, for tests and
+ * benchmarks that measure allocation. Requires a JVM that reports per-thread
+ * allocation (e.g. HotSpot).
+ */
+public final class AllocationMeter {
+    private AllocationMeter() {
+    }
+
+    /**
+     * Tests whether the JVM reports per-thread allocation.
+     */
+    public static boolean isSupported() {
+        ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+        return (threadMXBean instanceof com.sun.management.ThreadMXBean);
+    }
+
+    /**
+     * Returns the total number of bytes allocated by the current thread, or
+     * <tt>-1</tt> if per-thread allocation is not supported.
+     */
+    public static long getAllocatedBytes() {
+        ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+
+        long allocatedBytes = -1;
+        if (threadMXBean instanceof com.sun.management.ThreadMXBean) {
+            allocatedBytes = ((com.sun.management.ThreadMXBean)threadMXBean)
+                .getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+
+        return allocatedBytes;
+    }
+}
@@ -0,0 +1,185 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pivot.util.test;
+
+import static org.apache.pivot.util.test.AllocationMeter.getAllocatedBytes;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Iterator;
+
+import org.apache.pivot.util.ListenerList;
+import org.junit.Test;
+
+public class ListenerListTest {
+    public interface TestListener {
+        public void fired(int value);
+    }
+
+    private static class TestListenerList extends ListenerList<TestListener>
+        implements TestListener {
+        @Override
+        public void fired(int value) {
+            for (TestListener listener : this) {
+                listener.fired(value);
+            }
+        }
+    }
+
+    private static class CountingListener implements TestListener {
+        public int count = 0;
+
+        @Override
+        public void fired(int value) {
+            count += value;
+        }
+    }
+
+    private static final int FIRE_COUNT = 10000000;
+
+    @Test
+    public void basicTest() {
+        TestListenerList listeners = new TestListenerList();
+        assertTrue(listeners.isEmpty());
+        assertFalse(listeners.iterator().hasNext());
+
+        CountingListener a = new CountingListener();
+        CountingListener b = new CountingListener();
+        CountingListener c = new CountingListener();
+
+        listeners.add(a);
+        listeners.add(b);
+        listeners.add(c);
+        listeners.add(b);
+        assertFalse(listeners.isEmpty());
+        assertTrue(listeners.contains(b));
+
+        listeners.fired(1);
+        assertEquals(1, a.count);
+        assertEquals(1, b.count);
+
+        listeners.remove(b);
+        assertFalse(listeners.contains(b));
+
+        Iterator<TestListener> iterator = listeners.iterator();
+        assertTrue(iterator.next() == a);
+        assertTrue(iterator.next() == c);
+        assertFalse(iterator.hasNext());
+
+        listeners.remove(a);
+        listeners.remove(c);
+        assertTrue(listeners.isEmpty());
+    }
+
+    @Test
+    public void modifyDuringFireTest() {
+        final TestListenerList listeners = new TestListenerList();
+        final CountingListener added = new CountingListener();
+
+        listeners.add(new TestListener() {
+            @Override
+            public void fired(int value) {
+                listeners.remove(this);
+                listeners.add(added);
+            }
+        });
+
+        // The new listener is not notified until the next event
+        listeners.fired(1);
+        assertEquals(0, added.count);
+
+        listeners.fired(1);
+        assertEquals(1, added.count);
+    }
+
+    @Test
+    public void concurrentModificationTest() throws InterruptedException {
+        final TestListenerList listeners = new TestListenerList();
+
+        Thread[] threads = new Thread[4];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread() {
+                @Override
+                public void run() {
+                    CountingListener[] local = new CountingListener[16];
+                    for (int j = 0; j < local.length; j++) {
+                        local[j] = new CountingListener();
+                    }
+
+                    for (int j = 0; j < 1000; j++) {
+                        for (CountingListener listener : local) {
+                            listeners.add(listener);
+                        }
+
+                        listeners.fired(1);
+
+                        for (CountingListener listener : local) {
+                            listeners.remove(listener);
+                        }
+                    }
+                }
+            };
+
+            threads[i].start();
+        }
+
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertTrue(listeners.isEmpty());
+    }
+
+    @Test
+    public void fireSpeedTest() {
+        int[] listenerCounts = {0, 1, 4, 64};
+
+        for (int listenerCount : listenerCounts) {
+            TestListenerList listeners = new TestListenerList();
+            CountingListener listener = null;
+
+            for (int i = 0; i < listenerCount; i++) {
+                listener = new CountingListener();
+                listeners.add(listener);
+            }
+
+            int fireCount = FIRE_COUNT / Math.max(listenerCount, 1);
+
+            // Warm up
+            for (int i = 0; i < fireCount; i++) {
+                listeners.fired(1);
+            }
+
+            long a0 = getAllocatedBytes();
+            long t0 = System.nanoTime();
+            for (int i = 0; i < fireCount; i++) {
+                listeners.fired(1);
+            }
+            long t1 = System.nanoTime();
+            long a1 = getAllocatedBytes();
+
+            if (listener != null) {
+                assertEquals(fireCount * 2, listener.count);
+            }
+
+            System.out.println("ListenerList fire, " + listenerCount + " listeners: "
+                + ((t1 - t0) / fireCount) + "ns, "
+                + ((a1 - a0) / fireCount) + " bytes per event");
+        }
+    }
+}
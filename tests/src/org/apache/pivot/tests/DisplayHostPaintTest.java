@@ -0,0 +1,257 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pivot.tests;
+
+import java.awt.image.BufferedImage;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.pivot.collections.ArrayList;
+import org.apache.pivot.collections.HashMap;
+import org.apache.pivot.ui.awt.HeadlessPlatform;
+import org.apache.pivot.ui.awt.OffscreenDisplayHost;
+import org.apache.pivot.wtk.BoxPane;
+import org.apache.pivot.wtk.Component;
+import org.apache.pivot.wtk.Form;
+import org.apache.pivot.wtk.Label;
+import org.apache.pivot.wtk.Orientation;
+import org.apache.pivot.wtk.Panel;
+import org.apache.pivot.wtk.Platform;
+import org.apache.pivot.wtk.ScrollPane;
+import org.apache.pivot.wtk.TableView;
+import org.apache.pivot.wtk.TextInput;
+import org.apache.pivot.wtk.Window;
+
+/**
+ * Measures frame times of a display host painting offscreen, for scrolling a
+ * large table view, for typing into a text input while a label elsewhere
+ * in the window is updated, and for animating a component that overlaps a
+ * complex static form, with and without layer caching. Also measures the
+ * throughput of painting several laid-out displays in parallel. Run with
+ * <tt>-Djava.awt.headless=true</tt> to render without a screen.
+ */
+public class DisplayHostPaintTest {
+    private static final int WIDTH = 1024;
+    private static final int HEIGHT = 768;
+    private static final int ROW_COUNT = 10000;
+    private static final int FRAME_COUNT = 500;
+
+    public static void main(String[] args) throws Exception {
+        Platform.installPlatform(new HeadlessPlatform());
+
+        OffscreenDisplayHost displayHost = new OffscreenDisplayHost(WIDTH, HEIGHT);
+
+        ArrayList<HashMap<String, String>> tableData = new ArrayList<HashMap<String, String>>(ROW_COUNT);
+        for (int i = 0; i < ROW_COUNT; i++) {
+            HashMap<String, String> row = new HashMap<String, String>();
+            row.put("id", Integer.toString(i));
+            row.put("name", "Item " + i);
+            row.put("description", "Description of item " + i);
+            tableData.add(row);
+        }
+
+        TableView tableView = new TableView(tableData);
+        tableView.getColumns().add(new TableView.Column("id", "ID", 100));
+        tableView.getColumns().add(new TableView.Column("name", "Name", 200));
+        tableView.getColumns().add(new TableView.Column("description", "Description", 400));
+
+        ScrollPane scrollPane = new ScrollPane();
+        scrollPane.setView(tableView);
+        scrollPane.setPreferredSize(WIDTH - 24, HEIGHT - 120);
+
+        TextInput textInput = new TextInput();
+        Label statusLabel = new Label();
+
+        BoxPane boxPane = new BoxPane(Orientation.VERTICAL);
+        boxPane.add(textInput);
+        boxPane.add(scrollPane);
+        boxPane.add(statusLabel);
+
+        Window window = new Window(boxPane);
+        window.setMaximized(true);
+        window.open(displayHost.getDisplay());
+
+        // Initial paint, which fills the back buffer
+        displayHost.repaint(0, 0, WIDTH, HEIGHT);
+        displayHost.render();
+
+        // Scroll the table three rows at a time
+        int rowHeight = tableView.getHeight() / ROW_COUNT;
+        long[] frameTimes = new long[FRAME_COUNT];
+
+        for (int i = 0; i < FRAME_COUNT; i++) {
+            scrollPane.setScrollTop((i + 1) * rowHeight * 3);
+            frameTimes[i] = render(displayHost);
+        }
+
+        report("Scrolling", frameTimes);
+
+        // Type into the text input, updating the status label at the other
+        // end of the window on every keystroke
+        for (int i = 0; i < FRAME_COUNT; i++) {
+            textInput.insertText(Character.toString((char)('a' + i % 26)), textInput.getCharacterCount());
+            statusLabel.setText(textInput.getCharacterCount() + " characters");
+            frameTimes[i] = render(displayHost);
+        }
+
+        report("Typing", frameTimes);
+
+        window.close();
+
+        // Move a label back and forth across a form, so that the form is
+        // repainted wherever the label was
+        Form form = new Form();
+        Form.Section section = new Form.Section();
+        for (int i = 0; i < 40; i++) {
+            TextInput fieldInput = new TextInput();
+            fieldInput.setText("Value " + i);
+            Form.setLabel(fieldInput, "Field " + i);
+            section.add(fieldInput);
+        }
+        form.getSections().add(section);
+
+        Label animatedLabel = new Label("Animated");
+        animatedLabel.setSize(animatedLabel.getPreferredSize());
+
+        Panel panel = new Panel();
+        panel.add(form);
+        panel.add(animatedLabel);
+
+        window = new Window(panel);
+        window.setMaximized(true);
+        window.open(displayHost.getDisplay());
+        form.setSize(form.getPreferredSize());
+
+        for (int j = 0; j < 2; j++) {
+            boolean layerCached = (j == 1);
+            form.setLayerCached(layerCached);
+            form.repaint();
+            render(displayHost);
+
+            Component.LayerStatistics.reset();
+
+            for (int i = 0; i < FRAME_COUNT; i++) {
+                animatedLabel.setLocation(i % (WIDTH / 2), (i * 3) % (HEIGHT / 2));
+                frameTimes[i] = render(displayHost);
+            }
+
+            report(layerCached ? "Animation over cached form" : "Animation over form", frameTimes);
+        }
+
+        System.out.println("Layers: " + Component.LayerStatistics.getLayerCount() + ", "
+            + Component.LayerStatistics.getMemoryUsage() / 1024 + "KB; "
+            + Component.LayerStatistics.getHitCount() + " hits, "
+            + Component.LayerStatistics.getMissCount() + " misses, "
+            + Component.LayerStatistics.getPaintedArea() + " pixels repainted");
+
+        window.close();
+
+        // Paint independent displays on separate threads. Opening a window
+        // updates static state (e.g. the active window), so the displays are
+        // built and laid out on this thread; only painting runs in parallel.
+        int processorCount = Runtime.getRuntime().availableProcessors();
+        for (int threadCount = 1; threadCount <= processorCount; threadCount *= 2) {
+            ArrayList<Window> windows = new ArrayList<Window>();
+            java.util.ArrayList<Callable<BufferedImage>> callables =
+                new java.util.ArrayList<Callable<BufferedImage>>();
+
+            for (int i = 0; i < threadCount; i++) {
+                final OffscreenDisplayHost formDisplayHost = new OffscreenDisplayHost(WIDTH, HEIGHT);
+                windows.add(openForm(formDisplayHost));
+                formDisplayHost.render();
+
+                callables.add(new Callable<BufferedImage>() {
+                    @Override
+                    public BufferedImage call() {
+                        return paintFrames(formDisplayHost);
+                    }
+                });
+            }
+
+            ExecutorService executorService = Executors.newFixedThreadPool(threadCount);
+
+            long t0 = System.nanoTime();
+            for (Future<BufferedImage> future : executorService.invokeAll(callables)) {
+                future.get();
+            }
+            long t1 = System.nanoTime();
+
+            executorService.shutdown();
+
+            for (Window formWindow : windows) {
+                formWindow.close();
+            }
+
+            System.out.println("Parallel painting, " + threadCount + " threads: "
+                + threadCount * FRAME_COUNT * 1000000000L / (t1 - t0) + " frames/s");
+        }
+    }
+
+    private static long render(OffscreenDisplayHost displayHost) {
+        long t0 = System.nanoTime();
+        displayHost.render();
+        return System.nanoTime() - t0;
+    }
+
+    private static Window openForm(OffscreenDisplayHost displayHost) {
+        Form form = new Form();
+        Form.Section section = new Form.Section();
+        for (int i = 0; i < 40; i++) {
+            TextInput textInput = new TextInput();
+            textInput.setText("Value " + i);
+            Form.setLabel(textInput, "Field " + i);
+            section.add(textInput);
+        }
+        form.getSections().add(section);
+
+        Window window = new Window(form);
+        window.setMaximized(true);
+        window.open(displayHost.getDisplay());
+
+        return window;
+    }
+
+    /**
+     * Repaints a display that has already been laid out. Only the display
+     * host's own repaint area is modified, so this may run in parallel with
+     * the painting of other displays.
+     */
+    private static BufferedImage paintFrames(OffscreenDisplayHost displayHost) {
+        BufferedImage image = null;
+        for (int i = 0; i < FRAME_COUNT; i++) {
+            displayHost.repaint(0, 0, WIDTH, HEIGHT);
+            image = displayHost.render();
+        }
+
+        return image;
+    }
+
+    private static void report(String scenario, long[] frameTimes) {
+        long total = 0;
+        long maximum = 0;
+
+        for (int i = 0; i < frameTimes.length; i++) {
+            total += frameTimes[i];
+            maximum = Math.max(frameTimes[i], maximum);
+        }
+
+        System.out.println(scenario + ": " + frameTimes.length + " frames, mean "
+            + total / frameTimes.length / 1000 + "us, max " + maximum / 1000 + "us");
+    }
+}
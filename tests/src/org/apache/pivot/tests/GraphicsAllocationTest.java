@@ -0,0 +1,100 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pivot.tests;
+
+import org.apache.pivot.collections.ArrayList;
+import org.apache.pivot.collections.HashMap;
+import org.apache.pivot.ui.awt.HeadlessPlatform;
+import org.apache.pivot.ui.awt.OffscreenDisplayHost;
+import org.apache.pivot.util.test.AllocationMeter;
+import org.apache.pivot.wtk.Platform;
+import org.apache.pivot.wtk.ScrollPane;
+import org.apache.pivot.wtk.TableView;
+import org.apache.pivot.wtk.Window;
+
+/**
+ * Measures the memory allocated while painting frames of a dense table view,
+ * so that allocations made by the graphics wrappers show up as per-frame
+ * garbage. Requires a JVM that reports per-thread allocation (e.g. HotSpot).
+ * Run with <tt>-Djava.awt.headless=true</tt>.
+ */
+public class GraphicsAllocationTest {
+    private static final int WIDTH = 1024;
+    private static final int HEIGHT = 768;
+    private static final int ROW_COUNT = 1000;
+    private static final int COLUMN_COUNT = 12;
+    private static final int WARM_UP_FRAME_COUNT = 100;
+    private static final int FRAME_COUNT = 500;
+
+    public static void main(String[] args) {
+        if (!AllocationMeter.isSupported()) {
+            System.err.println("Per-thread allocation is not supported by this JVM.");
+            return;
+        }
+
+        Platform.installPlatform(new HeadlessPlatform());
+
+        OffscreenDisplayHost displayHost = new OffscreenDisplayHost(WIDTH, HEIGHT);
+
+        ArrayList<HashMap<String, String>> tableData = new ArrayList<HashMap<String, String>>(ROW_COUNT);
+        for (int i = 0; i < ROW_COUNT; i++) {
+            HashMap<String, String> row = new HashMap<String, String>();
+            for (int j = 0; j < COLUMN_COUNT; j++) {
+                row.put("c" + j, i + "." + j);
+            }
+
+            tableData.add(row);
+        }
+
+        TableView tableView = new TableView(tableData);
+        for (int j = 0; j < COLUMN_COUNT; j++) {
+            tableView.getColumns().add(new TableView.Column("c" + j, "Column " + j, 80));
+        }
+
+        ScrollPane scrollPane = new ScrollPane();
+        scrollPane.setView(tableView);
+
+        Window window = new Window(scrollPane);
+        window.setMaximized(true);
+        window.open(displayHost.getDisplay());
+
+        for (int i = 0; i < WARM_UP_FRAME_COUNT; i++) {
+            paintFrame(displayHost);
+        }
+
+        long bytes0 = AllocationMeter.getAllocatedBytes();
+        long t0 = System.nanoTime();
+
+        for (int i = 0; i < FRAME_COUNT; i++) {
+            paintFrame(displayHost);
+        }
+
+        long t1 = System.nanoTime();
+        long bytes1 = AllocationMeter.getAllocatedBytes();
+
+        System.out.println("Full repaint of a " + COLUMN_COUNT + " column table view: "
+            + (t1 - t0) / FRAME_COUNT / 1000 + "us, "
+            + (bytes1 - bytes0) / FRAME_COUNT + " bytes allocated per frame");
+
+        window.close();
+    }
+
+    private static void paintFrame(OffscreenDisplayHost displayHost) {
+        displayHost.repaint(0, 0, WIDTH, HEIGHT);
+        displayHost.render();
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pivot.tests;
+
+import java.util.Random;
+
+import org.apache.pivot.collections.Sequence.Tree.Path;
+import org.apache.pivot.ui.awt.HeadlessPlatform;
+import org.apache.pivot.wtk.Platform;
+import org.apache.pivot.wtk.TreeView;
+import org.apache.pivot.wtk.content.TreeBranch;
+import org.apache.pivot.wtk.content.TreeNode;
+
+/**
+ * Measures the time taken by a tree view skin to expand and collapse
+ * branches, and to look up the rows of nodes, in a large synthetic tree.
+ */
+public class TreeViewExpandTest {
+    private static final int BRANCH_COUNT = 1000;
+    private static final int LEAF_COUNT = 500;
+    private static final int TOGGLE_COUNT = 1000;
+    private static final int LOOKUP_COUNT = 100000;
+
+    public static void main(String[] args) {
+        Platform.installPlatform(new HeadlessPlatform());
+
+        TreeBranch treeData = new TreeBranch();
+        for (int i = 0; i < BRANCH_COUNT; i++) {
+            TreeBranch branch = new TreeBranch("Branch " + i);
+
+            for (int j = 0; j < LEAF_COUNT; j++) {
+                branch.add(new TreeNode("Node " + i + "." + j));
+            }
+
+            treeData.add(branch);
+        }
+
+        TreeView treeView = new TreeView(treeData);
+
+        // Expand every branch, from the last to the first, so that each
+        // expansion inserts rows ahead of all those already visible
+        long t0 = System.nanoTime();
+        for (int i = BRANCH_COUNT - 1; i >= 0; i--) {
+            treeView.expandBranch(new Path(i));
+        }
+        long t1 = System.nanoTime();
+
+        System.out.println("Expand " + BRANCH_COUNT + " branches ("
+            + BRANCH_COUNT * (LEAF_COUNT + 1) + " rows): " + (t1 - t0) / 1000000 + "ms");
+
+        // Collapse and expand a branch in the middle of the fully expanded tree
+        Path middlePath = new Path(BRANCH_COUNT / 2);
+
+        t0 = System.nanoTime();
+        for (int i = 0; i < TOGGLE_COUNT; i++) {
+            treeView.collapseBranch(middlePath);
+            treeView.expandBranch(middlePath);
+        }
+        t1 = System.nanoTime();
+
+        System.out.println("Collapse and expand a middle branch: "
+            + (t1 - t0) / TOGGLE_COUNT / 1000 + "us");
+
+        // Look up the rows of random leaves
+        Random random = new Random(0);
+
+        t0 = System.nanoTime();
+        int rowIndexSum = 0;
+        for (int i = 0; i < LOOKUP_COUNT; i++) {
+            Path path = new Path(random.nextInt(BRANCH_COUNT), random.nextInt(LEAF_COUNT));
+            rowIndexSum += treeView.getRowIndex(path);
+        }
+        t1 = System.nanoTime();
+
+        System.out.println("Row index lookup: " + (t1 - t0) / LOOKUP_COUNT + "ns ("
+            + rowIndexSum + ")");
+
+        // Collapse every branch, from the first to the last, so that each
+        // collapse removes rows ahead of all those still visible
+        t0 = System.nanoTime();
+        for (int i = 0; i < BRANCH_COUNT; i++) {
+            treeView.collapseBranch(new Path(i));
+        }
+        t1 = System.nanoTime();
+
+        System.out.println("Collapse " + BRANCH_COUNT + " branches: " + (t1 - t0) / 1000000 + "ms");
+    }
+}
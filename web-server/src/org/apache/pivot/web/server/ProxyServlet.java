@@ -16,8 +16,6 @@
  */
 package org.apache.pivot.web.server;
 
-import java.io.BufferedInputStream;
-import java.io.BufferedOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
@@ -25,6 +23,9 @@ import java.net.HttpURLConnection;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.util.Enumeration;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
 import javax.servlet.ServletConfig;
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServlet;
@@ -32,17 +33,28 @@ import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
 import org.apache.pivot.collections.HashSet;
+import org.apache.pivot.web.Query;
+import org.apache.pivot.web.QueryTransport;
 
 
 /**
  * HTTP proxy that allows an unsigned applet to issue web queries to services
  * outside of its origin server.
+ * <p>
+ * Request and response bodies are streamed through in large blocks rather
+ * than buffered. Connections to the upstream server are obtained from a
+ * {@link QueryTransport}, so they are kept alive and reused across requests
+ * (up to the number given by the <tt>http.maxConnections</tt> system
+ * property), and their number is limited by the <tt>maxConnections</tt>
+ * init parameter. The <tt>maxConcurrentRequests</tt> parameter limits the
+ * number of requests proxied at once; requests that cannot be admitted within
+ * <tt>queueTimeout</tt> milliseconds are answered with HTTP 503.
  */
 public class ProxyServlet extends HttpServlet {
     /**
-     * A set of HTTP response header names, stored in a case-insensitive manner.
+     * A set of HTTP header names, stored in a case-insensitive manner.
      */
-    private static class ResponseHeaderSet extends HashSet<String> {
+    private static class HeaderSet extends HashSet<String> {
         private static final long serialVersionUID = 3055851700567335445L;
 
         @Override
@@ -65,7 +77,15 @@ public class ProxyServlet extends HttpServlet {
     private int port = -1;
     private String path = null;
 
-    private static ResponseHeaderSet ignoreResponseHeaders = new ResponseHeaderSet();
+    private int queueTimeout = 0;
+
+    private transient QueryTransport transport = null;
+    private transient Semaphore requestPermits = null;
+
+    private transient ThreadLocal<byte[]> buffer = new ThreadLocal<byte[]>();
+
+    private static HeaderSet ignoreRequestHeaders = new HeaderSet();
+    private static HeaderSet ignoreResponseHeaders = new HeaderSet();
 
     private static final long serialVersionUID = -1794977331184160392L;
 
@@ -73,14 +93,27 @@ public class ProxyServlet extends HttpServlet {
     public static final String METHOD_POST = "POST";
     public static final String METHOD_PUT = "PUT";
     public static final String METHOD_DELETE = "DELETE";
+    public static final String METHOD_HEAD = "HEAD";
 
     public static final String HOSTNAME_PARAM = "hostname";
     public static final String PORT_PARAM = "port";
     public static final String PATH_PARAM = "path";
+    public static final String MAX_CONNECTIONS_PARAM = "maxConnections";
+    public static final String MAX_CONCURRENT_REQUESTS_PARAM = "maxConcurrentRequests";
+    public static final String QUEUE_TIMEOUT_PARAM = "queueTimeout";
 
-    public static final int BUFFER_SIZE = 1024;
+    public static final int BUFFER_SIZE = 32768;
+    public static final int DEFAULT_MAX_CONNECTIONS = 20;
 
     static {
+        // Hop-by-hop headers apply to a single connection and are not forwarded
+        ignoreRequestHeaders.add("Connection");
+        ignoreRequestHeaders.add("Keep-Alive");
+        ignoreRequestHeaders.add("Transfer-Encoding");
+        ignoreRequestHeaders.add("Content-Length");
+
+        ignoreResponseHeaders.add("Connection");
+        ignoreResponseHeaders.add("Keep-Alive");
         ignoreResponseHeaders.add("Transfer-Encoding");
     }
 
@@ -101,6 +134,25 @@ public class ProxyServlet extends HttpServlet {
         if (path == null) {
             throw new ServletException("Path is required.");
         }
+
+        String maxConnectionsParam = config.getInitParameter(MAX_CONNECTIONS_PARAM);
+        int maxConnections = (maxConnectionsParam == null) ?
+            DEFAULT_MAX_CONNECTIONS : Integer.parseInt(maxConnectionsParam);
+
+        transport = new QueryTransport();
+        transport.setMaxConnectionsPerHost(maxConnections);
+
+        // The client negotiates the content encoding; bodies are passed
+        // through as they are
+        transport.setCompressionEnabled(false);
+
+        String maxConcurrentRequestsParam = config.getInitParameter(MAX_CONCURRENT_REQUESTS_PARAM);
+        if (maxConcurrentRequestsParam != null) {
+            requestPermits = new Semaphore(Integer.parseInt(maxConcurrentRequestsParam), true);
+        }
+
+        String queueTimeoutParam = config.getInitParameter(QUEUE_TIMEOUT_PARAM);
+        queueTimeout = (queueTimeoutParam == null) ? 0 : Integer.parseInt(queueTimeoutParam);
     }
 
     @Override
@@ -108,15 +160,38 @@ public class ProxyServlet extends HttpServlet {
     }
 
     @Override
-    @SuppressWarnings("unchecked")
     protected void service(HttpServletRequest request, HttpServletResponse response)
+        throws IOException, ServletException {
+        if (requestPermits == null) {
+            proxy(request, response);
+        } else {
+            boolean admitted;
+            try {
+                admitted = requestPermits.tryAcquire(queueTimeout, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException exception) {
+                throw new ServletException(exception);
+            }
+
+            if (admitted) {
+                try {
+                    proxy(request, response);
+                } finally {
+                    requestPermits.release();
+                }
+            } else {
+                response.sendError(Query.Status.SERVICE_UNAVAILABLE);
+            }
+        }
+    }
+
+    private void proxy(HttpServletRequest request, HttpServletResponse response)
         throws IOException, ServletException {
         // Construct the URL
         String path = this.path;
 
         String pathInfo = request.getPathInfo();
         if (pathInfo != null) {
-            path += "/" + pathInfo;
+            path += pathInfo;
         }
 
         String queryString = request.getQueryString();
@@ -133,8 +208,31 @@ public class ProxyServlet extends HttpServlet {
 
         String method = request.getMethod();
 
-        // Open a connection to the URL
-        HttpURLConnection connection = (HttpURLConnection)url.openConnection();
+        // Wait for an upstream connection
+        try {
+            transport.acquire(url);
+        } catch (InterruptedException exception) {
+            throw new ServletException(exception);
+        }
+
+        try {
+            // Open a connection to the URL
+            HttpURLConnection connection = transport.openConnection(url, null);
+
+            try {
+                proxy(request, response, method, connection);
+            } finally {
+                // Discard any unread response so the connection can be reused
+                transport.close(connection);
+            }
+        } finally {
+            transport.release(url);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void proxy(HttpServletRequest request, HttpServletResponse response,
+        String method, HttpURLConnection connection) throws IOException, ServletException {
         connection.setRequestMethod(method);
         connection.setAllowUserInteraction(false);
         connection.setInstanceFollowRedirects(false);
@@ -146,15 +244,18 @@ public class ProxyServlet extends HttpServlet {
         if (headerNames != null) {
             while (headerNames.hasMoreElements()) {
                 String headerName = headerNames.nextElement();
-                Enumeration<String> headerValues = request.getHeaders(headerName);
 
-                while (headerValues.hasMoreElements()) {
-                    String headerValue = headerValues.nextElement();
+                if (!ignoreRequestHeaders.contains(headerName)) {
+                    Enumeration<String> headerValues = request.getHeaders(headerName);
+
+                    while (headerValues.hasMoreElements()) {
+                        String headerValue = headerValues.nextElement();
 
-                    if (connection.getRequestProperty(headerName) == null) {
-                        connection.setRequestProperty(headerName, headerValue);
-                    } else {
-                        connection.addRequestProperty(headerName, headerValue);
+                        if (connection.getRequestProperty(headerName) == null) {
+                            connection.setRequestProperty(headerName, headerValue);
+                        } else {
+                            connection.addRequestProperty(headerName, headerValue);
+                        }
                     }
                 }
             }
@@ -165,25 +266,27 @@ public class ProxyServlet extends HttpServlet {
         connection.setDoOutput(method.equalsIgnoreCase(METHOD_POST)
             || method.equalsIgnoreCase(METHOD_PUT));
 
+        // Stream the request body rather than letting the connection buffer it
+        if (connection.getDoOutput()) {
+            int contentLength = request.getContentLength();
+            if (contentLength == -1) {
+                connection.setChunkedStreamingMode(BUFFER_SIZE);
+            } else {
+                connection.setFixedLengthStreamingMode(contentLength);
+            }
+        }
+
         // Connect to the server
         connection.connect();
 
         // Write the request body
         if (connection.getDoOutput()) {
-            OutputStream outputStream = null;
+            OutputStream outputStream = connection.getOutputStream();
 
             try {
-                InputStream inputStream = request.getInputStream();
-
-                outputStream = connection.getOutputStream();
-                outputStream = new BufferedOutputStream(outputStream, BUFFER_SIZE);
-                for (int data = inputStream.read(); data != -1; data = inputStream.read()) {
-                    outputStream.write((byte)data);
-                }
+                copy(request.getInputStream(), outputStream);
             } finally {
-                if (outputStream != null) {
-                    outputStream.close();
-                }
+                outputStream.close();
             }
         }
 
@@ -216,33 +319,40 @@ public class ProxyServlet extends HttpServlet {
         }
 
         // Read the response body
-        if (method.equalsIgnoreCase(METHOD_GET)) {
-            InputStream inputStream = null;
+        if (!method.equalsIgnoreCase(METHOD_HEAD)
+            && status != Query.Status.NO_CONTENT) {
+            InputStream inputStream;
+
+            if (statusPrefix == 2) {
+                // Response returned on input stream
+                inputStream = connection.getInputStream();
+            } else {
+                // Response returned on error stream
+                inputStream = connection.getErrorStream();
+            }
 
-            try {
+            if (inputStream != null) {
                 try {
-                    // Response returned on input stream
-                    inputStream = connection.getInputStream();
-                } catch(Exception exception) {
-                    // Response returned on error stream
-                    inputStream = connection.getErrorStream();
+                    copy(inputStream, response.getOutputStream());
+                } finally {
+                    inputStream.close();
                 }
+            }
+        }
 
-                if (inputStream != null) {
-                    inputStream = new BufferedInputStream(inputStream, BUFFER_SIZE);
+        response.flushBuffer();
+    }
 
-                    OutputStream outputStream = response.getOutputStream();
-                    for (int data = inputStream.read(); data != -1; data = inputStream.read()) {
-                        outputStream.write((byte)data);
-                    }
-                }
+    private void copy(InputStream inputStream, OutputStream outputStream) throws IOException {
+        byte[] buffer = this.buffer.get();
+        if (buffer == null) {
+            buffer = new byte[BUFFER_SIZE];
+            this.buffer.set(buffer);
+        }
 
-                response.flushBuffer();
-            } finally {
-                if (inputStream != null) {
-                    inputStream.close();
-                }
-            }
+        int n;
+        while ((n = inputStream.read(buffer)) != -1) {
+            outputStream.write(buffer, 0, n);
         }
     }
 }
@@ -16,16 +16,25 @@
  */
 package org.apache.pivot.web.server;
 
-import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.net.URLDecoder;
 import java.util.Enumeration;
 import java.util.Iterator;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.zip.GZIPOutputStream;
 
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServlet;
@@ -37,12 +46,23 @@ import org.apache.pivot.collections.Sequence;
 import org.apache.pivot.serialization.SerializationException;
 import org.apache.pivot.serialization.Serializer;
 import org.apache.pivot.util.ImmutableIterator;
+import org.apache.pivot.web.BatchQuery;
 import org.apache.pivot.web.Query;
 import org.apache.pivot.web.QueryDictionary;
 import org.apache.pivot.web.QueryException;
 
 /**
  * Abstract base class for query servlets.
+ * <p>
+ * In addition to individual requests, query servlets accept batches of
+ * operations sent by a {@link BatchQuery}. Each operation in a batch is
+ * validated and dispatched to the handler method for its HTTP method, exactly
+ * as if it had been sent individually, and its result is streamed back as soon
+ * as it completes. By default, the operations are executed in order on the
+ * request thread; if a {@link #setBatchExecutorService(ExecutorService) batch
+ * executor service} is set, they are executed in parallel, and
+ * {@link #prepare()} and {@link #dispose()} are called on the worker thread
+ * around each operation.
  */
 public abstract class QueryServlet extends HttpServlet {
     /**
@@ -122,6 +142,10 @@ public abstract class QueryServlet extends HttpServlet {
     private static final long serialVersionUID = 4881638232902478092L;
 
     private boolean determineContentLength = false;
+    private int bufferThreshold = DEFAULT_BUFFER_THRESHOLD;
+    private boolean compressionEnabled = false;
+
+    private transient ExecutorService batchExecutorService = null;
 
     private transient ThreadLocal<String> hostname = new ThreadLocal<String>();
     private transient ThreadLocal<Integer> port = new ThreadLocal<Integer>();
@@ -140,6 +164,103 @@ public abstract class QueryServlet extends HttpServlet {
     public static final String CONTENT_TYPE_HEADER = "Content-Type";
     public static final String CONTENT_LENGTH_HEADER = "Content-Length";
     public static final String LOCATION_HEADER = "Location";
+    public static final String ACCEPT_ENCODING_HEADER = "Accept-Encoding";
+    public static final String CONTENT_ENCODING_HEADER = "Content-Encoding";
+    public static final String VARY_HEADER = "Vary";
+
+    public static final String GZIP_ENCODING = "gzip";
+
+    public static final int DEFAULT_BUFFER_THRESHOLD = 262144;
+
+    private static final int GZIP_BUFFER_SIZE = 8192;
+    private static final int STREAMING_BUFFER_SIZE = 8192;
+
+    /**
+     * Tells whether the servlet determines the length of GET responses before
+     * sending them.
+     *
+     * @return
+     * <tt>true</tt> if the response body is buffered and sent with a
+     * <tt>Content-Length</tt> header; <tt>false</tt> if it is streamed to the
+     * client as it is serialized.
+     */
+    public boolean isDetermineContentLength() {
+        return determineContentLength;
+    }
+
+    /**
+     * Sets whether the servlet determines the length of GET responses before
+     * sending them.
+     *
+     * @param determineContentLength
+     */
+    public void setDetermineContentLength(boolean determineContentLength) {
+        this.determineContentLength = determineContentLength;
+    }
+
+    /**
+     * Returns the maximum number of bytes of a response body that are held in
+     * memory while its content length is determined. Larger responses are
+     * spilled to a temporary file.
+     */
+    public int getBufferThreshold() {
+        return bufferThreshold;
+    }
+
+    /**
+     * Sets the maximum number of bytes of a response body that are held in
+     * memory while its content length is determined.
+     *
+     * @param bufferThreshold
+     */
+    public void setBufferThreshold(int bufferThreshold) {
+        if (bufferThreshold < 0) {
+            throw new IllegalArgumentException("bufferThreshold is negative.");
+        }
+
+        this.bufferThreshold = bufferThreshold;
+    }
+
+    /**
+     * Tells whether GET responses are gzip-compressed for clients that
+     * accept it.
+     */
+    public boolean isCompressionEnabled() {
+        return compressionEnabled;
+    }
+
+    /**
+     * Sets whether GET responses are gzip-compressed for clients that
+     * accept it.
+     *
+     * @param compressionEnabled
+     */
+    public void setCompressionEnabled(boolean compressionEnabled) {
+        this.compressionEnabled = compressionEnabled;
+    }
+
+    /**
+     * Returns the executor service used to execute the operations in a batch.
+     *
+     * @return
+     * The executor service, or <tt>null</tt> if batch operations are executed
+     * sequentially on the request thread.
+     */
+    public ExecutorService getBatchExecutorService() {
+        return batchExecutorService;
+    }
+
+    /**
+     * Sets the executor service used to execute the operations in a batch.
+     * The servlet does not shut the executor service down.
+     *
+     * @param batchExecutorService
+     * The executor service, or <tt>null</tt> to execute batch operations
+     * sequentially on the request thread.
+     */
+    public void setBatchExecutorService(ExecutorService batchExecutorService) {
+        this.batchExecutorService = batchExecutorService;
+    }
 
     /**
      * Gets the host name that was requested.
@@ -357,17 +478,7 @@ public abstract class QueryServlet extends HttpServlet {
             // Copy the query string into the arguments dictionary
             String queryString = request.getQueryString();
             if (queryString != null) {
-                QueryDictionary parametersDictionary = parameters.get();
-                String[] pairs = queryString.split("&");
-
-                for (int i = 0, n = pairs.length; i < n; i++) {
-                    String[] pair = pairs[i].split("=");
-
-                    String key = URLDecoder.decode(pair[0], URL_ENCODING);
-                    String value = URLDecoder.decode((pair.length > 1) ? pair[1] : "", URL_ENCODING);
-
-                    parametersDictionary.add(key, value);
-                }
+                addParameters(queryString, parameters.get());
             }
 
             // Copy the request headers into the request properties dictionary
@@ -432,44 +543,64 @@ public abstract class QueryServlet extends HttpServlet {
 
             response.setContentType(serializer.getMIMEType(result));
 
+            boolean compress = compressionEnabled && isGzipAccepted(request);
+            if (compressionEnabled) {
+                response.setHeader(VARY_HEADER, ACCEPT_ENCODING_HEADER);
+            }
+
+            if (compress) {
+                response.setHeader(CONTENT_ENCODING_HEADER, GZIP_ENCODING);
+            }
+
             OutputStream responseOutputStream = response.getOutputStream();
 
             if (determineContentLength) {
-                File tempFile = File.createTempFile(getClass().getName(), null);
+                // Serialize the result to an intermediary buffer; only content
+                // beyond the buffer threshold is spilled to disk
+                ResponseBuffer responseBuffer = new ResponseBuffer(bufferThreshold);
 
-                // Serialize the result to an intermediary file
-                FileOutputStream fileOutputStream = new FileOutputStream(tempFile);
                 try {
-                    serializer.writeObject(result, fileOutputStream);
-                } catch (SerializationException exception) {
-                    throw new ServletException(exception);
+                    OutputStream outputStream = compress ?
+                        new GZIPOutputStream(responseBuffer, GZIP_BUFFER_SIZE) : responseBuffer;
+
+                    try {
+                        serializer.writeObject(result, outputStream);
+                    } catch (SerializationException exception) {
+                        throw new ServletException(exception);
+                    } finally {
+                        outputStream.close();
+                    }
+
+                    // Set the content length header
+                    response.setHeader(CONTENT_LENGTH_HEADER,
+                        String.valueOf(responseBuffer.getLength()));
+
+                    // Write the buffered content out to the response
+                    responseBuffer.writeTo(responseOutputStream);
                 } finally {
-                    fileOutputStream.close();
+                    responseBuffer.dispose();
                 }
+            } else {
+                // Stream the result directly; the container will use chunked
+                // transfer encoding once its response buffer fills
+                StreamingOutputStream streamingOutputStream =
+                    new StreamingOutputStream(responseOutputStream);
 
-                // Set the content length header
-                response.setHeader(CONTENT_LENGTH_HEADER, String.valueOf(tempFile.length()));
+                GZIPOutputStream gzipOutputStream = compress ?
+                    new GZIPOutputStream(streamingOutputStream, GZIP_BUFFER_SIZE) : null;
 
-                // Write the contents of the file out to the response
-                FileInputStream fileInputStream = new FileInputStream(tempFile);
                 try {
-                    byte[] buffer = new byte[1024];
-                    int nBytes;
-                    do {
-                        nBytes = fileInputStream.read(buffer);
-                        if (nBytes > 0) {
-                            responseOutputStream.write(buffer, 0, nBytes);
-                        }
-                    } while (nBytes != -1);
-                } finally {
-                    fileInputStream.close();
-                }
-            } else {
-                try {
-                    serializer.writeObject(result, responseOutputStream);
+                    serializer.writeObject(result, compress ?
+                        gzipOutputStream : streamingOutputStream);
                 } catch (SerializationException exception) {
                     throw new ServletException(exception);
                 }
+
+                if (gzipOutputStream != null) {
+                    gzipOutputStream.finish();
+                }
+
+                streamingOutputStream.finish();
             }
 
             response.flushBuffer();
@@ -479,6 +610,13 @@ public abstract class QueryServlet extends HttpServlet {
     @Override
     protected final void doPost(HttpServletRequest request, HttpServletResponse response)
         throws IOException, ServletException {
+        String contentType = request.getContentType();
+        if (contentType != null
+            && contentType.startsWith(BatchQuery.MIME_TYPE)) {
+            doBatch(request, response);
+            return;
+        }
+
         Path path = getPath(request);
 
         URL location = null;
@@ -584,8 +722,351 @@ public abstract class QueryServlet extends HttpServlet {
         response.flushBuffer();
     }
 
+    private void doBatch(HttpServletRequest request, HttpServletResponse response)
+        throws IOException, ServletException {
+        // Read the operations
+        ArrayList<BatchQuery.Operation> operations = new ArrayList<BatchQuery.Operation>();
+
+        InputStream inputStream = new BufferedInputStream(request.getInputStream());
+        BatchQuery.Operation operation;
+        while ((operation = BatchQuery.Operation.read(inputStream)) != null) {
+            operations.add(operation);
+        }
+
+        response.setStatus(Query.Status.OK);
+        setResponseHeaders(response);
+        response.setContentType(BatchQuery.MIME_TYPE);
+
+        OutputStream responseOutputStream = response.getOutputStream();
+
+        final BatchContext batchContext = new BatchContext();
+        int n = operations.getLength();
+
+        if (batchExecutorService == null) {
+            for (int i = 0; i < n; i++) {
+                BatchQuery.Result result = executeOperation(i, operations.get(i), batchContext, false);
+                result.write(responseOutputStream);
+                responseOutputStream.flush();
+            }
+        } else {
+            CompletionService<BatchQuery.Result> completionService =
+                new ExecutorCompletionService<BatchQuery.Result>(batchExecutorService);
+
+            for (int i = 0; i < n; i++) {
+                final int index = i;
+                final BatchQuery.Operation batchOperation = operations.get(i);
+
+                completionService.submit(new Callable<BatchQuery.Result>() {
+                    @Override
+                    public BatchQuery.Result call() {
+                        return executeOperation(index, batchOperation, batchContext, true);
+                    }
+                });
+            }
+
+            // Write the results as they complete
+            for (int i = 0; i < n; i++) {
+                BatchQuery.Result result;
+                try {
+                    result = completionService.take().get();
+                } catch (InterruptedException exception) {
+                    throw new ServletException(exception);
+                } catch (ExecutionException exception) {
+                    throw new ServletException(exception.getCause());
+                }
+
+                result.write(responseOutputStream);
+                responseOutputStream.flush();
+            }
+        }
+
+        response.flushBuffer();
+    }
+
+    /**
+     * Buffered stream over a servlet output stream that ignores intermediate
+     * flushes. Serializers flush as they write nested values; passing those
+     * flushes through would send each value in its own chunk.
+     */
+    private static class StreamingOutputStream extends BufferedOutputStream {
+        public StreamingOutputStream(OutputStream outputStream) {
+            super(outputStream, STREAMING_BUFFER_SIZE);
+        }
+
+        @Override
+        public void flush() {
+            // No-op
+        }
+
+        public void finish() throws IOException {
+            super.flush();
+        }
+    }
+
+    /**
+     * The request state shared by the operations in a batch.
+     */
+    private class BatchContext {
+        public final String hostname = QueryServlet.this.hostname.get();
+        public final Integer port = QueryServlet.this.port.get();
+        public final String contextPath = QueryServlet.this.contextPath.get();
+        public final String servletPath = QueryServlet.this.servletPath.get();
+        public final Boolean secure = QueryServlet.this.secure.get();
+        public final QueryDictionary requestHeaders = QueryServlet.this.requestHeaders.get();
+    }
+
+    /**
+     * Executes an operation in a batch.
+     *
+     * @param index
+     * The index of the operation.
+     *
+     * @param operation
+     * The operation.
+     *
+     * @param batchContext
+     * The state of the batch request.
+     *
+     * @param prepare
+     * Whether to call {@link #prepare()} and {@link #dispose()} around the
+     * operation.
+     */
+    @SuppressWarnings("unchecked")
+    private BatchQuery.Result executeOperation(int index, BatchQuery.Operation operation,
+        BatchContext batchContext, boolean prepare) {
+        // Save the thread state, which belongs to the batch request if the
+        // operation is executed on the request thread
+        String previousHostname = hostname.get();
+        Integer previousPort = port.get();
+        String previousContextPath = contextPath.get();
+        String previousServletPath = servletPath.get();
+        Boolean previousSecure = secure.get();
+        QueryDictionary previousParameters = parameters.get();
+        QueryDictionary previousRequestHeaders = requestHeaders.get();
+        QueryDictionary previousResponseHeaders = responseHeaders.get();
+
+        int status;
+        byte[] body = new byte[0];
+        QueryDictionary resultHeaders = new QueryDictionary(false);
+
+        try {
+            hostname.set(batchContext.hostname);
+            port.set(batchContext.port);
+            contextPath.set(batchContext.contextPath);
+            servletPath.set(batchContext.servletPath);
+            secure.set(batchContext.secure);
+
+            // The operation's headers replace those of the batch request
+            QueryDictionary operationHeaders = operation.getHeaders();
+            QueryDictionary requestHeaderDictionary = new QueryDictionary(false);
+
+            for (String key : batchContext.requestHeaders) {
+                if (!operationHeaders.containsKey(key)
+                    && !key.equalsIgnoreCase(CONTENT_TYPE_HEADER)
+                    && !key.equalsIgnoreCase(CONTENT_LENGTH_HEADER)) {
+                    for (int i = 0, n = batchContext.requestHeaders.getLength(key); i < n; i++) {
+                        requestHeaderDictionary.add(key, batchContext.requestHeaders.get(key, i));
+                    }
+                }
+            }
+
+            for (String key : operationHeaders) {
+                for (int i = 0, n = operationHeaders.getLength(key); i < n; i++) {
+                    requestHeaderDictionary.add(key, operationHeaders.get(key, i));
+                }
+            }
+
+            requestHeaders.set(requestHeaderDictionary);
+            responseHeaders.set(new QueryDictionary(false));
+
+            // Split the location into path and query string
+            String file = operation.getFile();
+            String pathInfo;
+            QueryDictionary parametersDictionary = new QueryDictionary(true);
+
+            int i = file.indexOf('?');
+            if (i == -1) {
+                pathInfo = file;
+            } else {
+                pathInfo = file.substring(0, i);
+                addParameters(file.substring(i + 1), parametersDictionary);
+            }
+
+            parameters.set(parametersDictionary);
+
+            if (prepare) {
+                prepare();
+            }
+
+            try {
+                String servletLocation = batchContext.contextPath + batchContext.servletPath;
+                if (!pathInfo.startsWith(servletLocation)) {
+                    throw new QueryException(Query.Status.NOT_FOUND);
+                }
+
+                pathInfo = URLDecoder.decode(pathInfo.substring(servletLocation.length())
+                    .replace("+", "%2B"), URL_ENCODING);
+                Path path = getPath(pathInfo);
+
+                Query.Method method;
+                try {
+                    method = Query.Method.valueOf(operation.getMethod());
+                } catch (IllegalArgumentException exception) {
+                    throw new QueryException(Query.Status.METHOD_NOT_ALLOWED);
+                }
+
+                validate(method, path);
+
+                switch (method) {
+                    case GET: {
+                        Object result = doGet(path);
+                        Serializer<Object> serializer = (Serializer<Object>)createSerializer(method, path);
+
+                        ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+                        serializer.writeObject(result, byteArrayOutputStream);
+                        body = byteArrayOutputStream.toByteArray();
+
+                        status = Query.Status.OK;
+                        resultHeaders.put(CONTENT_TYPE_HEADER, serializer.getMIMEType(result));
+                        break;
+                    }
+
+                    case POST: {
+                        URL location = doPost(path, readValue(method, path, operation));
+
+                        if (location == null) {
+                            status = Query.Status.NO_CONTENT;
+                        } else {
+                            status = Query.Status.CREATED;
+                            resultHeaders.put(LOCATION_HEADER, location.toString());
+                        }
+
+                        break;
+                    }
+
+                    case PUT: {
+                        boolean created = doPut(path, readValue(method, path, operation));
+                        status = created ? Query.Status.CREATED : Query.Status.NO_CONTENT;
+                        break;
+                    }
+
+                    default: {
+                        doDelete(path);
+                        status = Query.Status.NO_CONTENT;
+                        break;
+                    }
+                }
+
+                QueryDictionary responseHeaderDictionary = responseHeaders.get();
+                for (String key : responseHeaderDictionary) {
+                    for (int j = 0, n = responseHeaderDictionary.getLength(key); j < n; j++) {
+                        resultHeaders.add(key, responseHeaderDictionary.get(key, j));
+                    }
+                }
+            } finally {
+                if (prepare) {
+                    dispose();
+                }
+            }
+        } catch (QueryException exception) {
+            status = exception.getStatus();
+            body = new byte[0];
+            resultHeaders.clear();
+        } catch (Exception exception) {
+            System.err.println(exception);
+
+            status = Query.Status.INTERNAL_SERVER_ERROR;
+            body = new byte[0];
+            resultHeaders.clear();
+        } finally {
+            restore(hostname, previousHostname);
+            restore(port, previousPort);
+            restore(contextPath, previousContextPath);
+            restore(servletPath, previousServletPath);
+            restore(secure, previousSecure);
+            restore(parameters, previousParameters);
+            restore(requestHeaders, previousRequestHeaders);
+            restore(responseHeaders, previousResponseHeaders);
+        }
+
+        return new BatchQuery.Result(index, status, resultHeaders, body);
+    }
+
+    private static <T> void restore(ThreadLocal<T> threadLocal, T value) {
+        if (value == null) {
+            threadLocal.remove();
+        } else {
+            threadLocal.set(value);
+        }
+    }
+
+    private Object readValue(Query.Method method, Path path, BatchQuery.Operation operation)
+        throws QueryException, IOException, SerializationException {
+        Object value = null;
+
+        byte[] body = operation.getBody();
+        if (body.length > 0) {
+            Serializer<?> serializer = createSerializer(method, path);
+            value = serializer.readObject(new ByteArrayInputStream(body));
+        }
+
+        return value;
+    }
+
+    private static void addParameters(String queryString, QueryDictionary parametersDictionary)
+        throws UnsupportedEncodingException {
+        String[] pairs = queryString.split("&");
+
+        for (int i = 0, n = pairs.length; i < n; i++) {
+            String[] pair = pairs[i].split("=");
+
+            String key = URLDecoder.decode(pair[0], URL_ENCODING);
+            String value = URLDecoder.decode((pair.length > 1) ? pair[1] : "", URL_ENCODING);
+
+            parametersDictionary.add(key, value);
+        }
+    }
+
+    private static boolean isGzipAccepted(HttpServletRequest request) {
+        boolean accepted = false;
+
+        Enumeration<?> values = request.getHeaders(ACCEPT_ENCODING_HEADER);
+        while (values != null
+            && values.hasMoreElements()
+            && !accepted) {
+            for (String coding : ((String)values.nextElement()).split(",")) {
+                String[] parts = coding.split(";");
+                String name = parts[0].trim();
+
+                if (name.equalsIgnoreCase(GZIP_ENCODING)
+                    || name.equalsIgnoreCase("x-gzip")) {
+                    accepted = true;
+
+                    // A quality value of zero means "not acceptable"
+                    for (int i = 1; i < parts.length; i++) {
+                        String parameter = parts[i].trim();
+                        if (parameter.startsWith("q=")) {
+                            try {
+                                accepted = (Float.parseFloat(parameter.substring(2)) > 0);
+                            } catch (NumberFormatException exception) {
+                                accepted = false;
+                            }
+                        }
+                    }
+
+                    break;
+                }
+            }
+        }
+
+        return accepted;
+    }
+
     private Path getPath(HttpServletRequest request) {
-        String pathInfo = request.getPathInfo();
+        return getPath(request.getPathInfo());
+    }
+
+    private static Path getPath(String pathInfo) {
         Path path;
         if (pathInfo == null
             || pathInfo.length() == 0) {
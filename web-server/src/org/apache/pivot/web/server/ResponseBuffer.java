@@ -0,0 +1,198 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pivot.web.server;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Output stream that collects a response body so that its length can be
+ * determined before it is sent. Content is held in a growable in-memory
+ * buffer up to a threshold; any content beyond it is spilled to a temporary
+ * file, which is transferred to the response via a file channel.
+ */
+final class ResponseBuffer extends OutputStream {
+    private int threshold;
+
+    private byte[] buffer;
+    private int count = 0;
+
+    private File file = null;
+    private OutputStream fileOutputStream = null;
+    private long fileLength = 0;
+
+    private static final int INITIAL_CAPACITY = 8192;
+
+    /**
+     * Creates a new response buffer.
+     *
+     * @param threshold
+     * The maximum number of bytes held in memory.
+     */
+    public ResponseBuffer(int threshold) {
+        if (threshold < 0) {
+            throw new IllegalArgumentException("threshold is negative.");
+        }
+
+        this.threshold = threshold;
+        buffer = new byte[Math.min(threshold, INITIAL_CAPACITY)];
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        if (count < buffer.length
+            || grow(count + 1)) {
+            buffer[count++] = (byte)b;
+        } else {
+            getFileOutputStream().write(b);
+            fileLength++;
+        }
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        if (count + len <= buffer.length
+            || grow(count + len)) {
+            System.arraycopy(b, off, buffer, count, len);
+            count += len;
+        } else {
+            // Fill the in-memory buffer and spill the rest
+            int n = 0;
+            if (fileOutputStream == null) {
+                if (buffer.length < threshold) {
+                    grow(threshold);
+                }
+
+                n = buffer.length - count;
+            }
+
+            System.arraycopy(b, off, buffer, count, n);
+            count += n;
+
+            getFileOutputStream().write(b, off + n, len - n);
+            fileLength += len - n;
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        if (fileOutputStream != null) {
+            fileOutputStream.flush();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (fileOutputStream != null) {
+            fileOutputStream.close();
+            fileOutputStream = null;
+        }
+    }
+
+    /**
+     * Returns the number of bytes written to the buffer.
+     */
+    public long getLength() {
+        return count + fileLength;
+    }
+
+    /**
+     * Tests whether content has been spilled to disk.
+     */
+    public boolean isSpilled() {
+        return (file != null);
+    }
+
+    /**
+     * Writes the buffered content to an output stream. The buffer must have
+     * been closed.
+     */
+    public void writeTo(OutputStream outputStream) throws IOException {
+        if (fileOutputStream != null) {
+            throw new IllegalStateException("Buffer has not been closed.");
+        }
+
+        outputStream.write(buffer, 0, count);
+
+        if (file != null) {
+            RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+            try {
+                FileChannel fileChannel = randomAccessFile.getChannel();
+                WritableByteChannel outputChannel = Channels.newChannel(outputStream);
+
+                long position = 0;
+                while (position < fileLength) {
+                    position += fileChannel.transferTo(position, fileLength - position,
+                        outputChannel);
+                }
+            } finally {
+                randomAccessFile.close();
+            }
+        }
+    }
+
+    /**
+     * Releases the buffer and deletes any temporary file.
+     */
+    public void dispose() {
+        try {
+            close();
+        } catch (IOException exception) {
+            // No-op
+        }
+
+        if (file != null) {
+            file.delete();
+            file = null;
+        }
+
+        buffer = null;
+    }
+
+    /**
+     * Grows the in-memory buffer to the given capacity, if it does not exceed
+     * the threshold and nothing has been spilled yet.
+     */
+    private boolean grow(int capacity) {
+        if (capacity > threshold
+            || fileOutputStream != null) {
+            return false;
+        }
+
+        byte[] buffer = new byte[(int)Math.min(Math.max((long)this.buffer.length * 2, capacity),
+            threshold)];
+        System.arraycopy(this.buffer, 0, buffer, 0, count);
+        this.buffer = buffer;
+
+        return true;
+    }
+
+    private OutputStream getFileOutputStream() throws IOException {
+        if (fileOutputStream == null) {
+            file = File.createTempFile(getClass().getName(), null);
+            fileOutputStream = new FileOutputStream(file);
+        }
+
+        return fileOutputStream;
+    }
+}
@@ -0,0 +1,396 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pivot.web.server.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.pivot.collections.HashMap;
+import org.apache.pivot.collections.Map;
+import org.apache.pivot.collections.Sequence;
+import org.apache.pivot.json.JSONSerializer;
+import org.apache.pivot.serialization.Serializer;
+import org.apache.pivot.web.BatchQuery;
+import org.apache.pivot.web.DeleteQuery;
+import org.apache.pivot.web.GetQuery;
+import org.apache.pivot.web.PostQuery;
+import org.apache.pivot.web.PutQuery;
+import org.apache.pivot.web.Query;
+import org.apache.pivot.web.QueryException;
+import org.apache.pivot.web.QueryListener;
+import org.apache.pivot.web.server.QueryServlet;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class BatchQueryTest {
+    /**
+     * Servlet that stores JSON items by ID.
+     */
+    public static class ItemServlet extends QueryServlet {
+        private static final long serialVersionUID = 0;
+
+        private ConcurrentHashMap<String, Object> items = new ConcurrentHashMap<String, Object>();
+        private int nextID = 1;
+
+        private ThreadLocal<Boolean> prepared = new ThreadLocal<Boolean>();
+
+        @Override
+        protected void prepare() {
+            prepared.set(true);
+        }
+
+        @Override
+        protected void dispose() {
+            prepared.remove();
+        }
+
+        @Override
+        protected Object doGet(Path path) throws QueryException {
+            if (prepared.get() == null) {
+                throw new QueryException(Query.Status.INTERNAL_SERVER_ERROR);
+            }
+
+            String type = path.get(0);
+            Object value;
+
+            if (type.equals("items")) {
+                value = items.get(path.get(1));
+                if (value == null) {
+                    throw new QueryException(Query.Status.NOT_FOUND);
+                }
+            } else if (type.equals("slow")) {
+                try {
+                    Thread.sleep(20);
+                } catch (InterruptedException exception) {
+                    throw new QueryException(exception);
+                }
+
+                value = path.get(1);
+            } else if (type.equals("echo")) {
+                HashMap<String, Object> echo = new HashMap<String, Object>();
+                echo.put("path", path.toString());
+                echo.put("parameter", getParameters().get("p"));
+                echo.put("header", getRequestHeaders().get("X-Test"));
+                value = echo;
+            } else {
+                throw new QueryException(Query.Status.NOT_FOUND);
+            }
+
+            return value;
+        }
+
+        @Override
+        protected URL doPost(Path path, Object value) throws QueryException {
+            String id;
+            synchronized (this) {
+                id = String.valueOf(nextID++);
+            }
+
+            items.put(id, value);
+
+            try {
+                return new URL(getLocation(), "items/" + id);
+            } catch (MalformedURLException exception) {
+                throw new QueryException(exception);
+            }
+        }
+
+        @Override
+        protected boolean doPut(Path path, Object value) throws QueryException {
+            return (items.put(path.get(1), value) == null);
+        }
+
+        @Override
+        protected void doDelete(Path path) throws QueryException {
+            if (items.remove(path.get(1)) == null) {
+                throw new QueryException(Query.Status.NOT_FOUND);
+            }
+        }
+
+        @Override
+        protected Serializer<?> createSerializer(Query.Method method, Path path) {
+            return new JSONSerializer();
+        }
+    }
+
+    /**
+     * Servlet that rejects every POST, as a servlet that does not accept
+     * batches does.
+     */
+    public static class RejectingServlet extends HttpServlet {
+        private static final long serialVersionUID = 0;
+
+        @Override
+        protected void doPost(HttpServletRequest request, HttpServletResponse response)
+            throws IOException {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST);
+        }
+    }
+
+    /**
+     * Records the listener notifications received by a query.
+     */
+    private static class TestQueryListener<V> implements QueryListener<V> {
+        public int connectedCount = 0;
+        public int requestSentCount = 0;
+        public int responseReceivedCount = 0;
+        public int failedCount = 0;
+
+        @Override
+        public void connected(Query<V> query) {
+            connectedCount++;
+        }
+
+        @Override
+        public void requestSent(Query<V> query) {
+            requestSentCount++;
+        }
+
+        @Override
+        public void responseReceived(Query<V> query) {
+            responseReceivedCount++;
+        }
+
+        @Override
+        public void failed(Query<V> query) {
+            failedCount++;
+        }
+    }
+
+    private static final String SERVLET_PATH = "/items";
+
+    private ItemServlet servlet = null;
+    private TestServletContainer container = null;
+
+    @Before
+    public void startContainer() throws IOException {
+        servlet = new ItemServlet();
+        container = new TestServletContainer(servlet, SERVLET_PATH);
+    }
+
+    @After
+    public void stopContainer() {
+        container.stop();
+    }
+
+    private String getPath(String path) {
+        return SERVLET_PATH + "/" + path;
+    }
+
+    private BatchQuery createBatchQuery() {
+        return new BatchQuery("127.0.0.1", container.getPort(), SERVLET_PATH, false);
+    }
+
+    private GetQuery createGetQuery(String path) {
+        return new GetQuery("127.0.0.1", container.getPort(), getPath(path), false);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testBatch() throws QueryException {
+        HashMap<String, Object> item = new HashMap<String, Object>();
+        item.put("name", "a");
+
+        PostQuery postQuery = new PostQuery("127.0.0.1", container.getPort(), getPath("items"), false);
+        postQuery.setValue(item);
+        TestQueryListener<URL> postQueryListener = new TestQueryListener<URL>();
+        postQuery.getQueryListeners().add(postQueryListener);
+
+        PutQuery putQuery = new PutQuery("127.0.0.1", container.getPort(), getPath("items/x"), false);
+        putQuery.setValue(item);
+
+        GetQuery missingQuery = createGetQuery("items/y");
+        TestQueryListener<Object> missingQueryListener = new TestQueryListener<Object>();
+        missingQuery.getQueryListeners().add(missingQueryListener);
+
+        GetQuery echoQuery = createGetQuery("echo/a%20b");
+        echoQuery.getParameters().put("p", "1&2");
+        echoQuery.getRequestHeaders().put("X-Test", "header");
+        TestQueryListener<Object> echoQueryListener = new TestQueryListener<Object>();
+        echoQuery.getQueryListeners().add(echoQueryListener);
+
+        BatchQuery batchQuery = createBatchQuery();
+        batchQuery.getQueries().add(postQuery);
+        batchQuery.getQueries().add(putQuery);
+        batchQuery.getQueries().add(missingQuery);
+        batchQuery.getQueries().add(echoQuery);
+
+        Sequence<Object> results = batchQuery.execute();
+        assertEquals(4, results.getLength());
+
+        assertTrue(results.get(0).toString().endsWith(SERVLET_PATH + "/items/1"));
+        assertEquals(Query.Status.CREATED, postQuery.getStatus());
+        assertEquals(1, postQueryListener.connectedCount);
+        assertEquals(1, postQueryListener.requestSentCount);
+        assertEquals(1, postQueryListener.responseReceivedCount);
+
+        assertEquals(Boolean.TRUE, results.get(1));
+
+        assertNull(results.get(2));
+        assertEquals(Query.Status.NOT_FOUND, missingQuery.getStatus());
+        assertEquals(Query.Status.NOT_FOUND, batchQuery.getFault(2).getStatus());
+        assertEquals(1, missingQueryListener.failedCount);
+        assertEquals(0, missingQueryListener.responseReceivedCount);
+
+        Map<String, Object> echo = (Map<String, Object>)results.get(3);
+        assertEquals("/echo/a b", echo.get("path"));
+        assertEquals("1&2", echo.get("parameter"));
+        assertEquals("header", echo.get("header"));
+        assertEquals(1, echoQueryListener.responseReceivedCount);
+        assertNull(batchQuery.getFault(3));
+
+        // The created items can be read back and deleted in a second batch
+        batchQuery = createBatchQuery();
+        batchQuery.getQueries().add(createGetQuery("items/1"));
+        batchQuery.getQueries().add(new DeleteQuery("127.0.0.1", container.getPort(),
+            getPath("items/x"), false));
+        batchQuery.getQueries().add(createGetQuery("items/x"));
+
+        results = batchQuery.execute();
+        assertEquals("a", ((Map<String, Object>)results.get(0)).get("name"));
+        assertNull(batchQuery.getFault(1));
+        assertEquals(Query.Status.NOT_FOUND, batchQuery.getFault(2).getStatus());
+    }
+
+    @Test
+    public void testRejectedBatch() throws IOException {
+        TestServletContainer rejectingContainer = new TestServletContainer(new RejectingServlet(),
+            SERVLET_PATH);
+
+        try {
+            BatchQuery batchQuery = new BatchQuery("127.0.0.1", rejectingContainer.getPort(),
+                SERVLET_PATH, false);
+
+            GetQuery getQuery = new GetQuery("127.0.0.1", rejectingContainer.getPort(),
+                getPath("items/1"), false);
+            TestQueryListener<Object> getQueryListener = new TestQueryListener<Object>();
+            getQuery.getQueryListeners().add(getQueryListener);
+
+            batchQuery.getQueries().add(getQuery);
+            batchQuery.getQueries().add(new GetQuery("127.0.0.1", rejectingContainer.getPort(),
+                getPath("items/2"), false));
+
+            try {
+                batchQuery.execute();
+                fail("Expected QueryException.");
+            } catch (QueryException exception) {
+                assertEquals(Query.Status.BAD_REQUEST, exception.getStatus());
+            }
+
+            // Every query fails with the batch's error
+            assertEquals(1, getQueryListener.failedCount);
+            assertEquals(0, getQueryListener.responseReceivedCount);
+            assertEquals(Query.Status.BAD_REQUEST, batchQuery.getFault(0).getStatus());
+            assertEquals(Query.Status.BAD_REQUEST, batchQuery.getFault(1).getStatus());
+        } finally {
+            rejectingContainer.stop();
+        }
+    }
+
+    @Test
+    public void testParallel() throws QueryException {
+        ExecutorService executorService = Executors.newFixedThreadPool(8);
+        servlet.setBatchExecutorService(executorService);
+
+        try {
+            BatchQuery batchQuery = createBatchQuery();
+            for (int i = 0; i < 16; i++) {
+                batchQuery.getQueries().add(createGetQuery("slow/" + i));
+            }
+
+            long t0 = System.currentTimeMillis();
+            Sequence<Object> results = batchQuery.execute();
+            long t1 = System.currentTimeMillis();
+
+            for (int i = 0; i < 16; i++) {
+                assertEquals(String.valueOf(i), results.get(i));
+            }
+
+            // The operations overlap
+            assertTrue(t1 - t0 < 16 * 20);
+        } finally {
+            servlet.setBatchExecutorService(null);
+            executorService.shutdown();
+        }
+    }
+
+    @Test
+    public void batchLatencyTest() throws QueryException {
+        final int queryCount = 30;
+        final int iterationCount = 100;
+
+        for (int i = 0; i < queryCount; i++) {
+            HashMap<String, Object> item = new HashMap<String, Object>();
+            item.put("name", "Item " + i);
+
+            PutQuery putQuery = new PutQuery("127.0.0.1", container.getPort(),
+                getPath("items/" + i), false);
+            putQuery.setValue(item);
+            putQuery.execute();
+        }
+
+        // Warm up
+        runQueries(queryCount, 20, false);
+        runQueries(queryCount, 20, true);
+
+        long t0 = System.nanoTime();
+        runQueries(queryCount, iterationCount, false);
+        long t1 = System.nanoTime();
+        runQueries(queryCount, iterationCount, true);
+        long t2 = System.nanoTime();
+
+        System.out.println(queryCount + " GetQuerys sent individually: "
+            + (t1 - t0) / 1000 / iterationCount + "us");
+        System.out.println(queryCount + " GetQuerys sent as a batch: "
+            + (t2 - t1) / 1000 / iterationCount + "us");
+    }
+
+    private void runQueries(int queryCount, int iterationCount, boolean batch)
+        throws QueryException {
+        for (int i = 0; i < iterationCount; i++) {
+            BatchQuery batchQuery = createBatchQuery();
+
+            for (int j = 0; j < queryCount; j++) {
+                GetQuery getQuery = createGetQuery("items/" + j);
+
+                if (batch) {
+                    batchQuery.getQueries().add(getQuery);
+                } else {
+                    getQuery.execute();
+                }
+            }
+
+            if (batch) {
+                batchQuery.execute();
+            }
+        }
+    }
+}
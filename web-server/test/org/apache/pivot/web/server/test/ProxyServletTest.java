@@ -0,0 +1,378 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pivot.web.server.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.servlet.ServletConfig;
+import javax.servlet.ServletException;
+
+import org.apache.pivot.web.server.ProxyServlet;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+public class ProxyServletTest {
+    /**
+     * Upstream handler. <tt>/data/<i>n</i></tt> returns <i>n</i> bytes,
+     * <tt>/echo</tt> echoes the request body and <tt>X-Test</tt> header,
+     * <tt>/slow</tt> responds after a delay, and any other path returns 404
+     * with a body.
+     */
+    private class UpstreamHandler implements HttpHandler {
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            int active = activeRequestCount.incrementAndGet();
+            synchronized (ProxyServletTest.this) {
+                maxActiveRequestCount = Math.max(maxActiveRequestCount, active);
+            }
+
+            String path = exchange.getRequestURI().getPath().substring(UPSTREAM_PATH.length());
+            byte[] body;
+            int status = 200;
+
+            try {
+                if (path.startsWith("/data/")) {
+                    body = getData(Integer.parseInt(path.substring(6)));
+                } else if (path.equals("/echo")) {
+                    body = read(exchange.getRequestBody());
+
+                    String test = exchange.getRequestHeaders().getFirst("X-Test");
+                    if (test != null) {
+                        exchange.getResponseHeaders().set("X-Test", test);
+                    }
+
+                    exchange.getResponseHeaders().set("X-Query", exchange.getRequestURI().getRawQuery());
+                } else if (path.equals("/slow")) {
+                    try {
+                        Thread.sleep(200);
+                    } catch (InterruptedException exception) {
+                        throw new IOException(exception);
+                    }
+
+                    body = new byte[0];
+                } else {
+                    status = 404;
+                    body = "Not found".getBytes("UTF-8");
+                }
+            } finally {
+                // The request is complete once the response is ready to send
+                activeRequestCount.decrementAndGet();
+            }
+
+            exchange.sendResponseHeaders(status, body.length == 0 ? -1 : body.length);
+
+            OutputStream outputStream = exchange.getResponseBody();
+            outputStream.write(body);
+            outputStream.close();
+        }
+    }
+
+    private static final String PROXY_PATH = "/proxy";
+    private static final String UPSTREAM_PATH = "/upstream";
+
+    private HttpServer upstream = null;
+    private ExecutorService upstreamExecutorService = null;
+
+    private AtomicInteger activeRequestCount = new AtomicInteger();
+    private int maxActiveRequestCount = 0;
+
+    private TestServletContainer container = null;
+
+    @Before
+    public void startUpstream() throws IOException {
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+
+        upstreamExecutorService = Executors.newCachedThreadPool();
+
+        upstream = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 64);
+        upstream.createContext(UPSTREAM_PATH, new UpstreamHandler());
+        upstream.setExecutor(upstreamExecutorService);
+        upstream.start();
+    }
+
+    @After
+    public void stop() {
+        if (container != null) {
+            container.stop();
+        }
+
+        upstream.stop(0);
+        upstreamExecutorService.shutdownNow();
+    }
+
+    private void startProxy(String... parameters) throws IOException, ServletException {
+        final Properties initParameters = new Properties();
+        initParameters.setProperty(ProxyServlet.HOSTNAME_PARAM, "127.0.0.1");
+        initParameters.setProperty(ProxyServlet.PORT_PARAM,
+            String.valueOf(upstream.getAddress().getPort()));
+        initParameters.setProperty(ProxyServlet.PATH_PARAM, UPSTREAM_PATH);
+
+        for (int i = 0; i < parameters.length; i += 2) {
+            initParameters.setProperty(parameters[i], parameters[i + 1]);
+        }
+
+        ServletConfig config = (ServletConfig)Proxy.newProxyInstance(getClass().getClassLoader(),
+            new Class<?>[] {ServletConfig.class}, new InvocationHandler() {
+                @Override
+                public Object invoke(Object proxy, Method method, Object[] args) {
+                    if (!method.getName().equals("getInitParameter")) {
+                        throw new UnsupportedOperationException(method.getName());
+                    }
+
+                    return initParameters.getProperty((String)args[0]);
+                }
+            });
+
+        ProxyServlet servlet = new ProxyServlet();
+        servlet.init(config);
+
+        container = new TestServletContainer(servlet, PROXY_PATH);
+    }
+
+    private URL getProxyURL(String path) throws IOException {
+        return new URL("http", "127.0.0.1", container.getPort(), PROXY_PATH + path);
+    }
+
+    private URL getUpstreamURL(String path) throws IOException {
+        return new URL("http", "127.0.0.1", upstream.getAddress().getPort(), UPSTREAM_PATH + path);
+    }
+
+    private static byte[] getData(int length) {
+        byte[] data = new byte[length];
+        for (int i = 0; i < length; i++) {
+            data[i] = (byte)(i * 31);
+        }
+
+        return data;
+    }
+
+    private static byte[] read(InputStream inputStream) throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+        try {
+            byte[] buffer = new byte[8192];
+            int n;
+            while ((n = inputStream.read(buffer)) != -1) {
+                outputStream.write(buffer, 0, n);
+            }
+        } finally {
+            inputStream.close();
+        }
+
+        return outputStream.toByteArray();
+    }
+
+    private static byte[] get(URL url) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection)url.openConnection();
+        return read(connection.getInputStream());
+    }
+
+    @Test
+    public void testGet() throws Exception {
+        startProxy();
+
+        byte[] body = get(getProxyURL("/data/100000"));
+        assertTrue(Arrays.equals(getData(100000), body));
+
+        HttpURLConnection connection = (HttpURLConnection)getProxyURL("/missing").openConnection();
+        assertEquals(404, connection.getResponseCode());
+        assertEquals("Not found", new String(read(connection.getErrorStream()), "UTF-8"));
+    }
+
+    @Test
+    public void testPost() throws Exception {
+        startProxy();
+
+        byte[] data = getData(1000000);
+
+        // Fixed length and chunked request bodies
+        for (boolean chunked : new boolean[] {false, true}) {
+            HttpURLConnection connection =
+                (HttpURLConnection)getProxyURL("/echo?a=1&b=2").openConnection();
+            connection.setRequestMethod("POST");
+            connection.setRequestProperty("X-Test", "test");
+            connection.setDoOutput(true);
+
+            if (chunked) {
+                connection.setChunkedStreamingMode(4096);
+            } else {
+                connection.setFixedLengthStreamingMode(data.length);
+            }
+
+            OutputStream outputStream = connection.getOutputStream();
+            outputStream.write(data);
+            outputStream.close();
+
+            assertEquals(200, connection.getResponseCode());
+            assertEquals("test", connection.getHeaderField("X-Test"));
+            assertEquals("a=1&b=2", connection.getHeaderField("X-Query"));
+            assertTrue(Arrays.equals(data, read(connection.getInputStream())));
+        }
+    }
+
+    @Test
+    public void testConcurrencyLimit() throws Exception {
+        startProxy(ProxyServlet.MAX_CONCURRENT_REQUESTS_PARAM, "2",
+            ProxyServlet.QUEUE_TIMEOUT_PARAM, "0");
+
+        ExecutorService executorService = Executors.newFixedThreadPool(6);
+
+        try {
+            List<Future<Integer>> futures = new ArrayList<Future<Integer>>();
+            for (int i = 0; i < 6; i++) {
+                futures.add(executorService.submit(new Callable<Integer>() {
+                    @Override
+                    public Integer call() throws IOException {
+                        HttpURLConnection connection =
+                            (HttpURLConnection)getProxyURL("/slow").openConnection();
+                        return connection.getResponseCode();
+                    }
+                }));
+            }
+
+            int okCount = 0;
+            int unavailableCount = 0;
+            for (Future<Integer> future : futures) {
+                int status = future.get();
+                if (status == 200) {
+                    okCount++;
+                } else if (status == 503) {
+                    unavailableCount++;
+                }
+            }
+
+            assertEquals(6, okCount + unavailableCount);
+            assertTrue(okCount >= 2);
+            assertTrue(unavailableCount > 0);
+            assertTrue(maxActiveRequestCount <= 2);
+        } finally {
+            executorService.shutdown();
+        }
+    }
+
+    @Test
+    public void testConnectionLimit() throws Exception {
+        startProxy(ProxyServlet.MAX_CONNECTIONS_PARAM, "1");
+
+        ExecutorService executorService = Executors.newFixedThreadPool(4);
+
+        try {
+            List<Future<Integer>> futures = new ArrayList<Future<Integer>>();
+            for (int i = 0; i < 4; i++) {
+                futures.add(executorService.submit(new Callable<Integer>() {
+                    @Override
+                    public Integer call() throws IOException {
+                        HttpURLConnection connection =
+                            (HttpURLConnection)getProxyURL("/slow").openConnection();
+                        return connection.getResponseCode();
+                    }
+                }));
+            }
+
+            // Requests wait for the upstream connection rather than failing
+            for (Future<Integer> future : futures) {
+                assertEquals(200, future.get().intValue());
+            }
+
+            assertEquals(1, maxActiveRequestCount);
+        } finally {
+            executorService.shutdown();
+        }
+    }
+
+    @Test
+    public void throughputTest() throws Exception {
+        startProxy();
+
+        final int clientCount = 8;
+        final int requestCount = 100;
+
+        for (int length : new int[] {1024, 65536, 1048576}) {
+            // Warm up
+            runClients(getUpstreamURL("/data/" + length), clientCount, requestCount / 4, length);
+            runClients(getProxyURL("/data/" + length), clientCount, requestCount / 4, length);
+
+            long t0 = System.nanoTime();
+            runClients(getUpstreamURL("/data/" + length), clientCount, requestCount, length);
+            long t1 = System.nanoTime();
+            runClients(getProxyURL("/data/" + length), clientCount, requestCount, length);
+            long t2 = System.nanoTime();
+
+            long total = (long)clientCount * requestCount;
+            System.out.println("GET of " + length + " bytes, direct: "
+                + (total * 1000000000L / (t1 - t0)) + " requests/s, "
+                + (total * length / 1024 * 1000000000L / (t1 - t0)) + "KB/s");
+            System.out.println("GET of " + length + " bytes, proxied: "
+                + (total * 1000000000L / (t2 - t1)) + " requests/s, "
+                + (total * length / 1024 * 1000000000L / (t2 - t1)) + "KB/s");
+        }
+    }
+
+    private static void runClients(final URL url, int clientCount, final int requestCount,
+        final int length) throws Exception {
+        ExecutorService executorService = Executors.newFixedThreadPool(clientCount);
+
+        try {
+            List<Future<Void>> futures = new ArrayList<Future<Void>>(clientCount);
+
+            for (int i = 0; i < clientCount; i++) {
+                futures.add(executorService.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws IOException {
+                        for (int j = 0; j < requestCount; j++) {
+                            assertEquals(length, get(url).length);
+                        }
+
+                        return null;
+                    }
+                }));
+            }
+
+            for (Future<Void> future : futures) {
+                future.get();
+            }
+        } finally {
+            executorService.shutdown();
+        }
+    }
+}
@@ -0,0 +1,295 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pivot.web.server.test;
+
+import static org.apache.pivot.util.test.AllocationMeter.getAllocatedBytes;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.pivot.collections.HashMap;
+import org.apache.pivot.collections.Sequence;
+import org.apache.pivot.json.JSONSerializer;
+import org.apache.pivot.serialization.Serializer;
+import org.apache.pivot.web.GetQuery;
+import org.apache.pivot.web.Query;
+import org.apache.pivot.web.QueryException;
+import org.apache.pivot.web.QueryTransport;
+import org.apache.pivot.web.server.QueryServlet;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ResponseStreamingTest {
+    /**
+     * Servlet that returns a list of the requested number of items, and
+     * records the bytes allocated while servicing GET requests.
+     */
+    public static class ListServlet extends QueryServlet {
+        private static final long serialVersionUID = 0;
+
+        public final AtomicLong allocatedBytes = new AtomicLong();
+        public final AtomicLong requestCount = new AtomicLong();
+
+        @Override
+        protected void service(HttpServletRequest request, HttpServletResponse response)
+            throws IOException, ServletException {
+            long bytes = getAllocatedBytes();
+            super.service(request, response);
+            allocatedBytes.addAndGet(getAllocatedBytes() - bytes);
+            requestCount.incrementAndGet();
+        }
+
+        private ConcurrentHashMap<Integer, Object> lists = new ConcurrentHashMap<Integer, Object>();
+
+        @Override
+        protected Object doGet(Path path) throws QueryException {
+            // Lists are built once, so that only the cost of writing the
+            // response is measured
+            int count = Integer.parseInt(path.get(0));
+
+            Object list = lists.get(count);
+            if (list == null) {
+                org.apache.pivot.collections.ArrayList<Object> items =
+                    new org.apache.pivot.collections.ArrayList<Object>(count);
+                for (int i = 0; i < count; i++) {
+                    HashMap<String, Object> item = new HashMap<String, Object>();
+                    item.put("id", i);
+                    item.put("name", "Item " + i);
+                    item.put("description", "Description of item " + i);
+                    items.add(item);
+                }
+
+                lists.put(count, items);
+                list = items;
+            }
+
+            return list;
+        }
+
+        @Override
+        protected Serializer<?> createSerializer(Query.Method method, Path path) {
+            return new JSONSerializer();
+        }
+
+        public void resetStatistics() {
+            allocatedBytes.set(0);
+            requestCount.set(0);
+        }
+    }
+
+    private static final String SERVLET_PATH = "/list";
+
+    private ListServlet servlet = null;
+    private TestServletContainer container = null;
+
+    @Before
+    public void startContainer() throws IOException {
+        servlet = new ListServlet();
+        container = new TestServletContainer(servlet, SERVLET_PATH);
+    }
+
+    @After
+    public void stopContainer() {
+        container.stop();
+    }
+
+    private URL getURL(int count) throws IOException {
+        return new URL("http", "127.0.0.1", container.getPort(), SERVLET_PATH + "/" + count);
+    }
+
+    private static byte[] read(HttpURLConnection connection) throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+        InputStream inputStream = connection.getInputStream();
+        try {
+            byte[] buffer = new byte[8192];
+            int n;
+            while ((n = inputStream.read(buffer)) != -1) {
+                outputStream.write(buffer, 0, n);
+            }
+        } finally {
+            inputStream.close();
+        }
+
+        return outputStream.toByteArray();
+    }
+
+    @Test
+    public void testContentLength() throws IOException {
+        servlet.setDetermineContentLength(true);
+
+        // Held in memory, and spilled to disk
+        for (int bufferThreshold : new int[] {QueryServlet.DEFAULT_BUFFER_THRESHOLD, 1000, 0}) {
+            servlet.setBufferThreshold(bufferThreshold);
+
+            HttpURLConnection connection = (HttpURLConnection)getURL(500).openConnection();
+            byte[] body = read(connection);
+
+            assertEquals(String.valueOf(body.length), connection.getHeaderField("Content-Length"));
+            assertNull(connection.getHeaderField("Transfer-Encoding"));
+            assertTrue(body.length > 1000);
+
+            String json = new String(body, "UTF-8");
+            assertTrue(json.startsWith("["));
+            assertTrue(json.endsWith("]"));
+            assertTrue(json.contains("Item 499"));
+        }
+    }
+
+    @Test
+    public void testStreaming() throws IOException {
+        HttpURLConnection connection = (HttpURLConnection)getURL(500).openConnection();
+        byte[] body = read(connection);
+
+        assertNull(connection.getHeaderField("Content-Length"));
+        assertEquals("chunked", connection.getHeaderField("Transfer-Encoding"));
+        assertTrue(new String(body, "UTF-8").contains("Item 499"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testCompression() throws IOException, QueryException {
+        servlet.setCompressionEnabled(true);
+
+        for (boolean determineContentLength : new boolean[] {true, false}) {
+            servlet.setDetermineContentLength(determineContentLength);
+
+            // Not compressed unless accepted by the client
+            HttpURLConnection connection = (HttpURLConnection)getURL(500).openConnection();
+            byte[] body = read(connection);
+            assertNull(connection.getHeaderField("Content-Encoding"));
+            assertEquals("Accept-Encoding", connection.getHeaderField("Vary"));
+
+            connection = (HttpURLConnection)getURL(500).openConnection();
+            connection.setRequestProperty("Accept-Encoding", "gzip;q=0, deflate");
+            read(connection);
+            assertNull(connection.getHeaderField("Content-Encoding"));
+
+            connection = (HttpURLConnection)getURL(500).openConnection();
+            connection.setRequestProperty("Accept-Encoding", "gzip");
+            byte[] compressedBody = read(connection);
+            assertEquals("gzip", connection.getHeaderField("Content-Encoding"));
+            assertTrue(compressedBody.length < body.length / 4);
+
+            if (determineContentLength) {
+                assertEquals(String.valueOf(compressedBody.length),
+                    connection.getHeaderField("Content-Length"));
+            }
+
+            // The default transport decompresses the response
+            GetQuery getQuery = new GetQuery("127.0.0.1", container.getPort(),
+                SERVLET_PATH + "/500", false);
+            Sequence<Object> items = (Sequence<Object>)getQuery.execute();
+            assertEquals(500, items.getLength());
+            assertEquals("gzip", getQuery.getResponseHeaders().get("Content-Encoding"));
+        }
+    }
+
+    @Test
+    public void loadTest() throws Exception {
+        final int clientCount = 8;
+        final int requestCount = 50;
+        final int itemCount = 2000;
+
+        QueryTransport.getDefaultTransport().setMaxConnectionsPerHost(clientCount);
+
+        try {
+            runLoad("streamed", false, 0, false, clientCount, requestCount, itemCount);
+            runLoad("buffered in memory", true, QueryServlet.DEFAULT_BUFFER_THRESHOLD, false,
+                clientCount, requestCount, itemCount);
+            runLoad("spilled to disk", true, 0, false, clientCount, requestCount, itemCount);
+            runLoad("streamed, gzip", false, 0, true, clientCount, requestCount, itemCount);
+            runLoad("buffered in memory, gzip", true, QueryServlet.DEFAULT_BUFFER_THRESHOLD, true,
+                clientCount, requestCount, itemCount);
+        } finally {
+            QueryTransport.getDefaultTransport().setMaxConnectionsPerHost(
+                QueryTransport.DEFAULT_MAX_CONNECTIONS_PER_HOST);
+        }
+    }
+
+    private void runLoad(String name, boolean determineContentLength, int bufferThreshold,
+        boolean compressionEnabled, int clientCount, final int requestCount, final int itemCount)
+        throws Exception {
+        servlet.setDetermineContentLength(determineContentLength);
+        servlet.setBufferThreshold(bufferThreshold);
+        servlet.setCompressionEnabled(compressionEnabled);
+
+        ExecutorService executorService = Executors.newFixedThreadPool(clientCount);
+
+        try {
+            // Warm up
+            runClients(executorService, clientCount, requestCount / 2, itemCount);
+            servlet.resetStatistics();
+
+            long t0 = System.nanoTime();
+            runClients(executorService, clientCount, requestCount, itemCount);
+            long t1 = System.nanoTime();
+
+            long total = (long)clientCount * requestCount;
+            System.out.println("GET of " + itemCount + " items, " + name + ": "
+                + (total * 1000000000L / (t1 - t0)) + " requests/s, "
+                + (servlet.allocatedBytes.get() / servlet.requestCount.get() / 1024)
+                + "KB allocated per request");
+        } finally {
+            executorService.shutdown();
+        }
+    }
+
+    private void runClients(ExecutorService executorService, int clientCount,
+        final int requestCount, final int itemCount) throws Exception {
+        List<Future<Void>> futures = new ArrayList<Future<Void>>(clientCount);
+
+        for (int i = 0; i < clientCount; i++) {
+            futures.add(executorService.submit(new Callable<Void>() {
+                @Override
+                public Void call() throws Exception {
+                    for (int j = 0; j < requestCount; j++) {
+                        GetQuery getQuery = new GetQuery("127.0.0.1", container.getPort(),
+                            SERVLET_PATH + "/" + itemCount, false);
+                        Sequence<?> items = (Sequence<?>)getQuery.execute();
+                        assertEquals(itemCount, items.getLength());
+                    }
+
+                    return null;
+                }
+            }));
+        }
+
+        for (Future<Void> future : futures) {
+            future.get();
+        }
+    }
+}
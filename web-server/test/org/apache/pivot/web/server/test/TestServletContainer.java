@@ -0,0 +1,382 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pivot.web.server.test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import javax.servlet.ServletInputStream;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Minimal servlet container for tests, which hosts a single servlet on the
+ * JDK's embedded HTTP server. Only the parts of the servlet API used by the
+ * servlets in this module are implemented.
+ */
+public class TestServletContainer {
+    /**
+     * Servlet request backed by an HTTP exchange.
+     */
+    private class Request implements InvocationHandler {
+        private HttpExchange exchange;
+
+        public Request(HttpExchange exchange) {
+            this.exchange = exchange;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            URI uri = exchange.getRequestURI();
+            Headers headers = exchange.getRequestHeaders();
+
+            Object result;
+            if (name.equals("getMethod")) {
+                result = exchange.getRequestMethod();
+            } else if (name.equals("getRequestURL")) {
+                result = new StringBuffer("http://127.0.0.1:" + getPort() + uri.getRawPath());
+            } else if (name.equals("getRequestURI")) {
+                result = uri.getRawPath();
+            } else if (name.equals("getContextPath")) {
+                result = "";
+            } else if (name.equals("getServletPath")) {
+                result = servletPath;
+            } else if (name.equals("getPathInfo")) {
+                String pathInfo = URLDecoder.decode(uri.getRawPath().substring(servletPath.length())
+                    .replace("+", "%2B"), "UTF-8");
+                result = (pathInfo.length() == 0) ? null : pathInfo;
+            } else if (name.equals("getQueryString")) {
+                result = uri.getRawQuery();
+            } else if (name.equals("getHeaderNames")) {
+                result = Collections.enumeration(headers.keySet());
+            } else if (name.equals("getHeader")) {
+                result = headers.getFirst((String)args[0]);
+            } else if (name.equals("getHeaders")) {
+                List<String> values = headers.get(args[0]);
+                result = Collections.enumeration(values == null ?
+                    Collections.<String>emptyList() : values);
+            } else if (name.equals("getIntHeader")) {
+                String value = headers.getFirst((String)args[0]);
+                result = (value == null) ? -1 : Integer.parseInt(value);
+            } else if (name.equals("getDateHeader")) {
+                result = -1L;
+            } else if (name.equals("getContentType")) {
+                result = headers.getFirst("Content-Type");
+            } else if (name.equals("getContentLength")) {
+                String value = headers.getFirst("Content-Length");
+                result = (value == null) ? -1 : Integer.parseInt(value);
+            } else if (name.equals("getInputStream")) {
+                final InputStream inputStream = exchange.getRequestBody();
+                result = new ServletInputStream() {
+                    @Override
+                    public int read() throws IOException {
+                        return inputStream.read();
+                    }
+
+                    @Override
+                    public int read(byte[] b, int off, int len) throws IOException {
+                        return inputStream.read(b, off, len);
+                    }
+                };
+            } else if (name.equals("getLocalPort")
+                || name.equals("getServerPort")) {
+                result = getPort();
+            } else if (name.equals("getServerName")
+                || name.equals("getLocalName")) {
+                result = "127.0.0.1";
+            } else if (name.equals("getProtocol")) {
+                result = "HTTP/1.1";
+            } else if (name.equals("getScheme")) {
+                result = "http";
+            } else if (name.equals("isSecure")) {
+                result = false;
+            } else if (name.equals("getCharacterEncoding")
+                || name.equals("getAttribute")) {
+                result = null;
+            } else {
+                throw new UnsupportedOperationException(name);
+            }
+
+            return result;
+        }
+    }
+
+    /**
+     * Servlet response backed by an HTTP exchange. Output is buffered until
+     * the response is flushed or the buffer fills, after which it is sent with
+     * chunked transfer encoding unless a content length was set.
+     */
+    private static class Response implements InvocationHandler {
+        private HttpExchange exchange;
+
+        private int status = 200;
+        private long contentLength = -1;
+        private boolean committed = false;
+
+        private ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        private OutputStream responseBody = null;
+
+        private ServletOutputStream outputStream = new ServletOutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                write(new byte[] {(byte)b}, 0, 1);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                if (committed) {
+                    if (responseBody == null) {
+                        throw new IOException("Response has no content.");
+                    }
+
+                    responseBody.write(b, off, len);
+                } else {
+                    buffer.write(b, off, len);
+
+                    if (buffer.size() > BUFFER_SIZE) {
+                        commit(false);
+                    }
+                }
+            }
+
+            @Override
+            public void flush() throws IOException {
+                commit(false);
+
+                if (responseBody != null) {
+                    responseBody.flush();
+                }
+            }
+        };
+
+        private PrintWriter writer = null;
+
+        private static final int BUFFER_SIZE = 8192;
+
+        public Response(HttpExchange exchange) {
+            this.exchange = exchange;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            Headers headers = exchange.getResponseHeaders();
+
+            Object result = null;
+            if (name.equals("setStatus")) {
+                status = (Integer)args[0];
+            } else if (name.equals("sendError")) {
+                if (committed) {
+                    throw new IllegalStateException("Response is committed.");
+                }
+
+                status = (Integer)args[0];
+                buffer.reset();
+                commit(true);
+            } else if (name.equals("setHeader")) {
+                setHeader((String)args[0], args[1].toString());
+            } else if (name.equals("addHeader")
+                || name.equals("addIntHeader")) {
+                headers.add((String)args[0], args[1].toString());
+            } else if (name.equals("setIntHeader")) {
+                setHeader((String)args[0], args[1].toString());
+            } else if (name.equals("containsHeader")) {
+                result = headers.containsKey(args[0]);
+            } else if (name.equals("setContentType")) {
+                headers.set("Content-Type", (String)args[0]);
+            } else if (name.equals("getContentType")) {
+                result = headers.getFirst("Content-Type");
+            } else if (name.equals("setContentLength")) {
+                contentLength = (Integer)args[0];
+            } else if (name.equals("getOutputStream")) {
+                result = outputStream;
+            } else if (name.equals("getWriter")) {
+                if (writer == null) {
+                    writer = new PrintWriter(new OutputStreamWriter(outputStream, "ISO-8859-1"));
+                }
+
+                result = writer;
+            } else if (name.equals("flushBuffer")) {
+                if (writer != null) {
+                    writer.flush();
+                }
+
+                outputStream.flush();
+            } else if (name.equals("isCommitted")) {
+                result = committed;
+            } else if (name.equals("getCharacterEncoding")) {
+                result = "ISO-8859-1";
+            } else if (name.equals("setCharacterEncoding")
+                || name.equals("setBufferSize")) {
+                // No-op
+            } else if (name.equals("getBufferSize")) {
+                result = BUFFER_SIZE;
+            } else if (name.equals("resetBuffer")) {
+                buffer.reset();
+            } else {
+                throw new UnsupportedOperationException(name);
+            }
+
+            return result;
+        }
+
+        private void setHeader(String key, String value) {
+            if (key.equalsIgnoreCase("Content-Length")) {
+                contentLength = Long.parseLong(value);
+            } else {
+                exchange.getResponseHeaders().set(key, value);
+            }
+        }
+
+        private void commit(boolean complete) throws IOException {
+            if (!committed) {
+                long length;
+                if (contentLength >= 0) {
+                    length = contentLength;
+                } else if (complete) {
+                    length = buffer.size();
+                } else {
+                    length = 0;
+                }
+
+                // The embedded server uses 0 for chunked and -1 for no content
+                boolean empty = (length == 0
+                    && (complete || contentLength == 0));
+                exchange.sendResponseHeaders(status, empty ? -1 : length);
+                committed = true;
+
+                if (!empty) {
+                    responseBody = exchange.getResponseBody();
+                    buffer.writeTo(responseBody);
+                }
+
+                buffer = null;
+            }
+        }
+
+        public void finish() throws IOException {
+            if (writer != null) {
+                writer.flush();
+            }
+
+            commit(true);
+
+            if (responseBody != null) {
+                responseBody.close();
+            }
+        }
+    }
+
+    private HttpServlet servlet;
+    private String servletPath;
+
+    private HttpServer server;
+    private ExecutorService executorService;
+
+    static {
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+    }
+
+    /**
+     * Starts a container for the given servlet on an ephemeral local port.
+     *
+     * @param servlet
+     * The servlet.
+     *
+     * @param servletPath
+     * The path the servlet is mapped to, e.g. <tt>"/servlet"</tt>.
+     */
+    public TestServletContainer(HttpServlet servlet, String servletPath) throws IOException {
+        this.servlet = servlet;
+        this.servletPath = servletPath;
+
+        executorService = Executors.newCachedThreadPool();
+
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 64);
+        server.createContext(servletPath, new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                service(exchange);
+            }
+        });
+        server.setExecutor(executorService);
+        server.start();
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    public void stop() {
+        server.stop(0);
+        executorService.shutdownNow();
+    }
+
+    private void service(HttpExchange exchange) throws IOException {
+        ClassLoader classLoader = getClass().getClassLoader();
+
+        HttpServletRequest request = (HttpServletRequest)Proxy.newProxyInstance(classLoader,
+            new Class<?>[] {HttpServletRequest.class}, new Request(exchange));
+
+        Response response = new Response(exchange);
+        HttpServletResponse responseProxy = (HttpServletResponse)Proxy.newProxyInstance(classLoader,
+            new Class<?>[] {HttpServletResponse.class}, response);
+
+        try {
+            servlet.service(request, responseProxy);
+            response.finish();
+        } catch (Exception exception) {
+            if (exception instanceof InvocationTargetException) {
+                exception = (Exception)exception.getCause();
+            }
+
+            System.err.println(exception);
+
+            if (!response.committed) {
+                response.status = 500;
+                response.buffer.reset();
+            }
+
+            response.finish();
+        } finally {
+            exchange.close();
+        }
+    }
+}
@@ -0,0 +1,671 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pivot.web;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.concurrent.ExecutorService;
+
+import org.apache.pivot.collections.ArrayList;
+import org.apache.pivot.collections.Sequence;
+import org.apache.pivot.serialization.SerializationException;
+import org.apache.pivot.serialization.Serializer;
+
+/**
+ * Executes a batch of queries against a query servlet as a single HTTP POST.
+ * <p>
+ * The queries must all address the same server as the batch query. Each query
+ * is notified via its {@link QueryListener}s as the batch is sent and as its
+ * result arrives; results are delivered in the order in which the server
+ * completes them, which may differ from the order of the queries if the
+ * servlet executes them in parallel. The status and response headers of each
+ * query are updated as for an individual execution.
+ * <p>
+ * The request and response bodies use the {@link #MIME_TYPE batch MIME type}.
+ * The request body contains a sequence of operations, each formatted as an
+ * HTTP request without a protocol version:
+ * <pre>
+ * GET /context/servlet/path?key=value
+ * Header: value
+ * Content-Length: 0
+ *
+ * </pre>
+ * The response body contains a sequence of results, each starting with the
+ * index of the operation and the status code:
+ * <pre>
+ * 0 200
+ * Content-Type: application/json
+ * Content-Length: 2
+ *
+ * {}
+ * </pre>
+ * Operation and result bodies are always preceded by a <tt>Content-Length</tt>
+ * header.
+ */
+public class BatchQuery extends Query<Sequence<Object>> {
+    /**
+     * An operation in a batch request.
+     */
+    public static final class Operation {
+        private String method;
+        private String file;
+        private QueryDictionary headers;
+        private byte[] body;
+
+        /**
+         * Creates a new operation.
+         *
+         * @param method
+         * The HTTP method.
+         *
+         * @param file
+         * The path and query string of the operation's location.
+         *
+         * @param headers
+         * The request headers.
+         *
+         * @param body
+         * The request body.
+         */
+        public Operation(String method, String file, QueryDictionary headers, byte[] body) {
+            if (method == null) {
+                throw new IllegalArgumentException("method is null.");
+            }
+
+            if (file == null) {
+                throw new IllegalArgumentException("file is null.");
+            }
+
+            if (headers == null) {
+                throw new IllegalArgumentException("headers is null.");
+            }
+
+            if (body == null) {
+                throw new IllegalArgumentException("body is null.");
+            }
+
+            this.method = method;
+            this.file = file;
+            this.headers = headers;
+            this.body = body;
+        }
+
+        public String getMethod() {
+            return method;
+        }
+
+        public String getFile() {
+            return file;
+        }
+
+        public QueryDictionary getHeaders() {
+            return headers;
+        }
+
+        public byte[] getBody() {
+            return body;
+        }
+
+        /**
+         * Writes the operation to a batch request body.
+         */
+        public void write(OutputStream outputStream) throws IOException {
+            writeLine(method + " " + file, outputStream);
+            writeMessage(headers, body, outputStream);
+        }
+
+        /**
+         * Reads an operation from a batch request body.
+         *
+         * @return
+         * The operation, or <tt>null</tt> if the end of the body was reached.
+         */
+        public static Operation read(InputStream inputStream) throws IOException {
+            String requestLine = readLine(inputStream);
+            if (requestLine == null) {
+                return null;
+            }
+
+            int i = requestLine.indexOf(' ');
+            if (i == -1) {
+                throw new IOException("Invalid batch operation: \"" + requestLine + "\".");
+            }
+
+            QueryDictionary headers = new QueryDictionary(false);
+            byte[] body = readMessage(headers, inputStream);
+
+            return new Operation(requestLine.substring(0, i), requestLine.substring(i + 1),
+                headers, body);
+        }
+    }
+
+    /**
+     * A result in a batch response.
+     */
+    public static final class Result {
+        private int index;
+        private int status;
+        private QueryDictionary headers;
+        private byte[] body;
+
+        /**
+         * Creates a new result.
+         *
+         * @param index
+         * The index of the operation in the batch request.
+         *
+         * @param status
+         * The HTTP status code.
+         *
+         * @param headers
+         * The response headers.
+         *
+         * @param body
+         * The response body.
+         */
+        public Result(int index, int status, QueryDictionary headers, byte[] body) {
+            if (headers == null) {
+                throw new IllegalArgumentException("headers is null.");
+            }
+
+            if (body == null) {
+                throw new IllegalArgumentException("body is null.");
+            }
+
+            this.index = index;
+            this.status = status;
+            this.headers = headers;
+            this.body = body;
+        }
+
+        public int getIndex() {
+            return index;
+        }
+
+        public int getStatus() {
+            return status;
+        }
+
+        public QueryDictionary getHeaders() {
+            return headers;
+        }
+
+        public byte[] getBody() {
+            return body;
+        }
+
+        /**
+         * Writes the result to a batch response body.
+         */
+        public void write(OutputStream outputStream) throws IOException {
+            writeLine(index + " " + status, outputStream);
+            writeMessage(headers, body, outputStream);
+        }
+
+        /**
+         * Reads a result from a batch response body.
+         *
+         * @return
+         * The result, or <tt>null</tt> if the end of the body was reached.
+         */
+        public static Result read(InputStream inputStream) throws IOException {
+            String statusLine = readLine(inputStream);
+            if (statusLine == null) {
+                return null;
+            }
+
+            int index;
+            int status;
+            try {
+                int i = statusLine.indexOf(' ');
+                index = Integer.parseInt(statusLine.substring(0, i));
+                status = Integer.parseInt(statusLine.substring(i + 1));
+            } catch (RuntimeException exception) {
+                throw new IOException("Invalid batch result: \"" + statusLine + "\".");
+            }
+
+            QueryDictionary headers = new QueryDictionary(false);
+            byte[] body = readMessage(headers, inputStream);
+
+            return new Result(index, status, headers, body);
+        }
+    }
+
+    /**
+     * Serializer that writes the batch's operations and reads its results.
+     */
+    private class BatchSerializer implements Serializer<Object> {
+        @Override
+        public Object readObject(InputStream inputStream) throws IOException {
+            int n = queries.getLength();
+            boolean[] received = new boolean[n];
+
+            inputStream = new BufferedInputStream(inputStream);
+
+            try {
+                Result result;
+                while ((result = Result.read(inputStream)) != null) {
+                    int index = result.getIndex();
+                    if (index < 0
+                        || index >= n
+                        || received[index]) {
+                        throw new IOException("Unexpected batch result " + index + ".");
+                    }
+
+                    received[index] = true;
+                    deliver(index, result);
+                }
+            } finally {
+                // Fail any queries that did not receive a result
+                for (int i = 0; i < n; i++) {
+                    if (!received[i]) {
+                        fail(i, new QueryException(Query.Status.INTERNAL_SERVER_ERROR,
+                            "No result received."));
+                    }
+                }
+            }
+
+            return results;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public void writeObject(Object object, OutputStream outputStream)
+            throws IOException, SerializationException {
+            for (Query<?> query : queries) {
+                Query<Object> objectQuery = (Query<Object>)query;
+                objectQuery.setStatus(0);
+                objectQuery.getResponseHeaders().clear();
+                objectQuery.getQueryListenerDispatcher().connected(objectQuery);
+            }
+
+            outputStream = new BufferedOutputStream(outputStream);
+
+            for (Query<?> query : queries) {
+                Object value = null;
+                if (query instanceof PostQuery) {
+                    value = ((PostQuery)query).getValue();
+                } else if (query instanceof PutQuery) {
+                    value = ((PutQuery)query).getValue();
+                }
+
+                QueryDictionary headers = query.getRequestHeaders();
+                byte[] body = EMPTY_BODY;
+
+                if (value != null) {
+                    Serializer<Object> serializer = (Serializer<Object>)query.getSerializer();
+
+                    ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+                    serializer.writeObject(value, byteArrayOutputStream);
+                    body = byteArrayOutputStream.toByteArray();
+
+                    headers = new QueryDictionary(false);
+                    for (String key : query.getRequestHeaders()) {
+                        for (int i = 0, n = query.getRequestHeaders().getLength(key); i < n; i++) {
+                            headers.add(key, query.getRequestHeaders().get(key, i));
+                        }
+                    }
+
+                    headers.put(CONTENT_TYPE_HEADER, serializer.getMIMEType(value));
+                }
+
+                Operation operation = new Operation(query.getMethod().toString(),
+                    query.getLocation().getFile(), headers, body);
+                operation.write(outputStream);
+            }
+
+            outputStream.flush();
+
+            for (Query<?> query : queries) {
+                Query<Object> objectQuery = (Query<Object>)query;
+                objectQuery.getQueryListenerDispatcher().requestSent(objectQuery);
+            }
+        }
+
+        @Override
+        public String getMIMEType(Object object) {
+            return MIME_TYPE;
+        }
+    }
+
+    private ArrayList<Query<?>> queries = new ArrayList<Query<?>>();
+
+    private ArrayList<Object> results = null;
+    private ArrayList<QueryException> faults = null;
+    private boolean[] completed = null;
+
+    public static final Method METHOD = Method.POST;
+
+    public static final String MIME_TYPE = "application/x-pivot-batch";
+
+    private static final String CONTENT_TYPE_HEADER = "Content-Type";
+    private static final String CONTENT_LENGTH_HEADER = "Content-Length";
+    private static final String LOCATION_HEADER = "Location";
+    private static final String ENCODING = "ISO-8859-1";
+
+    private static final byte[] EMPTY_BODY = new byte[0];
+
+    public BatchQuery(String hostname, String path) {
+        this(hostname, DEFAULT_PORT, path, false);
+    }
+
+    public BatchQuery(String hostname, int port, String path, boolean secure) {
+        this(hostname, port, path, secure, DEFAULT_EXECUTOR_SERVICE);
+    }
+
+    public BatchQuery(String hostname, int port, String path, boolean secure,
+        ExecutorService executorService) {
+        super(hostname, port, path, secure, executorService);
+
+        super.setSerializer(new BatchSerializer());
+    }
+
+    @Override
+    public Method getMethod() {
+        return METHOD;
+    }
+
+    /**
+     * Returns the queries that will be executed by the batch.
+     */
+    public Sequence<Query<?>> getQueries() {
+        return queries;
+    }
+
+    /**
+     * Batch queries always use the batch serializer; the queries in the batch
+     * use their own serializers.
+     *
+     * @throws UnsupportedOperationException
+     */
+    @Override
+    public void setSerializer(Serializer<?> serializer) {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Returns the error that caused a query in the most recent execution to
+     * fail.
+     *
+     * @param index
+     * The index of the query.
+     *
+     * @return
+     * The error, or <tt>null</tt> if the query succeeded.
+     */
+    public QueryException getFault(int index) {
+        return (faults == null) ? null : faults.get(index);
+    }
+
+    /**
+     * Synchronously executes the batch.
+     *
+     * @return
+     * The results of the queries, in query order. The result of a GET is the
+     * deserialized value, the result of a POST is the location of the created
+     * resource, and the result of a PUT is whether a resource was created. The
+     * result of a DELETE, or of a query that failed, is <tt>null</tt>.
+     *
+     * @throws QueryException
+     * If the batch request itself fails. Individual queries report their
+     * failures to their listeners and via {@link #getFault(int)}; if the batch
+     * request fails, each query that has not yet received its result fails
+     * with the batch's error.
+     */
+    @Override
+    public Sequence<Object> execute() throws QueryException {
+        int n = queries.getLength();
+
+        URL location = getLocation();
+        for (Query<?> query : queries) {
+            URL queryLocation = query.getLocation();
+
+            if (!queryLocation.getProtocol().equals(location.getProtocol())
+                || !queryLocation.getHost().equalsIgnoreCase(location.getHost())
+                || queryLocation.getPort() != location.getPort()) {
+                throw new IllegalStateException("Query for " + queryLocation
+                    + " does not address the batch server.");
+            }
+        }
+
+        results = new ArrayList<Object>(n);
+        faults = new ArrayList<QueryException>(n);
+        for (int i = 0; i < n; i++) {
+            results.add(null);
+            faults.add(null);
+        }
+
+        completed = new boolean[n];
+
+        if (n > 0) {
+            try {
+                execute(METHOD, queries);
+            } catch (QueryException exception) {
+                // The batch request failed before every query was notified
+                // (for example, the server rejected the batch); fail the rest
+                for (int i = 0; i < n; i++) {
+                    if (!completed[i]) {
+                        fail(i, exception);
+                    }
+                }
+
+                throw exception;
+            }
+        }
+
+        return results;
+    }
+
+    @Override
+    boolean isResponseBodyExpected(Method method, int status) {
+        return (status == Query.Status.OK);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void deliver(int index, Result result) {
+        Query<Object> query = (Query<Object>)queries.get(index);
+        int status = result.getStatus();
+
+        query.setStatus(status);
+
+        QueryDictionary responseHeaders = query.getResponseHeaders();
+        QueryDictionary headers = result.getHeaders();
+        for (String key : headers) {
+            for (int i = 0, n = headers.getLength(key); i < n; i++) {
+                responseHeaders.add(key, headers.get(key, i));
+            }
+        }
+
+        if (status / 100 != 2) {
+            fail(index, new QueryException(status));
+            return;
+        }
+
+        Object value = null;
+
+        switch (query.getMethod()) {
+            case GET: {
+                if (status == Query.Status.OK) {
+                    try {
+                        value = query.getSerializer().readObject(new ByteArrayInputStream(result.getBody()));
+                    } catch (IOException exception) {
+                        fail(index, new QueryException(exception));
+                        return;
+                    } catch (SerializationException exception) {
+                        fail(index, new QueryException(exception));
+                        return;
+                    }
+                }
+
+                break;
+            }
+
+            case POST: {
+                String location = headers.get(LOCATION_HEADER);
+
+                if (status == Query.Status.CREATED
+                    && location != null) {
+                    try {
+                        value = new URL(query.getLocation(), location);
+                    } catch (MalformedURLException exception) {
+                        fail(index, new QueryException(exception));
+                        return;
+                    }
+                }
+
+                break;
+            }
+
+            case PUT: {
+                value = Boolean.valueOf(status == Query.Status.CREATED);
+                break;
+            }
+
+            default: {
+                break;
+            }
+        }
+
+        results.update(index, value);
+        completed[index] = true;
+        query.getQueryListenerDispatcher().responseReceived(query);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void fail(int index, QueryException fault) {
+        Query<Object> query = (Query<Object>)queries.get(index);
+
+        faults.update(index, fault);
+        completed[index] = true;
+        query.getQueryListenerDispatcher().failed(query);
+    }
+
+    private static void writeMessage(QueryDictionary headers, byte[] body,
+        OutputStream outputStream) throws IOException {
+        for (String key : headers) {
+            if (!key.equalsIgnoreCase(CONTENT_LENGTH_HEADER)) {
+                for (int i = 0, n = headers.getLength(key); i < n; i++) {
+                    String value = headers.get(key, i);
+
+                    if (value.indexOf('\r') != -1
+                        || value.indexOf('\n') != -1) {
+                        throw new IOException("Header " + key + " contains a line break.");
+                    }
+
+                    writeLine(key + ": " + value, outputStream);
+                }
+            }
+        }
+
+        writeLine(CONTENT_LENGTH_HEADER + ": " + body.length, outputStream);
+        writeLine("", outputStream);
+
+        outputStream.write(body);
+    }
+
+    private static byte[] readMessage(QueryDictionary headers, InputStream inputStream)
+        throws IOException {
+        int contentLength = -1;
+
+        String line;
+        while ((line = readLine(inputStream)) != null
+            && line.length() > 0) {
+            int i = line.indexOf(':');
+            if (i == -1) {
+                throw new IOException("Invalid batch header: \"" + line + "\".");
+            }
+
+            String key = line.substring(0, i).trim();
+            String value = line.substring(i + 1).trim();
+
+            if (key.equalsIgnoreCase(CONTENT_LENGTH_HEADER)) {
+                try {
+                    contentLength = Integer.parseInt(value);
+                } catch (NumberFormatException exception) {
+                    throw new IOException("Invalid batch content length: \"" + value + "\".");
+                }
+            } else {
+                headers.add(key, value);
+            }
+        }
+
+        if (line == null) {
+            throw new EOFException();
+        }
+
+        if (contentLength < 0) {
+            throw new IOException("Missing batch content length.");
+        }
+
+        byte[] body = new byte[contentLength];
+        int offset = 0;
+        while (offset < contentLength) {
+            int count = inputStream.read(body, offset, contentLength - offset);
+            if (count == -1) {
+                throw new EOFException();
+            }
+
+            offset += count;
+        }
+
+        return body;
+    }
+
+    private static void writeLine(String line, OutputStream outputStream) throws IOException {
+        outputStream.write(line.getBytes(ENCODING));
+        outputStream.write('\r');
+        outputStream.write('\n');
+    }
+
+    /**
+     * Reads a CRLF-terminated line.
+     *
+     * @return
+     * The line, or <tt>null</tt> if the end of the stream was reached before
+     * any characters were read.
+     */
+    private static String readLine(InputStream inputStream) throws IOException {
+        StringBuilder lineBuilder = new StringBuilder();
+
+        int b = inputStream.read();
+        if (b == -1) {
+            return null;
+        }
+
+        while (b != '\n') {
+            if (b == -1) {
+                throw new EOFException();
+            }
+
+            if (b != '\r') {
+                lineBuilder.append((char)b);
+            }
+
+            b = inputStream.read();
+        }
+
+        return lineBuilder.toString();
+    }
+}
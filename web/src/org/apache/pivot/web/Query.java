@@ -16,6 +16,8 @@
  */
 package org.apache.pivot.web;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
@@ -71,6 +73,8 @@ public abstract class Query<V> extends IOTask<V> {
         public static final int CREATED = 201;
         public static final int NO_CONTENT = 204;
 
+        public static final int NOT_MODIFIED = 304;
+
         public static final int BAD_REQUEST = 400;
         public static final int UNAUTHORIZED = 401;
         public static final int FORBIDDEN = 403;
@@ -137,6 +141,8 @@ public abstract class Query<V> extends IOTask<V> {
     private URL locationContext = null;
     private HostnameVerifier hostnameVerifier = null;
     private Proxy proxy = null;
+    private QueryTransport transport = QueryTransport.getDefaultTransport();
+    private QueryCache cache = null;
 
     private QueryDictionary parameters = new QueryDictionary(true);
     private QueryDictionary requestHeaders = new QueryDictionary(false);
@@ -234,6 +240,50 @@ public abstract class Query<V> extends IOTask<V> {
         this.proxy = proxy;
     }
 
+    /**
+     * Returns the transport used to open this query's connections.
+     */
+    public QueryTransport getTransport() {
+        return transport;
+    }
+
+    /**
+     * Sets the transport used to open this query's connections.
+     *
+     * @param transport
+     * The transport (must be non-null).
+     */
+    public void setTransport(QueryTransport transport) {
+        if (transport == null) {
+            throw new IllegalArgumentException("transport is null.");
+        }
+
+        this.transport = transport;
+    }
+
+    /**
+     * Returns the cache used to store the responses to GET operations.
+     *
+     * @return
+     * The query cache, or <tt>null</tt> if responses are not cached.
+     */
+    public QueryCache getCache() {
+        return cache;
+    }
+
+    /**
+     * Sets the cache used to store the responses to GET operations. When a
+     * query is answered from the cache without contacting the server, only
+     * {@link QueryListener#responseReceived(Query)} is fired, and no bytes
+     * are reported as received.
+     *
+     * @param cache
+     * The query cache, or <tt>null</tt> to disable caching.
+     */
+    public void setCache(QueryCache cache) {
+        this.cache = cache;
+    }
+
     public URL getLocation() {
         StringBuilder queryStringBuilder = new StringBuilder();
 
@@ -373,7 +423,9 @@ public abstract class Query<V> extends IOTask<V> {
     @SuppressWarnings("unchecked")
     protected Object execute(Method method, Object value) throws QueryException {
         URL location = getLocation();
+        QueryTransport transport = this.transport;
         HttpURLConnection connection = null;
+        boolean connected = false;
 
         Serializer<Object> serializer = (Serializer<Object>)this.serializer;
 
@@ -384,16 +436,50 @@ public abstract class Query<V> extends IOTask<V> {
         status = 0;
         String message = null;
 
+        // Return a fresh cached response without contacting the server
+        QueryCache cache = (method == Method.GET) ? this.cache : null;
+        String cacheKey = null;
+        QueryCache.Entry cacheEntry = null;
+
+        if (cache != null) {
+            cacheKey = cache.getKey(location, requestHeaders);
+            cacheEntry = cache.get(cacheKey);
+
+            if (cacheEntry != null
+                && cacheEntry.isFresh()) {
+                try {
+                    value = cache.getValue(cacheEntry, serializer);
+                    cache.recordHit();
+
+                    status = Status.OK;
+                    cacheEntry.getHeaders(responseHeaders);
+
+                    queryListeners.responseReceived(this);
+
+                    return value;
+                } catch (IOException exception) {
+                    // Download the response again
+                    cacheEntry = null;
+                } catch (SerializationException exception) {
+                    cacheEntry = null;
+                }
+            }
+        }
+
+        // Wait for a connection to the host to become available
+        try {
+            transport.acquire(location);
+        } catch (InterruptedException exception) {
+            queryListeners.failed(this);
+            throw new QueryException(exception);
+        }
+
         try {
             // Clear any properties from a previous response
             responseHeaders.clear();
 
             // Open a connection
-            if (proxy == null) {
-                connection = (HttpURLConnection) location.openConnection();
-            } else {
-                connection = (HttpURLConnection) location.openConnection(proxy);
-            }
+            connection = transport.openConnection(location, proxy);
 
             connection.setRequestMethod(method.toString());
             connection.setAllowUserInteraction(false);
@@ -421,12 +507,24 @@ public abstract class Query<V> extends IOTask<V> {
                 }
             }
 
+            // Ask the server whether the cached response is still valid
+            if (cacheEntry != null) {
+                if (cacheEntry.eTag != null) {
+                    connection.setRequestProperty("If-None-Match", cacheEntry.eTag);
+                }
+
+                if (cacheEntry.lastModified != null) {
+                    connection.setRequestProperty("If-Modified-Since", cacheEntry.lastModified);
+                }
+            }
+
             // Set the input/output state
             connection.setDoInput(true);
             connection.setDoOutput(value != null);
 
             // Connect to the server
             connection.connect();
+            connected = true;
             queryListeners.connected(this);
 
             // Write the request body
@@ -459,22 +557,39 @@ public abstract class Query<V> extends IOTask<V> {
                 responseHeaders.add(key, connection.getHeaderField(i));
             }
 
-            // If the response was anything other than 2xx, throw an exception
-            int statusPrefix = status / 100;
-            if (statusPrefix != 2) {
-                throw new QueryException(status, message);
-            }
+            if (cacheEntry != null
+                && status == Query.Status.NOT_MODIFIED) {
+                // Return the cached response
+                cache.revalidate(cacheEntry, connection);
+                value = cache.getValue(cacheEntry, serializer);
 
-            // Read the response body
-            if (method == Method.GET
-                && status == Query.Status.OK) {
-                InputStream inputStream = null;
-                try {
-                    inputStream = connection.getInputStream();
-                    value = serializer.readObject(new MonitoredInputStream(inputStream));
-                } finally {
-                    if (inputStream != null) {
-                        inputStream.close();
+                status = Query.Status.OK;
+                cacheEntry.getHeaders(responseHeaders);
+            } else {
+                // If the response was anything other than 2xx, throw an exception
+                int statusPrefix = status / 100;
+                if (statusPrefix != 2) {
+                    throw new QueryException(status, message);
+                }
+
+                // Read the response body (the stream is closed when the
+                // connection is released below)
+                if (isResponseBodyExpected(method, status)) {
+                    InputStream inputStream = transport.decode(connection,
+                        new MonitoredInputStream(connection.getInputStream()));
+
+                    if (cache == null) {
+                        value = serializer.readObject(inputStream);
+                    } else {
+                        cache.recordMiss();
+
+                        if (cache.isCacheable(connection)) {
+                            byte[] bytes = readBytes(inputStream);
+                            value = serializer.readObject(new ByteArrayInputStream(bytes));
+                            cache.put(cacheKey, connection, bytes, value, serializer);
+                        } else {
+                            value = serializer.readObject(inputStream);
+                        }
                     }
                 }
             }
@@ -490,11 +605,55 @@ public abstract class Query<V> extends IOTask<V> {
         } catch (RuntimeException exception) {
             queryListeners.failed(this);
             throw exception;
+        } finally {
+            // Discard any unread response so the connection can be reused
+            if (connected) {
+                transport.close(connection);
+            }
+
+            transport.release(location);
         }
 
         return value;
     }
 
+    /**
+     * Tests whether the response body should be deserialized. By default,
+     * only the body of a successful GET is read.
+     */
+    boolean isResponseBodyExpected(Method method, int status) {
+        return (method == Method.GET
+            && status == Query.Status.OK);
+    }
+
+    /**
+     * Sets the status of the most recent execution. Used when the query is
+     * executed as part of a {@link BatchQuery}.
+     */
+    void setStatus(int status) {
+        this.status = status;
+    }
+
+    /**
+     * Returns the query listener list as a listener, so that a
+     * {@link BatchQuery} can notify the listeners of its queries.
+     */
+    QueryListener<V> getQueryListenerDispatcher() {
+        return queryListeners;
+    }
+
+    static byte[] readBytes(InputStream inputStream) throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+        byte[] buffer = new byte[4096];
+        int count;
+        while ((count = inputStream.read(buffer)) != -1) {
+            outputStream.write(buffer, 0, count);
+        }
+
+        return outputStream.toByteArray();
+    }
+
     /**
      * Returns the query listener list.
      */
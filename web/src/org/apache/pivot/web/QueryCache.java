@@ -0,0 +1,676 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pivot.web;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+import org.apache.pivot.serialization.SerializationException;
+import org.apache.pivot.serialization.Serializer;
+
+/**
+ * Client-side cache of the responses to {@link GetQuery GET queries}.
+ * <p>
+ * Response bodies are stored on disk, up to {@link #getMaxDiskSize()} bytes,
+ * and the values deserialized from them are kept in memory for the
+ * {@link #getMaxValueCount()} most recently used responses. Both are evicted
+ * in least-recently-used order.
+ * <p>
+ * Responses are cached unless they are marked <tt>Cache-Control: no-store</tt>
+ * or <tt>Vary: *</tt>. A cached response is returned without contacting the
+ * server while it is fresh, as given by <tt>Cache-Control: max-age</tt> or
+ * <tt>Expires</tt>. Otherwise, it is revalidated with a conditional request
+ * (<tt>If-None-Match</tt> and <tt>If-Modified-Since</tt>, from the response's
+ * <tt>ETag</tt> and <tt>Last-Modified</tt> headers), and a
+ * <tt>304 Not Modified</tt> response is answered from the cache. Responses
+ * that can neither be fresh nor revalidated are not cached.
+ * <p>
+ * Responses are keyed by query location and request headers. By default, a
+ * value held in memory is returned only to queries that use the serializer
+ * instance that read it (for example, when a query is executed again); other
+ * queries deserialize the stored body. If {@link #setValueSharingEnabled(boolean)
+ * value sharing} is enabled, the value is returned to any query whose
+ * serializer is of the same class, so that a new query for the same location
+ * does not deserialize the body again. Cached values may therefore be shared
+ * by several queries, and should be treated as read-only.
+ */
+public class QueryCache {
+    /**
+     * Cached response.
+     */
+    static final class Entry {
+        public final String key;
+        public final File file;
+
+        public int length = 0;
+        public String eTag = null;
+        public String lastModified = null;
+        public long expiration = 0;
+
+        public String[] headerKeys = null;
+        public String[] headerValues = null;
+
+        public Object value = null;
+        public Object valueKey = null;
+
+        public Entry(String key, File file) {
+            this.key = key;
+            this.file = file;
+        }
+
+        public boolean isFresh() {
+            return (System.currentTimeMillis() < expiration);
+        }
+
+        public void getHeaders(QueryDictionary headers) {
+            headers.clear();
+
+            for (int i = 0; i < headerKeys.length; i++) {
+                headers.add(headerKeys[i], headerValues[i]);
+            }
+        }
+    }
+
+    private File directory;
+    private boolean temporary;
+
+    private long maxDiskSize = DEFAULT_MAX_DISK_SIZE;
+    private int maxValueCount = DEFAULT_MAX_VALUE_COUNT;
+    private boolean valueSharingEnabled = false;
+
+    private LinkedHashMap<String, Entry> entries = new LinkedHashMap<String, Entry>(16, 0.75f, true);
+    private LinkedHashMap<String, Entry> values = new LinkedHashMap<String, Entry>(16, 0.75f, true);
+    private long diskSize = 0;
+    private long nextFileID = 0;
+
+    private long hitCount = 0;
+    private long missCount = 0;
+    private long revalidationCount = 0;
+
+    public static final long DEFAULT_MAX_DISK_SIZE = 64L * 1024 * 1024;
+    public static final int DEFAULT_MAX_VALUE_COUNT = 256;
+
+    private static final String FILE_EXTENSION = ".cache";
+    private static final String ENCODING = "UTF-8";
+
+    private static final String CACHE_CONTROL_HEADER = "Cache-Control";
+    private static final String ETAG_HEADER = "ETag";
+    private static final String LAST_MODIFIED_HEADER = "Last-Modified";
+    private static final String EXPIRES_HEADER = "Expires";
+    private static final String VARY_HEADER = "Vary";
+
+    private static final String NO_STORE_DIRECTIVE = "no-store";
+    private static final String NO_CACHE_DIRECTIVE = "no-cache";
+    private static final String MAX_AGE_DIRECTIVE = "max-age";
+
+    /**
+     * Creates a query cache that stores responses in a temporary directory,
+     * which is deleted when the VM exits.
+     */
+    public QueryCache() throws IOException {
+        this(createTemporaryDirectory(), true);
+    }
+
+    /**
+     * Creates a query cache that stores responses in the given directory.
+     * Files left in the directory by a previous cache are deleted.
+     *
+     * @param directory
+     * The cache directory. It is created if it does not exist.
+     */
+    public QueryCache(File directory) throws IOException {
+        this(directory, false);
+    }
+
+    private QueryCache(File directory, boolean temporary) throws IOException {
+        if (directory == null) {
+            throw new IllegalArgumentException("directory is null.");
+        }
+
+        if (!directory.isDirectory()
+            && !directory.mkdirs()) {
+            throw new IOException("Unable to create cache directory " + directory + ".");
+        }
+
+        this.directory = directory;
+        this.temporary = temporary;
+
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                if (file.getName().endsWith(FILE_EXTENSION)) {
+                    file.delete();
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the directory in which response bodies are stored.
+     */
+    public File getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Returns the maximum total size, in bytes, of the response bodies stored
+     * on disk.
+     */
+    public synchronized long getMaxDiskSize() {
+        return maxDiskSize;
+    }
+
+    public synchronized void setMaxDiskSize(long maxDiskSize) {
+        if (maxDiskSize < 0) {
+            throw new IllegalArgumentException("maxDiskSize is negative.");
+        }
+
+        this.maxDiskSize = maxDiskSize;
+        trim();
+    }
+
+    /**
+     * Returns the maximum number of deserialized values held in memory.
+     */
+    public synchronized int getMaxValueCount() {
+        return maxValueCount;
+    }
+
+    public synchronized void setMaxValueCount(int maxValueCount) {
+        if (maxValueCount < 0) {
+            throw new IllegalArgumentException("maxValueCount is negative.");
+        }
+
+        this.maxValueCount = maxValueCount;
+        trim();
+    }
+
+    /**
+     * Tests whether values held in memory are returned to queries whose
+     * serializers are of the same class as the one that read them, rather
+     * than only to queries that use the same serializer instance.
+     */
+    public synchronized boolean isValueSharingEnabled() {
+        return valueSharingEnabled;
+    }
+
+    /**
+     * Enables or disables value sharing. Enable it only if all serializers of
+     * a given class that are used with the cache are configured alike.
+     */
+    public synchronized void setValueSharingEnabled(boolean valueSharingEnabled) {
+        this.valueSharingEnabled = valueSharingEnabled;
+    }
+
+    /**
+     * Returns the number of cached responses.
+     */
+    public synchronized int getCount() {
+        return entries.size();
+    }
+
+    /**
+     * Returns the total size, in bytes, of the response bodies stored on disk.
+     */
+    public synchronized long getDiskSize() {
+        return diskSize;
+    }
+
+    /**
+     * Returns the number of queries answered from the cache without
+     * contacting the server.
+     */
+    public synchronized long getHitCount() {
+        return hitCount;
+    }
+
+    /**
+     * Returns the number of queries for which the response was downloaded.
+     */
+    public synchronized long getMissCount() {
+        return missCount;
+    }
+
+    /**
+     * Returns the number of queries answered from the cache after the server
+     * confirmed that the cached response was still valid.
+     */
+    public synchronized long getRevalidationCount() {
+        return revalidationCount;
+    }
+
+    public synchronized void resetStatistics() {
+        hitCount = 0;
+        missCount = 0;
+        revalidationCount = 0;
+    }
+
+    /**
+     * Removes the cached response to a query.
+     *
+     * @param location
+     * The query location.
+     *
+     * @param requestHeaders
+     * The query's request headers.
+     */
+    public synchronized void invalidate(URL location, QueryDictionary requestHeaders) {
+        Entry entry = entries.get(getKey(location, requestHeaders));
+        if (entry != null) {
+            remove(entry);
+        }
+    }
+
+    /**
+     * Removes all cached responses.
+     */
+    public synchronized void clear() {
+        for (Entry entry : entries.values()) {
+            entry.file.delete();
+        }
+
+        entries.clear();
+        values.clear();
+        diskSize = 0;
+    }
+
+    /**
+     * Returns the key identifying a query's response.
+     */
+    String getKey(URL location, QueryDictionary requestHeaders) {
+        StringBuilder keyBuilder = new StringBuilder(location.toExternalForm());
+
+        // Order the headers so that equivalent queries share a key
+        ArrayList<String> headerKeys = new ArrayList<String>();
+        for (String headerKey : requestHeaders) {
+            headerKeys.add(headerKey);
+        }
+
+        Collections.sort(headerKeys, String.CASE_INSENSITIVE_ORDER);
+
+        for (String headerKey : headerKeys) {
+            for (int j = 0, n = requestHeaders.getLength(headerKey); j < n; j++) {
+                keyBuilder.append('\n');
+                keyBuilder.append(headerKey.toLowerCase());
+                keyBuilder.append(": ");
+                keyBuilder.append(requestHeaders.get(headerKey, j));
+            }
+        }
+
+        return keyBuilder.toString();
+    }
+
+    /**
+     * Returns the cached response for the given key, or <tt>null</tt> if
+     * there is none.
+     */
+    synchronized Entry get(String key) {
+        Entry entry = entries.get(key);
+
+        if (entry != null
+            && !entry.file.exists()) {
+            remove(entry);
+            entry = null;
+        }
+
+        return entry;
+    }
+
+    /**
+     * Returns the value of a cached response, deserializing the stored body
+     * if the value is no longer held in memory or was read by a serializer
+     * that the value may not be shared with. The body is read and
+     * deserialized without holding the cache's lock.
+     */
+    Object getValue(Entry entry, Serializer<?> serializer)
+        throws IOException, SerializationException {
+        Object valueKey;
+
+        synchronized (this) {
+            valueKey = getValueKey(serializer);
+
+            if (entry.valueKey == valueKey) {
+                values.get(entry.key);
+                return entry.value;
+            }
+        }
+
+        byte[] bytes = new byte[entry.length];
+
+        InputStream inputStream = new FileInputStream(entry.file);
+        try {
+            int offset = 0;
+            while (offset < bytes.length) {
+                int count = inputStream.read(bytes, offset, bytes.length - offset);
+                if (count == -1) {
+                    throw new IOException("Cache file " + entry.file + " is truncated.");
+                }
+
+                offset += count;
+            }
+        } finally {
+            inputStream.close();
+        }
+
+        Object value = serializer.readObject(new ByteArrayInputStream(bytes));
+
+        synchronized (this) {
+            // Keep the value unless the entry was removed while it was read
+            if (maxValueCount > 0
+                && entries.get(entry.key) == entry) {
+                entry.value = value;
+                entry.valueKey = valueKey;
+                values.put(entry.key, entry);
+                trim();
+            }
+        }
+
+        return value;
+    }
+
+    /**
+     * Records a query that was answered from a fresh cached response.
+     */
+    synchronized void recordHit() {
+        hitCount++;
+    }
+
+    /**
+     * Records a query for which the response was downloaded.
+     */
+    synchronized void recordMiss() {
+        missCount++;
+    }
+
+    /**
+     * Tests whether the response on the given connection may be cached.
+     */
+    boolean isCacheable(HttpURLConnection connection) {
+        String cacheControl = connection.getHeaderField(CACHE_CONTROL_HEADER);
+        String vary = connection.getHeaderField(VARY_HEADER);
+
+        return (connection.getContentLength() <= maxDiskSize
+            && !hasDirective(cacheControl, NO_STORE_DIRECTIVE)
+            && (vary == null || !vary.trim().equals("*"))
+            && (getExpiration(connection) > System.currentTimeMillis()
+                || connection.getHeaderField(ETAG_HEADER) != null
+                || connection.getHeaderField(LAST_MODIFIED_HEADER) != null));
+    }
+
+    /**
+     * Caches the response on the given connection.
+     *
+     * @param key
+     * The response key.
+     *
+     * @param connection
+     * The connection the response was received on.
+     *
+     * @param bytes
+     * The (decoded) response body.
+     *
+     * @param value
+     * The value deserialized from the body.
+     *
+     * @param serializer
+     * The serializer that deserialized the value.
+     */
+    synchronized Entry put(String key, HttpURLConnection connection, byte[] bytes,
+        Object value, Serializer<?> serializer) throws IOException {
+        Entry entry = entries.get(key);
+        if (entry != null) {
+            remove(entry);
+        }
+
+        if (bytes.length > maxDiskSize) {
+            return null;
+        }
+
+        // Give each entry its own file, so that a replaced entry's file is
+        // not overwritten while getValue() reads it
+        entry = new Entry(key, new File(directory, getFileName(key, nextFileID++)));
+
+        OutputStream outputStream = new FileOutputStream(entry.file);
+        try {
+            outputStream.write(bytes);
+        } finally {
+            outputStream.close();
+        }
+
+        if (temporary) {
+            entry.file.deleteOnExit();
+        }
+
+        entry.length = bytes.length;
+        entry.value = value;
+        entry.valueKey = getValueKey(serializer);
+        update(entry, connection);
+
+        int headerCount = 0;
+        while (connection.getHeaderFieldKey(headerCount + 1) != null) {
+            headerCount++;
+        }
+
+        // NOTE Header indexes start at 1, not 0
+        entry.headerKeys = new String[headerCount];
+        entry.headerValues = new String[headerCount];
+        for (int i = 0; i < headerCount; i++) {
+            entry.headerKeys[i] = connection.getHeaderFieldKey(i + 1);
+            entry.headerValues[i] = connection.getHeaderField(i + 1);
+        }
+
+        entries.put(key, entry);
+        diskSize += entry.length;
+
+        if (maxValueCount > 0) {
+            values.put(key, entry);
+        } else {
+            entry.value = null;
+            entry.valueKey = null;
+        }
+
+        trim();
+
+        return entry;
+    }
+
+    /**
+     * Updates a cached response from a <tt>304 Not Modified</tt> response.
+     */
+    synchronized void revalidate(Entry entry, HttpURLConnection connection) {
+        revalidationCount++;
+
+        update(entry, connection);
+
+        // Replace the stored headers that were resent
+        for (int i = 0; i < entry.headerKeys.length; i++) {
+            String headerValue = connection.getHeaderField(entry.headerKeys[i]);
+
+            if (headerValue != null) {
+                entry.headerValues[i] = headerValue;
+            }
+        }
+    }
+
+    private void update(Entry entry, HttpURLConnection connection) {
+        String eTag = connection.getHeaderField(ETAG_HEADER);
+        if (eTag != null) {
+            entry.eTag = eTag;
+        }
+
+        String lastModified = connection.getHeaderField(LAST_MODIFIED_HEADER);
+        if (lastModified != null) {
+            entry.lastModified = lastModified;
+        }
+
+        entry.expiration = getExpiration(connection);
+    }
+
+    private void remove(Entry entry) {
+        entries.remove(entry.key);
+        values.remove(entry.key);
+        diskSize -= entry.length;
+
+        entry.file.delete();
+    }
+
+    private void trim() {
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (diskSize > maxDiskSize) {
+            Entry entry = iterator.next();
+            iterator.remove();
+            values.remove(entry.key);
+            diskSize -= entry.length;
+
+            entry.file.delete();
+        }
+
+        iterator = values.values().iterator();
+        while (values.size() > maxValueCount) {
+            Entry entry = iterator.next();
+            iterator.remove();
+
+            entry.value = null;
+            entry.valueKey = null;
+        }
+    }
+
+    /**
+     * Returns the key that identifies the serializers a value read by the
+     * given serializer may be returned to.
+     */
+    private Object getValueKey(Serializer<?> serializer) {
+        return valueSharingEnabled ? serializer.getClass() : serializer;
+    }
+
+    /**
+     * Returns the time until which the response on the given connection is
+     * fresh, or <tt>0</tt> if it must be revalidated before it is used.
+     */
+    private static long getExpiration(HttpURLConnection connection) {
+        String cacheControl = connection.getHeaderField(CACHE_CONTROL_HEADER);
+
+        long expiration = 0;
+
+        if (!hasDirective(cacheControl, NO_CACHE_DIRECTIVE)) {
+            long now = System.currentTimeMillis();
+            String maxAge = getDirective(cacheControl, MAX_AGE_DIRECTIVE);
+
+            if (maxAge != null) {
+                try {
+                    expiration = now + Long.parseLong(maxAge) * 1000;
+                } catch (NumberFormatException exception) {
+                    // No-op
+                }
+            } else if (connection.getHeaderField(EXPIRES_HEADER) != null) {
+                // Measure the lifetime against the server's clock
+                long expires = connection.getHeaderFieldDate(EXPIRES_HEADER, 0);
+                long date = connection.getDate();
+
+                expiration = now + expires - (date == 0 ? now : date);
+            }
+        }
+
+        return expiration;
+    }
+
+    private static boolean hasDirective(String cacheControl, String name) {
+        return (getDirective(cacheControl, name) != null);
+    }
+
+    /**
+     * Returns the value of a <tt>Cache-Control</tt> directive, the empty
+     * string if the directive has no value, or <tt>null</tt> if it is not
+     * present.
+     */
+    private static String getDirective(String cacheControl, String name) {
+        String value = null;
+
+        if (cacheControl != null) {
+            for (String directive : cacheControl.split(",")) {
+                directive = directive.trim();
+
+                int i = directive.indexOf('=');
+                String directiveName = (i == -1) ? directive : directive.substring(0, i).trim();
+
+                if (directiveName.equalsIgnoreCase(name)) {
+                    value = (i == -1) ? "" : directive.substring(i + 1).trim();
+
+                    if (value.length() > 1
+                        && value.startsWith("\"")
+                        && value.endsWith("\"")) {
+                        value = value.substring(1, value.length() - 1);
+                    }
+
+                    break;
+                }
+            }
+        }
+
+        return value;
+    }
+
+    private static String getFileName(String key, long id) {
+        byte[] digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-1").digest(key.getBytes(ENCODING));
+        } catch (NoSuchAlgorithmException exception) {
+            throw new RuntimeException(exception);
+        } catch (UnsupportedEncodingException exception) {
+            throw new RuntimeException(exception);
+        }
+
+        StringBuilder fileNameBuilder = new StringBuilder();
+        for (byte b : digest) {
+            fileNameBuilder.append(Character.forDigit((b >> 4) & 0x0f, 16));
+            fileNameBuilder.append(Character.forDigit(b & 0x0f, 16));
+        }
+
+        fileNameBuilder.append('-');
+        fileNameBuilder.append(id);
+        fileNameBuilder.append(FILE_EXTENSION);
+
+        return fileNameBuilder.toString();
+    }
+
+    private static File createTemporaryDirectory() throws IOException {
+        File directory = File.createTempFile("pivot-query-cache", "");
+
+        if (!directory.delete()
+            || !directory.mkdir()) {
+            throw new IOException("Unable to create temporary cache directory.");
+        }
+
+        directory.deleteOnExit();
+
+        return directory;
+    }
+}
@@ -0,0 +1,289 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pivot.web;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.Proxy;
+import java.net.URL;
+import java.util.HashMap;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Opens and releases the HTTP connections used by web queries.
+ * <p>
+ * Connections are obtained from {@link HttpURLConnection}, which keeps idle
+ * persistent connections alive for reuse (up to the number given by the
+ * <tt>http.maxConnections</tt> system property per destination). A connection
+ * can only be reused if its response has been read in full, so the transport
+ * drains and closes every response, including error and empty responses. The
+ * transport also limits the number of concurrent connections made to each
+ * host and requests and decodes compressed responses.
+ * <p>
+ * Subclasses may override {@link #openConnection(URL, Proxy)} to customize the
+ * connections, e.g. to set timeouts.
+ */
+public class QueryTransport {
+    /**
+     * Connection count for a single host.
+     */
+    private static class Host {
+        public int connectionCount = 0;
+    }
+
+    private int maxConnectionsPerHost = DEFAULT_MAX_CONNECTIONS_PER_HOST;
+    private boolean compressionEnabled = true;
+    private int maxDrainLength = DEFAULT_MAX_DRAIN_LENGTH;
+
+    private HashMap<String, Host> hosts = new HashMap<String, Host>();
+
+    private static final QueryTransport DEFAULT_TRANSPORT = new QueryTransport();
+
+    public static final int DEFAULT_MAX_CONNECTIONS_PER_HOST = 5;
+    public static final int DEFAULT_MAX_DRAIN_LENGTH = 64 * 1024;
+
+    private static final String ACCEPT_ENCODING_HEADER = "Accept-Encoding";
+    private static final String GZIP_ENCODING = "gzip";
+    private static final String X_GZIP_ENCODING = "x-gzip";
+    private static final String DEFLATE_ENCODING = "deflate";
+
+    /**
+     * Returns the transport that is used by queries by default.
+     */
+    public static QueryTransport getDefaultTransport() {
+        return DEFAULT_TRANSPORT;
+    }
+
+    /**
+     * Returns the maximum number of connections that may be open to a single
+     * host at one time. Queries that would exceed the limit wait until a
+     * connection is released.
+     */
+    public int getMaxConnectionsPerHost() {
+        return maxConnectionsPerHost;
+    }
+
+    public void setMaxConnectionsPerHost(int maxConnectionsPerHost) {
+        if (maxConnectionsPerHost < 1) {
+            throw new IllegalArgumentException("maxConnectionsPerHost must be positive.");
+        }
+
+        synchronized (hosts) {
+            this.maxConnectionsPerHost = maxConnectionsPerHost;
+            hosts.notifyAll();
+        }
+    }
+
+    /**
+     * Returns whether compressed (gzip or deflate) responses are requested.
+     * Compressed responses are decoded transparently.
+     */
+    public boolean isCompressionEnabled() {
+        return compressionEnabled;
+    }
+
+    public void setCompressionEnabled(boolean compressionEnabled) {
+        this.compressionEnabled = compressionEnabled;
+    }
+
+    /**
+     * Returns the maximum number of unread response bytes that will be
+     * discarded to keep a connection alive. If more bytes remain when a
+     * connection is released, the connection is closed instead.
+     */
+    public int getMaxDrainLength() {
+        return maxDrainLength;
+    }
+
+    public void setMaxDrainLength(int maxDrainLength) {
+        if (maxDrainLength < 0) {
+            throw new IllegalArgumentException("maxDrainLength is negative.");
+        }
+
+        this.maxDrainLength = maxDrainLength;
+    }
+
+    /**
+     * Returns the number of connections that are currently open to the host
+     * of the given location.
+     */
+    public int getConnectionCount(URL location) {
+        synchronized (hosts) {
+            Host host = hosts.get(getHostKey(location));
+            return (host == null) ? 0 : host.connectionCount;
+        }
+    }
+
+    /**
+     * Waits until a connection to the host of the given location may be
+     * opened, and reserves it. Each call must be balanced by a call to
+     * {@link #release(URL)}.
+     */
+    public void acquire(URL location) throws InterruptedException {
+        String hostKey = getHostKey(location);
+
+        synchronized (hosts) {
+            Host host = hosts.get(hostKey);
+
+            while (host != null
+                && host.connectionCount >= maxConnectionsPerHost) {
+                hosts.wait();
+
+                // The entry is removed when its last connection is released
+                host = hosts.get(hostKey);
+            }
+
+            if (host == null) {
+                host = new Host();
+                hosts.put(hostKey, host);
+            }
+
+            host.connectionCount++;
+        }
+    }
+
+    /**
+     * Releases a connection reserved by {@link #acquire(URL)}.
+     */
+    public void release(URL location) {
+        String hostKey = getHostKey(location);
+
+        synchronized (hosts) {
+            Host host = hosts.get(hostKey);
+            if (host == null
+                || host.connectionCount == 0) {
+                throw new IllegalStateException("No connection to release.");
+            }
+
+            host.connectionCount--;
+            if (host.connectionCount == 0) {
+                hosts.remove(hostKey);
+            }
+
+            hosts.notifyAll();
+        }
+    }
+
+    /**
+     * Opens a connection to the given location.
+     *
+     * @param location
+     * The location to connect to.
+     *
+     * @param proxy
+     * The proxy to connect through, or <tt>null</tt> to use the default JVM
+     * proxy settings.
+     */
+    public HttpURLConnection openConnection(URL location, Proxy proxy) throws IOException {
+        HttpURLConnection connection;
+        if (proxy == null) {
+            connection = (HttpURLConnection)location.openConnection();
+        } else {
+            connection = (HttpURLConnection)location.openConnection(proxy);
+        }
+
+        if (compressionEnabled) {
+            connection.setRequestProperty(ACCEPT_ENCODING_HEADER,
+                GZIP_ENCODING + ", " + DEFLATE_ENCODING);
+        }
+
+        return connection;
+    }
+
+    /**
+     * Returns a stream that decodes the given response body according to the
+     * connection's content encoding.
+     *
+     * @param connection
+     * The connection the response was received on.
+     *
+     * @param inputStream
+     * The (possibly compressed) response body.
+     */
+    public InputStream decode(HttpURLConnection connection, InputStream inputStream)
+        throws IOException {
+        String contentEncoding = connection.getContentEncoding();
+
+        if (contentEncoding != null) {
+            contentEncoding = contentEncoding.trim();
+
+            if (contentEncoding.equalsIgnoreCase(GZIP_ENCODING)
+                || contentEncoding.equalsIgnoreCase(X_GZIP_ENCODING)) {
+                inputStream = new GZIPInputStream(inputStream);
+            } else if (contentEncoding.equalsIgnoreCase(DEFLATE_ENCODING)) {
+                inputStream = new InflaterInputStream(inputStream);
+            }
+        }
+
+        return inputStream;
+    }
+
+    /**
+     * Finishes with a connection. Any unread response body is discarded so
+     * that the underlying persistent connection can be reused; if too much of
+     * the body remains, or it cannot be read, the connection is closed.
+     */
+    public void close(HttpURLConnection connection) {
+        InputStream inputStream;
+        try {
+            inputStream = connection.getInputStream();
+        } catch (IOException exception) {
+            inputStream = connection.getErrorStream();
+        }
+
+        boolean reusable = true;
+
+        if (inputStream != null) {
+            try {
+                try {
+                    byte[] buffer = new byte[4096];
+                    long count = 0;
+
+                    int n;
+                    while ((n = inputStream.read(buffer)) != -1) {
+                        count += n;
+
+                        if (count > maxDrainLength) {
+                            reusable = false;
+                            break;
+                        }
+                    }
+                } finally {
+                    inputStream.close();
+                }
+            } catch (IOException exception) {
+                reusable = false;
+            }
+        }
+
+        if (!reusable) {
+            connection.disconnect();
+        }
+    }
+
+    private static String getHostKey(URL location) {
+        int port = location.getPort();
+        if (port == -1) {
+            port = location.getDefaultPort();
+        }
+
+        return location.getProtocol().toLowerCase() + "://"
+            + location.getHost().toLowerCase() + ":" + port;
+    }
+}
@@ -0,0 +1,317 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pivot.web.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.apache.pivot.collections.Map;
+import org.apache.pivot.json.JSONSerializer;
+import org.apache.pivot.web.GetQuery;
+import org.apache.pivot.web.Query;
+import org.apache.pivot.web.QueryCache;
+import org.apache.pivot.web.QueryException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+public class QueryCacheTest {
+    /**
+     * Serves a JSON document whose caching headers depend on the request
+     * path, and answers conditional requests for the current version.
+     */
+    private class TestHandler implements HttpHandler {
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            String path = exchange.getRequestURI().getPath();
+            Headers requestHeaders = exchange.getRequestHeaders();
+            Headers responseHeaders = exchange.getResponseHeaders();
+
+            String eTag = "\"v" + version + "\"";
+            String lastModified = "Sat, 0" + version + " Oct 2026 12:00:00 GMT";
+
+            synchronized (QueryCacheTest.this) {
+                requestCount++;
+            }
+
+            boolean notModified = false;
+
+            if (path.equals("/fresh")) {
+                responseHeaders.set("Cache-Control", "max-age=60");
+                responseHeaders.set("ETag", eTag);
+            } else if (path.equals("/etag")) {
+                responseHeaders.set("Cache-Control", "no-cache");
+                responseHeaders.set("ETag", eTag);
+                notModified = eTag.equals(requestHeaders.getFirst("If-None-Match"));
+            } else if (path.equals("/modified")) {
+                responseHeaders.set("Last-Modified", lastModified);
+                notModified = lastModified.equals(requestHeaders.getFirst("If-Modified-Since"));
+            } else if (path.equals("/nostore")) {
+                responseHeaders.set("Cache-Control", "no-store");
+                responseHeaders.set("ETag", eTag);
+            }
+
+            if (notModified) {
+                exchange.sendResponseHeaders(Query.Status.NOT_MODIFIED, -1);
+            } else {
+                byte[] body = getResponse(version).getBytes("UTF-8");
+
+                responseHeaders.set("Content-Type", "application/json");
+                exchange.sendResponseHeaders(Query.Status.OK, body.length);
+
+                OutputStream outputStream = exchange.getResponseBody();
+                outputStream.write(body);
+            }
+
+            exchange.close();
+        }
+    }
+
+    static {
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+    }
+
+    private HttpServer server = null;
+    private ExecutorService serverExecutorService = null;
+
+    private volatile int version = 1;
+    private int requestCount = 0;
+    private int itemCount = 10;
+
+    private QueryCache cache = null;
+    private JSONSerializer serializer = null;
+
+    @Before
+    public void startServer() throws IOException {
+        serverExecutorService = Executors.newCachedThreadPool();
+
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", new TestHandler());
+        server.setExecutor(serverExecutorService);
+        server.start();
+
+        cache = new QueryCache();
+        serializer = new JSONSerializer();
+    }
+
+    @After
+    public void stopServer() {
+        server.stop(0);
+        serverExecutorService.shutdownNow();
+
+        cache.clear();
+    }
+
+    private String getResponse(int version) {
+        StringBuilder responseBuilder = new StringBuilder("{\"version\": " + version + ", \"items\": [");
+        for (int i = 0; i < itemCount; i++) {
+            if (i > 0) {
+                responseBuilder.append(", ");
+            }
+
+            responseBuilder.append("{\"id\": " + i + ", \"name\": \"Item " + i + "\"}");
+        }
+        responseBuilder.append("]}");
+
+        return responseBuilder.toString();
+    }
+
+    private Map<String, Object> get(String path) throws QueryException {
+        return get(path, serializer);
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> get(String path, JSONSerializer serializer) throws QueryException {
+        GetQuery getQuery = new GetQuery("127.0.0.1", server.getAddress().getPort(), path, false);
+        getQuery.setSerializer(serializer);
+        getQuery.setCache(cache);
+
+        Map<String, Object> value = (Map<String, Object>)getQuery.execute();
+        assertEquals(Query.Status.OK, getQuery.getStatus());
+
+        return value;
+    }
+
+    @Test
+    public void testFresh() throws QueryException {
+        Map<String, Object> value = get("/fresh");
+        assertSame(value, get("/fresh"));
+        assertSame(value, get("/fresh"));
+
+        assertEquals(1, requestCount);
+        assertEquals(2L, cache.getHitCount());
+        assertEquals(1L, cache.getMissCount());
+        assertEquals(0L, cache.getRevalidationCount());
+    }
+
+    @Test
+    public void testETag() throws QueryException {
+        Map<String, Object> value = get("/etag");
+        assertSame(value, get("/etag"));
+        assertEquals(2, requestCount);
+        assertEquals(1L, cache.getRevalidationCount());
+
+        version = 2;
+        value = get("/etag");
+        assertEquals(2, value.get("version"));
+        assertEquals(2L, cache.getMissCount());
+        assertEquals(0L, cache.getHitCount());
+    }
+
+    @Test
+    public void testLastModified() throws QueryException {
+        Map<String, Object> value = get("/modified");
+        assertSame(value, get("/modified"));
+        assertEquals(1L, cache.getRevalidationCount());
+
+        version = 3;
+        assertEquals(3, get("/modified").get("version"));
+        assertEquals(1, cache.getCount());
+    }
+
+    @Test
+    public void testSerializers() throws QueryException {
+        Map<String, Object> value = get("/fresh");
+
+        // A value read by one serializer is not returned to another, which
+        // may be configured differently
+        Map<String, Object> otherValue = get("/fresh", new JSONSerializer());
+        assertNotSame(value, otherValue);
+        assertEquals(value.get("version"), otherValue.get("version"));
+
+        assertEquals(1, requestCount);
+        assertEquals(1L, cache.getHitCount());
+    }
+
+    @Test
+    public void testSharedValues() throws QueryException {
+        cache.setValueSharingEnabled(true);
+
+        // A new query with its own serializer gets the value held in memory,
+        // as when a query is created for each refresh
+        Map<String, Object> value = get("/fresh", new JSONSerializer());
+        assertSame(value, get("/fresh", new JSONSerializer()));
+        assertEquals(1L, cache.getHitCount());
+
+        value = get("/etag", new JSONSerializer());
+        assertSame(value, get("/etag", new JSONSerializer()));
+        assertEquals(1L, cache.getRevalidationCount());
+
+        assertEquals(3, requestCount);
+    }
+
+    @Test
+    public void testNoStore() throws QueryException {
+        assertNotSame(get("/nostore"), get("/nostore"));
+        assertEquals(2L, cache.getMissCount());
+        assertEquals(0, cache.getCount());
+    }
+
+    @Test
+    public void testRequestHeaders() throws QueryException {
+        GetQuery getQuery = new GetQuery("127.0.0.1", server.getAddress().getPort(), "/fresh", false);
+        getQuery.setCache(cache);
+        getQuery.execute();
+
+        getQuery.getRequestHeaders().put("Accept-Language", "fr");
+        getQuery.execute();
+        getQuery.execute();
+
+        assertEquals(2, requestCount);
+        assertEquals(2, cache.getCount());
+        assertEquals(1L, cache.getHitCount());
+
+        // Headers are restored on a hit
+        assertEquals("max-age=60", getQuery.getResponseHeaders().get("Cache-Control"));
+    }
+
+    @Test
+    public void testEviction() throws QueryException {
+        cache.setMaxValueCount(0);
+
+        // Values are deserialized from disk when they are not held in memory
+        Map<String, Object> value = get("/etag");
+        Map<String, Object> cachedValue = get("/etag");
+        assertNotSame(value, cachedValue);
+        assertEquals(value.get("version"), cachedValue.get("version"));
+        assertEquals(1L, cache.getRevalidationCount());
+
+        long diskSize = cache.getDiskSize();
+        assertTrue(diskSize > 0);
+
+        get("/modified");
+        assertEquals(2, cache.getCount());
+
+        cache.setMaxDiskSize(diskSize);
+        assertEquals(1, cache.getCount());
+
+        // The least recently used response was evicted
+        get("/etag");
+        assertEquals(1L, cache.getRevalidationCount());
+        assertFalse(cache.getDiskSize() > diskSize);
+    }
+
+    @Test
+    public void revalidationSpeedTest() throws QueryException {
+        final int queryCount = 500;
+        itemCount = 2000;
+
+        GetQuery getQuery = new GetQuery("127.0.0.1", server.getAddress().getPort(), "/etag", false);
+
+        // Warm up
+        for (int i = 0; i < 100; i++) {
+            getQuery.execute();
+        }
+
+        long bytesReceived = 0;
+        long t0 = System.nanoTime();
+        for (int i = 0; i < queryCount; i++) {
+            getQuery.execute();
+            bytesReceived += getQuery.getBytesReceived();
+        }
+        long t1 = System.nanoTime();
+
+        getQuery.setCache(cache);
+
+        long cachedBytesReceived = 0;
+        long t2 = System.nanoTime();
+        for (int i = 0; i < queryCount; i++) {
+            getQuery.execute();
+            cachedBytesReceived += getQuery.getBytesReceived();
+        }
+        long t3 = System.nanoTime();
+
+        System.out.println("GetQuery without cache: " + (t1 - t0) / 1000 / queryCount
+            + "us per query, " + bytesReceived / queryCount + " bytes received per query");
+        System.out.println("GetQuery with cache (revalidated): " + (t3 - t2) / 1000 / queryCount
+            + "us per query, " + cachedBytesReceived / queryCount + " bytes received per query");
+    }
+}
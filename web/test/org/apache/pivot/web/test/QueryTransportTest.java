@@ -0,0 +1,309 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pivot.web.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.pivot.collections.Map;
+import org.apache.pivot.util.concurrent.Task;
+import org.apache.pivot.util.concurrent.TaskListener;
+import org.apache.pivot.web.GetQuery;
+import org.apache.pivot.web.Query;
+import org.apache.pivot.web.QueryException;
+import org.apache.pivot.web.QueryTransport;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+public class QueryTransportTest {
+    /**
+     * Serves a small JSON document, compressed if the client accepts it, and
+     * records the client connections and the peak number of concurrent
+     * requests.
+     */
+    private class TestHandler implements HttpHandler {
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            synchronized (QueryTransportTest.this) {
+                remoteAddresses.add(exchange.getRemoteAddress());
+                requestCount++;
+                activeCount++;
+                maxActiveCount = Math.max(activeCount, maxActiveCount);
+            }
+
+            int status;
+            byte[] body;
+
+            try {
+                String path = exchange.getRequestURI().getPath();
+
+                if (path.equals("/slow")) {
+                    try {
+                        Thread.sleep(20);
+                    } catch (InterruptedException exception) {
+                        // No-op
+                    }
+                }
+
+                status = path.equals("/missing") ? Query.Status.NOT_FOUND : Query.Status.OK;
+                body = RESPONSE.getBytes("UTF-8");
+
+                String acceptEncoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+                if (acceptEncoding != null
+                    && acceptEncoding.contains("gzip")) {
+                    ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+                    GZIPOutputStream gzipOutputStream = new GZIPOutputStream(byteArrayOutputStream);
+                    gzipOutputStream.write(body);
+                    gzipOutputStream.close();
+
+                    body = byteArrayOutputStream.toByteArray();
+                    exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+                }
+            } finally {
+                // The request is no longer active once its response is ready;
+                // the client may issue its next request as soon as it is sent
+                synchronized (QueryTransportTest.this) {
+                    activeCount--;
+                }
+            }
+
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(status, body.length);
+
+            OutputStream outputStream = exchange.getResponseBody();
+            outputStream.write(body);
+            outputStream.close();
+        }
+    }
+
+    private static final String RESPONSE;
+
+    static {
+        // Avoid Nagle/delayed ACK stalls on persistent connections to the
+        // embedded server
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+
+        StringBuilder responseBuilder = new StringBuilder("{\"items\": [");
+        for (int i = 0; i < 100; i++) {
+            if (i > 0) {
+                responseBuilder.append(", ");
+            }
+
+            responseBuilder.append("{\"id\": " + i + ", \"name\": \"Item " + i + "\"}");
+        }
+        responseBuilder.append("], \"count\": 100}");
+
+        RESPONSE = responseBuilder.toString();
+    }
+
+    private HttpServer server = null;
+    private ExecutorService serverExecutorService = null;
+
+    private Set<InetSocketAddress> remoteAddresses = new HashSet<InetSocketAddress>();
+    private int requestCount = 0;
+    private int activeCount = 0;
+    private int maxActiveCount = 0;
+
+    @Before
+    public void startServer() throws IOException {
+        serverExecutorService = Executors.newCachedThreadPool();
+
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", new TestHandler());
+        server.setExecutor(serverExecutorService);
+        server.start();
+    }
+
+    @After
+    public void stopServer() {
+        server.stop(0);
+        serverExecutorService.shutdownNow();
+    }
+
+    private GetQuery createQuery(String path) {
+        return new GetQuery("127.0.0.1", server.getAddress().getPort(), path, false);
+    }
+
+    @Test
+    public void testKeepAlive() throws QueryException {
+        QueryTransport transport = new QueryTransport();
+
+        for (int i = 0; i < 50; i++) {
+            // Error responses must not prevent the connection from being reused
+            GetQuery getQuery = createQuery((i % 5 == 0) ? "/missing" : "/items");
+            getQuery.setTransport(transport);
+
+            try {
+                Map<String, ?> value = (Map<String, ?>)getQuery.execute();
+                assertEquals(100, value.get("count"));
+            } catch (QueryException exception) {
+                assertEquals(Query.Status.NOT_FOUND, exception.getStatus());
+            }
+        }
+
+        assertEquals(50, requestCount);
+        assertEquals(1, remoteAddresses.size());
+    }
+
+    @Test
+    public void testCompression() throws QueryException {
+        GetQuery getQuery = createQuery("/items");
+
+        Map<String, ?> value = (Map<String, ?>)getQuery.execute();
+        assertEquals(100, value.get("count"));
+
+        // Progress reflects the bytes on the wire
+        assertEquals("gzip", getQuery.getResponseHeaders().get("Content-Encoding"));
+        assertTrue(getQuery.getBytesExpected() < RESPONSE.length());
+        assertEquals(getQuery.getBytesExpected(), getQuery.getBytesReceived());
+
+        QueryTransport transport = new QueryTransport();
+        transport.setCompressionEnabled(false);
+
+        getQuery = createQuery("/items");
+        getQuery.setTransport(transport);
+
+        value = (Map<String, ?>)getQuery.execute();
+        assertEquals(100, value.get("count"));
+        assertEquals((long)RESPONSE.length(), getQuery.getBytesReceived());
+    }
+
+    @Test
+    public void testMaxConnectionsPerHost() throws InterruptedException {
+        final QueryTransport transport = new QueryTransport();
+        transport.setMaxConnectionsPerHost(2);
+
+        final int queryCount = 12;
+        final CountDownLatch latch = new CountDownLatch(queryCount);
+        final int[] failureCount = new int[1];
+
+        TaskListener<Object> taskListener = new TaskListener<Object>() {
+            @Override
+            public void taskExecuted(Task<Object> task) {
+                latch.countDown();
+            }
+
+            @Override
+            public void executeFailed(Task<Object> task) {
+                synchronized (failureCount) {
+                    failureCount[0]++;
+                }
+
+                latch.countDown();
+            }
+        };
+
+        for (int i = 0; i < queryCount; i++) {
+            GetQuery getQuery = createQuery("/slow");
+            getQuery.setTransport(transport);
+            getQuery.execute(taskListener);
+        }
+
+        latch.await();
+
+        assertEquals(0, failureCount[0]);
+        assertEquals(queryCount, requestCount);
+        assertTrue(maxActiveCount <= 2);
+        assertTrue(remoteAddresses.size() <= 2);
+    }
+
+    @Test
+    public void throughputTest() throws QueryException, InterruptedException {
+        final int queryCount = 1000;
+
+        // Connection-per-query baseline
+        QueryTransport closingTransport = new QueryTransport() {
+            @Override
+            public java.net.HttpURLConnection openConnection(java.net.URL location,
+                java.net.Proxy proxy) throws IOException {
+                java.net.HttpURLConnection connection = super.openConnection(location, proxy);
+                connection.setRequestProperty("Connection", "close");
+                return connection;
+            }
+        };
+
+        QueryTransport transport = new QueryTransport();
+
+        // Warm up
+        runQueries(closingTransport, 200);
+        runQueries(transport, 200);
+
+        long t0 = System.nanoTime();
+        runQueries(closingTransport, queryCount);
+        long t1 = System.nanoTime();
+        runQueries(transport, queryCount);
+        long t2 = System.nanoTime();
+
+        System.out.println("GetQuery, new connection per query: "
+            + (t1 - t0) / 1000 / queryCount + "us per query, "
+            + queryCount * 1000000000L / (t1 - t0) + " queries/s");
+        System.out.println("GetQuery, pooled connections: "
+            + (t2 - t1) / 1000 / queryCount + "us per query, "
+            + queryCount * 1000000000L / (t2 - t1) + " queries/s");
+
+        // Asynchronous queries on the default (thread-reusing) executor
+        final CountDownLatch latch = new CountDownLatch(queryCount);
+        TaskListener<Object> taskListener = new TaskListener<Object>() {
+            @Override
+            public void taskExecuted(Task<Object> task) {
+                latch.countDown();
+            }
+
+            @Override
+            public void executeFailed(Task<Object> task) {
+                latch.countDown();
+            }
+        };
+
+        long t3 = System.nanoTime();
+        for (int i = 0; i < queryCount; i++) {
+            GetQuery getQuery = createQuery("/items");
+            getQuery.setTransport(transport);
+            getQuery.execute(taskListener);
+        }
+
+        latch.await();
+        long t4 = System.nanoTime();
+
+        System.out.println("GetQuery, asynchronous: "
+            + queryCount * 1000000000L / (t4 - t3) + " queries/s");
+    }
+
+    private void runQueries(QueryTransport transport, int count) throws QueryException {
+        for (int i = 0; i < count; i++) {
+            GetQuery getQuery = createQuery("/items");
+            getQuery.setTransport(transport);
+            getQuery.execute();
+        }
+    }
+}
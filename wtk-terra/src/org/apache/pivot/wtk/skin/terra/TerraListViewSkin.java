@@ -18,6 +18,7 @@ package org.apache.pivot.wtk.skin.terra;
 
 import org.apache.pivot.wtk.Platform;
 import org.apache.pivot.collections.ArrayList;
+import org.apache.pivot.collections.IntArrayList;
 import org.apache.pivot.collections.Dictionary;
 import org.apache.pivot.collections.List;
 import org.apache.pivot.collections.Sequence;
@@ -67,7 +68,7 @@ public class TerraListViewSkin extends ComponentSkin implements ListView.Skin,
     private int highlightIndex = -1;
     private int selectIndex = -1;
 
-    private ArrayList<Integer> itemBoundaries = null;
+    private IntArrayList itemBoundaries = null;
     private int fixedItemHeight;
 
     private boolean validateSelection = false;
@@ -220,7 +221,7 @@ public class TerraListViewSkin extends ComponentSkin implements ListView.Skin,
             }
 
             int n = listData.getLength();
-            itemBoundaries = new ArrayList<Integer>(n);
+            itemBoundaries = new IntArrayList(n);
 
             int itemY = 0;
             for (int i = 0; i < n; i++) {
@@ -244,7 +245,7 @@ public class TerraListViewSkin extends ComponentSkin implements ListView.Skin,
                 }
 
                 itemY += itemHeight;
-                itemBoundaries.add(itemY);
+                itemBoundaries.addInt(itemY);
             }
         } else {
             itemRenderer.render(null, -1, listView, false, false, false, false);
@@ -309,7 +310,7 @@ public class TerraListViewSkin extends ComponentSkin implements ListView.Skin,
 
                 if (itemEnd != -1) {
                     int clipBottom = clipBounds.y + clipBounds.height - 1;
-                    clipBottom = Math.min(clipBottom, itemBoundaries.get(itemEnd) - 1);
+                    clipBottom = Math.min(clipBottom, itemBoundaries.getInt(itemEnd) - 1);
                     itemEnd = getItemAt(clipBottom);
                 }
             } else {
@@ -407,7 +408,7 @@ public class TerraListViewSkin extends ComponentSkin implements ListView.Skin,
             if (y == 0) {
                 index = 0;
             } else {
-                index = ArrayList.binarySearch(itemBoundaries, y);
+                index = IntArrayList.binarySearch(itemBoundaries, y);
                 if (index < 0) {
                     index = -(index + 1);
                 }
@@ -448,7 +449,7 @@ public class TerraListViewSkin extends ComponentSkin implements ListView.Skin,
             if (index == 0) {
                 itemY = 0;
             } else {
-                itemY = itemBoundaries.get(index - 1);
+                itemY = itemBoundaries.getInt(index - 1);
             }
         } else {
             itemY = index * fixedItemHeight;
@@ -461,10 +462,10 @@ public class TerraListViewSkin extends ComponentSkin implements ListView.Skin,
         int itemHeight;
 
         if (variableItemHeight) {
-            itemHeight = itemBoundaries.get(index);
+            itemHeight = itemBoundaries.getInt(index);
 
             if (index > 0) {
-                itemHeight -= itemBoundaries.get(index - 1);
+                itemHeight -= itemBoundaries.getInt(index - 1);
             }
         } else {
             itemHeight = fixedItemHeight;
@@ -20,7 +20,7 @@ import org.apache.pivot.wtk.graphics.BasicStroke;
 import org.apache.pivot.wtk.graphics.Color;
 import org.apache.pivot.wtk.graphics.ColorFactory;
 
-import org.apache.pivot.collections.ArrayList;
+import org.apache.pivot.collections.IntArrayList;
 import org.apache.pivot.collections.Dictionary;
 import org.apache.pivot.collections.List;
 import org.apache.pivot.collections.Sequence;
@@ -118,7 +118,7 @@ public class TerraTableViewHeaderSkin extends ComponentSkin
     private Color pressedBevelColor;
     private Color disabledBevelColor;
 
-    private ArrayList<Integer> headerWidths = null;
+    private IntArrayList headerWidths = null;
 
     private int pressedHeaderIndex = -1;
     private int resizeHeaderIndex = -1;
@@ -216,7 +216,7 @@ public class TerraTableViewHeaderSkin extends ComponentSkin
         TableView tableView = tableViewHeader.getTableView();
 
         if (tableView != null) {
-            ArrayList<Integer> headerWidths = TerraTableViewSkin.getColumnWidths(tableView, width);
+            IntArrayList headerWidths = TerraTableViewSkin.getColumnWidths(tableView, width);
             int rowHeight = getPreferredHeight(width) - 1;
 
             TableView.ColumnSequence columns = tableView.getColumns();
@@ -225,7 +225,7 @@ public class TerraTableViewHeaderSkin extends ComponentSkin
                 TableView.Column column = columns.get(i);
                 TableView.HeaderDataRenderer headerDataRenderer = column.getHeaderDataRenderer();
                 headerDataRenderer.render(column.getHeaderData(), i, tableViewHeader, column.getName(), false);
-                baseline = Math.max(baseline, headerDataRenderer.getBaseline(headerWidths.get(i), rowHeight));
+                baseline = Math.max(baseline, headerDataRenderer.getBaseline(headerWidths.getInt(i), rowHeight));
             }
         }
 
@@ -285,7 +285,7 @@ public class TerraTableViewHeaderSkin extends ComponentSkin
             for (int columnIndex = 0, columnCount = columns.getLength();
                 columnIndex < columnCount; columnIndex++) {
                 TableView.Column column = columns.get(columnIndex);
-                int headerWidth = headerWidths.get(columnIndex);
+                int headerWidth = headerWidths.getInt(columnIndex);
 
                 // Paint the pressed bevel
                 if (columnIndex == pressedHeaderIndex) {
@@ -367,7 +367,7 @@ public class TerraTableViewHeaderSkin extends ComponentSkin
             int headerX = 0;
             while (i < n
                 && x > headerX) {
-                headerX += (headerWidths.get(i) + 1);
+                headerX += (headerWidths.getInt(i) + 1);
                 i++;
             }
 
@@ -394,10 +394,10 @@ public class TerraTableViewHeaderSkin extends ComponentSkin
 
             int cellX = 0;
             for (int i = 0; i < headerIndex; i++) {
-                cellX += (headerWidths.get(i) + 1);
+                cellX += (headerWidths.getInt(i) + 1);
             }
 
-            headerBounds = new Bounds(cellX, 0, headerWidths.get(headerIndex), getHeight() - 1);
+            headerBounds = new Bounds(cellX, 0, headerWidths.getInt(headerIndex), getHeight() - 1);
         }
 
         return headerBounds;
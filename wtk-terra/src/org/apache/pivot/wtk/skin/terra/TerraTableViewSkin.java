@@ -20,6 +20,7 @@ import org.apache.pivot.wtk.Platform;
 import org.apache.pivot.wtk.graphics.Color;
 
 import org.apache.pivot.collections.ArrayList;
+import org.apache.pivot.collections.IntArrayList;
 import org.apache.pivot.collections.Dictionary;
 import org.apache.pivot.collections.List;
 import org.apache.pivot.collections.Sequence;
@@ -77,8 +78,8 @@ public class TerraTableViewSkin extends ComponentSkin implements TableView.Skin,
     private boolean includeTrailingHorizontalGridLine;
     private boolean variableRowHeight;
 
-    private ArrayList<Integer> columnWidths = null;
-    private ArrayList<Integer> rowBoundaries = null;
+    private IntArrayList columnWidths = null;
+    private IntArrayList rowBoundaries = null;
     private int fixedRowHeight = -1;
     private int defaultWidthColumnCount = 0;
 
@@ -181,7 +182,7 @@ public class TerraTableViewSkin extends ComponentSkin implements TableView.Skin,
         int n = tableView.getTableData().getLength();
 
         if (variableRowHeight) {
-            ArrayList<Integer> columnWidths = getColumnWidths(tableView, width);
+            IntArrayList columnWidths = getColumnWidths(tableView, width);
 
             for (int i = 0; i < n; i++) {
                 preferredHeight += getVariableRowHeight(i, columnWidths);
@@ -215,7 +216,7 @@ public class TerraTableViewSkin extends ComponentSkin implements TableView.Skin,
         int baseline = -1;
 
         TableView.ColumnSequence columns = tableView.getColumns();
-        ArrayList<Integer> columnWidths = getColumnWidths(tableView, width);
+        IntArrayList columnWidths = getColumnWidths(tableView, width);
 
         if (variableRowHeight) {
             int rowHeight = getVariableRowHeight(0, columnWidths);
@@ -225,7 +226,7 @@ public class TerraTableViewSkin extends ComponentSkin implements TableView.Skin,
                 TableView.Column column = columns.get(i);
                 TableView.CellRenderer cellRenderer = column.getCellRenderer();
                 cellRenderer.render(rowData, 0, i, tableView, column.getName(), false, false, false);
-                baseline = Math.max(baseline, cellRenderer.getBaseline(columnWidths.get(i), rowHeight));
+                baseline = Math.max(baseline, cellRenderer.getBaseline(columnWidths.getInt(i), rowHeight));
             }
 
         } else {
@@ -235,7 +236,7 @@ public class TerraTableViewSkin extends ComponentSkin implements TableView.Skin,
                 TableView.Column column = columns.get(i);
                 TableView.CellRenderer cellRenderer = column.getCellRenderer();
                 cellRenderer.render(null, -1, i, tableView, column.getName(), false, false, false);
-                baseline = Math.max(baseline, cellRenderer.getBaseline(columnWidths.get(i), rowHeight));
+                baseline = Math.max(baseline, cellRenderer.getBaseline(columnWidths.getInt(i), rowHeight));
             }
         }
 
@@ -254,7 +255,7 @@ public class TerraTableViewSkin extends ComponentSkin implements TableView.Skin,
             List<Object> tableData = (List<Object>)tableView.getTableData();
 
             int n = tableData.getLength();
-            rowBoundaries = new ArrayList<Integer>(n);
+            rowBoundaries = new IntArrayList(n);
 
             int rowY = 0;
             for (int i = 0; i < n; i++) {
@@ -267,7 +268,7 @@ public class TerraTableViewSkin extends ComponentSkin implements TableView.Skin,
 
                     TableView.CellRenderer cellRenderer = column.getCellRenderer();
 
-                    int columnWidth = columnWidths.get(columnIndex);
+                    int columnWidth = columnWidths.getInt(columnIndex);
 
                     cellRenderer.render(rowData, i, columnIndex, tableView, column.getName(),
                         false, false, false);
@@ -275,7 +276,7 @@ public class TerraTableViewSkin extends ComponentSkin implements TableView.Skin,
                 }
 
                 rowY += rowHeight;
-                rowBoundaries.add(rowY);
+                rowBoundaries.addInt(rowY);
                 rowY++;
             }
         } else {
@@ -353,7 +354,7 @@ public class TerraTableViewSkin extends ComponentSkin implements TableView.Skin,
 
                 if (rowEnd != -1) {
                     int clipBottom = clipBounds.y + clipBounds.height - 1;
-                    clipBottom = Math.min(clipBottom, rowBoundaries.get(rowEnd) - 1);
+                    clipBottom = Math.min(clipBottom, rowBoundaries.getInt(rowEnd) - 1);
                     rowEnd = getRowAt(clipBottom);
                 }
             } else {
@@ -386,7 +387,7 @@ public class TerraTableViewSkin extends ComponentSkin implements TableView.Skin,
             for (int columnIndex = 0, columnCount = columns.getLength();
                 columnIndex < columnCount; columnIndex++) {
                 TableView.Column column = columns.get(columnIndex);
-                int columnWidth = columnWidths.get(columnIndex);
+                int columnWidth = columnWidths.getInt(columnIndex);
 
                 String columnName = column.getName();
                 SortDirection sortDirection = tableView.getSort().get(columnName);
@@ -433,7 +434,7 @@ public class TerraTableViewSkin extends ComponentSkin implements TableView.Skin,
 
                 TableView.CellRenderer cellRenderer = column.getCellRenderer();
 
-                int columnWidth = columnWidths.get(columnIndex);
+                int columnWidth = columnWidths.getInt(columnIndex);
 
                 Graphics2D rendererGraphics = (Graphics2D)graphics.create(columnX, rowY,
                     columnWidth, rowHeight);
@@ -457,7 +458,7 @@ public class TerraTableViewSkin extends ComponentSkin implements TableView.Skin,
 
             for (int columnIndex = 0, columnCount = columns.getLength();
                 columnIndex < columnCount; columnIndex++) {
-                columnX += columnWidths.get(columnIndex);
+                columnX += columnWidths.getInt(columnIndex);
 
                 if (columnIndex < columnCount - 1
                     || includeTrailingVerticalGridLine) {
@@ -491,7 +492,7 @@ public class TerraTableViewSkin extends ComponentSkin implements TableView.Skin,
                 for (int columnIndex = 0, columnCount = columns.getLength();
                     columnIndex < columnCount; columnIndex++) {
                     TableView.Column column = columns.get(columnIndex);
-                    int columnWidth = columnWidths.get(columnIndex);
+                    int columnWidth = columnWidths.getInt(columnIndex);
 
                     String columnName = column.getName();
                     SortDirection sortDirection = tableView.getSort().get(columnName);
@@ -519,7 +520,7 @@ public class TerraTableViewSkin extends ComponentSkin implements TableView.Skin,
             if (rowIndex == 0) {
                 rowY = 0;
             } else {
-                rowY = rowBoundaries.get(rowIndex - 1);
+                rowY = rowBoundaries.getInt(rowIndex - 1);
             }
         } else {
             rowY = rowIndex * (fixedRowHeight + 1);
@@ -530,10 +531,10 @@ public class TerraTableViewSkin extends ComponentSkin implements TableView.Skin,
     private int getRowHeight(int rowIndex) {
         int rowHeight;
         if (variableRowHeight) {
-            rowHeight = rowBoundaries.get(rowIndex);
+            rowHeight = rowBoundaries.getInt(rowIndex);
 
             if (rowIndex > 0) {
-                rowHeight -= rowBoundaries.get(rowIndex - 1);
+                rowHeight -= rowBoundaries.getInt(rowIndex - 1);
             }
         } else {
             rowHeight = fixedRowHeight;
@@ -543,7 +544,7 @@ public class TerraTableViewSkin extends ComponentSkin implements TableView.Skin,
     }
 
     @SuppressWarnings("unchecked")
-    protected int getVariableRowHeight(int rowIndex, ArrayList<Integer> columnWidths) {
+    protected int getVariableRowHeight(int rowIndex, IntArrayList columnWidths) {
         TableView tableView = (TableView)getComponent();
         List<Object> tableData = (List<Object>)tableView.getTableData();
 
@@ -556,7 +557,7 @@ public class TerraTableViewSkin extends ComponentSkin implements TableView.Skin,
             TableView.CellRenderer cellRenderer = column.getCellRenderer();
             cellRenderer.render(rowData, rowIndex, i, tableView, column.getName(), false, false, false);
 
-            rowHeight = Math.max(rowHeight, cellRenderer.getPreferredHeight(columnWidths.get(i)));
+            rowHeight = Math.max(rowHeight, cellRenderer.getPreferredHeight(columnWidths.getInt(i)));
         }
 
         return rowHeight;
@@ -577,7 +578,7 @@ public class TerraTableViewSkin extends ComponentSkin implements TableView.Skin,
             if (y == 0) {
                 rowIndex = 0;
             } else {
-                rowIndex = ArrayList.binarySearch(rowBoundaries, y);
+                rowIndex = IntArrayList.binarySearch(rowBoundaries, y);
                 if (rowIndex < 0) {
                     rowIndex = -(rowIndex + 1);
                 }
@@ -609,7 +610,7 @@ public class TerraTableViewSkin extends ComponentSkin implements TableView.Skin,
         int columnX = 0;
         while (i < n
             && x > columnX) {
-            columnX += (columnWidths.get(i) + 1);
+            columnX += (columnWidths.getInt(i) + 1);
             i++;
         }
 
@@ -629,10 +630,10 @@ public class TerraTableViewSkin extends ComponentSkin implements TableView.Skin,
     public Bounds getColumnBounds(int columnIndex) {
         int columnX = 0;
         for (int i = 0; i < columnIndex; i++) {
-            columnX += (columnWidths.get(i) + 1);
+            columnX += (columnWidths.getInt(i) + 1);
         }
 
-        return new Bounds(columnX, 0, columnWidths.get(columnIndex), getHeight());
+        return new Bounds(columnX, 0, columnWidths.getInt(columnIndex), getHeight());
     }
 
     @Override
@@ -648,28 +649,28 @@ public class TerraTableViewSkin extends ComponentSkin implements TableView.Skin,
 
         int cellX = 0;
         for (int i = 0; i < columnIndex; i++) {
-            cellX += (columnWidths.get(i) + 1);
+            cellX += (columnWidths.getInt(i) + 1);
         }
 
         int rowHeight = getRowHeight(rowIndex);
 
-        return new Bounds(cellX, rowIndex * (rowHeight + 1), columnWidths.get(columnIndex), rowHeight);
+        return new Bounds(cellX, rowIndex * (rowHeight + 1), columnWidths.getInt(columnIndex), rowHeight);
     }
 
-    public static ArrayList<Integer> getColumnWidths(TableView tableView, int width) {
+    public static IntArrayList getColumnWidths(TableView tableView, int width) {
         int fixedWidth = 0;
         int relativeWidth = 0;
 
         TableView.ColumnSequence columns = tableView.getColumns();
         int n = columns.getLength();
 
-        ArrayList<Integer> columnWidths = new ArrayList<Integer>(n);
+        IntArrayList columnWidths = new IntArrayList(n);
 
         for (int i = 0; i < n; i++) {
             TableView.Column column = columns.get(i);
 
             if (column.isRelative()) {
-                columnWidths.add(0);
+                columnWidths.addInt(0);
                 relativeWidth += column.getWidth();
             } else {
                 int columnWidth = column.getWidth();
@@ -690,7 +691,7 @@ public class TerraTableViewSkin extends ComponentSkin implements TableView.Skin,
                 }
 
                 columnWidth = Math.min(Math.max(columnWidth, column.getMinimumWidth()), column.getMaximumWidth());
-                columnWidths.add(columnWidth);
+                columnWidths.addInt(columnWidth);
                 fixedWidth += columnWidth;
             }
         }
@@ -704,7 +705,7 @@ public class TerraTableViewSkin extends ComponentSkin implements TableView.Skin,
             if (column.isRelative()) {
                 int columnWidth = (int)Math.round((double)(column.getWidth()
                     * variableWidth) / (double)relativeWidth);
-                columnWidths.update(i, Math.min(Math.max(columnWidth, column.getMinimumWidth()),
+                columnWidths.updateInt(i, Math.min(Math.max(columnWidth, column.getMinimumWidth()),
                     column.getMaximumWidth()));
             }
         }
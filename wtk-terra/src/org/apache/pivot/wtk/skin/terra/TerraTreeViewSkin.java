@@ -20,6 +20,7 @@ import org.apache.pivot.wtk.Platform;
 import org.apache.pivot.wtk.graphics.Color;
 import java.util.Iterator;
 import java.util.NoSuchElementException;
+import java.util.Random;
 
 import org.apache.pivot.collections.ArrayList;
 import org.apache.pivot.collections.Dictionary;
@@ -85,6 +86,7 @@ public class TerraTreeViewSkin extends ComponentSkin implements TreeView.Skin,
 
         private Path path = null;
         private NodeInfo previous = null;
+        private NodeInfo current = null;
 
         public VisibleNodeIterator() {
             this(0, visibleNodes.getLength() - 1);
@@ -127,7 +129,9 @@ public class TerraTreeViewSkin extends ComponentSkin implements TreeView.Skin,
                 throw new NoSuchElementException();
             }
 
-            NodeInfo next = visibleNodes.get(index++);
+            NodeInfo next = (current == null) ? visibleNodes.get(index) : visibleNodes.next(current);
+            index++;
+            current = next;
 
             if (path == null) {
                 // First iteration
@@ -213,6 +217,14 @@ public class TerraTreeViewSkin extends ComponentSkin implements TreeView.Skin,
         // field for all nodes in one common method. See #clearField(byte)
         byte fields = 0;
 
+        // Links in the visible node list; see VisibleNodeList. A node that is
+        // not visible has a list size of zero.
+        NodeInfo listParent = null;
+        NodeInfo listLeft = null;
+        NodeInfo listRight = null;
+        int listSize = 0;
+        int listPriority = 0;
+
         public static final byte HIGHLIGHTED_MASK = 1 << 0;
         public static final byte SELECTED_MASK = 1 << 1;
         public static final byte DISABLED_MASK = 1 << 2;
@@ -416,8 +428,280 @@ public class TerraTreeViewSkin extends ComponentSkin implements TreeView.Skin,
         }
     }
 
+    /**
+     * The flat list of visible nodes, indexed by row. The list is stored as
+     * a treap (a binary tree that is ordered by row, and balanced by random
+     * heap priorities) whose links and subtree sizes are kept in the node
+     * info objects themselves, so that finding the row of a node, finding
+     * the node at a row, and inserting or removing a range of rows take
+     * logarithmic time, plus time linear in the length of the range.
+     */
+    private static final class VisibleNodeList {
+        private NodeInfo root = null;
+        private Random random = new Random();
+
+        // The results of split()
+        private NodeInfo splitLeft = null;
+        private NodeInfo splitRight = null;
+
+        public int getLength() {
+            return getSize(root);
+        }
+
+        public NodeInfo get(int index) {
+            if (index < 0
+                || index >= getLength()) {
+                throw new IndexOutOfBoundsException();
+            }
+
+            NodeInfo nodeInfo = root;
+
+            int leftSize = getSize(nodeInfo.listLeft);
+            while (index != leftSize) {
+                if (index < leftSize) {
+                    nodeInfo = nodeInfo.listLeft;
+                } else {
+                    index -= leftSize + 1;
+                    nodeInfo = nodeInfo.listRight;
+                }
+
+                leftSize = getSize(nodeInfo.listLeft);
+            }
+
+            return nodeInfo;
+        }
+
+        public int indexOf(NodeInfo nodeInfo) {
+            if (nodeInfo.listSize == 0) {
+                return -1;
+            }
+
+            int index = getSize(nodeInfo.listLeft);
+
+            while (nodeInfo.listParent != null) {
+                NodeInfo parent = nodeInfo.listParent;
+                if (nodeInfo == parent.listRight) {
+                    index += getSize(parent.listLeft) + 1;
+                }
+
+                nodeInfo = parent;
+            }
+
+            return (nodeInfo == root) ? index : -1;
+        }
+
+        /**
+         * Returns the node in the row after that of a visible node, or
+         * <tt>null</tt> if the node is in the last row.
+         */
+        public NodeInfo next(NodeInfo nodeInfo) {
+            NodeInfo next;
+
+            if (nodeInfo.listRight != null) {
+                next = nodeInfo.listRight;
+                while (next.listLeft != null) {
+                    next = next.listLeft;
+                }
+            } else {
+                while (nodeInfo.listParent != null
+                    && nodeInfo == nodeInfo.listParent.listRight) {
+                    nodeInfo = nodeInfo.listParent;
+                }
+
+                next = nodeInfo.listParent;
+            }
+
+            return next;
+        }
+
+        public void insert(NodeInfo nodeInfo, int index) {
+            ArrayList<NodeInfo> nodes = new ArrayList<NodeInfo>(1);
+            nodes.add(nodeInfo);
+
+            insert(nodes, index);
+        }
+
+        /**
+         * Inserts a range of nodes, which must not already be visible.
+         */
+        public void insert(Sequence<NodeInfo> nodes, int index) {
+            if (index < 0
+                || index > getLength()) {
+                throw new IndexOutOfBoundsException();
+            }
+
+            NodeInfo range = build(nodes);
+
+            split(root, index);
+            NodeInfo right = splitRight;
+            setRoot(merge(merge(splitLeft, range), right));
+        }
+
+        public void remove(int index, int count) {
+            if (index < 0
+                || count < 0
+                || index + count > getLength()) {
+                throw new IndexOutOfBoundsException();
+            }
+
+            split(root, index);
+            NodeInfo left = splitLeft;
+            split(splitRight, count);
+            NodeInfo range = splitLeft;
+            setRoot(merge(left, splitRight));
+
+            detach(range);
+        }
+
+        public void clear() {
+            detach(root);
+            root = null;
+        }
+
+        private void setRoot(NodeInfo root) {
+            this.root = root;
+
+            if (root != null) {
+                root.listParent = null;
+            }
+        }
+
+        /**
+         * Builds a treap from a range of nodes in linear time, by adding each
+         * node to the right spine of the treap.
+         */
+        private NodeInfo build(Sequence<NodeInfo> nodes) {
+            NodeInfo last = null;
+
+            for (int i = 0, n = nodes.getLength(); i < n; i++) {
+                NodeInfo nodeInfo = nodes.get(i);
+
+                assert(nodeInfo.listSize == 0) : "Node is already visible";
+
+                nodeInfo.listPriority = random.nextInt();
+                nodeInfo.listRight = null;
+                nodeInfo.listSize = 1;
+
+                // Nodes of lower priority on the spine become the new node's
+                // left subtree, which is then complete
+                NodeInfo child = null;
+                NodeInfo parent = last;
+                while (parent != null
+                    && parent.listPriority < nodeInfo.listPriority) {
+                    update(parent);
+                    child = parent;
+                    parent = parent.listParent;
+                }
+
+                setLeft(nodeInfo, child);
+                nodeInfo.listParent = parent;
+                if (parent != null) {
+                    parent.listRight = nodeInfo;
+                }
+
+                last = nodeInfo;
+            }
+
+            NodeInfo range = null;
+            for (NodeInfo nodeInfo = last; nodeInfo != null; nodeInfo = nodeInfo.listParent) {
+                update(nodeInfo);
+                range = nodeInfo;
+            }
+
+            return range;
+        }
+
+        /**
+         * Splits a treap into its first <tt>count</tt> nodes and the rest,
+         * which are returned in <tt>splitLeft</tt> and <tt>splitRight</tt>.
+         */
+        private void split(NodeInfo nodeInfo, int count) {
+            if (nodeInfo == null) {
+                splitLeft = null;
+                splitRight = null;
+            } else {
+                nodeInfo.listParent = null;
+
+                int leftSize = getSize(nodeInfo.listLeft);
+                if (count <= leftSize) {
+                    split(nodeInfo.listLeft, count);
+                    setLeft(nodeInfo, splitRight);
+                    update(nodeInfo);
+                    splitRight = nodeInfo;
+                } else {
+                    split(nodeInfo.listRight, count - leftSize - 1);
+                    setRight(nodeInfo, splitLeft);
+                    update(nodeInfo);
+                    splitLeft = nodeInfo;
+                }
+            }
+        }
+
+        /**
+         * Joins two treaps, all of whose nodes in <tt>left</tt> precede those
+         * in <tt>right</tt>.
+         */
+        private static NodeInfo merge(NodeInfo left, NodeInfo right) {
+            NodeInfo nodeInfo;
+
+            if (left == null) {
+                nodeInfo = right;
+            } else if (right == null) {
+                nodeInfo = left;
+            } else if (left.listPriority > right.listPriority) {
+                setRight(left, merge(left.listRight, right));
+                update(left);
+                nodeInfo = left;
+            } else {
+                setLeft(right, merge(left, right.listLeft));
+                update(right);
+                nodeInfo = right;
+            }
+
+            return nodeInfo;
+        }
+
+        /**
+         * Clears the links of the nodes in a treap that has been removed
+         * from the list.
+         */
+        private static void detach(NodeInfo nodeInfo) {
+            if (nodeInfo != null) {
+                detach(nodeInfo.listLeft);
+                detach(nodeInfo.listRight);
+
+                nodeInfo.listParent = null;
+                nodeInfo.listLeft = null;
+                nodeInfo.listRight = null;
+                nodeInfo.listSize = 0;
+            }
+        }
+
+        private static void setLeft(NodeInfo nodeInfo, NodeInfo left) {
+            nodeInfo.listLeft = left;
+            if (left != null) {
+                left.listParent = nodeInfo;
+            }
+        }
+
+        private static void setRight(NodeInfo nodeInfo, NodeInfo right) {
+            nodeInfo.listRight = right;
+            if (right != null) {
+                right.listParent = nodeInfo;
+            }
+        }
+
+        private static void update(NodeInfo nodeInfo) {
+            nodeInfo.listSize = getSize(nodeInfo.listLeft) + getSize(nodeInfo.listRight) + 1;
+        }
+
+        private static int getSize(NodeInfo nodeInfo) {
+            return (nodeInfo == null) ? 0 : nodeInfo.listSize;
+        }
+    }
+
     private BranchInfo rootBranchInfo = null;
-    private List<NodeInfo> visibleNodes = new ArrayList<NodeInfo>();
+    private VisibleNodeList visibleNodes = new VisibleNodeList();
 
     private NodeInfo highlightedNode = null;
     private Path selectPath = null;
@@ -1345,20 +1629,21 @@ public class TerraTreeViewSkin extends ComponentSkin implements TreeView.Skin,
         }
 
         if (insertIndex >= 0) {
-            Sequence<NodeInfo> nodes = new ArrayList<NodeInfo>();
+            ArrayList<NodeInfo> nodes = new ArrayList<NodeInfo>();
 
             // The parent branch's children are the baseline nodes to make
-            // visible
+            // visible; they are pushed onto a stack in reverse order, so that
+            // nodes are popped in the order in which they are displayed
+            ArrayList<NodeInfo> stack = new ArrayList<NodeInfo>();
+
             parentBranchInfo.loadChildren();
-            for (int i = 0, n = parentBranchInfo.children.getLength(); i < n; i++) {
-                nodes.add(parentBranchInfo.children.get(i));
+            for (int i = parentBranchInfo.children.getLength() - 1; i >= 0; i--) {
+                stack.add(parentBranchInfo.children.get(i));
             }
 
-            while (nodes.getLength() > 0) {
-                NodeInfo nodeInfo = nodes.get(0);
-                nodes.remove(0, 1);
-
-                visibleNodes.insert(nodeInfo, insertIndex++);
+            while (stack.getLength() > 0) {
+                NodeInfo nodeInfo = stack.remove(stack.getLength() - 1, 1).get(0);
+                nodes.add(nodeInfo);
 
                 // If we encounter an expanded branch, we add that branch's
                 // children to our list of nodes that are to become visible
@@ -1367,13 +1652,15 @@ public class TerraTreeViewSkin extends ComponentSkin implements TreeView.Skin,
 
                     if (branchInfo.isExpanded()) {
                         branchInfo.loadChildren();
-                        for (int i = 0, n = branchInfo.children.getLength(); i < n; i++) {
-                            nodes.insert(branchInfo.children.get(i), i);
+                        for (int i = branchInfo.children.getLength() - 1; i >= 0; i--) {
+                            stack.add(branchInfo.children.get(i));
                         }
                     }
                 }
             }
 
+            visibleNodes.insert(nodes, insertIndex);
+
             invalidateComponent();
         }
     }
@@ -1404,7 +1691,11 @@ public class TerraTreeViewSkin extends ComponentSkin implements TreeView.Skin,
 
             int insertIndex = branchIndex + index + 1;
 
-            if (index > 0) {
+            if (index < parentBranchInfo.children.getLength() - 1) {
+                // Insert before our older sibling, which is visible since the
+                // parent is expanded
+                insertIndex = visibleNodes.indexOf(parentBranchInfo.children.get(index + 1));
+            } else if (index > 0) {
                 // Siblings of the node that lie before it may be expanded
                 // branches, thus adding their own children to the
                 // visible nodes list and pushing down our insert index
@@ -1416,9 +1707,11 @@ public class TerraTreeViewSkin extends ComponentSkin implements TreeView.Skin,
                 // Continue looking as long as the node at our insert index
                 // has a greater depth than we do, which means that it's a
                 // descendant of our younger sibling
-                for (int n = visibleNodes.getLength(), nodeDepth = youngerSibling.depth;
-                    insertIndex < n && visibleNodes.get(insertIndex).depth > nodeDepth;
-                    insertIndex++) {
+                int nodeDepth = youngerSibling.depth;
+                for (NodeInfo next = visibleNodes.next(youngerSibling);
+                    next != null && next.depth > nodeDepth;
+                    next = visibleNodes.next(next)) {
+                    insertIndex++;
                 }
             }
 
@@ -1461,18 +1754,28 @@ public class TerraTreeViewSkin extends ComponentSkin implements TreeView.Skin,
             int rangeStart = visibleNodes.indexOf(first);
 
             if (rangeStart >= 0) {
-                int rangeEnd = visibleNodes.indexOf(last) + 1;
-
-                assert(rangeEnd > rangeStart) : "Invalid visible node structure";
+                int rangeEnd;
 
-                // Continue looking as long as the node at our endpoint has a
-                // greater depth than the last child node, which means that
-                // it's a descendant of the last child node
-                for (int n = visibleNodes.getLength(), nodeDepth = last.depth;
-                    rangeEnd < n && visibleNodes.get(rangeEnd).depth > nodeDepth;
-                    rangeEnd++) {
+                if (index + count < parentBranchInfo.children.getLength()) {
+                    // The range ends at the next sibling of the last child
+                    // node, which is visible since the first child node is
+                    rangeEnd = visibleNodes.indexOf(parentBranchInfo.children.get(index + count));
+                } else {
+                    rangeEnd = visibleNodes.indexOf(last) + 1;
+
+                    // Continue looking as long as the node at our endpoint has a
+                    // greater depth than the last child node, which means that
+                    // it's a descendant of the last child node
+                    int nodeDepth = last.depth;
+                    for (NodeInfo next = visibleNodes.next(last);
+                        next != null && next.depth > nodeDepth;
+                        next = visibleNodes.next(next)) {
+                        rangeEnd++;
+                    }
                 }
 
+                assert(rangeEnd > rangeStart) : "Invalid visible node structure";
+
                 visibleNodes.remove(rangeStart, rangeEnd - rangeStart);
 
                 invalidateComponent();
@@ -0,0 +1,197 @@
+package org.apache.pivot.ui.awt;
+
+import java.awt.Rectangle;
+
+/**
+ * Set of rectangles that need to be repainted. Unlike the single bounding
+ * rectangle that AWT coalesces repaint requests into, overlapping or nearby
+ * rectangles are merged only when the merge does not add much area, so that
+ * distant updates (e.g. a caret and a clock) are painted separately.
+ */
+final class DirtyRegion
+{
+    private Rectangle[] rectangles = new Rectangle[MAXIMUM_LENGTH];
+    private int length = 0;
+
+    /**
+     * The maximum number of rectangles kept before additions are merged into
+     * the nearest existing rectangle.
+     */
+    public static final int MAXIMUM_LENGTH = 16;
+
+    public DirtyRegion()
+    {
+        for( int i = 0; i < MAXIMUM_LENGTH; i++ )
+        {
+            rectangles[i] = new Rectangle();
+        }
+    }
+
+    /**
+     * Adds a rectangle to the region.
+     */
+    public void add( int x, int y, int width, int height )
+    {
+        if( width <= 0
+            || height <= 0 )
+        {
+            return;
+        }
+
+        // Merge with any rectangle that the union does not enlarge too much;
+        // the union may in turn overlap other rectangles, so repeat until
+        // no merge takes place
+        boolean merged;
+        do
+        {
+            merged = false;
+
+            for( int i = 0; i < length; i++ )
+            {
+                Rectangle rectangle = rectangles[i];
+
+                if( rectangle.x <= x
+                    && rectangle.y <= y
+                    && rectangle.x + rectangle.width >= x + width
+                    && rectangle.y + rectangle.height >= y + height )
+                {
+                    // Already covered
+                    return;
+                }
+
+                if( isMergeable( rectangle, x, y, width, height ) )
+                {
+                    int x2 = Math.max( rectangle.x + rectangle.width, x + width );
+                    int y2 = Math.max( rectangle.y + rectangle.height, y + height );
+                    x = Math.min( rectangle.x, x );
+                    y = Math.min( rectangle.y, y );
+                    width = x2 - x;
+                    height = y2 - y;
+
+                    remove( i );
+                    merged = true;
+                    break;
+                }
+            }
+        }
+        while( merged );
+
+        if( length == MAXIMUM_LENGTH )
+        {
+            // Merge into the rectangle whose area grows the least
+            int index = 0;
+            long minimumGrowth = Long.MAX_VALUE;
+
+            for( int i = 0; i < length; i++ )
+            {
+                Rectangle rectangle = rectangles[i];
+                long growth = getUnionArea( rectangle, x, y, width, height )
+                    - getArea( rectangle.width, rectangle.height );
+
+                if( growth < minimumGrowth )
+                {
+                    index = i;
+                    minimumGrowth = growth;
+                }
+            }
+
+            Rectangle rectangle = rectangles[index];
+            int x2 = Math.max( rectangle.x + rectangle.width, x + width );
+            int y2 = Math.max( rectangle.y + rectangle.height, y + height );
+            x = Math.min( rectangle.x, x );
+            y = Math.min( rectangle.y, y );
+
+            remove( index );
+            add( x, y, x2 - x, y2 - y );
+        }
+        else
+        {
+            rectangles[length++].setBounds( x, y, width, height );
+        }
+    }
+
+    /**
+     * Adds the entire area of a component to the region.
+     */
+    public void addAll( int width, int height )
+    {
+        clear();
+        add( 0, 0, width, height );
+    }
+
+    /**
+     * Returns the number of rectangles in the region.
+     */
+    public int getLength()
+    {
+        return length;
+    }
+
+    /**
+     * Returns a rectangle in the region. The returned rectangle is owned by
+     * the region and must not be modified or retained.
+     */
+    public Rectangle get( int index )
+    {
+        if( index < 0
+            || index >= length )
+        {
+            throw new IndexOutOfBoundsException();
+        }
+
+        return rectangles[index];
+    }
+
+    public boolean isEmpty()
+    {
+        return ( length == 0 );
+    }
+
+    public void clear()
+    {
+        length = 0;
+    }
+
+    private void remove( int index )
+    {
+        Rectangle rectangle = rectangles[index];
+
+        length--;
+        rectangles[index] = rectangles[length];
+        rectangles[length] = rectangle;
+    }
+
+    private static boolean isMergeable( Rectangle rectangle, int x, int y, int width, int height )
+    {
+        // Merge when the union covers at most 25% more than the two
+        // rectangles do separately
+        long area = getArea( rectangle.width, rectangle.height ) + getArea( width, height );
+
+        int ix = Math.max( rectangle.x, x );
+        int iy = Math.max( rectangle.y, y );
+        int iwidth = Math.min( rectangle.x + rectangle.width, x + width ) - ix;
+        int iheight = Math.min( rectangle.y + rectangle.height, y + height ) - iy;
+        if( iwidth > 0
+            && iheight > 0 )
+        {
+            area -= getArea( iwidth, iheight );
+        }
+
+        return ( getUnionArea( rectangle, x, y, width, height ) <= area + area / 4 );
+    }
+
+    private static long getUnionArea( Rectangle rectangle, int x, int y, int width, int height )
+    {
+        int x1 = Math.min( rectangle.x, x );
+        int y1 = Math.min( rectangle.y, y );
+        int x2 = Math.max( rectangle.x + rectangle.width, x + width );
+        int y2 = Math.max( rectangle.y + rectangle.height, y + height );
+
+        return getArea( x2 - x1, y2 - y1 );
+    }
+
+    private static long getArea( int width, int height )
+    {
+        return (long) width * height;
+    }
+}
@@ -4,6 +4,7 @@ import java.awt.AWTEvent;
 import java.awt.Graphics;
 import java.awt.Graphics2D;
 import java.awt.GraphicsConfiguration;
+import java.awt.GraphicsEnvironment;
 import java.awt.Rectangle;
 import java.awt.RenderingHints;
 import java.awt.Transparency;
@@ -79,6 +80,15 @@ public class DisplayHost extends java.awt.Component
     private boolean debugPaint = false;
     private VolatileImage volatileImage = null;
     private GraphicsConfiguration volatileImageGC = null;
+    private BufferedImage bufferedImage = null;
+
+    // The offscreen buffer whose contents are current, other than the dirty
+    // region, or null if neither buffer is
+    private java.awt.Image backBuffer = null;
+    private DirtyRegion dirtyRegion = new DirtyRegion();
+    private DirtyRegion paintRegion = new DirtyRegion();
+
+    private transient JavaAwtGraphics displayGraphics = null;
 
     private Random random = null;
 
@@ -305,7 +315,9 @@ public class DisplayHost extends java.awt.Component
 
         try
         {
-            disableVolatileBuffer = Boolean.parseBoolean( System.getProperty( "org.apache.pivot.wtk.disablevolatilebuffer" ) );
+            // Volatile images are only useful for painting to a screen
+            disableVolatileBuffer = GraphicsEnvironment.isHeadless()
+                || Boolean.parseBoolean( System.getProperty( "org.apache.pivot.wtk.disablevolatilebuffer" ) );
         }
         catch( SecurityException ex )
         {
@@ -365,8 +377,11 @@ public class DisplayHost extends java.awt.Component
             // No-op
         }
 
-        // Add native drop support
-        new java.awt.dnd.DropTarget( this, dropTargetListener );
+        // Add native drop support (not available without a screen)
+        if( !GraphicsEnvironment.isHeadless() )
+        {
+            new java.awt.dnd.DropTarget( this, dropTargetListener );
+        }
 
         setFocusTraversalKeysEnabled( false );
     }
@@ -592,6 +607,27 @@ public class DisplayHost extends java.awt.Component
 
     @Override
     public void repaint( int x, int y, int width, int height )
+    {
+        if( scale == 1 )
+        {
+            repaintArea( x, y, width, height, true );
+        }
+        else
+        {
+            repaintArea( (int) Math.floor( x * scale ), (int) Math.floor( y * scale ),
+                         (int) Math.ceil( width * scale ) + 1, (int) Math.ceil( height * scale ) + 1, true );
+        }
+    }
+
+    /**
+     * Schedules a paint of an area of the display host.
+     *
+     * @param x, y, width, height The area to paint, in device coordinates.
+     * @param dirty <tt>true</tt> if the area must be repainted in the
+     *        offscreen buffer; <tt>false</tt> if it only needs to be copied
+     *        from the buffer to the screen.
+     */
+    private void repaintArea( int x, int y, int width, int height, boolean dirty )
     {
         // Ensure that the repaint call is properly bounded (some
         // implementations of AWT do not properly clip the repaint call
@@ -612,17 +648,70 @@ public class DisplayHost extends java.awt.Component
         if( width > 0
             && height > 0 )
         {
-            if( scale == 1 )
+            if( dirty )
             {
-                super.repaint( x, y, width, height );
+                dirtyRegion.add( x, y, width, height );
             }
-            else
+
+            super.repaint( x, y, width, height );
+            paintPending = true;
+        }
+    }
+
+    /**
+     * Returns whether {@link #copyArea(int, int, int, int, int, int)} can
+     * move areas of the display without repainting them.
+     */
+    public boolean canCopyArea()
+    {
+        // Areas can only be moved by whole device pixels
+        return ( backBuffer != null
+                 && scale == Math.floor( scale ) );
+    }
+
+    /**
+     * Moves an area of the display within the offscreen buffer, so that only
+     * the area it uncovers needs to be repainted (e.g. when a viewport
+     * scrolls). The caller is responsible for repainting the uncovered area.
+     * If the area can't be moved, the destination area is repainted instead.
+     *
+     * @param x, y, width, height The area to move, in display coordinates.
+     * @param dx, dy The distance to move the area.
+     */
+    public void copyArea( int x, int y, int width, int height, int dx, int dy )
+    {
+        if( canCopyArea()
+            && backBuffer == volatileImage
+            && volatileImage.validate( volatileImageGC ) != VolatileImage.IMAGE_OK )
+        {
+            backBuffer = null;
+        }
+
+        if( canCopyArea() )
+        {
+            // Bring the buffer up to date before moving its contents
+            updateBackBuffer( backBuffer );
+
+            int deviceScale = (int) scale;
+            Graphics2D backBufferGraphics = (Graphics2D) backBuffer.getGraphics();
+
+            try
+            {
+                backBufferGraphics.copyArea( x * deviceScale, y * deviceScale,
+                                             width * deviceScale, height * deviceScale,
+                                             dx * deviceScale, dy * deviceScale );
+            }
+            finally
             {
-                super.repaint( (int) Math.floor( x * scale ), (int) Math.floor( y * scale ),
-                               (int) Math.ceil( width * scale ) + 1, (int) Math.ceil( height * scale ) + 1 );
+                backBufferGraphics.dispose();
             }
 
-            paintPending = true;
+            repaintArea( ( x + dx ) * deviceScale, ( y + dy ) * deviceScale,
+                         width * deviceScale, height * deviceScale, false );
+        }
+        else
+        {
+            repaint( x + dx, y + dy, width, height );
         }
     }
 
@@ -642,6 +731,9 @@ public class DisplayHost extends java.awt.Component
                 {
                     if( !paintBuffered( (Graphics2D) graphics ) )
                     {
+                        backBuffer = null;
+                        dirtyRegion.clear();
+
                         paintDisplay( (Graphics2D) graphics );
                     }
                 }
@@ -670,7 +762,8 @@ public class DisplayHost extends java.awt.Component
     }
 
     /**
-     * Attempts to paint the display using an offscreen buffer.
+     * Attempts to paint the display using an offscreen buffer. The buffer is
+     * retained between paints, so only its dirty region is repainted.
      *
      * @param graphics The source graphics context.
      *
@@ -681,29 +774,33 @@ public class DisplayHost extends java.awt.Component
     {
         boolean painted = false;
 
-        // Paint the display into an offscreen buffer
-        GraphicsConfiguration gc = graphics.getDeviceConfiguration();
-        Rectangle clipBounds = graphics.getClipBounds();
-        BufferedImage bufferedImage =
-            gc.createCompatibleImage( clipBounds.width, clipBounds.height,
-                                      Transparency.OPAQUE );
+        // Reallocate the offscreen buffer only if the display has outgrown it
+        int width = Math.max( getWidth(), 1 );
+        int height = Math.max( getHeight(), 1 );
 
-        if( bufferedImage != null )
+        if( bufferedImage == null
+            || bufferedImage.getWidth() < width
+            || bufferedImage.getHeight() < height )
         {
-            Graphics2D bufferedImageGraphics = (Graphics2D) bufferedImage.getGraphics();
-            bufferedImageGraphics.setClip( 0, 0, clipBounds.width, clipBounds.height );
-            bufferedImageGraphics.translate( -clipBounds.x, -clipBounds.y );
-
-            try
-            {
-                paintDisplay( bufferedImageGraphics );
-                graphics.drawImage( bufferedImage, clipBounds.x, clipBounds.y, this );
-            }
-            finally
+            if( bufferedImage != null )
             {
-                bufferedImageGraphics.dispose();
+                if( backBuffer == bufferedImage )
+                {
+                    backBuffer = null;
+                }
+
+                bufferedImage.flush();
             }
 
+            GraphicsConfiguration gc = graphics.getDeviceConfiguration();
+            bufferedImage = gc.createCompatibleImage( width, height, Transparency.OPAQUE );
+        }
+
+        if( bufferedImage != null )
+        {
+            updateBackBuffer( bufferedImage );
+            drawBackBuffer( graphics );
+
             painted = true;
         }
 
@@ -711,7 +808,9 @@ public class DisplayHost extends java.awt.Component
     }
 
     /**
-     * Attempts to paint the display using a volatile offscreen buffer.
+     * Attempts to paint the display using a volatile offscreen buffer. The
+     * buffer is retained between paints, so only its dirty region is
+     * repainted unless its contents have been lost.
      *
      * @param graphics The source graphics context.
      *
@@ -725,14 +824,24 @@ public class DisplayHost extends java.awt.Component
         // Paint the display into a volatile offscreen buffer
         GraphicsConfiguration gc = graphics.getDeviceConfiguration();
         java.awt.Rectangle gcBounds = gc.getBounds();
-        if( volatileImage == null || volatileImageGC != gc )
+        int width = Math.max( gcBounds.width, getWidth() );
+        int height = Math.max( gcBounds.height, getHeight() );
+
+        if( volatileImage == null
+            || volatileImageGC != gc
+            || volatileImage.getWidth() < width
+            || volatileImage.getHeight() < height )
         {
             if( volatileImage != null )
             {
+                if( backBuffer == volatileImage )
+                {
+                    backBuffer = null;
+                }
+
                 volatileImage.flush();
             }
-            volatileImage = gc.createCompatibleVolatileImage( gcBounds.width, gcBounds.height,
-                                                              Transparency.OPAQUE );
+            volatileImage = gc.createCompatibleVolatileImage( width, height, Transparency.OPAQUE );
             // we need to create a new volatile if the GC changes
             volatileImageGC = gc;
         }
@@ -744,30 +853,29 @@ public class DisplayHost extends java.awt.Component
         if( valid == java.awt.image.VolatileImage.IMAGE_OK
             || valid == java.awt.image.VolatileImage.IMAGE_RESTORED )
         {
-            java.awt.Rectangle clipBounds = graphics.getClipBounds();
-            Graphics2D volatileImageGraphics = volatileImage.createGraphics();
-            volatileImageGraphics.setClip( clipBounds.x, clipBounds.y, clipBounds.width, clipBounds.height );
-
-            try
-            {
-                paintDisplay( volatileImageGraphics );
-                // this drawImage method doesn't use width and height
-                int x2 = clipBounds.x + clipBounds.width;
-                int y2 = clipBounds.y + clipBounds.height;
-                graphics.drawImage( volatileImage,
-                                    clipBounds.x, clipBounds.y, x2, y2,
-                                    clipBounds.x, clipBounds.y, x2, y2,
-                                    this );
-            }
-            finally
+            if( valid == java.awt.image.VolatileImage.IMAGE_RESTORED
+                && backBuffer == volatileImage )
             {
-                volatileImageGraphics.dispose();
+                backBuffer = null;
             }
 
+            updateBackBuffer( volatileImage );
+            drawBackBuffer( graphics );
+
             painted = !volatileImage.contentsLost();
+
+            if( !painted )
+            {
+                backBuffer = null;
+            }
         }
         else
         {
+            if( backBuffer == volatileImage )
+            {
+                backBuffer = null;
+            }
+
             volatileImage.flush();
             volatileImage = null;
         }
@@ -775,6 +883,77 @@ public class DisplayHost extends java.awt.Component
         return painted;
     }
 
+    /**
+     * Brings an offscreen buffer up to date by repainting its dirty region,
+     * or the entire display if the buffer's contents are not current.
+     *
+     * @param image The offscreen buffer.
+     */
+    private void updateBackBuffer( java.awt.Image image )
+    {
+        // Swap the regions, so that any repaint requested while painting is
+        // kept for the next update
+        DirtyRegion region = dirtyRegion;
+        dirtyRegion = paintRegion;
+        paintRegion = region;
+
+        Graphics2D imageGraphics = (Graphics2D) image.getGraphics();
+
+        try
+        {
+            if( backBuffer == image )
+            {
+                for( int i = 0, n = region.getLength(); i < n; i++ )
+                {
+                    Rectangle rectangle = region.get( i );
+                    paintRegion( imageGraphics, rectangle.x, rectangle.y, rectangle.width, rectangle.height );
+                }
+            }
+            else
+            {
+                paintRegion( imageGraphics, 0, 0, getWidth(), getHeight() );
+                backBuffer = image;
+            }
+        }
+        finally
+        {
+            imageGraphics.dispose();
+            region.clear();
+        }
+    }
+
+    private void paintRegion( Graphics2D graphics, int x, int y, int width, int height )
+    {
+        Graphics2D regionGraphics = (Graphics2D) graphics.create();
+        regionGraphics.clipRect( x, y, width, height );
+
+        try
+        {
+            paintDisplay( regionGraphics );
+        }
+        finally
+        {
+            regionGraphics.dispose();
+        }
+    }
+
+    /**
+     * Copies the clip region of a graphics context from the current
+     * offscreen buffer.
+     */
+    private void drawBackBuffer( Graphics2D graphics )
+    {
+        java.awt.Rectangle clipBounds = graphics.getClipBounds();
+
+        // this drawImage method doesn't use width and height
+        int x2 = clipBounds.x + clipBounds.width;
+        int y2 = clipBounds.y + clipBounds.height;
+        graphics.drawImage( backBuffer,
+                            clipBounds.x, clipBounds.y, x2, y2,
+                            clipBounds.x, clipBounds.y, x2, y2,
+                            this );
+    }
+
     /**
      * Paints the display including any decorators.
      *
@@ -782,14 +961,24 @@ public class DisplayHost extends java.awt.Component
      */
     private void paintDisplay( Graphics2D awtGraphics )
     {
-        if( scale != 1 )
+        // Reuse the wrapper, and the pool of contexts created from it
+        if( displayGraphics == null )
+        {
+            displayGraphics = new JavaAwtGraphics( awtGraphics );
+        }
+        else
         {
-            awtGraphics.scale( scale, scale );
+            displayGraphics.reset( awtGraphics );
         }
 
-        org.apache.pivot.wtk.graphics.Graphics2D graphics = new JavaAwtGraphics( awtGraphics );
+        org.apache.pivot.wtk.graphics.Graphics2D graphics = displayGraphics;
         org.apache.pivot.wtk.graphics.Graphics2D decoratedGraphics = graphics;
 
+        if( scale != 1 )
+        {
+            graphics.scale( scale, scale );
+        }
+
         Component.DecoratorSequence decorators = display.getDecorators();
         int n = decorators.getLength();
         for( int i = n - 1; i >= 0; i-- )
@@ -985,6 +1174,9 @@ public class DisplayHost extends java.awt.Component
         {
         case ComponentEvent.COMPONENT_RESIZED:
         {
+            // The buffer has no contents for any newly exposed area
+            backBuffer = null;
+
             if( scale == 1 )
             {
                 display.setSize( Math.max( getWidth(), 0 ), Math.max( getHeight(), 0 ) );
@@ -1795,15 +1987,16 @@ public class DisplayHost extends java.awt.Component
         if( graphics != null )
         {
             double scale = getScale();
-            if( scale == 1 )
+            if( scale != 1 )
             {
-                graphics.clipRect( x, y, width, height );
-            }
-            else
-            {
-                graphics.clipRect( (int) Math.floor( x * scale ), (int) Math.floor( y * scale ),
-                                   (int) Math.ceil( width * scale ) + 1, (int) Math.ceil( height * scale ) + 1 );
+                width = (int) Math.ceil( width * scale ) + 1;
+                height = (int) Math.ceil( height * scale ) + 1;
+                x = (int) Math.floor( x * scale );
+                y = (int) Math.floor( y * scale );
             }
+
+            dirtyRegion.add( x, y, width, height );
+            graphics.clipRect( x, y, width, height );
             paint( graphics );
             graphics.dispose();
         }
@@ -0,0 +1,146 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pivot.ui.awt;
+
+import org.apache.pivot.wtk.Keyboard.Modifier;
+import org.apache.pivot.wtk.Platform;
+import org.apache.pivot.wtk.graphics.GraphicsSystem;
+import org.apache.pivot.wtk.graphics.RenderingHints;
+import org.apache.pivot.wtk.graphics.SoundSystem;
+import org.apache.pivot.wtk.graphics.font.FontRenderContext;
+
+/**
+ * Platform for rendering displays into images without a screen (e.g. for
+ * benchmarks, or to generate screenshots on a server). Rendering uses the
+ * same Java2D graphics system as {@link JavaAwtPlatform}, which paints
+ * images in software when AWT runs headless
+ * (<tt>-Djava.awt.headless=true</tt>), so rendered images match those of a
+ * desktop display. Platform settings are fixed rather than read from the
+ * desktop, so that rendering is reproducible.
+ * <p>
+ * There is no event dispatch thread; displays rendered with this platform
+ * may be created, laid out and painted on any thread. However, some of the
+ * state that windows and components update is shared by all displays (for
+ * example, the active window, the focused component and the mouse capturer),
+ * so opening and closing windows, changing focus, and modifying components
+ * must be confined to one thread at a time across all displays. Only the
+ * painting of displays that have already been laid out (i.e. calls to
+ * {@link OffscreenDisplayHost#render()} while no components are being
+ * modified) may run on separate threads in parallel.
+ *
+ * @see OffscreenDisplayHost
+ */
+public class HeadlessPlatform extends Platform
+{
+    private final GraphicsSystem graphicsSystem = new JavaAwtGraphicsSystem()
+    {
+        @Override
+        public boolean isDispatchThread()
+        {
+            return true;
+        }
+    };
+
+    private final SoundSystem soundSystem = new SoundSystem()
+    {
+        @Override
+        public void beep()
+        {
+            // No-op
+        }
+    };
+
+    private final FontRenderContext fontRenderContext = new FontRenderContext()
+    {
+        @Override
+        public String getAntiAliasingHint()
+        {
+            return RenderingHints.VALUE_ANTIALIAS_ON;
+        }
+
+        @Override
+        public String getFractionalMetricsHint()
+        {
+            return RenderingHints.VALUE_FRACTIONALMETRICS_DEFAULT;
+        }
+    };
+
+    private static final int MULTI_CLICK_INTERVAL = 400;
+    private static final int CURSOR_BLINK_RATE = 600;
+    private static final int DRAG_THRESHOLD = 5;
+    private static final int NUMBER_OF_MOUSE_BUTTONS = 3;
+
+    @Override
+    public GraphicsSystem getGraphicsSystem()
+    {
+        return graphicsSystem;
+    }
+
+    @Override
+    public SoundSystem getSoundSystem()
+    {
+        return soundSystem;
+    }
+
+    @Override
+    public FontRenderContext getFontRenderContext()
+    {
+        return fontRenderContext;
+    }
+
+    @Override
+    public int getMultiClickInterval()
+    {
+        return MULTI_CLICK_INTERVAL;
+    }
+
+    @Override
+    public int getCursorBlinkRate()
+    {
+        return CURSOR_BLINK_RATE;
+    }
+
+    @Override
+    public int getDragThreshold()
+    {
+        return DRAG_THRESHOLD;
+    }
+
+    @Override
+    public Modifier getCommandModifier()
+    {
+        return Modifier.CTRL;
+    }
+
+    @Override
+    public Modifier getWordNavigationModifier()
+    {
+        return Modifier.CTRL;
+    }
+
+    @Override
+    public String getKeyStrokeModifierSeparator()
+    {
+        return "-";
+    }
+
+    @Override
+    public int getNumberOfMouseButtons()
+    {
+        return NUMBER_OF_MOUSE_BUTTONS;
+    }
+}
@@ -5,12 +5,14 @@ import org.apache.pivot.wtk.Bounds;
 import org.apache.pivot.wtk.graphics.AffineTransform;
 import org.apache.pivot.wtk.graphics.geom.Area;
 
-public class JavaAwtArea implements Area
+public class JavaAwtArea extends JavaAwtShape
+    implements Area
 {
     private java.awt.geom.Area delegate;
 
     JavaAwtArea( java.awt.geom.Area awt )
     {
+        super( awt );
         delegate = awt;
     }
 
@@ -2,13 +2,14 @@ package org.apache.pivot.ui.awt;
 
 import org.apache.pivot.wtk.graphics.Color;
 
-public class JavaAwtColor
+public class JavaAwtColor extends JavaAwtPaint
     implements Color
 {
     private java.awt.Color delegate;
 
     JavaAwtColor(java.awt.Color color)
     {
+        super( color );
         delegate = color;
     }
 
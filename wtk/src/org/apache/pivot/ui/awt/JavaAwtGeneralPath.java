@@ -0,0 +1,33 @@
+package org.apache.pivot.ui.awt;
+
+import org.apache.pivot.wtk.graphics.geom.GeneralPath;
+
+public class JavaAwtGeneralPath extends JavaAwtShape
+    implements GeneralPath
+{
+    private java.awt.geom.GeneralPath delegate;
+
+    JavaAwtGeneralPath( java.awt.geom.GeneralPath awtPath )
+    {
+        super( awtPath );
+        delegate = awtPath;
+    }
+
+    @Override
+    public void moveTo( int x, int y )
+    {
+        delegate.moveTo( x, y );
+    }
+
+    @Override
+    public void lineTo( int x, int y )
+    {
+        delegate.lineTo( x, y );
+    }
+
+    @Override
+    public void closePath()
+    {
+        delegate.closePath();
+    }
+}
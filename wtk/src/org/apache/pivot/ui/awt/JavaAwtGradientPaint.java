@@ -0,0 +1,12 @@
+package org.apache.pivot.ui.awt;
+
+import org.apache.pivot.wtk.graphics.GradientPaint;
+
+public class JavaAwtGradientPaint extends JavaAwtPaint
+    implements GradientPaint
+{
+    JavaAwtGradientPaint( java.awt.GradientPaint awtPaint )
+    {
+        super( awtPaint );
+    }
+}
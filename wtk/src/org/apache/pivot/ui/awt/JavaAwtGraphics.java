@@ -3,6 +3,7 @@ package org.apache.pivot.ui.awt;
 import java.awt.Graphics2D;
 import java.awt.Rectangle;
 import java.awt.Stroke;
+import java.awt.geom.Area;
 import org.apache.pivot.wtk.Bounds;
 import org.apache.pivot.wtk.graphics.AffineTransform;
 import org.apache.pivot.wtk.graphics.AlphaComposite;
@@ -19,78 +20,482 @@ import org.apache.pivot.wtk.graphics.geom.Shape;
 import org.apache.pivot.wtk.graphics.VolatileImage;
 import org.apache.pivot.wtk.graphics.font.Font;
 
+/**
+ * Graphics context backed by a Java2D graphics context.
+ * <p>
+ * Contexts returned by {@link #create()} do not copy the Java2D context.
+ * Instead, all contexts created from the same root share its Java2D context,
+ * and each one keeps a copy of its own state (transform, clip, paint,
+ * composite, stroke and font). When a context is used after another one has
+ * changed the shared state, its state is restored first. Since paint code
+ * creates and disposes contexts in nested order, only the state that a
+ * nested context actually changed is restored. Disposed contexts are pooled
+ * and returned by later calls to {@link #create()}, so a paint does not
+ * allocate wrappers once the pool has grown to the nesting depth of the
+ * component tree.
+ * <p>
+ * As with Java2D, a context must not be used after it has been disposed.
+ */
 public class JavaAwtGraphics
     implements org.apache.pivot.wtk.graphics.Graphics2D
 {
-    private Graphics2D delegate;
+    /**
+     * State shared by a root context and the contexts created from it.
+     */
+    private static final class Context
+    {
+        private Graphics2D delegate = null;
+
+        // The context whose state is applied to the delegate, if any
+        private JavaAwtGraphics owner = null;
+
+        // The state applied to the delegate when there is no owner
+        private final State applied = new State();
+
+        private JavaAwtGraphics[] pool = new JavaAwtGraphics[16];
+        private int poolLength = 0;
+
+        private JavaAwtGraphicsConfiguration graphicsConfiguration = null;
+
+        // Scratch rectangle for clip calculations
+        private final Rectangle rectangle = new Rectangle();
+    }
+
+    /**
+     * Graphics state of a context. The clip is kept in device space, so that
+     * it is independent of the transform.
+     */
+    private static final class State
+    {
+        private final java.awt.geom.AffineTransform transform = new java.awt.geom.AffineTransform();
+
+        // The clip in device space, or null if there is no clip; refers to
+        // clipRectangle when the clip is rectangular
+        private java.awt.Shape clip = null;
+        private final Rectangle clipRectangle = new Rectangle();
+
+        private java.awt.Paint paint = null;
+        private java.awt.Composite composite = null;
+        private Stroke stroke = null;
+        private java.awt.Font font = null;
+
+        private void copy( State state )
+        {
+            transform.setTransform( state.transform );
+
+            if( state.clip == state.clipRectangle )
+            {
+                clipRectangle.setBounds( state.clipRectangle );
+                clip = clipRectangle;
+            }
+            else
+            {
+                // Non-rectangular clips are never modified, so they can be shared
+                clip = state.clip;
+            }
+
+            paint = state.paint;
+            composite = state.composite;
+            stroke = state.stroke;
+            font = state.font;
+        }
+
+        private boolean isClipEqual( State state )
+        {
+            if( clip == clipRectangle )
+            {
+                return ( state.clip == state.clipRectangle
+                         && clipRectangle.equals( state.clipRectangle ) );
+            }
+
+            return ( clip == state.clip );
+        }
+    }
+
+    private static final java.awt.geom.AffineTransform IDENTITY = new java.awt.geom.AffineTransform();
+
+    private final Context context;
+    private final boolean root;
+    private final State state = new State();
+    private boolean disposed = false;
+
+    // Cached values returned by getters; they are immutable or documented as
+    // snapshots, so they may be returned more than once
+    private Bounds clipBounds = null;
+    private Composite compositeWrapper = null;
+    private JavaAwtAffineTransform transformSnapshot = null;
+    private boolean transformSnapshotValid = false;
 
     JavaAwtGraphics( Graphics2D graphics )
     {
-        this.delegate = graphics;
+        context = new Context();
+        root = true;
+
+        reset( graphics );
+    }
+
+    private JavaAwtGraphics( Context context )
+    {
+        this.context = context;
+        root = false;
+    }
+
+    /**
+     * Makes this root context wrap another Java2D context, so that the root
+     * context and its pool can be reused (e.g. for each paint of a display).
+     */
+    void reset( Graphics2D graphics )
+    {
+        if( !root )
+        {
+            throw new IllegalStateException( "Only a root graphics context can be reset." );
+        }
+
+        context.delegate = graphics;
+        context.owner = this;
+        disposed = false;
+
+        state.transform.setTransform( graphics.getTransform() );
+
+        Rectangle clip = graphics.getClipBounds();
+        state.clip = null;
+        if( clip != null )
+        {
+            setDeviceClip( clip.x, clip.y, clip.width, clip.height );
+        }
+
+        state.paint = graphics.getPaint();
+        state.composite = graphics.getComposite();
+        state.stroke = graphics.getStroke();
+        state.font = graphics.getFont();
+
+        clipBounds = null;
+        compositeWrapper = null;
+        transformSnapshotValid = false;
     }
 
     Graphics2D getDelegate()
     {
-        return delegate;
+        activate();
+        return context.delegate;
+    }
+
+    /**
+     * Applies the state of this context to the shared Java2D context, if
+     * another context has used it since this one last did.
+     */
+    private void activate()
+    {
+        Context context = this.context;
+
+        if( context.owner != this )
+        {
+            if( disposed )
+            {
+                throw new IllegalStateException( "Graphics context has been disposed." );
+            }
+
+            State applied = ( context.owner == null ) ? context.applied : context.owner.state;
+            Graphics2D delegate = context.delegate;
+
+            if( !state.isClipEqual( applied ) )
+            {
+                // The clip is kept in device space
+                delegate.setTransform( IDENTITY );
+                delegate.setClip( state.clip );
+                delegate.setTransform( state.transform );
+            }
+            else if( !state.transform.equals( applied.transform ) )
+            {
+                delegate.setTransform( state.transform );
+            }
+
+            if( state.paint != applied.paint )
+            {
+                delegate.setPaint( state.paint );
+            }
+
+            if( state.composite != applied.composite )
+            {
+                delegate.setComposite( state.composite );
+            }
+
+            if( state.stroke != applied.stroke )
+            {
+                delegate.setStroke( state.stroke );
+            }
+
+            if( state.font != applied.font )
+            {
+                delegate.setFont( state.font );
+            }
+
+            context.owner = this;
+        }
+    }
+
+    private void transformChanged()
+    {
+        clipBounds = null;
+        transformSnapshotValid = false;
+    }
+
+    /**
+     * Maps a rectangle to device space, when the transform does not rotate
+     * it; rounds as Java2D does for rectangular clips.
+     *
+     * @return <tt>true</tt> if the rectangle was mapped; <tt>false</tt> if the
+     *         transform rotates or shears it.
+     */
+    private boolean transformRectangle( int x, int y, int width, int height, Rectangle result )
+    {
+        java.awt.geom.AffineTransform transform = state.transform;
+
+        if( ( transform.getType() & ( java.awt.geom.AffineTransform.TYPE_MASK_ROTATION
+            | java.awt.geom.AffineTransform.TYPE_GENERAL_TRANSFORM ) ) != 0 )
+        {
+            return false;
+        }
+
+        double translateX = transform.getTranslateX();
+        double translateY = transform.getTranslateY();
+
+        if( ( transform.getType() & ~java.awt.geom.AffineTransform.TYPE_TRANSLATION ) == 0
+            && translateX == (int) translateX
+            && translateY == (int) translateY )
+        {
+            result.setBounds( x + (int) translateX, y + (int) translateY, width, height );
+            return true;
+        }
+
+        double scaleX = transform.getScaleX();
+        double scaleY = transform.getScaleY();
+
+        double x1 = x * scaleX + translateX;
+        double x2 = ( x + width ) * scaleX + translateX;
+        double y1 = y * scaleY + translateY;
+        double y2 = ( y + height ) * scaleY + translateY;
+
+        int left = clipRound( Math.min( x1, x2 ) );
+        int right = clipRound( Math.max( x1, x2 ) );
+        int top = clipRound( Math.min( y1, y2 ) );
+        int bottom = clipRound( Math.max( y1, y2 ) );
+
+        // As in Java2D, a rectangle with a negative size clips everything
+        result.setBounds( left, top, ( width < 0 ) ? 0 : right - left, ( height < 0 ) ? 0 : bottom - top );
+
+        return true;
+    }
+
+    private static int clipRound( double value )
+    {
+        return (int) Math.ceil( value - 0.5 );
+    }
+
+    private void setDeviceClip( int x, int y, int width, int height )
+    {
+        Rectangle rectangle = state.clipRectangle;
+
+        if( transformRectangle( x, y, width, height, rectangle ) )
+        {
+            state.clip = rectangle;
+        }
+        else
+        {
+            setDeviceClip( state.transform.createTransformedShape( new Rectangle( x, y, width, height ) ) );
+        }
+
+        clipBounds = null;
+    }
+
+    private void setDeviceClip( java.awt.Shape shape )
+    {
+        if( shape instanceof Rectangle )
+        {
+            state.clipRectangle.setBounds( (Rectangle) shape );
+            state.clip = state.clipRectangle;
+        }
+        else
+        {
+            state.clip = shape;
+        }
+
+        clipBounds = null;
+    }
+
+    private void intersectDeviceClip( int x, int y, int width, int height )
+    {
+        Rectangle rectangle = context.rectangle;
+
+        if( transformRectangle( x, y, width, height, rectangle ) )
+        {
+            if( state.clip == null )
+            {
+                setDeviceClip( rectangle );
+            }
+            else if( state.clip == state.clipRectangle )
+            {
+                Rectangle clipRectangle = state.clipRectangle;
+                int left = Math.max( clipRectangle.x, rectangle.x );
+                int top = Math.max( clipRectangle.y, rectangle.y );
+                int right = Math.min( clipRectangle.x + clipRectangle.width, rectangle.x + rectangle.width );
+                int bottom = Math.min( clipRectangle.y + clipRectangle.height, rectangle.y + rectangle.height );
+
+                // As in Rectangle.intersection(), an empty intersection may
+                // have a negative size
+                clipRectangle.setBounds( left, top, right - left, bottom - top );
+                clipBounds = null;
+            }
+            else
+            {
+                intersectDeviceClip( rectangle );
+            }
+        }
+        else
+        {
+            intersectDeviceClip( state.transform.createTransformedShape( new Rectangle( x, y, width, height ) ) );
+        }
+    }
+
+    private void intersectDeviceClip( java.awt.Shape shape )
+    {
+        if( state.clip == null )
+        {
+            setDeviceClip( shape );
+        }
+        else
+        {
+            Area area = new Area( state.clip );
+            area.intersect( new Area( shape ) );
+
+            if( area.isRectangular() )
+            {
+                setDeviceClip( area.getBounds() );
+            }
+            else
+            {
+                setDeviceClip( area );
+            }
+        }
     }
 
     @Override
     public void setColor( Color color )
     {
+        activate();
+
         java.awt.Color awt = ( (JavaAwtColor) color ).getDelegate();
-        delegate.setColor( awt );
+        context.delegate.setColor( awt );
+        state.paint = context.delegate.getPaint();
     }
 
     @Override
     public void setStroke( BasicStroke basicStroke )
     {
+        activate();
+
         Stroke stroke = ( (JavaAwtBasicStroke) basicStroke ).getDelegate();
-        delegate.setStroke( stroke );
+        context.delegate.setStroke( stroke );
+        state.stroke = stroke;
     }
 
     @Override
     public void clipRect( int x, int y, int width, int height )
     {
-        delegate.clipRect( x, y, width, height );
+        activate();
+
+        context.delegate.clipRect( x, y, width, height );
+        intersectDeviceClip( x, y, width, height );
     }
 
     @Override
     public Bounds getClipBounds()
     {
-        Rectangle clipBounds = delegate.getClipBounds();
-        return new Bounds( clipBounds.x, clipBounds.y, clipBounds.width, clipBounds.height );
+        if( clipBounds == null
+            && state.clip != null )
+        {
+            activate();
+
+            Rectangle rectangle = context.delegate.getClipBounds( context.rectangle );
+            clipBounds = new Bounds( rectangle.x, rectangle.y, rectangle.width, rectangle.height );
+        }
+
+        return clipBounds;
     }
 
     @Override
     public void fillRect( int x, int y, int width, int height )
     {
-        delegate.fillRect( x, y, width, height );
+        activate();
+        context.delegate.fillRect( x, y, width, height );
     }
 
     @Override
     public GraphicsConfiguration getDeviceConfiguration()
     {
-        java.awt.GraphicsConfiguration awt = delegate.getDeviceConfiguration();
-        GraphicsConfiguration config = new JavaAwtGraphicsConfiguration( awt );
-        return config;
+        java.awt.GraphicsConfiguration awt = context.delegate.getDeviceConfiguration();
+
+        if( context.graphicsConfiguration == null
+            || context.graphicsConfiguration.getDelegate() != awt )
+        {
+            context.graphicsConfiguration = new JavaAwtGraphicsConfiguration( awt );
+        }
+
+        return context.graphicsConfiguration;
     }
 
     @Override
     public void setClip( int x, int y, int width, int height )
     {
-        delegate.setClip( x, y, width, height );
+        activate();
+
+        context.delegate.setClip( x, y, width, height );
+        setDeviceClip( x, y, width, height );
     }
 
     @Override
     public void translate( int x, int y )
     {
-        delegate.translate( x, y );
+        activate();
+
+        context.delegate.translate( x, y );
+        state.transform.translate( x, y );
+        transformChanged();
     }
 
     @Override
     public void dispose()
     {
-        delegate.dispose();
+        if( disposed )
+        {
+            return;
+        }
+
+        disposed = true;
+
+        Context context = this.context;
+
+        if( context.owner == this )
+        {
+            context.applied.copy( state );
+            context.owner = null;
+        }
+
+        if( root )
+        {
+            context.delegate.dispose();
+        }
+        else
+        {
+            if( context.poolLength == context.pool.length )
+            {
+                JavaAwtGraphics[] pool = new JavaAwtGraphics[context.pool.length * 2];
+                System.arraycopy( context.pool, 0, pool, 0, context.poolLength );
+                context.pool = pool;
+            }
+
+            context.pool[context.poolLength++] = this;
+        }
     }
 
     @Override
@@ -100,9 +505,10 @@ public class JavaAwtGraphics
                            ImageObserver observer
     )
     {
+        activate();
+
         java.awt.image.BufferedImage image = ( (JavaAwtBufferedImage) bufferedImage ).getDelegate();
-        java.awt.image.ImageObserver imageObserver = ( (JavaAwtImageObserver) observer ).getDelegate();
-        delegate.drawImage( image, x, y, imageObserver );
+        context.delegate.drawImage( image, x, y, getAwtObserver( observer ) );
     }
 
     @Override
@@ -114,51 +520,103 @@ public class JavaAwtGraphics
     @Override
     public void scale( double scaleX, double scaleY )
     {
-        delegate.scale( scaleX, scaleY );
+        activate();
+
+        context.delegate.scale( scaleX, scaleY );
+        state.transform.scale( scaleX, scaleY );
+        transformChanged();
     }
 
     @Override
     public void setComposite( AlphaComposite composite )
     {
+        activate();
+
         java.awt.Composite awt = ( (JavaAwtComposite) composite ).getDelegate();
-        delegate.setComposite( awt );
+        context.delegate.setComposite( awt );
+        state.composite = awt;
+        compositeWrapper = composite;
     }
 
     @Override
     public void drawImage( VolatileImage volatileImage, int x, int y, ImageObserver observer )
     {
+        activate();
+
         java.awt.image.VolatileImage awtImage = ( (JavaAwtVolatileImage) volatileImage ).getDelegate();
-        java.awt.image.ImageObserver awtObserver = ( (JavaAwtImageObserver) observer ).getDelegate();
-        delegate.drawImage( awtImage, x, y, awtObserver );
+        context.delegate.drawImage( awtImage, x, y, getAwtObserver( observer ) );
     }
 
+    /**
+     * Returns the current transform. The returned transform is a snapshot
+     * that is never updated, so it may be passed to {@link
+     * #setTransform(AffineTransform)} later to restore the transform; it must
+     * not be modified. Calls made while the transform is unchanged return the
+     * same snapshot.
+     */
     @Override
     public AffineTransform getTransform()
     {
-        java.awt.geom.AffineTransform awtTransform = delegate.getTransform();
-        AffineTransform transform = new JavaAwtAffineTransform( awtTransform );
-        return transform;
+        if( !transformSnapshotValid )
+        {
+            transformSnapshot = new JavaAwtAffineTransform( new java.awt.geom.AffineTransform( state.transform ) );
+            transformSnapshotValid = true;
+        }
+
+        return transformSnapshot;
     }
 
     @Override
     public org.apache.pivot.wtk.graphics.Graphics2D create()
     {
-        Graphics2D graphics = (Graphics2D) delegate.create();
-        return new JavaAwtGraphics( graphics );
+        Context context = this.context;
+        JavaAwtGraphics graphics;
+
+        if( context.poolLength > 0 )
+        {
+            graphics = context.pool[--context.poolLength];
+            context.pool[context.poolLength] = null;
+            graphics.disposed = false;
+        }
+        else
+        {
+            graphics = new JavaAwtGraphics( context );
+        }
+
+        graphics.state.copy( state );
+        graphics.clipBounds = clipBounds;
+        graphics.compositeWrapper = compositeWrapper;
+        graphics.transformSnapshot = transformSnapshot;
+        graphics.transformSnapshotValid = transformSnapshotValid;
+
+        // The new context has the same state as this one, so it can use the
+        // shared context without restoring anything
+        if( context.owner == this )
+        {
+            context.owner = graphics;
+        }
+
+        return graphics;
     }
 
     @Override
     public org.apache.pivot.wtk.graphics.Graphics2D create( int x, int y, int width, int height )
     {
-        Graphics2D graphics = (Graphics2D) delegate.create( x, y, width, height );
-        return new JavaAwtGraphics( graphics );
+        org.apache.pivot.wtk.graphics.Graphics2D graphics = create();
+        graphics.translate( x, y );
+        graphics.clipRect( 0, 0, width, height );
+
+        return graphics;
     }
 
     @Override
     public void setPaint( Paint backgroundPaint )
     {
+        activate();
+
         java.awt.Paint paint = ( (JavaAwtPaint) backgroundPaint ).getDelegate();
-        delegate.setPaint( paint );
+        context.delegate.setPaint( paint );
+        state.paint = context.delegate.getPaint();
     }
 
     @Override
@@ -170,141 +628,186 @@ public class JavaAwtGraphics
                                int arcHeight
     )
     {
-        delegate.fillRoundRect( x, y, width, height, arcWidth, arcHeight );
+        activate();
+        context.delegate.fillRoundRect( x, y, width, height, arcWidth, arcHeight );
     }
 
     @Override
     public void setFont( Font font )
     {
+        activate();
+
         java.awt.Font awtFont = ( (JavaAwtFont) font ).getDelegate();
-        delegate.setFont( awtFont );
+        context.delegate.setFont( awtFont );
+        state.font = context.delegate.getFont();
     }
 
     @Override
     public void drawString( String text, int x, int y )
     {
-        delegate.drawString( text, x, y );
+        activate();
+        context.delegate.drawString( text, x, y );
     }
 
     @Override
     public Bounds getClip()
     {
-        Rectangle rect = delegate.getClip().getBounds();
-        return new Bounds( rect.x, rect.y, rect.width, rect.height );
+        return getClipBounds();
     }
 
     @Override
     public void clip( Shape clipShape )
     {
+        activate();
+
         java.awt.Shape awtShape = ( (JavaAwtShape) clipShape ).getDelegate();
-        delegate.clip( awtShape );
+        context.delegate.clip( awtShape );
+        intersectDeviceClip( state.transform.createTransformedShape( awtShape ) );
     }
 
     @Override
     public void fill( Shape fillShape )
     {
+        activate();
+
         java.awt.Shape awtShape = ( (JavaAwtShape) fillShape ).getDelegate();
-        delegate.fill( awtShape );
+        context.delegate.fill( awtShape );
     }
 
     @Override
     public void drawLine( int x1, int y1, int x2, int y2 )
     {
-        delegate.drawLine( x1, y1, x2, y2 );
+        activate();
+        context.delegate.drawLine( x1, y1, x2, y2 );
     }
 
     @Override
     public void fillPolygon( int[] xPoints, int[] yPoints, int points )
     {
-        delegate.fillPolygon( xPoints, yPoints, points );
+        activate();
+        context.delegate.fillPolygon( xPoints, yPoints, points );
     }
 
     @Override
     public void drawPolygon( int[] xPoints, int[] yPoints, int points )
     {
-        delegate.drawPolygon( xPoints, yPoints, points );
+        activate();
+        context.delegate.drawPolygon( xPoints, yPoints, points );
     }
 
     @Override
     public void rotate( double theta, double width, double height )
     {
-        delegate.rotate( theta, width, height );
+        activate();
+
+        context.delegate.rotate( theta, width, height );
+        state.transform.rotate( theta, width, height );
+        transformChanged();
     }
 
     @Override
     public Composite getComposite()
     {
-        return new JavaAwtComposite( delegate.getComposite() );
+        if( compositeWrapper == null )
+        {
+            compositeWrapper = new JavaAwtComposite( state.composite );
+        }
+
+        return compositeWrapper;
     }
 
     @Override
     public void drawGlyphVector( GlyphVector glyphVector, float x, float y )
     {
+        activate();
+
         java.awt.font.GlyphVector awtVector = ( (JavaAwtGlyphVector) glyphVector ).getDelegate();
-        delegate.drawGlyphVector( awtVector, x, y );
+        context.delegate.drawGlyphVector( awtVector, x, y );
     }
 
     @Override
     public void drawString( String text, float x, float y )
     {
-        delegate.drawString( text, x, y );
+        activate();
+        context.delegate.drawString( text, x, y );
     }
 
     @Override
     public void copyArea( int blitX, int blitY, int blitWidth, int blitHeight, int deltaX, int deltaY )
     {
-        delegate.copyArea( blitX, blitY, blitWidth, blitHeight, deltaX, deltaY );
+        activate();
+        context.delegate.copyArea( blitX, blitY, blitWidth, blitHeight, deltaX, deltaY );
     }
 
     @Override
     public void setXORMode( Color color )
     {
+        activate();
+
         java.awt.Color awtColor = ( (JavaAwtColor) color ).getDelegate();
-        delegate.setXORMode( awtColor );
+        context.delegate.setXORMode( awtColor );
+        state.composite = context.delegate.getComposite();
+        compositeWrapper = null;
     }
 
     @Override
     public void drawRect( int x, int y, int width, int height )
     {
-        delegate.drawRect( x, y, width, height );
+        activate();
+        context.delegate.drawRect( x, y, width, height );
     }
 
     @Override
     public void fillOval( int x, int y, int width, int height )
     {
-        delegate.fillOval( x, y, width, height );
+        activate();
+        context.delegate.fillOval( x, y, width, height );
     }
 
     @Override
     public void rotate( double angle )
     {
-        delegate.rotate( angle );
+        activate();
+
+        context.delegate.rotate( angle );
+        state.transform.rotate( angle );
+        transformChanged();
     }
 
     @Override
     public void setClip( Bounds clip )
     {
-        delegate.setClip( clip.x, clip.y, clip.width, clip.height );
+        setClip( clip.x, clip.y, clip.width, clip.height );
     }
 
     @Override
     public void draw( Shape shapeToDraw )
     {
+        activate();
+
         java.awt.Shape awtShape = ( (JavaAwtShape) shapeToDraw ).getDelegate();
-        delegate.draw( awtShape );
+        context.delegate.draw( awtShape );
     }
 
     @Override
     public void transform( AffineTransform transform )
     {
+        activate();
+
         java.awt.geom.AffineTransform awtTransform = ( (JavaAwtAffineTransform) transform ).getDelegate();
-        delegate.transform( awtTransform );
+        context.delegate.transform( awtTransform );
+        state.transform.concatenate( awtTransform );
+        transformChanged();
     }
 
     @Override
     public void clip( Bounds selection )
     {
-        Rectangle rect = new Rectangle( selection.x, selection.y, selection.width, selection.height );
-        delegate.clip( rect );
+        clipRect( selection.x, selection.y, selection.width, selection.height );
+    }
+
+    private static java.awt.image.ImageObserver getAwtObserver( ImageObserver observer )
+    {
+        return ( observer == null ) ? null : ( (JavaAwtImageObserver) observer ).getDelegate();
     }
 }
@@ -4,6 +4,7 @@ import java.awt.geom.Ellipse2D;
 import org.apache.pivot.wtk.PathFactory;
 import org.apache.pivot.wtk.graphics.AffineTransform;
 import org.apache.pivot.wtk.graphics.AffineTransformFactory;
+import org.apache.pivot.wtk.graphics.BasicStroke;
 import org.apache.pivot.wtk.graphics.BufferedImage;
 import org.apache.pivot.wtk.graphics.Color;
 import org.apache.pivot.wtk.graphics.ColorFactoryProvider;
@@ -19,6 +20,7 @@ import org.apache.pivot.wtk.graphics.StrokeFactory;
 import org.apache.pivot.wtk.graphics.font.FontFactory;
 import org.apache.pivot.wtk.graphics.geom.Area;
 import org.apache.pivot.wtk.graphics.geom.Ellipse;
+import org.apache.pivot.wtk.graphics.geom.GeneralPath;
 import org.apache.pivot.wtk.graphics.geom.Rectangle;
 import org.apache.pivot.wtk.graphics.geom.RoundRectangle;
 
@@ -43,6 +45,7 @@ public class JavaAwtGraphicsSystem
     private PathFactory pathFactory;
     private StrokeFactory strokeFactory;
     private FontFactory fontFactory;
+    private AffineTransformFactory affineTransformFactory;
 
     JavaAwtGraphicsSystem()
     {
@@ -56,7 +59,8 @@ public class JavaAwtGraphicsSystem
                                                                   Color[] colors
             )
             {
-                return null;  //To change body of implemented methods use File | Settings | File Templates.
+                return new JavaAwtRadialGradientPaint( new java.awt.RadialGradientPaint( centerX, centerY, radius,
+                                                                                         fractions, getAwtColors( colors ) ) );
             }
 
             @Override
@@ -68,7 +72,8 @@ public class JavaAwtGraphicsSystem
                                                                   Color[] colors
             )
             {
-                return null;  //To change body of implemented methods use File | Settings | File Templates.
+                return new JavaAwtLinearGradientPaint( new java.awt.LinearGradientPaint( startX, startY, endX, endY,
+                                                                                         fractions, getAwtColors( colors ) ) );
             }
 
             @Override
@@ -80,9 +85,54 @@ public class JavaAwtGraphicsSystem
                                                       Color endColor
             )
             {
-                return null;  //To change body of implemented methods use File | Settings | File Templates.
+                return new JavaAwtGradientPaint( new java.awt.GradientPaint( startX, startY,
+                                                                             ( (JavaAwtColor) startColor ).getDelegate(),
+                                                                             endX, endY,
+                                                                             ( (JavaAwtColor) endColor ).getDelegate() ) );
             }
         };
+        pathFactory = new PathFactory()
+        {
+            @Override
+            public GeneralPath createGeneralPath()
+            {
+                return new JavaAwtGeneralPath( new java.awt.geom.GeneralPath() );
+            }
+
+            @Override
+            public GeneralPath createGeneralPath( int type )
+            {
+                return new JavaAwtGeneralPath( new java.awt.geom.GeneralPath( type ) );
+            }
+        };
+        strokeFactory = new StrokeFactory()
+        {
+            @Override
+            public BasicStroke createBasicStroke()
+            {
+                return new JavaAwtBasicStroke( new java.awt.BasicStroke() );
+            }
+
+            @Override
+            public BasicStroke createBasicStroke( float width )
+            {
+                return new JavaAwtBasicStroke( new java.awt.BasicStroke( width ) );
+            }
+
+            @Override
+            public BasicStroke createBasicStroke( float width,
+                                                  int cap,
+                                                  int join,
+                                                  float miterLimit,
+                                                  float[] dash,
+                                                  float dashPhase
+            )
+            {
+                return new JavaAwtBasicStroke( new java.awt.BasicStroke( width, cap, join, miterLimit, dash, dashPhase ) );
+            }
+        };
+        fontFactory = new JavaAwtFontFactory();
+        affineTransformFactory = new JavaAwtAffineTransformFactory();
         colorFactory = new ColorFactoryProvider()
         {
             public CompositeFactory compositeFactory = new JavaAwtCompositeFactory();
@@ -188,7 +238,7 @@ public class JavaAwtGraphicsSystem
     @Override
     public AffineTransformFactory getAffineTransformFactory()
     {
-        return new JavaAwtAffineTransformFactory();
+        return affineTransformFactory;
     }
 
     @Override
@@ -215,19 +265,20 @@ public class JavaAwtGraphicsSystem
     @Override
     public Area newArea( int x, int y, int width, int height )
     {
-        return null;  //To change body of implemented methods use File | Settings | File Templates.
+        java.awt.geom.Area awt = new java.awt.geom.Area( new java.awt.Rectangle( x, y, width, height ) );
+        return new JavaAwtArea( awt );
     }
 
     @Override
     public Rectangle newRectangle()
     {
-        return null;  //To change body of implemented methods use File | Settings | File Templates.
+        return new JavaAwtRectangle( new java.awt.Rectangle() );
     }
 
     @Override
     public Rectangle newRectangle( int x, int y, int width, int height )
     {
-        return null;  //To change body of implemented methods use File | Settings | File Templates.
+        return new JavaAwtRectangle( new java.awt.Rectangle( x, y, width, height ) );
     }
 
     @Override
@@ -239,19 +290,38 @@ public class JavaAwtGraphicsSystem
                                              double radius2
     )
     {
-        return null;  //To change body of implemented methods use File | Settings | File Templates.
+        return new JavaAwtRoundRectangle( new java.awt.geom.RoundRectangle2D.Double( x, y, width, height,
+                                                                                     radius1, radius2 ) );
     }
 
     @Override
     public Line newLine( double x1, double y1, double x2, double y2 )
     {
-        return null;  //To change body of implemented methods use File | Settings | File Templates.
+        return new JavaAwtLine( new java.awt.geom.Line2D.Double( x1, y1, x2, y2 ) );
     }
 
     @Override
     public Paint newGradientPaint( float i, float v, Color buttonBevelColor, float v1, float v2, Color backgroundColor )
     {
-        return null;  //To change body of implemented methods use File | Settings | File Templates.
+        return gradientFactory.createGradientPaint( i, v, buttonBevelColor, v1, v2, backgroundColor );
+    }
+
+    @Override
+    public Paint newRadialGradientPaint( float centerX, float centerY, float radius, float[] fractions, Color[] colors )
+    {
+        return gradientFactory.createRadialGradientPaint( centerX, centerY, radius, fractions, colors );
+    }
+
+    @Override
+    public Paint newLinearGradientPaint( float startX,
+                                         float startY,
+                                         float endX,
+                                         float endY,
+                                         float[] fractions,
+                                         Color[] colors
+    )
+    {
+        return gradientFactory.createLinearGradientPaint( startX, startY, endX, endY, fractions, colors );
     }
 
     @Override
@@ -277,4 +347,15 @@ public class JavaAwtGraphicsSystem
     {
         return java.awt.EventQueue.isDispatchThread();
     }
+
+    private static java.awt.Color[] getAwtColors( Color[] colors )
+    {
+        java.awt.Color[] awtColors = new java.awt.Color[ colors.length ];
+        for( int i = 0; i < colors.length; i++ )
+        {
+            awtColors[ i ] = ( (JavaAwtColor) colors[ i ] ).getDelegate();
+        }
+
+        return awtColors;
+    }
 }
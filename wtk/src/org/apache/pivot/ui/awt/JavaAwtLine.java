@@ -0,0 +1,12 @@
+package org.apache.pivot.ui.awt;
+
+import org.apache.pivot.wtk.graphics.Line;
+
+public class JavaAwtLine extends JavaAwtShape
+    implements Line
+{
+    JavaAwtLine( java.awt.geom.Line2D awtLine )
+    {
+        super( awtLine );
+    }
+}
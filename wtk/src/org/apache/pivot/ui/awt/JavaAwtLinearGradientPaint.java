@@ -0,0 +1,12 @@
+package org.apache.pivot.ui.awt;
+
+import org.apache.pivot.wtk.graphics.LinearGradientPaint;
+
+public class JavaAwtLinearGradientPaint extends JavaAwtPaint
+    implements LinearGradientPaint
+{
+    JavaAwtLinearGradientPaint( java.awt.LinearGradientPaint awtPaint )
+    {
+        super( awtPaint );
+    }
+}
@@ -37,6 +37,9 @@ public class JavaAwtPlatform extends Platform
 {
     private FontRenderContext fontRenderContext;
 
+    private final GraphicsSystem graphicsSystem = new JavaAwtGraphicsSystem();
+    private final SoundSystem soundSystem = new JavaAwtSoundSystem();
+
     private final int DEFAULT_MULTI_CLICK_INTERVAL = 400;
     private final int DEFAULT_CURSOR_BLINK_RATE = 600;
 
@@ -78,13 +81,13 @@ public class JavaAwtPlatform extends Platform
     @Override
     public GraphicsSystem getGraphicsSystem()
     {
-        return null;  //To change body of implemented methods use File | Settings | File Templates.
+        return graphicsSystem;
     }
 
     @Override
     public SoundSystem getSoundSystem()
     {
-        return null;  //To change body of implemented methods use File | Settings | File Templates.
+        return soundSystem;
     }
 
     @Override
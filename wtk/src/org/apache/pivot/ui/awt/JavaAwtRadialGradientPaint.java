@@ -0,0 +1,12 @@
+package org.apache.pivot.ui.awt;
+
+import org.apache.pivot.wtk.graphics.RadialGradientPaint;
+
+public class JavaAwtRadialGradientPaint extends JavaAwtPaint
+    implements RadialGradientPaint
+{
+    JavaAwtRadialGradientPaint( java.awt.RadialGradientPaint awtPaint )
+    {
+        super( awtPaint );
+    }
+}
@@ -0,0 +1,12 @@
+package org.apache.pivot.ui.awt;
+
+import org.apache.pivot.wtk.graphics.geom.Rectangle;
+
+public class JavaAwtRectangle extends JavaAwtShape
+    implements Rectangle
+{
+    JavaAwtRectangle( java.awt.Rectangle awtRectangle )
+    {
+        super( awtRectangle );
+    }
+}
@@ -0,0 +1,12 @@
+package org.apache.pivot.ui.awt;
+
+import org.apache.pivot.wtk.graphics.geom.RoundRectangle;
+
+public class JavaAwtRoundRectangle extends JavaAwtShape
+    implements RoundRectangle
+{
+    JavaAwtRoundRectangle( java.awt.geom.RoundRectangle2D awtRoundRectangle )
+    {
+        super( awtRoundRectangle );
+    }
+}
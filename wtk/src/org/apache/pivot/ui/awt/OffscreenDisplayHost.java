@@ -0,0 +1,132 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pivot.ui.awt;
+
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.event.ComponentEvent;
+import java.awt.image.BufferedImage;
+
+/**
+ * Display host that is not shown on a screen, but renders its display into
+ * an image on request. Repaint requests are accumulated into a single
+ * bounding rectangle, as AWT does, instead of posting paint events, and are
+ * painted by {@link #render()}.
+ * <p>
+ * Typically used with {@link HeadlessPlatform}, in which case the display
+ * may be rendered on any thread (see {@link HeadlessPlatform} for the
+ * restrictions on rendering displays in parallel).
+ */
+public class OffscreenDisplayHost extends DisplayHost
+{
+    private static final long serialVersionUID = 0;
+
+    private transient BufferedImage image = null;
+    private Rectangle repaintArea = null;
+
+    public OffscreenDisplayHost( int width, int height )
+    {
+        setDisplaySize( width, height );
+    }
+
+    /**
+     * Resizes the display, and schedules a paint of its entire area.
+     */
+    public void setDisplaySize( int width, int height )
+    {
+        if( width < 0 )
+        {
+            throw new IllegalArgumentException( "width is negative." );
+        }
+
+        if( height < 0 )
+        {
+            throw new IllegalArgumentException( "height is negative." );
+        }
+
+        setSize( width, height );
+        processComponentEvent( new ComponentEvent( this, ComponentEvent.COMPONENT_RESIZED ) );
+
+        repaint( 0, 0, width, height );
+    }
+
+    @Override
+    public void repaint( long tm, int x, int y, int width, int height )
+    {
+        Rectangle area = new Rectangle( x, y, width, height );
+
+        if( repaintArea == null )
+        {
+            repaintArea = area;
+        }
+        else
+        {
+            repaintArea = repaintArea.union( area );
+        }
+    }
+
+    /**
+     * Returns the area that has been scheduled for painting since the last
+     * call to {@link #render()}, or <tt>null</tt> if the image is up to date.
+     */
+    public Rectangle getRepaintArea()
+    {
+        return ( repaintArea == null ) ? null : new Rectangle( repaintArea );
+    }
+
+    /**
+     * Lays out the display and paints any areas that have been scheduled for
+     * painting.
+     *
+     * @return The image of the display. The image is owned by this display
+     *         host and is updated in place by subsequent calls.
+     */
+    public BufferedImage render()
+    {
+        getDisplay().validate();
+
+        int width = Math.max( getWidth(), 1 );
+        int height = Math.max( getHeight(), 1 );
+
+        if( image == null
+            || image.getWidth() != width
+            || image.getHeight() != height )
+        {
+            image = new BufferedImage( width, height, BufferedImage.TYPE_INT_RGB );
+            repaintArea = new Rectangle( 0, 0, width, height );
+        }
+
+        if( repaintArea != null )
+        {
+            Graphics2D graphics = image.createGraphics();
+
+            try
+            {
+                graphics.setClip( repaintArea );
+                repaintArea = null;
+
+                paint( graphics );
+            }
+            finally
+            {
+                graphics.dispose();
+            }
+        }
+
+        return image;
+    }
+}
@@ -17,6 +17,8 @@
 package org.apache.pivot.wtk;
 
 import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.pivot.beans.BeanAdapter;
 import org.apache.pivot.beans.IDProperty;
@@ -34,6 +36,8 @@ import org.apache.pivot.util.ImmutableIterator;
 import org.apache.pivot.util.ListenerList;
 import org.apache.pivot.wtk.effects.Decorator;
 import org.apache.pivot.wtk.graphics.AffineTransform;
+import org.apache.pivot.wtk.graphics.AlphaComposite;
+import org.apache.pivot.wtk.graphics.BufferedImage;
 import org.apache.pivot.wtk.graphics.Graphics2D;
 import org.apache.pivot.wtk.graphics.geom.Area;
 import org.apache.pivot.wtk.graphics.geom.Shape;
@@ -604,6 +608,76 @@ public abstract class Component implements ConstrainedVisual {
         }
     }
 
+    /**
+     * Statistics on the cached layers of all components.
+     *
+     * @see Component#setLayerCached(boolean)
+     */
+    public static final class LayerStatistics {
+        private static final AtomicInteger layerCount = new AtomicInteger();
+        private static final AtomicLong memoryUsage = new AtomicLong();
+        private static final AtomicLong hitCount = new AtomicLong();
+        private static final AtomicLong missCount = new AtomicLong();
+        private static final AtomicLong paintedArea = new AtomicLong();
+
+        private LayerStatistics() {
+        }
+
+        /**
+         * Returns the number of layers currently allocated.
+         */
+        public static int getLayerCount() {
+            return layerCount.get();
+        }
+
+        /**
+         * Returns the approximate memory used by the allocated layers, in
+         * bytes.
+         */
+        public static long getMemoryUsage() {
+            return memoryUsage.get();
+        }
+
+        /**
+         * Returns the number of times a layer was composited without
+         * repainting any part of it.
+         */
+        public static long getHitCount() {
+            return hitCount.get();
+        }
+
+        /**
+         * Returns the number of times part or all of a layer had to be
+         * repainted before it was composited.
+         */
+        public static long getMissCount() {
+            return missCount.get();
+        }
+
+        /**
+         * Returns the total area repainted into layers, in pixels.
+         */
+        public static long getPaintedArea() {
+            return paintedArea.get();
+        }
+
+        /**
+         * Resets the hit, miss and painted area counts.
+         */
+        public static void reset() {
+            hitCount.set(0);
+            missCount.set(0);
+            paintedArea.set(0);
+        }
+
+        private static void allocated(BufferedImage layer, int sign) {
+            layerCount.addAndGet(sign);
+            memoryUsage.addAndGet(sign * (long)layer.getWidth() * layer.getHeight() * BYTES_PER_PIXEL);
+        }
+
+        private static final int BYTES_PER_PIXEL = 4;
+    }
+
     // The currently installed skin, or null if no skin is installed
     private Skin skin = null;
 
@@ -681,6 +755,12 @@ public abstract class Component implements ConstrainedVisual {
     // The component's automation ID
     private String automationID;
 
+    // The component's cached layer, and the area of the layer that needs
+    // repainting (null if the layer is current)
+    private boolean layerCached = false;
+    private BufferedImage layer = null;
+    private Bounds layerDirtyArea = null;
+
     // Event listener lists
     private ComponentListenerList componentListeners = new ComponentListenerList();
     private ComponentStateListenerList componentStateListeners = new ComponentStateListenerList();
@@ -851,6 +931,13 @@ public abstract class Component implements ConstrainedVisual {
             clearFocus();
         }
 
+        // Release the cached layers of a subtree that is no longer displayed
+        // (for example, the contents of a window that is being closed)
+        if (parent == null
+            && LayerStatistics.getLayerCount() > 0) {
+            disposeLayers(this);
+        }
+
         Container previousParent = this.parent;
         this.parent = parent;
 
@@ -1956,6 +2043,11 @@ public abstract class Component implements ConstrainedVisual {
         Container.assertEventDispatchThread(this);
         valid = false;
 
+        // The layout of the cached layer's contents may change
+        if (layer != null) {
+            layerDirtyArea = new Bounds(0, 0, layer.getWidth(), layer.getHeight());
+        }
+
         // Clear the preferred size and baseline
         preferredSize = null;
         baseline = -1;
@@ -2046,6 +2138,9 @@ public abstract class Component implements ConstrainedVisual {
      */
     public void repaint(int x, int y, int width, int height, boolean immediate) {
         Container.assertEventDispatchThread(this);
+
+        invalidateLayer(x, y, width, height);
+
         if (parent != null) {
             // Constrain the repaint area to this component's bounds
             int top = y;
@@ -2093,6 +2188,150 @@ public abstract class Component implements ConstrainedVisual {
         skin.paint(graphics);
     }
 
+    /**
+     * Returns the component's layer caching state.
+     *
+     * @return
+     * <tt>true</tt> if the component is painted into a cached layer;
+     * <tt>false</tt>, otherwise.
+     */
+    public boolean isLayerCached() {
+        return layerCached;
+    }
+
+    /**
+     * Sets the component's layer caching state. A cached component and its
+     * descendants are painted into an offscreen image, which is composited
+     * onto its parent when the component is painted and is repainted only
+     * where the component or a descendant has been repainted or invalidated
+     * since. This benefits complex components that seldom change but are
+     * often repainted (e.g. a form next to an animation), at the cost of
+     * an image the size of the component.
+     *
+     * @param layerCached
+     * <tt>true</tt> to paint the component into a cached layer;
+     * <tt>false</tt> to paint it directly.
+     *
+     * @see LayerStatistics
+     */
+    public void setLayerCached(boolean layerCached) {
+        if (this.layerCached != layerCached) {
+            this.layerCached = layerCached;
+
+            if (!layerCached) {
+                disposeLayer();
+            }
+        }
+    }
+
+    /**
+     * Paints the component on behalf of its parent, compositing its cached
+     * layer if layer caching is enabled.
+     */
+    void paintLayer(Graphics2D graphics) {
+        int width = getWidth();
+        int height = getHeight();
+
+        if (!layerCached
+            || width == 0
+            || height == 0
+            || isDisplayScaled()) {
+            paint(graphics);
+        } else {
+            if (layer == null
+                || layer.getWidth() != width
+                || layer.getHeight() != height) {
+                disposeLayer();
+
+                layer = Platform.getInstalled().getGraphicsSystem().newBufferedImage(width, height);
+                layerDirtyArea = new Bounds(0, 0, width, height);
+                LayerStatistics.allocated(layer, 1);
+            }
+
+            if (layerDirtyArea == null) {
+                LayerStatistics.hitCount.incrementAndGet();
+            } else {
+                Bounds dirtyArea = layerDirtyArea.intersect(0, 0, width, height);
+                layerDirtyArea = null;
+
+                Graphics2D layerGraphics = layer.createGraphics();
+                layerGraphics.clipRect(dirtyArea.x, dirtyArea.y, dirtyArea.width, dirtyArea.height);
+
+                try {
+                    // Clear the dirty area, since the component may not be
+                    // opaque
+                    layerGraphics.setComposite(AlphaComposite.Clear);
+                    layerGraphics.fillRect(dirtyArea.x, dirtyArea.y, dirtyArea.width, dirtyArea.height);
+                    layerGraphics.setComposite(AlphaComposite.SrcOver);
+
+                    paint(layerGraphics);
+                } finally {
+                    layerGraphics.dispose();
+                }
+
+                LayerStatistics.missCount.incrementAndGet();
+                LayerStatistics.paintedArea.addAndGet((long)dirtyArea.width * dirtyArea.height);
+            }
+
+            graphics.drawImage(layer, 0, 0, null);
+        }
+    }
+
+    private boolean isDisplayScaled() {
+        // Layers are painted at the component's unscaled size, so they would
+        // look blurred on a scaled display
+        Display display = getDisplay();
+        return (display != null
+            && display.getDisplayHost().getScale() != 1);
+    }
+
+    private void invalidateLayer(int x, int y, int width, int height) {
+        if (layer != null
+            && width > 0
+            && height > 0) {
+            layerDirtyArea = (layerDirtyArea == null) ? new Bounds(x, y, width, height)
+                : layerDirtyArea.union(x, y, width, height);
+        }
+    }
+
+    /**
+     * Flags an area of this component and any cached ancestor layers as
+     * needing to be repainted, without repainting the display. Used by
+     * viewports that consume repaints because their skin updates the display
+     * directly.
+     */
+    void invalidateLayers(int x, int y, int width, int height) {
+        Component component = this;
+
+        while (component != null) {
+            component.invalidateLayer(x, y, width, height);
+
+            x += component.x;
+            y += component.y;
+            component = component.parent;
+        }
+    }
+
+    private static void disposeLayers(Component component) {
+        component.disposeLayer();
+
+        if (component instanceof Container) {
+            for (Component child : (Container)component) {
+                disposeLayers(child);
+            }
+        }
+    }
+
+    private void disposeLayer() {
+        if (layer != null) {
+            LayerStatistics.allocated(layer, -1);
+
+            layer.flush();
+            layer = null;
+            layerDirtyArea = null;
+        }
+    }
+
     /**
      * Creates a graphics context for this component. This graphics context
      * will not be double buffered. In other words, drawing operations on it
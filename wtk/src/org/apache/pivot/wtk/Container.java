@@ -400,8 +400,9 @@ public abstract class Container extends Component
 
                 // Create a copy of the current graphics context and
                 // translate to the component's coordinate system
-                Graphics2D decoratedGraphics = (Graphics2D)graphics.create();
-                decoratedGraphics.translate(componentBounds.x, componentBounds.y);
+                Graphics2D translatedGraphics = (Graphics2D)graphics.create();
+                translatedGraphics.translate(componentBounds.x, componentBounds.y);
+                Graphics2D decoratedGraphics = translatedGraphics;
 
                 // Prepare the decorators
                 DecoratorSequence decorators = component.getDecorators();
@@ -414,7 +415,7 @@ public abstract class Container extends Component
                 // Paint the component
                 Graphics2D componentGraphics = (Graphics2D)decoratedGraphics.create();
                 componentGraphics.clipRect(0, 0, componentBounds.width, componentBounds.height);
-                component.paint(componentGraphics);
+                component.paintLayer(componentGraphics);
                 componentGraphics.dispose();
 
                 // Update the decorators
@@ -422,6 +423,10 @@ public abstract class Container extends Component
                     Decorator decorator = decorators.get(j);
                     decorator.update();
                 }
+
+                // Dispose of the copy once the decorators no longer need it,
+                // so that the graphics context can reuse it
+                translatedGraphics.dispose();
             }
         }
     }
@@ -170,7 +170,11 @@ public abstract class Viewport extends Container {
 
     @Override
     public void repaint(int x, int y, int width, int height, boolean immediate) {
-        if (!consumeRepaint) {
+        if (consumeRepaint) {
+            // The skin updates the display itself, but any cached layers
+            // still need to be repainted
+            invalidateLayers(x, y, width, height);
+        } else {
             super.repaint(x, y, width, height, immediate);
         }
     }
@@ -21,11 +21,12 @@ import org.apache.pivot.wtk.graphics.ColorFactory;
 
 import org.apache.pivot.wtk.Bounds;
 import org.apache.pivot.wtk.Component;
-import org.apache.pivot.wtk.DesktopApplicationContext;
+import org.apache.pivot.wtk.Display;
 import org.apache.pivot.wtk.Dimensions;
 import org.apache.pivot.wtk.Keyboard;
 import org.apache.pivot.wtk.Mouse;
 import org.apache.pivot.wtk.Orientation;
+import org.apache.pivot.wtk.Point;
 import org.apache.pivot.wtk.ScrollBar;
 import org.apache.pivot.wtk.ScrollBarValueListener;
 import org.apache.pivot.wtk.ScrollPane;
@@ -34,7 +35,6 @@ import org.apache.pivot.wtk.Viewport;
 import org.apache.pivot.wtk.ViewportListener;
 import org.apache.pivot.wtk.ScrollPane.Corner;
 import org.apache.pivot.wtk.ScrollPane.ScrollBarPolicy;
-import org.apache.pivot.wtk.graphics.Graphics2D;
 import org.apache.pivot.wtk.graphics.Paint;
 import org.apache.pivot.wtk.graphics.Transparency;
 
@@ -885,25 +885,19 @@ public class ScrollPaneSkin extends ContainerSkin
         this.verticalReveal = verticalReveal;
     }
 
-    @SuppressWarnings("deprecation")
     private boolean isOptimizeScrolling() {
         boolean optimizeScrolling = this.optimizeScrolling;
 
         if (optimizeScrolling) {
-            // Due to Sun bug #6293145, we cannot call copyArea if scaling is
-            // applied to the graphics context.
-
-            // Due to Sun bug #4033851, we cannot call copyArea if the display
-            // host is obscured. For a full description of why this is the case,
-            // see http://people.apache.org/~tvolkert/tests/scrolling/
-
+            // The display host moves the scrolled area within its offscreen
+            // buffer rather than on screen, so we are not subject to Sun bugs
+            // #6293145 (copyArea with scaling) or #4033851 (copyArea when the
+            // display host is obscured); it can't do so before the buffer
+            // has been painted, or at fractional scales
             ScrollPane scrollPane = (ScrollPane)getComponent();
             DisplayHost displayHost = scrollPane.getDisplay().getDisplayHost();
 
-            optimizeScrolling = (displayHost.getScale() == 1
-                && (DesktopApplicationContext.isActive()
-                || (displayHost.getPeer().canDetermineObscurity()
-                && !displayHost.getPeer().isObscured())));
+            optimizeScrolling = displayHost.canCopyArea();
         }
 
         return optimizeScrolling;
@@ -1017,8 +1011,10 @@ public class ScrollPaneSkin extends ContainerSkin
             blitY += Math.max(deltaScrollTop, 0);
             blitHeight -= Math.abs(deltaScrollTop);
 
-            Graphics2D graphics = scrollPane.getGraphics();
-            graphics.copyArea(blitX, blitY, blitWidth, blitHeight, 0, -deltaScrollTop);
+            Display display = scrollPane.getDisplay();
+            Point blitLocation = scrollPane.mapPointToAncestor(display, blitX, blitY);
+            display.getDisplayHost().copyArea(blitLocation.x, blitLocation.y,
+                blitWidth, blitHeight, 0, -deltaScrollTop);
 
             scrollPane.setConsumeRepaint(true);
             try {
@@ -1031,8 +1027,9 @@ public class ScrollPaneSkin extends ContainerSkin
                 scrollPane.setConsumeRepaint(false);
             }
 
+            // Paint the uncovered strip along with the moved area
             scrollPane.repaint(blitX, columnHeaderHeight + (deltaScrollTop > 0 ? blitHeight : 0),
-                blitWidth, Math.abs(deltaScrollTop), true);
+                blitWidth, Math.abs(deltaScrollTop));
         } else {
             if (view != null) {
                 view.setLocation(view.getX(), columnHeaderHeight - scrollTop);
@@ -1087,8 +1084,10 @@ public class ScrollPaneSkin extends ContainerSkin
             blitX += Math.max(deltaScrollLeft, 0);
             blitWidth -= Math.abs(deltaScrollLeft);
 
-            Graphics2D graphics = scrollPane.getGraphics();
-            graphics.copyArea(blitX, blitY, blitWidth, blitHeight, -deltaScrollLeft, 0);
+            Display display = scrollPane.getDisplay();
+            Point blitLocation = scrollPane.mapPointToAncestor(display, blitX, blitY);
+            display.getDisplayHost().copyArea(blitLocation.x, blitLocation.y,
+                blitWidth, blitHeight, -deltaScrollLeft, 0);
 
             scrollPane.setConsumeRepaint(true);
             try {
@@ -1101,8 +1100,9 @@ public class ScrollPaneSkin extends ContainerSkin
                 scrollPane.setConsumeRepaint(false);
             }
 
+            // Paint the uncovered strip along with the moved area
             scrollPane.repaint(rowHeaderWidth + (deltaScrollLeft > 0 ? blitWidth : 0), blitY,
-                Math.abs(deltaScrollLeft), blitHeight, true);
+                Math.abs(deltaScrollLeft), blitHeight);
         } else {
             if (view != null) {
                 view.setLocation(rowHeaderWidth - scrollLeft, view.getY());